@@ -0,0 +1,132 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.royale.abc.ABCEmitter;
+import org.apache.royale.abc.ABCParser;
+import org.apache.royale.abc.visitors.NilABCVisitor;
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link ABCParser} and {@link ABCEmitter} on the DoABC tags of a
+ * SWC.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ABCRoundTripBenchmark
+{
+    /**
+     * The SWC whose library.swf is read.
+     */
+    @Param({"../compiler-externc/target/js.swc"})
+    public String swc;
+
+    private List<byte[]> abcs;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        abcs = new ArrayList<byte[]>();
+        ZipFile zipFile = new ZipFile(BenchmarkCorpus.resolveFile(swc));
+        try
+        {
+            ZipEntry entry = zipFile.getEntry("library.swf");
+            if (entry == null)
+                throw new IllegalArgumentException("No library.swf in " + swc);
+            InputStream input = zipFile.getInputStream(entry);
+            SWFReader reader = new SWFReader();
+            try
+            {
+                ISWF swf = reader.readFrom(input, swc);
+                for (int i = 0; i < swf.getFrameCount(); i++)
+                {
+                    SWFFrame frame = swf.getFrameAt(i);
+                    for (ITag tag : frame)
+                    {
+                        if (tag instanceof DoABCTag)
+                            abcs.add(((DoABCTag)tag).getABCData());
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        finally
+        {
+            zipFile.close();
+        }
+        if (abcs.isEmpty())
+            throw new IllegalArgumentException("No DoABC tags in " + swc);
+    }
+
+    /**
+     * Parses the ABC without doing anything with it.
+     */
+    @Benchmark
+    public void parse()
+    {
+        for (byte[] abc : abcs)
+            new ABCParser(abc).parseABC(new NilABCVisitor());
+    }
+
+    /**
+     * Parses the ABC and writes it back out.
+     */
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) throws Exception
+    {
+        for (byte[] abc : abcs)
+        {
+            ABCEmitter emitter = new ABCEmitter();
+            new ABCParser(abc).parseABC(emitter);
+            blackhole.consume(emitter.emit());
+        }
+    }
+}
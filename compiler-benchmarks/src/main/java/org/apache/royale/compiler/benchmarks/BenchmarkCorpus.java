@@ -0,0 +1,270 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.projects.ICompilerProject;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.workspaces.IWorkspace;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * Generates the fixed ActionScript and MXML sources that the benchmarks run
+ * against. The output only depends on the arguments, so results from
+ * different runs (and different commits) can be compared.
+ */
+final class BenchmarkCorpus
+{
+    /**
+     * Package of the generated classes.
+     */
+    static final String PACKAGE_NAME = "bench";
+
+    private BenchmarkCorpus()
+    {
+    }
+
+    /**
+     * Name of the generated class with the specified index.
+     */
+    static String getClassName(int index)
+    {
+        return "Class" + index;
+    }
+
+    /**
+     * Creates the source of an ActionScript class. Every class except the
+     * first one extends the previous class, so that resolving a class pulls
+     * in the whole chain.
+     *
+     * @param index index of the class.
+     * @param methodCount number of methods to generate.
+     * @return ActionScript source.
+     */
+    static String createClass(int index, int methodCount)
+    {
+        String className = getClassName(index);
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE_NAME).append("\n{\n");
+        sb.append("    /**\n     * Generated class number ").append(index).append(".\n     */\n");
+        sb.append("    public class ").append(className);
+        if (index > 0)
+            sb.append(" extends ").append(getClassName(index - 1));
+        sb.append("\n    {\n");
+        sb.append("        public static const NAME:String = \"").append(className).append("\";\n\n");
+        sb.append("        public function ").append(className).append("()\n        {\n");
+        sb.append("            super();\n");
+        sb.append("            _items").append(index).append(" = [];\n");
+        sb.append("        }\n\n");
+        sb.append("        private var _items").append(index).append(":Array;\n");
+        sb.append("        private var _count").append(index).append(":int = 0;\n\n");
+        sb.append("        public function get count").append(index).append("():int\n        {\n");
+        sb.append("            return _count").append(index).append(";\n        }\n\n");
+        sb.append("        public function set count").append(index).append("(value:int):void\n        {\n");
+        sb.append("            if (value != _count").append(index).append(")\n");
+        sb.append("                _count").append(index).append(" = value;\n        }\n");
+        for (int i = 0; i < methodCount; i++)
+        {
+            String methodName = "method" + index + "_" + i;
+            sb.append("\n        /**\n         * Generated method ").append(i).append(".\n         */\n");
+            sb.append("        public function ").append(methodName);
+            sb.append("(value:Number, label:String = \"").append(methodName).append("\", ...rest):Object\n");
+            sb.append("        {\n");
+            sb.append("            var result:Object = { name: label, value: value, index: ").append(i).append(" };\n");
+            sb.append("            var total:Number = 0;\n");
+            sb.append("            for (var j:int = 0; j < rest.length; j++)\n            {\n");
+            sb.append("                if (rest[j] is Number)\n                    total += rest[j] as Number;\n");
+            sb.append("                else if (rest[j] != null)\n                    total += String(rest[j]).length;\n");
+            sb.append("            }\n");
+            sb.append("            switch (_count").append(index).append(" % 3)\n            {\n");
+            sb.append("                case 0:\n                    result.total = Math.max(total, value) * 0x10;\n                    break;\n");
+            sb.append("                case 1:\n                    result.total = Math.floor(total / (value + 1.5e3));\n                    break;\n");
+            sb.append("                default:\n                    result.total = -total;\n            }\n");
+            sb.append("            var text:String = label.toUpperCase() + \": \" + total.toFixed(2) + ' \\'quoted\\'';\n");
+            sb.append("            _items").append(index).append(".push(text);\n");
+            sb.append("            _count").append(index).append("++;\n");
+            sb.append("            var filter:Function = function(item:Object, idx:int, arr:Array):Boolean\n");
+            sb.append("            {\n                return item != null && idx >= 0;\n            };\n");
+            sb.append("            result.items = _items").append(index).append(".filter(filter);\n");
+            sb.append("            return result;\n");
+            sb.append("        }\n");
+        }
+        sb.append("    }\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Creates a single large ActionScript file made up of one class with
+     * many methods.
+     *
+     * @param methodCount number of methods to generate.
+     * @return ActionScript source.
+     */
+    static String createLargeFile(int methodCount)
+    {
+        return createClass(0, methodCount);
+    }
+
+    /**
+     * Creates an MXML document with the specified number of child
+     * components.
+     *
+     * @param componentCount number of child components to generate.
+     * @return MXML source.
+     */
+    static String createMXMLDocument(int componentCount)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        sb.append("<!-- Generated MXML document -->\n");
+        sb.append("<js:Application xmlns:fx=\"http://ns.adobe.com/mxml/2009\"\n");
+        sb.append("                xmlns:js=\"library://ns.apache.org/royale/basic\"\n");
+        sb.append("                initComplete=\"onInitComplete(event)\">\n");
+        sb.append("    <fx:Script>\n        <![CDATA[\n");
+        sb.append("            [Bindable]\n            public var title:String = \"Benchmark\";\n\n");
+        sb.append("            private function onInitComplete(event:Object):void\n            {\n");
+        sb.append("                trace(title + \" < ready & done >\");\n            }\n");
+        sb.append("        ]]>\n    </fx:Script>\n");
+        sb.append("    <fx:Declarations>\n");
+        sb.append("        <fx:String id=\"greeting\">Hello &amp; welcome</fx:String>\n");
+        sb.append("    </fx:Declarations>\n");
+        sb.append("    <js:initialView>\n        <js:View>\n");
+        for (int i = 0; i < componentCount; i++)
+        {
+            sb.append("            <js:Group id=\"group").append(i).append("\" x=\"").append(i * 10);
+            sb.append("\" y=\"20\" width=\"100%\">\n");
+            sb.append("                <js:Label text=\"{title} ").append(i).append("\" />\n");
+            sb.append("                <js:TextButton text=\"Click ").append(i);
+            sb.append("\" click=\"trace('clicked ").append(i).append("')\" />\n");
+            sb.append("                <!-- component ").append(i).append(" -->\n");
+            sb.append("            </js:Group>\n");
+        }
+        sb.append("        </js:View>\n    </js:initialView>\n");
+        sb.append("</js:Application>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the generated classes to a source directory.
+     *
+     * @param sourceDir root of the source path.
+     * @param classCount number of classes to generate.
+     * @param methodCount number of methods per class.
+     * @return the files that were written.
+     */
+    static List<File> writeSourcePath(File sourceDir, int classCount, int methodCount) throws IOException
+    {
+        File packageDir = new File(sourceDir, PACKAGE_NAME);
+        if (!packageDir.isDirectory() && !packageDir.mkdirs())
+            throw new IOException("Unable to create " + packageDir);
+        List<File> files = new ArrayList<File>(classCount);
+        for (int i = 0; i < classCount; i++)
+        {
+            File file = new File(packageDir, getClassName(i) + ".as");
+            Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8);
+            try
+            {
+                writer.write(createClass(i, methodCount));
+            }
+            finally
+            {
+                writer.close();
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Creates a temporary directory that is deleted when the JVM exits.
+     */
+    static File createTempDir(String prefix) throws IOException
+    {
+        final File dir = Files.createTempDirectory(prefix).toFile();
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                delete(dir);
+            }
+        });
+        return dir;
+    }
+
+    /**
+     * Resolves a file that is passed in as a benchmark parameter. The
+     * defaults are relative to this module, so a leading "../" is dropped if
+     * the file can't be found, which makes them work from the root of the
+     * repository too.
+     */
+    static File resolveFile(String path)
+    {
+        File file = new File(path);
+        if (!file.exists() && path.startsWith("../"))
+            file = new File(path.substring(3));
+        if (!file.exists())
+            throw new IllegalArgumentException("File not found: " + new File(path).getAbsolutePath());
+        return file.getAbsoluteFile();
+    }
+
+    /**
+     * Finds the compilation unit for a file on the source path of a project.
+     */
+    static ICompilationUnit getCompilationUnit(IWorkspace workspace, ICompilerProject project, File file)
+    {
+        String path = FilenameNormalization.normalize(file.getAbsolutePath());
+        for (ICompilationUnit cu : workspace.getCompilationUnits(path, project))
+        {
+            if (cu != null)
+                return cu;
+        }
+        throw new IllegalStateException("No compilation unit for " + path);
+    }
+
+    /**
+     * Shuts down a workspace created by a benchmark.
+     */
+    static void close(IWorkspace workspace)
+    {
+        if (workspace instanceof Workspace)
+            ((Workspace)workspace).close();
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
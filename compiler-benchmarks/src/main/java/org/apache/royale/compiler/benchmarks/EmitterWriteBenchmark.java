@@ -0,0 +1,99 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
+import org.apache.royale.compiler.internal.codegen.js.JSFilterWriter;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the output layer of the emitters: {@code write()} and
+ * {@code writeNewline()} of a {@link JSRoyaleEmitter}, without walking a
+ * syntax tree. Run it with {@code -prof gc}; the interesting number is
+ * {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmitterWriteBenchmark
+{
+    /**
+     * Number of lines that are written. Each line is a few tokens at an
+     * indentation level between 1 and 10.
+     */
+    @Param({"100000"})
+    public int lineCount;
+
+    /**
+     * The writer that the emitter writes to: {@code buffer} for the
+     * {@link EmitterOutputBuffer} that the backends use, {@code string} for
+     * a {@link StringWriter}, or {@code null} to discard the output and
+     * measure only the emitter.
+     */
+    @Param({"buffer", "string", "null"})
+    public String output;
+
+    @Benchmark
+    public void write(Blackhole blackhole)
+    {
+        Writer out;
+        if ("buffer".equals(output))
+            out = new EmitterOutputBuffer();
+        else if ("string".equals(output))
+            out = new StringWriter();
+        else
+            out = Writer.nullWriter();
+        JSFilterWriter writer = new JSFilterWriter(out);
+        JSRoyaleEmitter emitter = new JSRoyaleEmitter(writer);
+        for (int i = 0; i < lineCount; i++)
+        {
+            if (i % 10 == 0)
+                emitter.indentPush();
+            emitter.write("var");
+            emitter.write(" ");
+            emitter.write("foo");
+            emitter.write(" = ");
+            emitter.write("this.bar(1, 2)");
+            emitter.write(";");
+            if (i % 10 == 9)
+                emitter.indentPop();
+            emitter.writeNewline();
+        }
+        blackhole.consume(writer.toString());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.codegen.as.IASEmitter;
+import org.apache.royale.compiler.config.Configurator;
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.codegen.as.ASFilterWriter;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitter;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.visitor.as.IASBlockWalker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link JSRoyaleEmitter} output for a fixed corpus of
+ * ActionScript classes. The classes are parsed and resolved during setup, so
+ * only code generation is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSRoyaleEmitterBenchmark
+{
+    /**
+     * The framework SWC that is put on the library path.
+     */
+    @Param({"../compiler-externc/target/js.swc"})
+    public String swc;
+
+    /**
+     * Number of generated classes.
+     */
+    @Param({"20"})
+    public int classCount;
+
+    /**
+     * Number of methods per generated class.
+     */
+    @Param({"20"})
+    public int methodCount;
+
+    private Workspace workspace;
+    private IBackend backend;
+    private RoyaleJSProject project;
+    private List<ICompilationUnit> compilationUnits;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        File sourceDir = BenchmarkCorpus.createTempDir("js-emitter");
+        List<File> files = BenchmarkCorpus.writeSourcePath(sourceDir, classCount, methodCount);
+
+        workspace = new Workspace();
+        backend = new RoyaleBackend();
+        project = new RoyaleJSProject(workspace, backend);
+        RoyaleProjectConfigurator.configure(project);
+        Configurator projectConfigurator = backend.createConfigurator();
+        project.setTargetSettings(projectConfigurator.getTargetSettings(null));
+        project.setSourcePath(Collections.singletonList(sourceDir));
+        project.setLibraries(Collections.singletonList(BenchmarkCorpus.resolveFile(swc)));
+
+        compilationUnits = new ArrayList<ICompilationUnit>(files.size());
+        for (File file : files)
+        {
+            ICompilationUnit cu = BenchmarkCorpus.getCompilationUnit(workspace, project, file);
+            // build the syntax tree and resolve the dependencies up front
+            cu.getOutgoingDependenciesRequest().get();
+            compilationUnits.add(cu);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        BenchmarkCorpus.close(workspace);
+    }
+
+    @Benchmark
+    public void emit(Blackhole blackhole)
+    {
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        for (ICompilationUnit cu : compilationUnits)
+        {
+            ASFilterWriter writer = backend.createWriterBuffer(project);
+            IASEmitter emitter = backend.createEmitter(writer);
+            IASBlockWalker walker = backend.createWalker(project, problems, emitter);
+            walker.visitCompilationUnit(cu);
+            blackhole.consume(emitter.postProcess(writer.toString()));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.scopes.ASProjectScope;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks concurrent {@link ASProjectScope#getLocalDefinitionSetByName}
+ * lookups, with the lock-free lookups enabled and with every lookup taking
+ * the read lock, both without writers and with one thread that keeps adding
+ * and removing definitions like compilation units that are built at the same
+ * time.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectScopeContentionBenchmark
+{
+    /**
+     * Names that are defined in js.swc.
+     */
+    private static final String[] LIBRARY_NAMES = {
+        "Object", "Array", "String", "Number", "Boolean", "Function", "Math",
+        "Date", "RegExp", "Error", "JSON", "int", "uint", "isNaN", "parseInt",
+        "Element", "Document", "Event", "HTMLElement", "window", "document",
+        "console", "setTimeout", "XMLHttpRequest"
+    };
+
+    /**
+     * The framework SWC that is put on the library path.
+     */
+    @Param({"../compiler-externc/target/js.swc"})
+    public String swc;
+
+    /**
+     * If false, every lookup takes the read lock of the project scope, which
+     * is how all lookups worked before.
+     */
+    @Param({"true", "false"})
+    public boolean lockFreeReads;
+
+    private Workspace workspace;
+    private ASProjectScope projectScope;
+    private ICompilationUnit writerCompilationUnit;
+    private List<String> names;
+    private int writeCount;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        File sourceDir = BenchmarkCorpus.createTempDir("project-scope");
+        List<File> files = BenchmarkCorpus.writeSourcePath(sourceDir, 10, 1);
+
+        workspace = new Workspace();
+        RoyaleProject project = new RoyaleProject(workspace);
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(sourceDir));
+        project.setLibraries(Collections.singletonList(BenchmarkCorpus.resolveFile(swc)));
+        projectScope = project.getScope();
+        projectScope.setLockFreeReadsEnabled(lockFreeReads);
+        writerCompilationUnit = BenchmarkCorpus.getCompilationUnit(workspace, project, files.get(0));
+
+        names = new ArrayList<String>();
+        Collections.addAll(names, LIBRARY_NAMES);
+        for (int i = 0; i < files.size(); i++)
+            names.add(BenchmarkCorpus.getClassName(i));
+        names.add("NotDefinedAnywhere");
+
+        // replace the definition promises, which happens once per name in a
+        // real build
+        for (String name : names)
+            projectScope.getLocalDefinitionSetByName(name);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        BenchmarkCorpus.close(workspace);
+    }
+
+    /**
+     * Lookups from four threads without any writers.
+     */
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(4)
+    public void read(Blackhole blackhole)
+    {
+        lookUpNames(blackhole);
+    }
+
+    /**
+     * Lookups from three threads while another thread changes the project
+     * scope.
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void contendedRead(Blackhole blackhole)
+    {
+        lookUpNames(blackhole);
+    }
+
+    /**
+     * Adds and removes a definition promise, which takes the write lock
+     * twice.
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedWrite()
+    {
+        String qname = BenchmarkCorpus.PACKAGE_NAME + ".Written" + (writeCount++ % 16);
+        IDefinition promise = ASProjectScope.createDefinitionPromise(qname, writerCompilationUnit);
+        projectScope.addDefinition(promise);
+        projectScope.removeDefinition(promise);
+    }
+
+    private void lookUpNames(Blackhole blackhole)
+    {
+        for (String name : names)
+            blackhole.consume(projectScope.getLocalDefinitionSetByName(name));
+    }
+}
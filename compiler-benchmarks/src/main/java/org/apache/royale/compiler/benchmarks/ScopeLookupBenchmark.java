@@ -0,0 +1,166 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.common.DependencyType;
+import org.apache.royale.compiler.internal.definitions.ScopedDefinitionBase;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.projects.RoyaleProjectConfigurator;
+import org.apache.royale.compiler.internal.scopes.ASScope;
+import org.apache.royale.compiler.internal.scopes.ASScopeCache;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.requests.IFileScopeRequestResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link ASScope#findProperty} lookups, with and without the
+ * {@link ASScopeCache}, in a project that has a framework SWC on its library
+ * path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopeLookupBenchmark
+{
+    /**
+     * Names that are defined in js.swc.
+     */
+    private static final String[] LIBRARY_NAMES = {
+        "Object", "Array", "String", "Number", "Boolean", "Function", "Math",
+        "Date", "RegExp", "Error", "JSON", "int", "uint", "isNaN", "parseInt",
+        "Element", "Document", "Event", "HTMLElement", "window", "document",
+        "console", "setTimeout", "XMLHttpRequest"
+    };
+
+    /**
+     * The framework SWC that is put on the library path.
+     */
+    @Param({"../compiler-externc/target/js.swc"})
+    public String swc;
+
+    /**
+     * Number of generated classes. Each class extends the previous one, and
+     * the lookups are made from the last one.
+     */
+    @Param({"20"})
+    public int classCount;
+
+    private Workspace workspace;
+    private RoyaleProject project;
+    private ICompilationUnit compilationUnit;
+    private ASScope fileScope;
+    private ASScope classScope;
+    private List<String> fileScopeNames;
+    private List<String> classScopeNames;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        File sourceDir = BenchmarkCorpus.createTempDir("scope-lookup");
+        List<File> files = BenchmarkCorpus.writeSourcePath(sourceDir, classCount, 10);
+
+        workspace = new Workspace();
+        project = new RoyaleProject(workspace);
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(sourceDir));
+        project.setLibraries(Collections.singletonList(BenchmarkCorpus.resolveFile(swc)));
+
+        int last = classCount - 1;
+        compilationUnit = BenchmarkCorpus.getCompilationUnit(workspace, project, files.get(last));
+        IFileScopeRequestResult result = compilationUnit.getFileScopeRequest().get();
+        fileScope = (ASScope)result.getScopes()[0];
+        String qname = BenchmarkCorpus.PACKAGE_NAME + "." + BenchmarkCorpus.getClassName(last);
+        classScope = ((ScopedDefinitionBase)result.getMainDefinition(qname)).getContainedScope();
+
+        fileScopeNames = new ArrayList<String>();
+        Collections.addAll(fileScopeNames, LIBRARY_NAMES);
+        for (int i = 0; i < classCount; i++)
+            fileScopeNames.add(BenchmarkCorpus.getClassName(i));
+        fileScopeNames.add("NotDefinedAnywhere");
+
+        // members that are inherited from further and further up the chain
+        classScopeNames = new ArrayList<String>();
+        for (int i = 0; i < classCount; i++)
+        {
+            classScopeNames.add("count" + i);
+            classScopeNames.add("method" + i + "_0");
+        }
+        classScopeNames.add("NAME");
+        classScopeNames.add("toString");
+        classScopeNames.add("Array");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        BenchmarkCorpus.close(workspace);
+    }
+
+    /**
+     * Repeats lookups that have already been cached, which is what most
+     * lookups during code generation are.
+     */
+    @Benchmark
+    public void findPropertyCached(Blackhole blackhole)
+    {
+        findProperties(blackhole);
+    }
+
+    /**
+     * Clears the scope caches of the compilation unit before the lookups, so
+     * that every name is resolved again.
+     */
+    @Benchmark
+    public void findPropertyUncached(Blackhole blackhole)
+    {
+        project.resetScopeCacheForCompilationUnit(compilationUnit);
+        findProperties(blackhole);
+    }
+
+    private void findProperties(Blackhole blackhole)
+    {
+        for (String name : fileScopeNames)
+            blackhole.consume(fileScope.findProperty(project, name, DependencyType.EXPRESSION));
+        for (String name : classScopeNames)
+            blackhole.consume(classScope.findProperty(project, name, DependencyType.EXPRESSION));
+    }
+}
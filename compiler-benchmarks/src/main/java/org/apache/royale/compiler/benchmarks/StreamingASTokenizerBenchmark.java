@@ -0,0 +1,102 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.royale.compiler.internal.parsing.as.ASToken;
+import org.apache.royale.compiler.internal.parsing.as.StreamingASTokenizer;
+import org.apache.royale.utils.NonLockingStringReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link StreamingASTokenizer} on a large ActionScript file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingASTokenizerBenchmark
+{
+    /**
+     * Number of methods in the generated file. Each method is about 30
+     * lines.
+     */
+    @Param({"2000"})
+    public int methodCount;
+
+    private String source;
+
+    @Setup
+    public void setUp()
+    {
+        source = BenchmarkCorpus.createLargeFile(methodCount);
+    }
+
+    /**
+     * Pulls the tokens one at a time, the way the parser does.
+     */
+    @Benchmark
+    public void next(Blackhole blackhole) throws IOException
+    {
+        StreamingASTokenizer tokenizer = new StreamingASTokenizer(new NonLockingStringReader(source));
+        try
+        {
+            ASToken token;
+            while ((token = tokenizer.next()) != null)
+                blackhole.consume(token);
+        }
+        finally
+        {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * Copies all of the tokens into an array, the way the code model does.
+     */
+    @Benchmark
+    public ASToken[] getTokens() throws IOException
+    {
+        StreamingASTokenizer tokenizer = new StreamingASTokenizer();
+        try
+        {
+            return tokenizer.getTokens(new NonLockingStringReader(source));
+        }
+        finally
+        {
+            tokenizer.close();
+        }
+    }
+}
@@ -6470,4 +6470,99 @@ public class Configuration
         allowStrictFunctionTypes = b;
     }
 
+    //
+    // 'library-cache-dir' option
+    //
+
+    private String libraryCacheDir = null;
+
+    public File getLibraryCacheDir()
+    {
+        return libraryCacheDir != null ? new File(libraryCacheDir) : null;
+    }
+
+    /**
+     * Keeps a persistent cache of the ABC in the library SWFs of SWC files in the specified directory. On later
+     * builds, the compiler reads the definitions of unchanged SWC files from the cache instead of inflating and
+     * parsing their library SWFs again. The cache can be shared by builds of different projects.
+     */
+    @Config(advanced = true)
+    @Mapping("library-cache-dir")
+    @Arguments("directory")
+    public void setLibraryCacheDir(ConfigurationValue cv, String dir)
+    {
+        this.libraryCacheDir = getOutputPath(cv, dir);
+    }
+
+    //
+    // 'library-swf-cache-size' option
+    //
+
+    private int librarySWFCacheSize = 0;
+
+    public int getLibrarySWFCacheSize()
+    {
+        return librarySWFCacheSize;
+    }
+
+    /**
+     * Holds on to the decoded library SWFs of SWC files, and to their indexes, up to the specified estimated total
+     * size in megabytes each, and drops the least recently used ones beyond that. By default, the garbage collector may drop any of them when
+     * memory runs low, and they have to be read from the SWC files again.
+     */
+    @Config(advanced = true)
+    @Mapping("library-swf-cache-size")
+    @Arguments("megabytes")
+    public void setLibrarySWFCacheSize(ConfigurationValue cv, int megabytes)
+    {
+        this.librarySWFCacheSize = Math.max(0, megabytes);
+    }
+
+    //
+    // 'profile-report' option
+    //
+
+    private String profileReport = null;
+
+    public File getProfileReport()
+    {
+        return profileReport != null ? new File(profileReport) : null;
+    }
+
+    /**
+     * Records how long each operation on each compilation unit takes, how long requests wait for a compiler
+     * thread, and the hit rates of the library caches. The summary is written as JSON to the specified file
+     * when the compiler finishes.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-report")
+    @Arguments("filename")
+    public void setProfileReport(ConfigurationValue cv, String filename)
+    {
+        this.profileReport = getOutputPath(cv, filename);
+    }
+
+    //
+    // 'profile-trace' option
+    //
+
+    private String profileTrace = null;
+
+    public File getProfileTrace()
+    {
+        return profileTrace != null ? new File(profileTrace) : null;
+    }
+
+    /**
+     * Records every operation on every compilation unit and writes them to the specified file, in the Trace
+     * Event Format that can be opened by chrome://tracing, when the compiler finishes.
+     */
+    @Config(advanced = true)
+    @Mapping("profile-trace")
+    @Arguments("filename")
+    public void setProfileTrace(ConfigurationValue cv, String filename)
+    {
+        this.profileTrace = getOutputPath(cv, filename);
+    }
+
 }
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A cache of parsed configuration inputs, like configuration files and
+ * manifest files, keyed by the hash of their content.
+ * <p>
+ * The caches are kept in static fields, so that compilations that run one
+ * after the other in the same JVM, like the modules of a Maven build, parse
+ * the framework configuration files and manifests only once. The parsed
+ * results must not depend on anything but the content, and must not be
+ * changed by the callers.
+ *
+ * @param <T> type of the parsed inputs
+ */
+public final class ConfigurationInputCache<T>
+{
+    /**
+     * Parses the content of a configuration input.
+     *
+     * @param <T> type of the parsed inputs
+     */
+    public interface IParser<T>
+    {
+        /**
+         * @param content content of the input
+         * @return parsed input
+         * @throws Exception if the content can't be parsed
+         */
+        T parse(String content) throws Exception;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maximumSize maximum number of parsed inputs to keep
+     */
+    public ConfigurationInputCache(int maximumSize)
+    {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .softValues()
+                .recordStats()
+                .<String, T>build();
+    }
+
+    private final Cache<String, T> cache;
+
+    /**
+     * Get the parsed input for some content, and parse it if no input with
+     * the same content was parsed before. Content that can't be parsed is
+     * not cached.
+     *
+     * @param content content of the input
+     * @param parser parser for the content
+     * @return parsed input
+     * @throws Exception if the content can't be parsed
+     */
+    public T get(String content, IParser<T> parser) throws Exception
+    {
+        final String key = hash(content);
+        T result = cache.getIfPresent(key);
+        if (result == null)
+        {
+            // Two threads might parse the same content, which is harmless.
+            result = parser.parse(content);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return hit and miss counts of this cache
+     */
+    public CacheStats getStats()
+    {
+        return cache.stats();
+    }
+
+    /**
+     * Forget all the parsed inputs.
+     */
+    public void clear()
+    {
+        cache.invalidateAll();
+    }
+
+    private static String hash(String content)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+        final byte[] bytes = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+        final StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes)
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+}
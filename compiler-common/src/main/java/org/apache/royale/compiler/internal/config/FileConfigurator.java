@@ -20,6 +20,8 @@
 package org.apache.royale.compiler.internal.config;
 
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -38,6 +40,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 import org.apache.royale.compiler.config.ConfigurationBuffer;
@@ -46,6 +49,7 @@ import org.apache.royale.compiler.config.ConfigurationValue;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.config.localization.LocalizationManager;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -71,6 +75,48 @@ public class FileConfigurator
         public ConfigurationException innerException;
     }
 
+    /**
+     * Configuration files that were parsed before, by content. The same
+     * framework configuration files are loaded by every compilation in a
+     * build, so they are only parsed once per JVM.
+     */
+    private static final ConfigurationInputCache<ParsedDocument> documentCache =
+            new ConfigurationInputCache<ParsedDocument>(64);
+
+    private static final ConfigurationInputCache.IParser<ParsedDocument> documentParser =
+            new ConfigurationInputCache.IParser<ParsedDocument>()
+    {
+        @Override
+        public ParsedDocument parse(String content) throws Exception
+        {
+            final Recorder recorder = new Recorder();
+            parseXML(content, recorder);
+            return recorder.build();
+        }
+    };
+
+    private static volatile boolean documentCacheEnabled = true;
+
+    /**
+     * Enables or disables the cache of parsed configuration files. It is
+     * enabled by default.
+     * 
+     * @param enabled true to replay configuration files that were parsed
+     * before, false to parse every file into its handler.
+     */
+    public static void setDocumentCacheEnabled(boolean enabled)
+    {
+        documentCacheEnabled = enabled;
+    }
+
+    /**
+     * @return hit and miss counts of the cache of parsed configuration files
+     */
+    public static CacheStats getDocumentCacheStats()
+    {
+        return documentCache.getStats();
+    }
+
     /**
      * Load configuration XML file into a {@link ConfigurationBuffer} object.
      * 
@@ -92,14 +138,31 @@ public class FileConfigurator
     {
         final String path = fileSpec.getPath();
         final Handler h = new Handler(buffer, path, context, rootElement, ignoreUnknownItems);
-        final SAXParserFactory factory = SAXParserFactory.newInstance();
         Reader reader = null;
         try
         {
             reader = fileSpec.createReader();
-            final SAXParser parser = factory.newSAXParser();
-            final InputSource source = new InputSource(reader);
-            parser.parse(source, h);
+            final String content = IOUtils.toString(reader);
+            ParsedDocument document = null;
+            if (documentCacheEnabled)
+            {
+                try
+                {
+                    document = documentCache.get(content, documentParser);
+                }
+                catch (SAXParseException e)
+                {
+                    // Parse the malformed file into the handler, so that
+                    // problems are reported in the order they were before.
+                    parseXML(content, h);
+                }
+            }
+            else
+            {
+                parseXML(content, h);
+            }
+            if (document != null)
+                document.replay(h);
         }
         catch (SAXConfigurationException e)
         {
@@ -119,6 +182,161 @@ public class FileConfigurator
         }
     }
 
+    private static void parseXML(String content, DefaultHandler handler) throws Exception
+    {
+        final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        parser.parse(new InputSource(new StringReader(content)), handler);
+    }
+
+    /**
+     * The SAX events of a configuration XML file, with their line numbers.
+     * {@link #replay(DefaultHandler)} sends the events to a handler as if the
+     * file was parsed again.
+     */
+    private static final class ParsedDocument
+    {
+        private static final int START_ELEMENT = 0;
+        private static final int END_ELEMENT = 1;
+        private static final int CHARACTERS = 2;
+
+        ParsedDocument(int[] kinds, int[] lines, String[] values, Attributes[] attributes)
+        {
+            this.kinds = kinds;
+            this.lines = lines;
+            this.values = values;
+            this.attributes = attributes;
+        }
+
+        private final int[] kinds;
+        private final int[] lines;
+
+        /**
+         * Element names and texts.
+         */
+        private final String[] values;
+
+        private final Attributes[] attributes;
+
+        void replay(DefaultHandler handler) throws SAXException
+        {
+            final ReplayLocator locator = new ReplayLocator();
+            handler.setDocumentLocator(locator);
+            for (int i = 0; i < kinds.length; i++)
+            {
+                locator.line = lines[i];
+                switch (kinds[i])
+                {
+                    case START_ELEMENT:
+                        handler.startElement("", "", values[i], attributes[i]);
+                        break;
+                    case END_ELEMENT:
+                        handler.endElement("", "", values[i]);
+                        break;
+                    default:
+                        final char[] text = values[i].toCharArray();
+                        handler.characters(text, 0, text.length);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * SAX handler that records the events of a configuration XML file.
+     */
+    private static class Recorder extends DefaultHandler
+    {
+        private final List<Integer> kinds = new ArrayList<Integer>();
+        private final List<Integer> lines = new ArrayList<Integer>();
+        private final List<String> values = new ArrayList<String>();
+        private final List<Attributes> attributes = new ArrayList<Attributes>();
+        private Locator locator;
+
+        private void add(int kind, String value, Attributes attrs)
+        {
+            kinds.add(kind);
+            lines.add(locator != null ? locator.getLineNumber() : -1);
+            values.add(value);
+            attributes.add(attrs);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qname, Attributes attrs)
+        {
+            // The parser reuses its attributes object, so keep a copy.
+            add(ParsedDocument.START_ELEMENT, qname, new AttributesImpl(attrs));
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qname)
+        {
+            add(ParsedDocument.END_ELEMENT, qname, null);
+        }
+
+        @Override
+        public void characters(char ch[], int start, int length)
+        {
+            // The handler trims every chunk of text, so empty chunks don't
+            // need to be kept.
+            final String chars = new String(ch, start, length).trim();
+            if (chars.length() > 0)
+                add(ParsedDocument.CHARACTERS, chars, null);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator)
+        {
+            this.locator = locator;
+        }
+
+        ParsedDocument build()
+        {
+            final int count = kinds.size();
+            final int[] kindArray = new int[count];
+            final int[] lineArray = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                kindArray[i] = kinds.get(i);
+                lineArray[i] = lines.get(i);
+            }
+            return new ParsedDocument(kindArray, lineArray,
+                    values.toArray(new String[count]),
+                    attributes.toArray(new Attributes[count]));
+        }
+    }
+
+    /**
+     * A {@link Locator} for the line numbers of replayed events.
+     */
+    private static final class ReplayLocator implements Locator
+    {
+        int line;
+
+        @Override
+        public String getPublicId()
+        {
+            return null;
+        }
+
+        @Override
+        public String getSystemId()
+        {
+            return null;
+        }
+
+        @Override
+        public int getLineNumber()
+        {
+            return line;
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            return -1;
+        }
+    }
+
     /**
      * SAX handler for configuration XML.
      */
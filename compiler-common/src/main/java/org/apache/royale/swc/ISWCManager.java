@@ -21,10 +21,12 @@ package org.apache.royale.swc;
 
 import java.io.File;
 
+import org.apache.royale.compiler.caches.IABCDiskCache;
 import org.apache.royale.compiler.caches.IAssetTagCache;
 import org.apache.royale.compiler.caches.ICSSDocumentCache;
 import org.apache.royale.compiler.caches.IFileScopeCache;
 import org.apache.royale.compiler.caches.ISWFCache;
+import org.apache.royale.compiler.caches.ISWFIndexCache;
 
 /**
  * {@code ISWCManager} is a repository of SWC library models. It has all the SWC
@@ -56,6 +58,20 @@ public interface ISWCManager
      */
     ISWFCache getSWFCache();
 
+    /**
+     * Get the cache of the {@code DoABC} tags of library SWFs by name.
+     * 
+     * @return {@link SWFIndexCache}
+     */
+    ISWFIndexCache getSWFIndexCache();
+
+    /**
+     * Get the persistent cache of library ABC.
+     * 
+     * @return {@link ABCDiskCache}, or null if there is none
+     */
+    IABCDiskCache getABCDiskCache();
+
     /**
      * Get file scope cache.
      * 
@@ -22,6 +22,11 @@ package org.apache.royale.utils;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.EnumSet;
 import java.util.HashMap;
 
 import org.apache.commons.io.IOUtils;
@@ -217,4 +222,69 @@ public final class FileUtils
 
         return absolute;
     }
+
+    private static UserPrincipal currentUser;
+
+    /**
+     * Creates a directory that only the current user can access, or checks
+     * that an existing directory belongs to the current user and takes the
+     * access of other users away. Files that are kept in it can be trusted
+     * when they are read again later.
+     *
+     * @param directory The directory.
+     * @return <code>false</code> if the directory could not be created, or
+     * if it belongs to another user.
+     */
+    public static boolean createPrivateDirectory(File directory)
+    {
+        try
+        {
+            Path path = directory.toPath();
+            Files.createDirectories(path);
+            if (!Files.getOwner(path).equals(getCurrentUser()))
+                return false;
+            try
+            {
+                Files.setPosixFilePermissions(path, EnumSet.of(PosixFilePermission.OWNER_READ,
+                        PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE));
+            }
+            catch (UnsupportedOperationException e)
+            {
+                directory.setReadable(false, false);
+                directory.setReadable(true, true);
+                directory.setWritable(false, false);
+                directory.setWritable(true, true);
+                directory.setExecutable(false, false);
+                directory.setExecutable(true, true);
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // the owner isn't known
+            return false;
+        }
+    }
+
+    private static synchronized UserPrincipal getCurrentUser() throws IOException
+    {
+        if (currentUser == null)
+        {
+            // a new file belongs to the user that runs the compiler
+            Path file = Files.createTempFile("royale", null);
+            try
+            {
+                currentUser = Files.getOwner(file);
+            }
+            finally
+            {
+                Files.delete(file);
+            }
+        }
+        return currentUser;
+    }
 }
@@ -19,9 +19,11 @@
 
 package org.apache.royale.compiler.clients;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.security.CodeSource;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.royale.compiler.clients.problems.ProblemFormatter;
@@ -30,6 +32,7 @@ import org.apache.royale.compiler.clients.problems.ProblemQuery;
 import org.apache.royale.compiler.config.Configurator;
 import org.apache.royale.compiler.config.ExterncConfigurator;
 import org.apache.royale.compiler.internal.codegen.typedefs.emit.ReferenceEmitter;
+import org.apache.royale.compiler.internal.codegen.typedefs.emit.TypedefsOutputCache;
 import org.apache.royale.compiler.internal.codegen.typedefs.pass.ReferenceCompiler;
 import org.apache.royale.compiler.internal.codegen.typedefs.reference.ReferenceModel;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -193,9 +196,7 @@ public class EXTERNC implements FlexTool
             if (continueCompilation)
             {
                 model.problems = problems;
-                cleanOutput();
-                compile();
-                emit();
+                generate();
             }
             else if (problems.hasFilteredProblems())
             {
@@ -224,6 +225,53 @@ public class EXTERNC implements FlexTool
         return exitCode.code;
     }
 
+    /**
+     * Generates the .as files, or copies them from the cache when they were
+     * generated from the same typedefs and options before.
+     */
+    public void generate() throws IOException
+    {
+        cleanOutput();
+        TypedefsOutputCache cache = TypedefsOutputCache.getDefault();
+        String key = cache.getKey(configuration, projectConfigurator.getConfigurationBuffer(),
+                getCompilerFile());
+        if (key != null)
+        {
+            if (cache.copyTo(key, configuration.getAsRoot()))
+                return;
+            // the files that were copied before the copy failed would be
+            // taken for files that were generated
+            cleanOutput();
+        }
+
+        /*Result result =*/ compile();
+        // We ignore errors for now ... they seem to be normal.
+        emit();
+
+        // the problems would not be reported again for cached files
+        if (key != null && !problems.hasFilteredProblems())
+            cache.put(key, configuration.getAsRoot());
+    }
+
+    /**
+     * @return The jar that contains the compiler, or <code>null</code> if it
+     * is not known.
+     */
+    private static File getCompilerFile()
+    {
+        try
+        {
+            CodeSource codeSource = EXTERNC.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null)
+                return null;
+            return new File(codeSource.getLocation().toURI());
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
     public void cleanOutput() throws IOException
     {
         FileUtils.deleteDirectory(configuration.getAsRoot());
@@ -250,13 +298,7 @@ public class EXTERNC implements FlexTool
         EXTERNC generator = new EXTERNC();
         generator.configure(args);
         try {
-            generator.cleanOutput();
-            /*Result result =*/ generator.compile();
-            // We ignore errors for now ... they seem to be normal.
-            /*if(result.errors.length > 0) {
-                return 1;
-            }*/
-            generator.emit();
+            generator.generate();
         } catch (IOException e) {
             e.printStackTrace();
         }
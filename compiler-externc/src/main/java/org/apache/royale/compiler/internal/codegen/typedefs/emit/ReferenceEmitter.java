@@ -21,6 +21,16 @@ package org.apache.royale.compiler.internal.codegen.typedefs.emit;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.royale.compiler.internal.codegen.typedefs.reference.BaseReference;
@@ -36,22 +46,48 @@ public class ReferenceEmitter
 {
     private ReferenceModel model;
 
+    /**
+     * The files that {@link #emit()} is going to write, in the order in which
+     * they were emitted, by {@link #getFileKey(File)}.
+     */
+    private Map<String, PendingFile> pendingFiles;
+
+    private boolean caseSensitive = true;
+
     public ReferenceEmitter(ReferenceModel model)
     {
         this.model = model;
     }
 
+    /**
+     * Emits all the references. The references are emitted one after the
+     * other, because they share the type registry of the Closure compiler,
+     * but the files are written at the same time. Which references go to the
+     * duplicates folder is decided in the order of emission, before anything
+     * is written, so the output doesn't depend on the order of the writes.
+     */
     public void emit() throws IOException
     {
         final File asRoot = model.getConfiguration().getAsRoot();
         if (!asRoot.exists())
             asRoot.mkdirs();
 
-        emitClasses();
-        emitInterfaces();
-        emitTypedefs();
-        emitFunctions();
-        emitConstants();
+        caseSensitive = isCaseSensitive(asRoot);
+        pendingFiles = new LinkedHashMap<String, PendingFile>();
+        try
+        {
+            emitClasses();
+            emitInterfaces();
+            emitTypedefs();
+            emitFunctions();
+            emitConstants();
+
+            writeFiles(new ArrayList<PendingFile>(pendingFiles.values()));
+        }
+        finally
+        {
+            pendingFiles = null;
+        }
     }
 
     protected void emitInterfaces() throws IOException
@@ -70,12 +106,8 @@ public class ReferenceEmitter
 
             emit(reference, sb);
 
-            File sourceFile = reference.getFile(model.getConfiguration().getAsInterfaceRoot());
-            if(sourceFile.exists())
-            {
-                sourceFile = reference.getFile(model.getConfiguration().getAsDuplicatesRoot());
-            }
-            FileUtils.write(sourceFile, sb.toString());
+            writeFile(reference.getFile(model.getConfiguration().getAsInterfaceRoot()),
+                    reference.getFile(model.getConfiguration().getAsDuplicatesRoot()), sb.toString());
 
             sb.setLength(0);
         }
@@ -97,12 +129,8 @@ public class ReferenceEmitter
             
             emit(reference, sb);
 
-            File sourceFile = reference.getFile(model.getConfiguration().getAsClassRoot());
-            if(sourceFile.exists())
-            {
-                sourceFile = reference.getFile(model.getConfiguration().getAsDuplicatesRoot());
-            }
-            FileUtils.write(sourceFile, sb.toString());
+            writeFile(reference.getFile(model.getConfiguration().getAsClassRoot()),
+                    reference.getFile(model.getConfiguration().getAsDuplicatesRoot()), sb.toString());
 
             sb.setLength(0);
         }
@@ -135,12 +163,8 @@ public class ReferenceEmitter
 
             emit(reference, sb);
 
-            File sourceFile = reference.getFile(model.getConfiguration().getAsTypeDefRoot());
-            if(sourceFile.exists())
-            {
-                sourceFile = reference.getFile(model.getConfiguration().getAsDuplicatesRoot());
-            }
-            FileUtils.write(sourceFile, sb.toString());
+            writeFile(reference.getFile(model.getConfiguration().getAsTypeDefRoot()),
+                    reference.getFile(model.getConfiguration().getAsDuplicatesRoot()), sb.toString());
 
             sb.setLength(0);
         }
@@ -159,12 +183,8 @@ public class ReferenceEmitter
             
             emit(reference, sb);
 
-            File sourceFile = reference.getFile(model.getConfiguration().getAsFunctionRoot());
-            if(sourceFile.exists())
-            {
-                sourceFile = reference.getFile(model.getConfiguration().getAsDuplicatesRoot());
-            }
-            FileUtils.write(sourceFile, sb.toString());
+            writeFile(reference.getFile(model.getConfiguration().getAsFunctionRoot()),
+                    reference.getFile(model.getConfiguration().getAsDuplicatesRoot()), sb.toString());
 
             sb.setLength(0);
         }
@@ -180,12 +200,8 @@ public class ReferenceEmitter
             
             emit(reference, sb);
 
-            File sourceFile = reference.getFile(model.getConfiguration().getAsConstantRoot());
-            if(sourceFile.exists())
-            {
-                sourceFile = reference.getFile(model.getConfiguration().getAsDuplicatesRoot());
-            }
-            FileUtils.write(sourceFile, sb.toString());
+            writeFile(reference.getFile(model.getConfiguration().getAsConstantRoot()),
+                    reference.getFile(model.getConfiguration().getAsDuplicatesRoot()), sb.toString());
 
             sb.setLength(0);
         }
@@ -196,6 +212,128 @@ public class ReferenceEmitter
         reference.emit(sb);
     }
 
+    /**
+     * Writes the file for a reference, or the duplicate file if a file with
+     * the same name was written before. During {@link #emit()}, the file is
+     * only written after all the references were emitted.
+     */
+    protected void writeFile(File sourceFile, File duplicateFile, String contents) throws IOException
+    {
+        if (exists(sourceFile))
+        {
+            sourceFile = duplicateFile;
+        }
+        if (pendingFiles == null)
+        {
+            FileUtils.write(sourceFile, contents);
+            return;
+        }
+        String key = getFileKey(sourceFile);
+        PendingFile pendingFile = pendingFiles.get(key);
+        if (pendingFile != null)
+        {
+            // the file was going to be overwritten, like a second duplicate
+            pendingFile.contents = contents;
+            return;
+        }
+        pendingFiles.put(key, new PendingFile(sourceFile, contents));
+    }
+
+    private boolean exists(File file)
+    {
+        if (pendingFiles != null && pendingFiles.containsKey(getFileKey(file)))
+            return true;
+        return file.exists();
+    }
+
+    private String getFileKey(File file)
+    {
+        String path = file.getAbsolutePath();
+        return caseSensitive ? path : path.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static void writeFiles(List<PendingFile> files) throws IOException
+    {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), files.size());
+        if (threads <= 1)
+        {
+            for (PendingFile file : files)
+            {
+                FileUtils.write(file.file, file.contents);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final PendingFile file : files)
+            {
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws IOException
+                    {
+                        FileUtils.write(file.file, file.contents);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the names of the files in a folder are case
+     * sensitive. When they aren't, a file that only differs in case from one
+     * that was written before is a duplicate too.
+     */
+    private static boolean isCaseSensitive(File folder) throws IOException
+    {
+        File probe = File.createTempFile("case", ".tmp", folder);
+        try
+        {
+            File upperCaseProbe = new File(folder, probe.getName().toUpperCase(Locale.ENGLISH));
+            return !upperCaseProbe.exists();
+        }
+        finally
+        {
+            probe.delete();
+        }
+    }
+
+    private static class PendingFile
+    {
+        PendingFile(File file, String contents)
+        {
+            this.file = file;
+            this.contents = contents;
+        }
+
+        final File file;
+        String contents;
+    }
+
     public String emit(BaseReference reference)
     {
         final StringBuilder sb = new StringBuilder();
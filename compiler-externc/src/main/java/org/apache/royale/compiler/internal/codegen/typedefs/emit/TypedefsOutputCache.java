@@ -0,0 +1,345 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.typedefs.emit;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.clients.ExternCConfiguration;
+import org.apache.royale.compiler.config.ConfigurationBuffer;
+import org.apache.royale.compiler.config.ConfigurationValue;
+import org.apache.royale.compiler.internal.codegen.typedefs.pass.ReferenceCompiler.TypedefFile;
+
+/**
+ * Keeps the .as files that were generated from a set of typedefs, so that
+ * generating them again from the same typedefs only has to copy them.
+ * <p>
+ * The files are stored in a directory named after a hash of the compiler, the
+ * options and the content of every typedef file. The generated files can
+ * depend on any of the typedefs, because the members of a class may be
+ * declared in other files than the class, so a change to any typedef file
+ * changes the hash.
+ * <p>
+ * The directory is {@code .royale/typedefs-cache} in the home directory of
+ * the user, unless {@link #DIRECTORY_PROPERTY} is set. Nothing is cached if
+ * the directory belongs to another user, because the files in it are copied
+ * to the output without being checked. Only the most recently used entries
+ * are kept, so that the directory doesn't keep growing while the typedefs
+ * change.
+ */
+public class TypedefsOutputCache
+{
+    /**
+     * The system property that overrides the location of the cache.
+     */
+    public static final String DIRECTORY_PROPERTY = "royale.typedefsCache";
+
+    /**
+     * The number of sets of generated files that are kept by default.
+     */
+    public static final int DEFAULT_MAXIMUM_ENTRIES = 8;
+
+    /**
+     * Files that were being added by builds that didn't finish are deleted
+     * when they are older than this.
+     */
+    private static final long TEMP_DIRECTORY_TIMEOUT = 24 * 60 * 60 * 1000;
+
+    private static final String TEMP_DIRECTORY_INFIX = ".tmp";
+
+    /**
+     * Changes when the layout of the cache changes.
+     */
+    private static final String FORMAT_VERSION = "1";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * @return The cache in the default directory.
+     */
+    public static TypedefsOutputCache getDefault()
+    {
+        String path = System.getProperty(DIRECTORY_PROPERTY);
+        if (path != null)
+            return new TypedefsOutputCache(new File(path));
+        return new TypedefsOutputCache(new File(System.getProperty("user.home"), ".royale/typedefs-cache"));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to keep the generated files in.
+     */
+    public TypedefsOutputCache(File directory)
+    {
+        this(directory, DEFAULT_MAXIMUM_ENTRIES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to keep the generated files in.
+     * @param maximumEntries The number of sets of generated files to keep.
+     * The least recently used ones are deleted when more are added.
+     */
+    public TypedefsOutputCache(File directory, int maximumEntries)
+    {
+        this.directory = directory;
+        this.maximumEntries = maximumEntries;
+    }
+
+    private final File directory;
+    private final int maximumEntries;
+
+    /**
+     * Gets the hash that identifies the files that are generated for a
+     * configuration.
+     *
+     * @param configuration The configuration.
+     * @param buffer The options that the configuration was created from.
+     * @param compilerFile The jar that contains the compiler.
+     * @return The hash, or <code>null</code> if the generated files can't be
+     * cached, because the compiler isn't in a jar, because the files are
+     * generated to the js-root instead of the as-root, or because the
+     * directory of the cache belongs to another user.
+     */
+    public String getKey(ExternCConfiguration configuration, ConfigurationBuffer buffer,
+            File compilerFile) throws IOException
+    {
+        if (configuration.getJsRoot() != null || compilerFile == null || !compilerFile.isFile())
+            return null;
+        if (!org.apache.royale.utils.FileUtils.createPrivateDirectory(directory))
+            return null;
+
+        MessageDigest digest = createDigest();
+        update(digest, FORMAT_VERSION);
+        update(digest, hash(compilerFile));
+        for (String var : new TreeSet<String>(buffer.getVars()))
+        {
+            List<ConfigurationValue> values = buffer.getVar(var);
+            if (values == null)
+                continue;
+            for (ConfigurationValue value : values)
+            {
+                update(digest, var);
+                update(digest, value.getContext() != null ? value.getContext() : "");
+                for (String arg : value.getArgs())
+                {
+                    update(digest, arg);
+                }
+            }
+        }
+        update(digest, "");
+        for (TypedefFile typedef : configuration.getTypedefs())
+        {
+            update(digest, typedef.getFile().getAbsolutePath());
+            update(digest, hash(typedef.getFile()));
+        }
+        update(digest, "");
+        for (TypedefFile typedef : configuration.getTypedefTypedefs())
+        {
+            update(digest, typedef.getFile().getAbsolutePath());
+            update(digest, hash(typedef.getFile()));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Copies the files that were generated before to a folder.
+     *
+     * @param key The hash from {@link #getKey}.
+     * @param asRoot The folder to copy the files to.
+     * @return <code>true</code> if the files were in the cache. If they were
+     * not, some of them may have been copied anyway.
+     */
+    public boolean copyTo(String key, File asRoot) throws IOException
+    {
+        File entryDirectory = new File(directory, key);
+        if (!entryDirectory.isDirectory())
+            return false;
+        try
+        {
+            FileUtils.copyDirectory(entryDirectory, asRoot);
+        }
+        catch (IOException e)
+        {
+            // another build deleted the entry while it was copied, so the
+            // files are generated again
+            return false;
+        }
+        // the time stamp records when the entry was last used
+        entryDirectory.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Adds the files that were generated to the cache.
+     *
+     * @param key The hash from {@link #getKey}.
+     * @param asRoot The folder with the generated files.
+     */
+    public void put(String key, File asRoot) throws IOException
+    {
+        File entryDirectory = new File(directory, key);
+        if (entryDirectory.isDirectory())
+            return;
+
+        // Copy next to the final location, and move it there when it is
+        // complete, so builds that run at the same time never see half of
+        // the files.
+        File tempDirectory = new File(directory, key + TEMP_DIRECTORY_INFIX + System.nanoTime());
+        try
+        {
+            FileUtils.copyDirectory(asRoot, tempDirectory);
+            if (tempDirectory.renameTo(entryDirectory))
+            {
+                // copyDirectory() kept the time stamp of asRoot
+                entryDirectory.setLastModified(System.currentTimeMillis());
+            }
+            else
+            {
+                // another build added the same files first
+                FileUtils.deleteDirectory(tempDirectory);
+            }
+        }
+        catch (IOException e)
+        {
+            FileUtils.deleteQuietly(tempDirectory);
+            throw e;
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries, so that no more than the
+     * maximum number of entries are kept, and the files of builds that
+     * stopped while they were adding an entry.
+     */
+    private void evict()
+    {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        List<File> entryDirectories = new ArrayList<File>();
+        for (File file : files)
+        {
+            if (!file.isDirectory())
+                continue;
+            if (file.getName().contains(TEMP_DIRECTORY_INFIX))
+            {
+                if (now - file.lastModified() > TEMP_DIRECTORY_TIMEOUT)
+                    FileUtils.deleteQuietly(file);
+                continue;
+            }
+            entryDirectories.add(file);
+        }
+        if (entryDirectories.size() <= maximumEntries)
+            return;
+
+        // read the time stamps once, because other builds may change them
+        // while the entries are sorted
+        final Map<File, Long> lastUsed = new HashMap<File, Long>();
+        for (File entryDirectory : entryDirectories)
+        {
+            lastUsed.put(entryDirectory, entryDirectory.lastModified());
+        }
+        Collections.sort(entryDirectories, new Comparator<File>()
+        {
+            @Override
+            public int compare(File f1, File f2)
+            {
+                return Long.compare(lastUsed.get(f2), lastUsed.get(f1));
+            }
+        });
+        for (File entryDirectory : entryDirectories.subList(maximumEntries, entryDirectories.size()))
+        {
+            // Move it out of the way first, so that a build that copies the
+            // files at the same time fails instead of missing some of them.
+            File tempDirectory = new File(directory, entryDirectory.getName() + TEMP_DIRECTORY_INFIX + System.nanoTime());
+            if (entryDirectory.renameTo(tempDirectory))
+                FileUtils.deleteQuietly(tempDirectory);
+        }
+    }
+
+    private static String hash(File file) throws IOException
+    {
+        MessageDigest digest = createDigest();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, n);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.typedefs.emit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.clients.ExternCConfiguration;
+import org.apache.royale.compiler.config.ConfigurationBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTypedefsOutputCache
+{
+    private File tempFolder;
+    private File jarFile;
+    private File typedefFile;
+    private ConfigurationBuffer buffer;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempFolder = Files.createTempDirectory("royale-typedefs-cache").toFile();
+        jarFile = new File(tempFolder, "externc.jar");
+        FileUtils.write(jarFile, "jar", StandardCharsets.UTF_8);
+        typedefFile = new File(tempFolder, "a.js");
+        FileUtils.write(typedefFile, "var a;", StandardCharsets.UTF_8);
+        buffer = new ConfigurationBuffer(ExternCConfiguration.class);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(tempFolder);
+    }
+
+    @Test
+    public void testKeyDependsOnInputs() throws IOException
+    {
+        TypedefsOutputCache cache = new TypedefsOutputCache(new File(tempFolder, "cache"));
+        String key = cache.getKey(createConfiguration(), buffer, jarFile);
+        assertNotNull(key);
+        assertEquals(key, cache.getKey(createConfiguration(), buffer, jarFile));
+
+        FileUtils.write(typedefFile, "var b;", StandardCharsets.UTF_8);
+        String otherKey = cache.getKey(createConfiguration(), buffer, jarFile);
+        assertNotEquals(key, otherKey);
+
+        FileUtils.write(jarFile, "changed jar", StandardCharsets.UTF_8);
+        assertNotEquals(otherKey, cache.getKey(createConfiguration(), buffer, jarFile));
+    }
+
+    @Test
+    public void testNoKeyWithoutJar() throws IOException
+    {
+        TypedefsOutputCache cache = new TypedefsOutputCache(new File(tempFolder, "cache"));
+        assertNull(cache.getKey(createConfiguration(), buffer, null));
+        assertNull(cache.getKey(createConfiguration(), buffer, tempFolder));
+    }
+
+    @Test
+    public void testNoKeyWithoutPrivateDirectory() throws IOException
+    {
+        File cacheFolder = new File(tempFolder, "cache");
+        TypedefsOutputCache cache = new TypedefsOutputCache(cacheFolder);
+        assertNotNull(cache.getKey(createConfiguration(), buffer, jarFile));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE,
+                    PosixFilePermission.OWNER_EXECUTE), Files.getPosixFilePermissions(cacheFolder.toPath()));
+        }
+
+        File file = new File(tempFolder, "file");
+        FileUtils.write(file, "", StandardCharsets.UTF_8);
+        assertNull(new TypedefsOutputCache(file).getKey(createConfiguration(), buffer, jarFile));
+    }
+
+    @Test
+    public void testCopiesStoredFiles() throws IOException
+    {
+        TypedefsOutputCache cache = new TypedefsOutputCache(new File(tempFolder, "cache"));
+        String key = cache.getKey(createConfiguration(), buffer, jarFile);
+        File asRoot = new File(tempFolder, "as");
+        assertFalse(cache.copyTo(key, asRoot));
+
+        FileUtils.write(new File(asRoot, "classes/A.as"), "package {}", StandardCharsets.UTF_8);
+        cache.put(key, asRoot);
+        FileUtils.deleteDirectory(asRoot);
+
+        assertTrue(cache.copyTo(key, asRoot));
+        assertEquals("package {}", FileUtils.readFileToString(
+                new File(asRoot, "classes/A.as"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException
+    {
+        File cacheFolder = new File(tempFolder, "cache");
+        TypedefsOutputCache cache = new TypedefsOutputCache(cacheFolder, 2);
+        File asRoot = new File(tempFolder, "as");
+        FileUtils.write(new File(asRoot, "classes/A.as"), "package {}", StandardCharsets.UTF_8);
+        long now = System.currentTimeMillis();
+        cache.put("first", asRoot);
+        new File(cacheFolder, "first").setLastModified(now - 20000);
+        cache.put("second", asRoot);
+        new File(cacheFolder, "second").setLastModified(now - 10000);
+
+        // using the first entry makes the second one the oldest
+        assertTrue(cache.copyTo("first", new File(tempFolder, "copy")));
+        cache.put("third", asRoot);
+        assertTrue(new File(cacheFolder, "first").isDirectory());
+        assertFalse(new File(cacheFolder, "second").exists());
+        assertTrue(new File(cacheFolder, "third").isDirectory());
+        assertEquals(2, cacheFolder.list().length);
+        assertFalse(cache.copyTo("second", new File(tempFolder, "copy")));
+    }
+
+    @Test
+    public void testDeletesAbandonedFiles() throws IOException
+    {
+        File cacheFolder = new File(tempFolder, "cache");
+        TypedefsOutputCache cache = new TypedefsOutputCache(cacheFolder);
+        File abandoned = new File(cacheFolder, "first.tmp1");
+        FileUtils.write(new File(abandoned, "classes/A.as"), "package {}", StandardCharsets.UTF_8);
+        abandoned.setLastModified(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000);
+        // another build that is adding an entry
+        File adding = new File(cacheFolder, "second.tmp2");
+        FileUtils.write(new File(adding, "classes/A.as"), "package {}", StandardCharsets.UTF_8);
+
+        File asRoot = new File(tempFolder, "as");
+        FileUtils.write(new File(asRoot, "classes/A.as"), "package {}", StandardCharsets.UTF_8);
+        cache.put("third", asRoot);
+        assertFalse(abandoned.exists());
+        assertTrue(adding.isDirectory());
+        assertTrue(new File(cacheFolder, "third").isDirectory());
+    }
+
+    private ExternCConfiguration createConfiguration() throws IOException
+    {
+        ExternCConfiguration configuration = new ExternCConfiguration();
+        configuration.setASRoot(new File(tempFolder, "as"));
+        configuration.addTypedef(typedefFile);
+        return configuration;
+    }
+}
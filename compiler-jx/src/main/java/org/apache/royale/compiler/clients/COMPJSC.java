@@ -120,7 +120,7 @@ public class COMPJSC extends MXMLJSC
         }
         catch (Exception e)
         {
-            System.err.println(e.toString());
+            err.println(e.toString());
         }
         finally
         {
@@ -130,7 +130,7 @@ public class COMPJSC extends MXMLJSC
                 {
                     final WorkspaceProblemFormatter formatter = new WorkspaceProblemFormatter(
                             workspace);
-                    final ProblemPrinter printer = new ProblemPrinter(formatter);
+                    final ProblemPrinter printer = new ProblemPrinter(formatter, err);
                     printer.printProblems(problems);
                 }
             }
@@ -149,9 +149,9 @@ public class COMPJSC extends MXMLJSC
 	private int _mainNoExit(final String[] args,
             List<ICompilerProblem> outProblems)
     {
-    	System.out.println("args:");
+    	out.println("args:");
     	for (String arg : args)
-    		System.out.println(arg);
+    		out.println(arg);
         ExitCode exitCode = ExitCode.SUCCESS;
         try
         {
@@ -170,7 +170,7 @@ public class COMPJSC extends MXMLJSC
             		switch (JSTargetType.fromString(target))
 	                {
 	                case SWF:
-                        System.out.println("COMPC");
+                        out.println("COMPC");
 	                    COMPC compc = new COMPC();
 	                    mxmlc = compc;
                         //passing true to RoyaleASDocDelegate constructor, to make it behave (outwardly) the same
@@ -187,8 +187,8 @@ public class COMPJSC extends MXMLJSC
 	                    }
 	                    break;
 	                case JS_ROYALE:
-                        System.out.println("COMPCJSCRoyale");
-	                	COMPJSCRoyale royale = new COMPJSCRoyale();
+                        out.println("COMPCJSCRoyale");
+	                	MXMLJSCRoyale royale = getRoyaleCompiler();
 	                	lastCompiler = royale;
 	                    result = royale.mainNoExit(removeASArgs(args), problems.getProblems(), false);
 	                    if (result != COMPJSCRoyale.ExitCode.SUCCESS.getCode() && result != COMPJSCRoyale.ExitCode.WATCHING.getCode())
@@ -230,7 +230,7 @@ public class COMPJSC extends MXMLJSC
         catch (Exception e)
         {
             if (outProblems == null) {
-                System.err.println(e.getMessage());
+                err.println(e.getMessage());
             } else
             {
                 final ICompilerProblem unexpectedExceptionProblem = new UnexpectedExceptionProblem(
@@ -241,7 +241,7 @@ public class COMPJSC extends MXMLJSC
         }
         finally
         {
-            if (!config.getWatch() || !ExitCode.SUCCESS.equals(exitCode))
+            if (!keepWorkspaceOpen && (!config.getWatch() || !ExitCode.SUCCESS.equals(exitCode)))
             {
                 waitAndClose();
             }
@@ -277,6 +277,12 @@ public class COMPJSC extends MXMLJSC
         return true;
     }
 
+    @Override
+    protected MXMLJSCRoyale createRoyaleCompiler()
+    {
+        return new COMPJSCRoyale();
+    }
+
     @Override
     protected TargetType getTargetType()
     {
@@ -26,6 +26,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.text.ParseException;
@@ -39,6 +40,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import javax.xml.stream.XMLStreamException;
+
 import com.google.debugging.sourcemap.SourceMapConsumerV3;
 import com.google.debugging.sourcemap.SourceMapGeneratorV3;
 import com.google.debugging.sourcemap.SourceMapParseException;
@@ -53,6 +56,8 @@ import org.apache.royale.compiler.driver.js.IJSApplication;
 import org.apache.royale.compiler.exceptions.ConfigurationException;
 import org.apache.royale.compiler.exceptions.ConfigurationException.IOError;
 import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyTarget;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitScheduler.IEmitResultHandler;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitScheduler.IEmitTask;
 import org.apache.royale.compiler.internal.driver.mxml.royale.MXMLRoyaleSWCBackend;
 import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
@@ -73,6 +78,7 @@ import org.apache.royale.compiler.units.ICompilationUnit;
 import org.apache.royale.compiler.units.ICompilationUnit.UnitType;
 import org.apache.royale.compiler.utils.SourceMapUtils;
 import org.apache.royale.swc.ISWCFileEntry;
+import org.apache.royale.swc.catalog.StAXCatalogFilesRewriter;
 import org.apache.royale.swc.io.SWCReader;
 
 /**
@@ -178,7 +184,7 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
 
         try
         {
-            project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
+            addSourceFileHandler();
 
             if (setupTargetFile())
                 buildArtifact();
@@ -194,7 +200,7 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         }
         catch (Exception e)
         {
-            System.out.println(e);
+            out.println(e);
             final ICompilerProblem problem = new InternalCompilerProblem(e);
             problems.add(problem);
         }
@@ -221,8 +227,9 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         File externsOut = new File("externs");
         ZipFile zipFile = null;
         ZipOutputStream zipOutputStream = null;
-        String catalog = null;
-        StringBuilder fileList = new StringBuilder();
+        StAXCatalogFilesRewriter catalog = null;
+        // the <files> of the new catalog, by path
+        final Map<String, Long> catalogFiles = new LinkedHashMap<String, Long>();
         if (outputFolderName.endsWith(".swc"))
         {
             packingSWC = true;
@@ -231,11 +238,21 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 problems.add(new LibraryNotFoundProblem(outputFolderName));
                 return false;
             }
+            entryDates = getEntryDates();
             zipFile = new ZipFile(swcFile, ZipFile.OPEN_READ);
             final InputStream catalogInputStream = SWCReader.getInputStream(zipFile, SWCReader.CATALOG_XML);
-            
-            catalog = IOUtils.toString(catalogInputStream);
-            catalogInputStream.close();
+            try
+            {
+                catalog = new StAXCatalogFilesRewriter(catalogInputStream);
+            }
+            catch (XMLStreamException e)
+            {
+                throw new IOException(e);
+            }
+            finally
+            {
+                catalogInputStream.close();
+            }
             zipOutputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputFolderName + ".new")));
             zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
             for (final Enumeration<? extends ZipEntry> entryEnum = zipFile.entries(); entryEnum.hasMoreElements();)
@@ -246,7 +263,7 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 {
                     if (config.isVerbose())
                     {
-                        System.out.println("Copy " + entry.getName());
+                        out.println("Copy " + entry.getName());
                     }
                     InputStream input = zipFile.getInputStream(entry);
                     ZipEntry ze = new ZipEntry(entry.getName());
@@ -254,57 +271,19 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                     ze.setSize(entry.getSize());
                     ze.setCompressedSize(entry.getCompressedSize());
                     ze.setCrc(entry.getCrc());
-                    long fileDate = System.currentTimeMillis();
-                    long zipFileDate = fileDate;
-                    String metadataDate = targetSettings.getSWFMetadataDate();
-                    if (metadataDate != null)
-                    {
-                        String metadataFormat = targetSettings.getSWFMetadataDateFormat();
-                        try {
-                            SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-                            Date d = sdf.parse(metadataDate);
-                            Calendar cal = new GregorianCalendar();
-                            cal.setTime(d);
-                            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-                            d = sdf.parse(metadataDate);
-                            fileDate = d.getTime();
-                            ZonedDateTime zdt = ZonedDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH), 
-                                                    cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), 0, ZoneId.systemDefault());
-                            zipFileDate = zdt.toInstant().toEpochMilli();
-                        } catch (ParseException e) {
-                            // TODO Auto-generated catch block
-                            e.printStackTrace();
-                        } catch (IllegalArgumentException e1) {
-                            e1.printStackTrace();
-                        }
-                    }
-                    ze.setTime(zipFileDate);
+                    ze.setTime(entryDates.zipFileDate);
                     zipOutputStream.putNextEntry(ze);
                     IOUtils.copy(input, zipOutputStream);
                     zipOutputStream.flush();
                     zipOutputStream.closeEntry();
                 }
             }
-            int filesIndex = catalog.indexOf("<files>");
-            if (filesIndex != -1)
+            for (Map.Entry<String, Long> file : catalog.getFiles().entrySet())
             {
-                int filesIndex2 = catalog.indexOf("</files>");
-                String files = catalog.substring(filesIndex, filesIndex2);
-                int fileIndex = files.indexOf("<file", 6);
-                int pathIndex = files.indexOf("path=");
-                while (pathIndex != -1)
+                if (!file.getKey().startsWith("js/out"))
                 {
-                    int pathIndex2 = files.indexOf("\"", pathIndex + 6);
-                    int fileIndex2 = files.indexOf("/>", fileIndex);
-                    String path = files.substring(pathIndex + 6, pathIndex2);
-                    if (!path.startsWith("js/out"))
-                    {
-                        fileList.append(files.substring(fileIndex - 8, fileIndex2 + 3));
-                    }
-                    pathIndex = files.indexOf("path=", pathIndex2);
-                    fileIndex = files.indexOf("<file", fileIndex2);
+                    catalogFiles.put(file.getKey(), file.getValue());
                 }
-                catalog = catalog.substring(0, filesIndex) + catalog.substring(filesIndex2 + 8);
             }
         }
 
@@ -314,7 +293,8 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
 
         Set<String> externs = config.getExterns();
         Collection<ICompilationUnit> roots = ((RoyaleSWCTarget)target).getReachableCompilationUnits(errors);
-        Collection<ICompilationUnit> reachableCompilationUnits = project.getReachableCompilationUnitsInSWFOrder(roots);
+        List<ICompilationUnit> reachableCompilationUnits = project.getReachableCompilationUnitsInSWFOrder(roots);
+        final Set<ICompilationUnit> unitsToEmit = new HashSet<ICompilationUnit>();
         for (final ICompilationUnit cu : reachableCompilationUnits)
         {
             ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
@@ -326,184 +306,67 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 if (externs.contains(symbol)) continue;
                 
                 if (project.isExternalLinkage(cu)) continue;
-                
-                if (!packingSWC)
-                {
-                    final File outputClassFile = getOutputClassFile(
-                            cu.getQualifiedNames().get(0), outputFolder, true);
 
-                    if (config.isVerbose())
-                    {
-                        System.out.println("Compiling file: " + outputClassFile);
-                    }
-
-                    ICompilationUnit unit = cu;
-
-                    IJSWriter writer;
-                    if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-                    {
-                        writer = (IJSWriter) project.getBackend().createWriter(project,
-                                (List<ICompilerProblem>) problems.getProblems(), unit,
-                                false);
-                    }
-                    else
-                    {
-                        writer = (IJSWriter) project.getBackend().createMXMLWriter(
-                                project, (List<ICompilerProblem>) problems.getProblems(),
-                                unit, false);
-                    }
+                unitsToEmit.add(cu);
+            }
+        }
 
-                    BufferedOutputStream out = new BufferedOutputStream(
-                            new FileOutputStream(outputClassFile));
-                    BufferedOutputStream sourceMapOut = null;
-                    File outputSourceMapFile = null;
-                    if (project.config.getSourceMap())
-                    {
-                        outputSourceMapFile = getOutputSourceMapFile(
-                                cu.getQualifiedNames().get(0), outputFolder, true);
-                        sourceMapOut = new BufferedOutputStream(
-                            new FileOutputStream(outputSourceMapFile));
-                    }
-                    writer.writeTo(out, sourceMapOut, outputSourceMapFile);
-                    out.flush();
-                    out.close();
-                    if (sourceMapOut != null)
-                    {
-                        sourceMapOut.flush();
-                        sourceMapOut.close();
-                    }
-                    writer.close();
+        final boolean emitToSWC = packingSWC;
+        final File emitOutputFolder = outputFolder;
+        IEmitTask<EmittedFiles> emitTask = new IEmitTask<EmittedFiles>()
+        {
+            @Override
+            public EmittedFiles emit(ICompilationUnit cu, List<ICompilerProblem> unitProblems)
+                    throws InterruptedException, IOException
+            {
+                if (!unitsToEmit.contains(cu))
+                {
+                    return null;
                 }
-                else
+                if (!emitToSWC)
                 {
-                    if (config.isVerbose())
-                    {
-                        System.out.println("Compiling file: " + cu.getQualifiedNames().get(0));
-                    }
-                    
-                    ICompilationUnit unit = cu;
-
-                    IJSWriter writer;
-                    if (cuType == ICompilationUnit.UnitType.AS_UNIT)
-                    {
-                        writer = (IJSWriter) project.getBackend().createWriter(project,
-                                (List<ICompilerProblem>) problems.getProblems(), unit,
-                                false);
-                    }
-                    else
-                    {
-                        writer = (IJSWriter) project.getBackend().createMXMLWriter(
-                                project, (List<ICompilerProblem>) problems.getProblems(),
-                                unit, false);
-                    }
+                    writeCompilationUnitToFolder(cu, emitOutputFolder, unitProblems);
+                    return null;
+                }
+                return writeCompilationUnitToMemory(cu, jsOut, externsOut, unitProblems);
+            }
+        };
 
-                    ByteArrayOutputStream temp = new ByteArrayOutputStream();
-                    ByteArrayOutputStream sourceMapTemp = null;
-                    
-                    boolean isExterns = false;
-                    if(cu.getDefinitionPromises().size() > 0)
-                    {
-                        isExterns = project.isExterns(cu.getDefinitionPromises().get(0).getQualifiedName());
-                    }
-                    
-                    // if the file is @externs DON'T create source map file
-                    if (project.config.getSourceMap() && !isExterns)
-                    {
-                        sourceMapTemp = new ByteArrayOutputStream();
-                    }
-                    writer.writeTo(temp, sourceMapTemp, null);
-
-                    File outputClassFile = getOutputClassFile(
-                            cu.getQualifiedNames().get(0),
-                            isExterns ? externsOut : jsOut,
-                            false);
-                    String outputClassFilePath = outputClassFile.getPath();
-                    outputClassFilePath = outputClassFilePath.replace('\\', '/');
+        final ZipOutputStream swcOutputStream = zipOutputStream;
+        IEmitResultHandler<EmittedFiles> resultHandler = new IEmitResultHandler<EmittedFiles>()
+        {
+            @Override
+            public void handle(ICompilationUnit cu, EmittedFiles emittedFiles)
+                    throws InterruptedException, IOException
+            {
+                if (emittedFiles != null)
+                {
                     if (config.isVerbose())
                     {
-                        System.out.println("Writing file: " + outputClassFilePath);     	
+                        out.println("Writing file: " + emittedFiles.classFilePath);     	
                     }
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    temp.writeTo(baos);
-                    writeFileToZip(zipOutputStream, outputClassFilePath, baos, fileList);
+                    writeFileToZip(swcOutputStream, emittedFiles.classFilePath, emittedFiles.classFileContents, catalogFiles);
                     
-                    if(sourceMapTemp != null)
+                    if (emittedFiles.sourceMapFilePath != null)
                     {
-                        String sourceMapFilePath = getOutputSourceMapFile(
-                            cu.getQualifiedNames().get(0),
-                            isExterns ? externsOut : jsOut,
-                            false).getPath();
-                        sourceMapFilePath = sourceMapFilePath.replace('\\', '/');
                         if (config.isVerbose())
                         {
-                            System.out.println("Writing file: " + sourceMapFilePath);
+                            out.println("Writing file: " + emittedFiles.sourceMapFilePath);
                         }
-                        baos = new ByteArrayOutputStream();
-                        processSourceMap(sourceMapTemp, baos, outputClassFile, symbol);
-                        writeFileToZip(zipOutputStream, sourceMapFilePath, baos, fileList);
+                        writeFileToZip(swcOutputStream, emittedFiles.sourceMapFilePath, emittedFiles.sourceMapContents, catalogFiles);
                     }
-                    writer.close();
-                }
-            }
-            else if (cuType == ICompilationUnit.UnitType.SWC_UNIT)
-            {
-                String symbol = cu.getQualifiedNames().get(0);
-                if (externs.contains(symbol)) continue;
-                if (project.isExternalLinkage(cu)) continue;
-                if (!packingSWC)
-                {
-                    // we probably shouldn't skip this -JT
-                    continue;
-                }
-
-                // if another .swc file is on our library-path, we must
-                // include the .js (and .js.map) files because the
-                // bytecode will also be included. if we have the
-                // bytecode, but not the .js files, the compiler won't
-                // know where to find the .js files. that's really bad.
-
-                // if the bytecode and .js files should not be included,
-                // then the developer is expected to use
-                // external-library-path instead of library-path.
-
-                SWCCompilationUnit swcCU = (SWCCompilationUnit) cu;
-                String outputClassFile = getOutputClassFile(
-                        cu.getQualifiedNames().get(0),
-                        jsOut,
-                        false).getPath();
-                outputClassFile = outputClassFile.replace('\\', '/');
-                ISWCFileEntry fileEntry = swcCU.getSWC().getFile(outputClassFile);
-                if (fileEntry == null)
-                {
-                    continue;
                 }
-                if (config.isVerbose())
+                else if (emitToSWC && cu.getCompilationUnitType() == ICompilationUnit.UnitType.SWC_UNIT)
                 {
-                    System.out.println("Writing file: " + outputClassFile + " from SWC: " + swcCU.getAbsoluteFilename());
+                    copyCompilationUnitFromSWC(cu, externs, jsOut, swcOutputStream, catalogFiles);
                 }
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                InputStream fileStream = fileEntry.createInputStream();
-                IOUtils.copy(fileStream, baos);
-                fileStream.close();
-                writeFileToZip(zipOutputStream, outputClassFile, baos, fileList);
-
-                String outputMapFile = outputClassFile + ".map";
-                fileEntry = swcCU.getSWC().getFile(outputMapFile);
-                if (fileEntry == null)
-                {
-                    continue;
-                }
-                if (config.isVerbose())
-                {
-                    System.out.println("Writing file: " + outputMapFile + " from SWC: " + swcCU.getAbsoluteFilename());
-                }
-                baos = new ByteArrayOutputStream();
-                fileStream = fileEntry.createInputStream();
-                IOUtils.copy(fileStream, baos);
-                fileStream.close();
-                writeFileToZip(zipOutputStream, outputMapFile, baos, fileList);
             }
-        }
+        };
+        if (!packingSWC)
+            outputManifest = createOutputManifest(outputFolder);
+        createEmitScheduler().emit(reachableCompilationUnits, emitTask,
+                problems.getProblems(), resultHandler);
+        saveOutputManifest();
         if (!config.getCreateTargetWithErrors())
         {
             errors.clear();
@@ -515,51 +378,16 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         if (packingSWC)
         {
             zipFile.close();
-            long fileDate = System.currentTimeMillis();
-            long zipFileDate = fileDate;
-            String metadataDate = targetSettings.getSWFMetadataDate();
-            if (metadataDate != null)
+            EntryContents catalogContents = new EntryContents();
+            try
             {
-                String metadataFormat = targetSettings.getSWFMetadataDateFormat();
-                try {
-                    SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-                    Date d = sdf.parse(metadataDate);
-                    Calendar cal = new GregorianCalendar();
-                    cal.setTime(d);
-                    sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-                    d = sdf.parse(metadataDate);
-                    fileDate = d.getTime();
-                    ZonedDateTime zdt = ZonedDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH), 
-                                            cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), 0, ZoneId.systemDefault());
-                    zipFileDate = zdt.toInstant().toEpochMilli();
-                } catch (ParseException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                } catch (IllegalArgumentException e1) {
-                    e1.printStackTrace();
-                }
+                catalog.write(catalogContents, catalogFiles);
             }
-            int libraryIndex = catalog.indexOf("</libraries>");
-            catalog = catalog.substring(0, libraryIndex + 13) +
-                "    <files>\n" + fileList.toString() + "    </files>" + 
-                catalog.substring(libraryIndex + 13);
-            ZipEntry ze = new ZipEntry(SWCReader.CATALOG_XML);
-            ze.setTime(zipFileDate);
-            ze.setMethod(ZipEntry.STORED);
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            baos.write(catalog.getBytes());
-            ze.setSize(baos.size());
-            ze.setCompressedSize(baos.size());
-            CRC32 crc = new CRC32();
-            crc.reset();
-            crc.update(baos.toByteArray());
-            ze.setCrc(crc.getValue());
-            
-            zipOutputStream.putNextEntry(ze);
-            baos.writeTo(zipOutputStream);
-            zipOutputStream.flush();
-            zipOutputStream.closeEntry();
+            catch (XMLStreamException e)
+            {
+                throw new IOException(e);
+            }
+            putStoredEntry(zipOutputStream, SWCReader.CATALOG_XML, catalogContents);
             zipOutputStream.flush();
             zipOutputStream.close();
             swcFile.delete();
@@ -569,7 +397,268 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
         return true;
     }
 
-    private void processSourceMap(ByteArrayOutputStream sourceMapTemp, ByteArrayOutputStream baos, File outputClassFile, String symbol)
+    /**
+     * The generated files of a compilation unit that are packed into the
+     * SWC.
+     */
+    private static class EmittedFiles
+    {
+        String classFilePath;
+        EntryContents classFileContents;
+        String sourceMapFilePath;
+        EntryContents sourceMapContents;
+    }
+
+    /**
+     * The contents of a stored SWC entry. The CRC that the entry needs
+     * before it can be written is computed while the contents are written,
+     * so the contents don't have to be copied again.
+     */
+    private static class EntryContents extends ByteArrayOutputStream
+    {
+        private final CRC32 crc = new CRC32();
+
+        @Override
+        public synchronized void write(int b)
+        {
+            super.write(b);
+            crc.update(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len)
+        {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public synchronized void reset()
+        {
+            super.reset();
+            crc.reset();
+        }
+
+        public synchronized long getCrc()
+        {
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * The dates of the entries that are written to the SWC.
+     */
+    private static class EntryDates
+    {
+        /**
+         * The modification date of the entries in catalog.xml.
+         */
+        long fileDate;
+
+        /**
+         * The time of the zip entries.
+         */
+        long zipFileDate;
+    }
+
+    /**
+     * The dates of the entries of the SWC that is written.
+     */
+    private EntryDates entryDates;
+
+    private EntryDates getEntryDates()
+    {
+        EntryDates dates = new EntryDates();
+        dates.fileDate = System.currentTimeMillis();
+        dates.zipFileDate = dates.fileDate;
+        String metadataDate = targetSettings.getSWFMetadataDate();
+        if (metadataDate != null)
+        {
+            String metadataFormat = targetSettings.getSWFMetadataDateFormat();
+            try {
+                SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
+                Date d = sdf.parse(metadataDate);
+                Calendar cal = new GregorianCalendar();
+                cal.setTime(d);
+                sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+                d = sdf.parse(metadataDate);
+                dates.fileDate = d.getTime();
+                ZonedDateTime zdt = ZonedDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH), 
+                                        cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), 0, ZoneId.systemDefault());
+                dates.zipFileDate = zdt.toInstant().toEpochMilli();
+            } catch (ParseException e) {
+                // TODO Auto-generated catch block
+                e.printStackTrace();
+            } catch (IllegalArgumentException e1) {
+                e1.printStackTrace();
+            }
+        }
+        return dates;
+    }
+
+    private void writeCompilationUnitToFolder(ICompilationUnit cu, File outputFolder,
+            List<ICompilerProblem> unitProblems) throws InterruptedException, IOException
+    {
+        ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
+        final File outputClassFile = getOutputClassFile(
+                cu.getQualifiedNames().get(0), outputFolder, true);
+
+        if (config.isVerbose())
+        {
+            out.println("Compiling file: " + outputClassFile);
+        }
+
+        ICompilationUnit unit = cu;
+
+        IJSWriter writer;
+        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
+        {
+            writer = (IJSWriter) project.getBackend().createWriter(project,
+                    unitProblems, unit, false);
+        }
+        else
+        {
+            writer = (IJSWriter) project.getBackend().createMXMLWriter(
+                    project, unitProblems, unit, false);
+        }
+
+        OutputStream jsOut = createOutputStream(outputClassFile);
+        OutputStream sourceMapOut = null;
+        File outputSourceMapFile = null;
+        if (project.config.getSourceMap())
+        {
+            outputSourceMapFile = getOutputSourceMapFile(
+                    cu.getQualifiedNames().get(0), outputFolder, true);
+            sourceMapOut = createOutputStream(outputSourceMapFile);
+        }
+        writer.writeTo(jsOut, sourceMapOut, outputSourceMapFile);
+        jsOut.flush();
+        jsOut.close();
+        if (sourceMapOut != null)
+        {
+            sourceMapOut.flush();
+            sourceMapOut.close();
+        }
+        writer.close();
+    }
+
+    private EmittedFiles writeCompilationUnitToMemory(ICompilationUnit cu, File jsOut,
+            File externsOut, List<ICompilerProblem> unitProblems) throws InterruptedException, IOException
+    {
+        ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
+        String symbol = cu.getQualifiedNames().get(0);
+        if (config.isVerbose())
+        {
+            out.println("Compiling file: " + symbol);
+        }
+        
+        ICompilationUnit unit = cu;
+
+        IJSWriter writer;
+        if (cuType == ICompilationUnit.UnitType.AS_UNIT)
+        {
+            writer = (IJSWriter) project.getBackend().createWriter(project,
+                    unitProblems, unit, false);
+        }
+        else
+        {
+            writer = (IJSWriter) project.getBackend().createMXMLWriter(
+                    project, unitProblems, unit, false);
+        }
+
+        EntryContents temp = new EntryContents();
+        EntryContents sourceMapTemp = null;
+        
+        boolean isExterns = false;
+        if(cu.getDefinitionPromises().size() > 0)
+        {
+            isExterns = project.isExterns(cu.getDefinitionPromises().get(0).getQualifiedName());
+        }
+        
+        // if the file is @externs DON'T create source map file
+        if (project.config.getSourceMap() && !isExterns)
+        {
+            sourceMapTemp = new EntryContents();
+        }
+        writer.writeTo(temp, sourceMapTemp, null);
+
+        EmittedFiles emittedFiles = new EmittedFiles();
+        File outputClassFile = getOutputClassFile(
+                symbol,
+                isExterns ? externsOut : jsOut,
+                false);
+        emittedFiles.classFilePath = outputClassFile.getPath().replace('\\', '/');
+        emittedFiles.classFileContents = temp;
+        
+        if(sourceMapTemp != null)
+        {
+            String sourceMapFilePath = getOutputSourceMapFile(
+                symbol,
+                isExterns ? externsOut : jsOut,
+                false).getPath();
+            emittedFiles.sourceMapFilePath = sourceMapFilePath.replace('\\', '/');
+            emittedFiles.sourceMapContents = processSourceMap(sourceMapTemp, outputClassFile, symbol);
+        }
+        writer.close();
+        return emittedFiles;
+    }
+
+    private void copyCompilationUnitFromSWC(ICompilationUnit cu, Set<String> externs,
+            File jsOut, ZipOutputStream zipOutputStream, Map<String, Long> catalogFiles) throws InterruptedException, IOException
+    {
+        String symbol = cu.getQualifiedNames().get(0);
+        if (externs.contains(symbol)) return;
+        if (project.isExternalLinkage(cu)) return;
+
+        // if another .swc file is on our library-path, we must
+        // include the .js (and .js.map) files because the
+        // bytecode will also be included. if we have the
+        // bytecode, but not the .js files, the compiler won't
+        // know where to find the .js files. that's really bad.
+
+        // if the bytecode and .js files should not be included,
+        // then the developer is expected to use
+        // external-library-path instead of library-path.
+
+        SWCCompilationUnit swcCU = (SWCCompilationUnit) cu;
+        String outputClassFile = getOutputClassFile(
+                cu.getQualifiedNames().get(0),
+                jsOut,
+                false).getPath();
+        outputClassFile = outputClassFile.replace('\\', '/');
+        ISWCFileEntry fileEntry = swcCU.getSWC().getFile(outputClassFile);
+        if (fileEntry == null)
+        {
+            return;
+        }
+        if (config.isVerbose())
+        {
+            out.println("Writing file: " + outputClassFile + " from SWC: " + swcCU.getAbsoluteFilename());
+        }
+        EntryContents contents = new EntryContents();
+        InputStream fileStream = fileEntry.createInputStream();
+        IOUtils.copy(fileStream, contents);
+        fileStream.close();
+        writeFileToZip(zipOutputStream, outputClassFile, contents, catalogFiles);
+
+        String outputMapFile = outputClassFile + ".map";
+        fileEntry = swcCU.getSWC().getFile(outputMapFile);
+        if (fileEntry == null)
+        {
+            return;
+        }
+        if (config.isVerbose())
+        {
+            out.println("Writing file: " + outputMapFile + " from SWC: " + swcCU.getAbsoluteFilename());
+        }
+        contents = new EntryContents();
+        fileStream = fileEntry.createInputStream();
+        IOUtils.copy(fileStream, contents);
+        fileStream.close();
+        writeFileToZip(zipOutputStream, outputMapFile, contents, catalogFiles);
+    }
+
+    private EntryContents processSourceMap(EntryContents sourceMapTemp, File outputClassFile, String symbol)
     {
         String sourceMapSourceRoot = project.config.getSourceMapSourceRoot();
         if(sourceMapSourceRoot != null && sourceMapSourceRoot.length() > 0)
@@ -598,69 +687,40 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                 {
                     SourceMapGeneratorV3 sourceMapGenerator = SourceMapUtils.sourceMapConsumerToGeneratorWithRemappedSourceRoot(sourceMapConsumer, sourceMapSourceRoot, symbol);
                     String newSourceMapContents = SourceMapUtils.sourceMapGeneratorToString(sourceMapGenerator, outputClassFile.getName());
+                    EntryContents contents = new EntryContents();
                     try
                     {
-                        IOUtils.write(newSourceMapContents, baos, Charset.forName("utf8"));
+                        IOUtils.write(newSourceMapContents, contents, Charset.forName("utf8"));
                     }
                     catch(IOException e)
                     {
                     }
-                    return;
+                    return contents;
                 }
             }
         }
-        try
-        {
-            sourceMapTemp.writeTo(baos);
-        }
-        catch(IOException e)
-        {
+        return sourceMapTemp;
+    }
 
-        }
+    private void writeFileToZip(ZipOutputStream zipOutputStream, String entryFilePath, EntryContents contents, Map<String, Long> catalogFiles) throws IOException
+    {
+        putStoredEntry(zipOutputStream, entryFilePath, contents);
+        catalogFiles.put(entryFilePath, entryDates.fileDate);
     }
 
-    private void writeFileToZip(ZipOutputStream zipOutputStream, String entryFilePath, ByteArrayOutputStream baos, StringBuilder fileList) throws IOException
+    private void putStoredEntry(ZipOutputStream zipOutputStream, String entryFilePath, EntryContents contents) throws IOException
     {
-        long fileDate = System.currentTimeMillis();
-        long zipFileDate = fileDate;
-        String metadataDate = targetSettings.getSWFMetadataDate();
-        if (metadataDate != null)
-        {
-            String metadataFormat = targetSettings.getSWFMetadataDateFormat();
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat(metadataFormat);
-                Date d = sdf.parse(metadataDate);
-                Calendar cal = new GregorianCalendar();
-                cal.setTime(d);
-                sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-                d = sdf.parse(metadataDate);
-                fileDate = d.getTime();
-                ZonedDateTime zdt = ZonedDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH), 
-                                        cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), 0, ZoneId.systemDefault());
-                zipFileDate = zdt.toInstant().toEpochMilli();
-            } catch (ParseException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            } catch (IllegalArgumentException e1) {
-                e1.printStackTrace();
-            }
-        }
         ZipEntry ze = new ZipEntry(entryFilePath);
-        ze.setTime(zipFileDate);
+        ze.setTime(entryDates.zipFileDate);
         ze.setMethod(ZipEntry.STORED);
-        
-        ze.setSize(baos.size());
-        ze.setCompressedSize(baos.size());
-        CRC32 crc = new CRC32();
-        crc.reset();
-        crc.update(baos.toByteArray());
-        ze.setCrc(crc.getValue());
+        ze.setSize(contents.size());
+        ze.setCompressedSize(contents.size());
+        ze.setCrc(contents.getCrc());
 
         zipOutputStream.putNextEntry(ze);
-        baos.writeTo(zipOutputStream);
+        contents.writeTo(zipOutputStream);
         zipOutputStream.flush();
         zipOutputStream.closeEntry();
-        fileList.append("        <file path=\"" + entryFilePath + "\" mod=\"" + fileDate + "\"/>\n");
     }
 
     @Override
@@ -706,11 +766,12 @@ public class COMPJSCRoyale extends MXMLJSCRoyale
                     }
 
                     long endTime = System.nanoTime();
-                    System.out.println((endTime - startTime) / 1e9 + " seconds");
+                    out.println((endTime - startTime) / 1e9 + " seconds");
                 }
                 finally
                 {
                     workspace.doneBuilding();
+                    workspace.writeProfileReports();
                 }
             }
         };
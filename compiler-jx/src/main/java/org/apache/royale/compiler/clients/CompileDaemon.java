@@ -0,0 +1,769 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.royale.compiler.clients.MXMLJSC.ExitCode;
+import org.apache.royale.compiler.config.ConfigurationBuffer;
+import org.apache.royale.compiler.config.ConfigurationValue;
+import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.driver.js.goog.JSGoogCompcConfiguration;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.mxml.IMXMLNamespaceMapping;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * A long-lived local process that runs the JavaScript compilers for
+ * {@link CompileDaemonClient}, and keeps the workspace and project of every
+ * configuration it has built open, so that the libraries, syntax trees and
+ * scopes don't have to be loaded again by the next build with the same
+ * arguments.
+ * <p>
+ * Before a build reuses a workspace, the files of the project are compared
+ * with the time stamps and sizes that were recorded after the previous build,
+ * and the workspace is told about every file that was changed, added or
+ * removed, the same way an IDE would. The configuration files, manifests
+ * and CSS files that were read by the configuration of the project can't be
+ * handled that way, so when one of those was changed, the workspace is closed
+ * and the build starts from scratch. Only the least recently used
+ * configurations are kept, and builds run one at a time.
+ * <p>
+ * The messages and problems of the compiler are sent to the client that
+ * requested the build. Messages that are printed by other parts of the
+ * compiler, like the publisher, still go to the console of the daemon.
+ * <p>
+ * The daemon only listens on the loopback interface, and a build is only
+ * accepted with the token from the state file, which is only readable by the
+ * user that started the daemon.
+ */
+public class CompileDaemon
+{
+    /**
+     * The compilers that can be run by the daemon.
+     */
+    private static final List<String> TOOLS = Arrays.asList(
+            MXMLJSC.class.getName(),
+            COMPJSC.class.getName(),
+            MXMLJSCRoyale.class.getName(),
+            COMPJSCRoyale.class.getName());
+
+    private static final String[] SOURCE_EXTENSIONS = { ".as", ".mxml", ".css" };
+
+    /**
+     * Java programs can't change their working directory, so relative paths
+     * in the arguments are always resolved against the directory of the
+     * daemon.
+     */
+    private static final String WORKING_DIRECTORY = new File("").getAbsolutePath();
+
+    /**
+     * Java program entry point.
+     * <p>
+     * Options: {@code -state-file=<file>}, {@code -port=<port>},
+     * {@code -max-configurations=<count>} and {@code -idle-timeout=<minutes>}.
+     *
+     * @param args command line arguments
+     */
+    public static void main(final String[] args)
+    {
+        File stateFile = CompileDaemonClient.getDefaultStateFile();
+        int port = 0;
+        int maxConfigurations = 4;
+        long idleTimeout = 0;
+        for (String arg : args)
+        {
+            int index = arg.indexOf('=');
+            String name = index == -1 ? arg : arg.substring(0, index);
+            String value = index == -1 ? "" : arg.substring(index + 1);
+            if (name.startsWith("--"))
+                name = name.substring(1);
+            if (name.equals("-state-file"))
+                stateFile = new File(value);
+            else if (name.equals("-port"))
+                port = Integer.parseInt(value);
+            else if (name.equals("-max-configurations"))
+                maxConfigurations = Integer.parseInt(value);
+            else if (name.equals("-idle-timeout"))
+                idleTimeout = Long.parseLong(value) * 60 * 1000;
+            else
+            {
+                System.err.println("Unknown option: " + arg);
+                System.err.println("Usage: CompileDaemon [-state-file=<file>] [-port=<port>] "
+                        + "[-max-configurations=<count>] [-idle-timeout=<minutes>]");
+                System.exit(1);
+            }
+        }
+
+        CompileDaemon daemon = new CompileDaemon(stateFile, maxConfigurations, idleTimeout);
+        try
+        {
+            daemon.start(port);
+            System.out.println("Compile daemon listening on port " + daemon.getPort()
+                    + ", state file: " + stateFile.getAbsolutePath());
+            daemon.run();
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.toString());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * A compiler with the workspaces it kept open, and the time stamps of the
+     * files and configuration inputs of their projects.
+     */
+    private static class WarmCompiler
+    {
+        WarmCompiler(ReusableCompilerEntryPoint compiler)
+        {
+            this.compiler = compiler;
+        }
+
+        final ReusableCompilerEntryPoint compiler;
+        Map<String, FileStamp> stamps = new HashMap<String, FileStamp>();
+        Map<String, FileStamp> inputs = new HashMap<String, FileStamp>();
+    }
+
+    /**
+     * The time stamp and size of a file, or neither if it doesn't exist.
+     */
+    private static class FileStamp
+    {
+        FileStamp(File file)
+        {
+            exists = file.exists();
+            lastModified = exists ? file.lastModified() : 0;
+            length = exists ? file.length() : 0;
+        }
+
+        final boolean exists;
+        final long lastModified;
+        final long length;
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof FileStamp))
+                return false;
+            FileStamp other = (FileStamp) obj;
+            return exists == other.exists && lastModified == other.lastModified
+                    && length == other.length;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(lastModified) * 31 + Long.hashCode(length);
+        }
+    }
+
+    public CompileDaemon(File stateFile, int maxConfigurations, long idleTimeout)
+    {
+        this.stateFile = stateFile;
+        this.maxConfigurations = Math.max(1, maxConfigurations);
+        this.idleTimeout = idleTimeout;
+    }
+
+    private final File stateFile;
+    private final int maxConfigurations;
+    private final long idleTimeout;
+    private final Object buildLock = new Object();
+    private final LinkedHashMap<String, WarmCompiler> warmCompilers = new LinkedHashMap<String, WarmCompiler>(16, 0.75f, true);
+    private ServerSocket serverSocket;
+    private String token;
+    private volatile boolean stopped;
+    private volatile long lastRequestTime;
+    private int coldBuildCount;
+
+    /**
+     * Opens the server socket and writes the state file.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     */
+    public void start(int port) throws IOException
+    {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b));
+        token = sb.toString();
+        writeStateFile();
+        lastRequestTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the port that the daemon listens on.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of builds that didn't reuse a workspace.
+     */
+    int getColdBuildCount()
+    {
+        synchronized (buildLock)
+        {
+            return coldBuildCount;
+        }
+    }
+
+    /**
+     * Accepts connections until the daemon is stopped, then closes all of
+     * the workspaces and deletes the state file.
+     */
+    public void run()
+    {
+        if (idleTimeout > 0)
+            startIdleTimer();
+        try
+        {
+            while (!stopped)
+            {
+                final Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketException e)
+                {
+                    // the socket was closed by stop()
+                    break;
+                }
+                catch (IOException e)
+                {
+                    continue;
+                }
+                Thread thread = new Thread("CompileDaemon connection")
+                {
+                    @Override
+                    public void run()
+                    {
+                        handleConnection(socket);
+                    }
+                };
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        finally
+        {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections. A build that is running is finished first.
+     */
+    public void stop()
+    {
+        stopped = true;
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+
+    private void shutdown()
+    {
+        synchronized (buildLock)
+        {
+            for (WarmCompiler warmCompiler : warmCompilers.values())
+                warmCompiler.compiler.closeWorkspaces();
+            warmCompilers.clear();
+        }
+        stateFile.delete();
+    }
+
+    private void startIdleTimer()
+    {
+        Thread thread = new Thread("CompileDaemon idle timer")
+        {
+            @Override
+            public void run()
+            {
+                while (!stopped)
+                {
+                    try
+                    {
+                        Thread.sleep(Math.min(idleTimeout, 60 * 1000));
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    if (System.currentTimeMillis() - lastRequestTime > idleTimeout)
+                    {
+                        System.out.println("Compile daemon stopped after being idle");
+                        CompileDaemon.this.stop();
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void writeStateFile() throws IOException
+    {
+        File parent = stateFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Unable to create " + parent);
+        // create the file without any content first, so that the token is
+        // never readable by anyone else
+        stateFile.delete();
+        if (!stateFile.createNewFile())
+            throw new IOException("Unable to create " + stateFile);
+        try
+        {
+            Files.setPosixFilePermissions(stateFile.toPath(),
+                    EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        }
+        catch (UnsupportedOperationException e)
+        {
+            stateFile.setReadable(false, false);
+            stateFile.setReadable(true, true);
+        }
+        Properties state = new Properties();
+        state.setProperty(CompileDaemonClient.STATE_PORT, Integer.toString(getPort()));
+        state.setProperty(CompileDaemonClient.STATE_TOKEN, token);
+        OutputStream output = new FileOutputStream(stateFile);
+        try
+        {
+            state.store(output, "Apache Royale compile daemon");
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+     * Compares the token in constant time, so that the time it takes doesn't
+     * tell a client how much of it was right.
+     */
+    private boolean isToken(String value)
+    {
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleConnection(Socket socket)
+    {
+        try
+        {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (!CompileDaemonClient.MAGIC.equals(input.readUTF())
+                    || input.readInt() != CompileDaemonClient.VERSION
+                    || !isToken(input.readUTF()))
+            {
+                refuse(output, "unknown client");
+                return;
+            }
+            String command = input.readUTF();
+            if (CompileDaemonClient.COMMAND_STOP.equals(command))
+            {
+                stop();
+                return;
+            }
+            if (!CompileDaemonClient.COMMAND_COMPILE.equals(command))
+            {
+                refuse(output, "unknown command " + command);
+                return;
+            }
+            String toolClassName = input.readUTF();
+            String workingDirectory = input.readUTF();
+            String[] args = new String[input.readInt()];
+            for (int i = 0; i < args.length; i++)
+                args[i] = input.readUTF();
+
+            if (!TOOLS.contains(toolClassName))
+            {
+                refuse(output, toolClassName + " is not supported");
+                return;
+            }
+            if (!WORKING_DIRECTORY.equals(workingDirectory))
+            {
+                refuse(output, "the working directory is not " + WORKING_DIRECTORY);
+                return;
+            }
+
+            int exitCode = build(toolClassName, workingDirectory, args, output);
+            output.writeByte(CompileDaemonClient.FRAME_EXIT);
+            output.writeInt(exitCode);
+            output.flush();
+        }
+        catch (IOException e)
+        {
+            // the client went away
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+            }
+        }
+    }
+
+    private void refuse(DataOutputStream output, String reason) throws IOException
+    {
+        output.writeByte(CompileDaemonClient.FRAME_REFUSED);
+        output.writeUTF(reason);
+        output.flush();
+    }
+
+    private int build(String toolClassName, String workingDirectory, String[] args,
+            DataOutputStream output)
+    {
+        synchronized (buildLock)
+        {
+            lastRequestTime = System.currentTimeMillis();
+            String key = toolClassName + "\n" + workingDirectory + "\n" + String.join("\n", args);
+            WarmCompiler warmCompiler = warmCompilers.remove(key);
+            if (warmCompiler != null && !warmCompiler.inputs.equals(recordInputs(warmCompiler.compiler)))
+            {
+                // a workspace can't be told about a changed configuration
+                warmCompiler.compiler.closeWorkspaces();
+                warmCompiler = null;
+            }
+            if (warmCompiler == null)
+            {
+                warmCompiler = new WarmCompiler(createCompiler(toolClassName));
+                coldBuildCount++;
+            }
+            else
+                invalidateChangedFiles(warmCompiler);
+
+            PrintStream out = new PrintStream(new FrameOutputStream(output, CompileDaemonClient.FRAME_OUT), true);
+            PrintStream err = new PrintStream(new FrameOutputStream(output, CompileDaemonClient.FRAME_ERR), true);
+            warmCompiler.compiler.setOutputStreams(out, err);
+            int exitCode = ExitCode.FAILED_WITH_EXCEPTIONS.getCode();
+            try
+            {
+                long startTime = System.nanoTime();
+                List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+                exitCode = warmCompiler.compiler.mainNoExit(args, problems, true);
+                long endTime = System.nanoTime();
+                out.println((endTime - startTime) / 1e9 + " seconds");
+            }
+            finally
+            {
+                out.flush();
+                err.flush();
+                warmCompiler.compiler.setOutputStreams(System.out, System.err);
+            }
+
+            if (exitCode == ExitCode.FAILED_WITH_EXCEPTIONS.getCode() || exitCode == -1)
+            {
+                // the state of the workspace is unknown
+                warmCompiler.compiler.closeWorkspaces();
+            }
+            else
+            {
+                warmCompiler.stamps = recordFiles(warmCompiler.compiler);
+                warmCompiler.inputs = recordInputs(warmCompiler.compiler);
+                warmCompilers.put(key, warmCompiler);
+                Iterator<WarmCompiler> iterator = warmCompilers.values().iterator();
+                while (warmCompilers.size() > maxConfigurations)
+                {
+                    iterator.next().compiler.closeWorkspaces();
+                    iterator.remove();
+                }
+            }
+            lastRequestTime = System.currentTimeMillis();
+            return exitCode;
+        }
+    }
+
+    private static ReusableCompilerEntryPoint createCompiler(String toolClassName)
+    {
+        ReusableCompilerEntryPoint result;
+        if (toolClassName.equals(COMPJSC.class.getName()))
+        {
+            COMPJSC compjsc = new COMPJSC();
+            compjsc.configurationClass = JSGoogCompcConfiguration.class;
+            result = compjsc;
+        }
+        else if (toolClassName.equals(MXMLJSC.class.getName()))
+            result = new MXMLJSC();
+        else if (toolClassName.equals(COMPJSCRoyale.class.getName()))
+            result = new COMPJSCRoyale();
+        else
+            result = new MXMLJSCRoyale();
+        result.setKeepWorkspaceOpen(true);
+        return result;
+    }
+
+    /**
+     * Tells the workspaces about the files that were changed, added or
+     * removed since the previous build.
+     */
+    private static void invalidateChangedFiles(WarmCompiler warmCompiler)
+    {
+        Map<String, FileStamp> stamps = recordFiles(warmCompiler.compiler);
+        Set<Workspace> workspaces = new HashSet<Workspace>();
+        for (RoyaleJSProject project : warmCompiler.compiler.getOpenProjects())
+        {
+            if (project != null)
+                workspaces.add((Workspace) project.getWorkspace());
+        }
+        for (Map.Entry<String, FileStamp> entry : stamps.entrySet())
+        {
+            String path = entry.getKey();
+            FileStamp stamp = entry.getValue();
+            FileStamp oldStamp = warmCompiler.stamps.get(path);
+            boolean existed = oldStamp != null && oldStamp.exists;
+            if (stamp.equals(oldStamp))
+                continue;
+            for (Workspace workspace : workspaces)
+            {
+                if (!existed)
+                    workspace.fileAdded(workspace.getFileSpecification(path));
+                else if (!stamp.exists)
+                    workspace.fileRemoved(workspace.getFileSpecification(path));
+                else
+                    workspace.fileChanged(workspace.getFileSpecification(path));
+            }
+        }
+        for (Map.Entry<String, FileStamp> entry : warmCompiler.stamps.entrySet())
+        {
+            String path = entry.getKey();
+            if (!stamps.containsKey(path) && entry.getValue().exists && !new File(path).exists())
+            {
+                for (Workspace workspace : workspaces)
+                    workspace.fileRemoved(workspace.getFileSpecification(path));
+            }
+        }
+    }
+
+    /**
+     * Records the time stamps and sizes of the files of the compilation units
+     * of the open projects, and of the source files on their source paths,
+     * so that new files are found too.
+     */
+    private static Map<String, FileStamp> recordFiles(ReusableCompilerEntryPoint compiler)
+    {
+        Map<String, FileStamp> result = new HashMap<String, FileStamp>();
+        for (RoyaleJSProject project : compiler.getOpenProjects())
+        {
+            if (project == null)
+                continue;
+            for (ICompilationUnit cu : project.getCompilationUnits())
+            {
+                String path = cu.getAbsoluteFilename();
+                if (path != null)
+                    recordFile(new File(path), result);
+            }
+            for (File sourcePath : project.getSourcePath())
+                recordSourcePath(sourcePath, result);
+        }
+        return result;
+    }
+
+    /**
+     * Records the time stamps and sizes of the configuration files, manifests
+     * and CSS files that were read by the configurations of the open projects.
+     */
+    private static Map<String, FileStamp> recordInputs(ReusableCompilerEntryPoint compiler)
+    {
+        Map<String, FileStamp> result = new HashMap<String, FileStamp>();
+        for (RoyaleJSProject project : compiler.getOpenProjects())
+        {
+            if (project == null)
+                continue;
+            if (project.configurator != null)
+            {
+                ConfigurationBuffer buffer = project.configurator.getConfigurationBuffer();
+                if (buffer != null)
+                {
+                    for (String var : buffer.getVars())
+                    {
+                        List<ConfigurationValue> values = buffer.getVar(var);
+                        if (values == null)
+                            continue;
+                        for (ConfigurationValue value : values)
+                        {
+                            String source = value.getSource();
+                            if (source != null && new File(source).isFile())
+                                recordFile(new File(source), result);
+                        }
+                    }
+                }
+            }
+            IMXMLNamespaceMapping[] namespaceMappings = project.getNamespaceMappings();
+            if (namespaceMappings != null)
+            {
+                for (IMXMLNamespaceMapping mapping : namespaceMappings)
+                {
+                    if (mapping.getManifestFileName() != null)
+                        recordFile(new File(mapping.getManifestFileName()), result);
+                }
+            }
+            for (IFileSpecification themeFile : project.getThemeFiles())
+                recordFile(new File(themeFile.getPath()), result);
+            if (project.config != null)
+            {
+                for (String path : project.config.getDefaultsCSSFiles())
+                    recordFile(new File(path), result);
+            }
+        }
+        return result;
+    }
+
+    private static void recordSourcePath(File file, Map<String, FileStamp> result)
+    {
+        File[] children = file.listFiles();
+        if (children == null)
+            return;
+        for (File child : children)
+        {
+            if (child.isDirectory())
+                recordSourcePath(child, result);
+            else
+            {
+                for (String extension : SOURCE_EXTENSIONS)
+                {
+                    if (child.getName().endsWith(extension))
+                    {
+                        recordFile(child, result);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void recordFile(File file, Map<String, FileStamp> result)
+    {
+        String path = FilenameNormalization.normalize(file.getAbsolutePath());
+        if (result.containsKey(path))
+            return;
+        result.put(path, new FileStamp(file));
+    }
+
+    /**
+     * Sends everything that is written to it to the client as frames of the
+     * specified type.
+     */
+    private static class FrameOutputStream extends OutputStream
+    {
+        FrameOutputStream(DataOutputStream output, int frameType)
+        {
+            this.output = output;
+            this.frameType = frameType;
+        }
+
+        private final DataOutputStream output;
+        private final int frameType;
+        private boolean failed;
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0 || failed)
+                return;
+            // output from other threads of the compiler goes to the same
+            // client, so frames must not be interleaved
+            synchronized (output)
+            {
+                try
+                {
+                    output.writeByte(frameType);
+                    output.writeInt(len);
+                    output.write(b, off, len);
+                }
+                catch (IOException e)
+                {
+                    // keep building when the client went away, so that the
+                    // workspace is left in a known state
+                    failed = true;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            synchronized (output)
+            {
+                try
+                {
+                    output.flush();
+                }
+                catch (IOException e)
+                {
+                    failed = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Submits builds to a running {@link CompileDaemon}.
+ * <p>
+ * The daemon writes its port and a random token to a state file that only the
+ * current user can read, and the client reads them from there, so nothing has
+ * to be configured as long as both use the same state file. The Maven mojos
+ * and Ant tasks call {@link #submit(String, String[])} with reflection, the
+ * same way they call the compilers, and compile in-process if it returns
+ * {@link #NOT_AVAILABLE}.
+ */
+public class CompileDaemonClient
+{
+    /**
+     * Returned when there is no daemon to submit the build to, or when the
+     * daemon can't run it. The caller should compile in-process instead.
+     */
+    public static final int NOT_AVAILABLE = -1;
+
+    static final String MAGIC = "royale-compile-daemon";
+    static final int VERSION = 1;
+
+    static final String COMMAND_COMPILE = "compile";
+    static final String COMMAND_STOP = "stop";
+
+    static final int FRAME_EXIT = 0;
+    static final int FRAME_OUT = 1;
+    static final int FRAME_ERR = 2;
+    static final int FRAME_REFUSED = 3;
+
+    static final String STATE_PORT = "port";
+    static final String STATE_TOKEN = "token";
+
+    /**
+     * The system property that overrides the location of the state file.
+     */
+    public static final String STATE_FILE_PROPERTY = "royale.compileDaemon.stateFile";
+
+    /**
+     * @return the state file that is used when none is specified.
+     */
+    public static File getDefaultStateFile()
+    {
+        String path = System.getProperty(STATE_FILE_PROPERTY);
+        if (path != null)
+            return new File(path);
+        return new File(System.getProperty("user.home"), ".royale-compile-daemon");
+    }
+
+    /**
+     * Entry point for the Maven mojos and the Ant tasks. Output is written to
+     * {@code System.out} and {@code System.err}.
+     *
+     * @param toolClassName the compiler to run, for example
+     * {@code org.apache.royale.compiler.clients.MXMLJSC}.
+     * @param args command line arguments.
+     * @return the exit code of the compiler, or {@link #NOT_AVAILABLE}.
+     */
+    public static int submit(String toolClassName, String[] args)
+    {
+        return submit(getDefaultStateFile(), toolClassName, args, System.out, System.err);
+    }
+
+    /**
+     * Submits a build to the daemon that owns the specified state file.
+     *
+     * @return the exit code of the compiler, or {@link #NOT_AVAILABLE}.
+     */
+    public static int submit(File stateFile, String toolClassName, String[] args,
+            OutputStream out, OutputStream err)
+    {
+        Socket socket = connect(stateFile);
+        if (socket == null)
+            return NOT_AVAILABLE;
+        try
+        {
+            DataOutputStream output = writeHeader(socket, stateFile, COMMAND_COMPILE);
+            output.writeUTF(toolClassName);
+            output.writeUTF(new File("").getAbsolutePath());
+            output.writeInt(args.length);
+            for (String arg : args)
+                output.writeUTF(arg);
+            output.flush();
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true)
+            {
+                int frame = input.readByte();
+                switch (frame)
+                {
+                    case FRAME_OUT:
+                    case FRAME_ERR:
+                    {
+                        byte[] bytes = new byte[input.readInt()];
+                        input.readFully(bytes);
+                        OutputStream stream = frame == FRAME_OUT ? out : err;
+                        stream.write(bytes);
+                        stream.flush();
+                        break;
+                    }
+                    case FRAME_EXIT:
+                        return input.readInt();
+                    case FRAME_REFUSED:
+                        err.write(("Compile daemon refused the build: " + input.readUTF()
+                                + System.lineSeparator()).getBytes());
+                        err.flush();
+                        return NOT_AVAILABLE;
+                    default:
+                        throw new IOException("Unexpected frame " + frame);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // the daemon went away in the middle of the build, so it's safer
+            // to build again in-process than to report a partial result
+            return NOT_AVAILABLE;
+        }
+        finally
+        {
+            close(socket);
+        }
+    }
+
+    /**
+     * Asks the daemon that owns the specified state file to shut down.
+     *
+     * @return true if a daemon was running.
+     */
+    public static boolean stop(File stateFile)
+    {
+        Socket socket = connect(stateFile);
+        if (socket == null)
+            return false;
+        try
+        {
+            writeHeader(socket, stateFile, COMMAND_STOP).flush();
+            // wait for the daemon to close the connection
+            InputStream input = socket.getInputStream();
+            while (input.read() != -1)
+            {
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            close(socket);
+        }
+    }
+
+    /**
+     * Command line entry point: {@code stop} shuts the daemon down, and
+     * {@code compile <tool class> <args>} submits a build.
+     */
+    public static void main(String[] args)
+    {
+        File stateFile = getDefaultStateFile();
+        if (args.length == 1 && args[0].equals(COMMAND_STOP))
+        {
+            System.exit(stop(stateFile) ? 0 : 1);
+        }
+        else if (args.length >= 2 && args[0].equals(COMMAND_COMPILE))
+        {
+            String[] toolArgs = new String[args.length - 2];
+            System.arraycopy(args, 2, toolArgs, 0, toolArgs.length);
+            int exitCode = submit(stateFile, args[1], toolArgs, System.out, System.err);
+            if (exitCode == NOT_AVAILABLE)
+                System.err.println("No compile daemon is available. State file: " + stateFile);
+            System.exit(exitCode == NOT_AVAILABLE ? 1 : exitCode);
+        }
+        else
+        {
+            System.err.println("Usage: CompileDaemonClient stop | compile <tool class> [args...]");
+            System.exit(1);
+        }
+    }
+
+    static Properties readState(File stateFile) throws IOException
+    {
+        Properties state = new Properties();
+        InputStream input = new FileInputStream(stateFile);
+        try
+        {
+            state.load(input);
+        }
+        finally
+        {
+            input.close();
+        }
+        return state;
+    }
+
+    private static Socket connect(File stateFile)
+    {
+        if (!stateFile.isFile())
+            return null;
+        try
+        {
+            Properties state = readState(stateFile);
+            int port = Integer.parseInt(state.getProperty(STATE_PORT, "-1"));
+            if (port <= 0)
+                return null;
+            return new Socket(InetAddress.getLoopbackAddress(), port);
+        }
+        catch (IOException e)
+        {
+            // a stale state file of a daemon that was killed
+            return null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private static DataOutputStream writeHeader(Socket socket, File stateFile, String command) throws IOException
+    {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        output.writeUTF(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(readState(stateFile).getProperty(STATE_TOKEN, ""));
+        output.writeUTF(command);
+        return output;
+    }
+
+    private static void close(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+}
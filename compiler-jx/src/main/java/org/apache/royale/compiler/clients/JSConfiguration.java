@@ -639,4 +639,54 @@ public class JSConfiguration extends Configuration
     {
         jsxFactory = value;
     }
+
+    //
+    // 'js-parallel-emit'
+    //
+
+    private boolean jsParallelEmit = false;
+
+    public boolean getJsParallelEmit()
+    {
+        return jsParallelEmit;
+    }
+
+    /**
+     * Emit the JavaScript for the compilation units on several threads at
+     * once, instead of one after another. The output is identical to a
+     * serial build. When building a library, the units are still emitted
+     * one after another until one of them requires Language, because the
+     * output of every unit depends on that until then. Defaults to false.
+     */
+    @Config(advanced = true)
+    @Mapping("js-parallel-emit")
+    public void setJsParallelEmit(ConfigurationValue cv, boolean value)
+            throws ConfigurationException
+    {
+        jsParallelEmit = value;
+    }
+
+    //
+    // 'js-skip-unchanged-output'
+    //
+
+    private boolean jsSkipUnchangedOutput = false;
+
+    public boolean getJsSkipUnchangedOutput()
+    {
+        return jsSkipUnchangedOutput;
+    }
+
+    /**
+     * Don't write generated .js and .js.map files again if their contents
+     * are the same as in the previous build. A manifest of hashes is kept in
+     * the output folder to detect changes. Defaults to false.
+     */
+    @Config(advanced = true)
+    @Mapping("js-skip-unchanged-output")
+    public void setJsSkipUnchangedOutput(ConfigurationValue cv, boolean value)
+            throws ConfigurationException
+    {
+        jsSkipUnchangedOutput = value;
+    }
 }
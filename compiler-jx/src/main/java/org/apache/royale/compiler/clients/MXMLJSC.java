@@ -20,6 +20,7 @@
 package org.apache.royale.compiler.clients;
 
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.*;
 
 import org.apache.royale.compiler.clients.problems.CompilerProblemCategorizer;
@@ -65,7 +66,7 @@ import org.apache.royale.utils.ArgumentUtil;
  * @author Erik de Bruin
  * @author Michael Schmalle
  */
-public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
+public class MXMLJSC implements ReusableCompilerEntryPoint, ProblemQueryProvider,
         FlexTool
 {
     @Override
@@ -214,7 +215,24 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
     protected MXMLC mxmlc;
     protected JSCompilerEntryPoint lastCompiler;
     public boolean noLink;
-    public OutputStream err;
+
+    /**
+     * If true, the workspaces are left open at the end of a build so that the
+     * next build can reuse them.
+     */
+    protected boolean keepWorkspaceOpen;
+
+    /**
+     * The compiler for the JSRoyale target, kept between builds when the
+     * workspaces are kept open.
+     */
+    private MXMLJSCRoyale royaleCompiler;
+
+    /**
+     * The streams that messages and problems are printed to.
+     */
+    public PrintStream out = System.out;
+    public PrintStream err = System.err;
 	public Class<? extends Configuration> configurationClass = JSGoogConfiguration.class;
     
     public MXMLJSC()
@@ -235,7 +253,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         }
         catch (Exception e)
         {
-            System.err.println(e.toString());
+            err.println(e.toString());
         }
         finally
         {
@@ -245,7 +263,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
                 {
                     final WorkspaceProblemFormatter formatter = new WorkspaceProblemFormatter(
                             workspace, createProblemCategorizer());
-                    final ProblemPrinter printer = new ProblemPrinter(formatter);
+                    final ProblemPrinter printer = new ProblemPrinter(formatter, err);
                     printer.printProblems(problems);
                 }
             }
@@ -294,7 +312,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 	                    }
 	                    break;
 	                case JS_ROYALE:
-	                	MXMLJSCRoyale royale = new MXMLJSCRoyale();
+	                	MXMLJSCRoyale royale = getRoyaleCompiler();
 	                	lastCompiler = royale;
 	                    result = royale.mainNoExit(removeASArgs(args), problems.getProblems(), false);
                         if (result != MXMLJSCRoyale.ExitCode.SUCCESS.getCode() && result != MXMLJSCRoyale.ExitCode.WATCHING.getCode())
@@ -362,7 +380,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         catch (Exception e)
         {
             if (outProblems == null) {
-                System.err.println(e.getMessage());
+                err.println(e.getMessage());
             } else
             {
                 final ICompilerProblem unexpectedExceptionProblem = new UnexpectedExceptionProblem(
@@ -373,7 +391,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
         }
         finally
         {
-            if (!config.getWatch() || !ExitCode.SUCCESS.equals(exitCode))
+            if (!keepWorkspaceOpen && (!config.getWatch() || !ExitCode.SUCCESS.equals(exitCode)))
             {
                 waitAndClose();
             }
@@ -504,7 +522,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
 
             if (configBuffer.getVar("version") != null) //$NON-NLS-1$
             {
-                System.out.println(VersionInfo.buildMessage());
+                out.println(VersionInfo.buildMessage());
                 return false;
             }
             
@@ -543,7 +561,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
             if (problems.hasErrors())
                 return false;
 
-            DefinitionBase.setPerformanceCachingEnabled(!config.getWatch());
+            DefinitionBase.setPerformanceCachingEnabled(!config.getWatch() && !keepWorkspaceOpen);
             
             return true;
         }
@@ -583,7 +601,7 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
      */
     public void println(final String msg)
     {
-        System.out.println(msg);
+        out.println(msg);
     }
     
     /**
@@ -659,6 +677,71 @@ public class MXMLJSC implements JSCompilerEntryPoint, ProblemQueryProvider,
     {
         workspace.close();
     }
+
+    /**
+     * Create the compiler for the JSRoyale target.
+     */
+    protected MXMLJSCRoyale createRoyaleCompiler()
+    {
+        return new MXMLJSCRoyale();
+    }
+
+    /**
+     * Get the compiler for the JSRoyale target. If the workspaces are kept
+     * open, the compiler from the previous build is reused.
+     */
+    protected MXMLJSCRoyale getRoyaleCompiler()
+    {
+        if (royaleCompiler != null)
+        {
+            royaleCompiler.setOutputStreams(out, err);
+            return royaleCompiler;
+        }
+        MXMLJSCRoyale result = createRoyaleCompiler();
+        result.setOutputStreams(out, err);
+        if (keepWorkspaceOpen)
+        {
+            result.setKeepWorkspaceOpen(true);
+            royaleCompiler = result;
+        }
+        return result;
+    }
+
+    @Override
+    public void setKeepWorkspaceOpen(boolean value)
+    {
+        keepWorkspaceOpen = value;
+    }
+
+    @Override
+    public void setOutputStreams(PrintStream out, PrintStream err)
+    {
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public List<RoyaleJSProject> getOpenProjects()
+    {
+        if (!keepWorkspaceOpen)
+            return Collections.emptyList();
+        List<RoyaleJSProject> result = new ArrayList<RoyaleJSProject>();
+        result.add(project);
+        if (royaleCompiler != null)
+            result.addAll(royaleCompiler.getOpenProjects());
+        return result;
+    }
+
+    @Override
+    public void closeWorkspaces()
+    {
+        waitAndClose();
+        if (royaleCompiler != null)
+        {
+            royaleCompiler.closeWorkspaces();
+            royaleCompiler = null;
+        }
+    }
     
     public List<String> getSourceList()
     {
@@ -28,6 +28,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -53,6 +55,9 @@ import org.apache.royale.compiler.exceptions.ConfigurationException.MustSpecifyT
 import org.apache.royale.compiler.exceptions.ConfigurationException.OnlyOneSource;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.codegen.as.ASEmitterTokens;
+import org.apache.royale.compiler.internal.codegen.js.JSOutputManifest;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitScheduler;
+import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleEmitScheduler.IEmitTask;
 import org.apache.royale.compiler.internal.codegen.js.royale.JSRoyaleDocEmitter;
 import org.apache.royale.compiler.internal.config.FlashBuilderConfigurator;
 import org.apache.royale.compiler.internal.definitions.AccessorDefinition;
@@ -109,7 +114,7 @@ import com.google.common.collect.Iterables;
  * @author Erik de Bruin
  * @author Michael Schmalle
  */
-public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider,
+public class MXMLJSCRoyale implements ReusableCompilerEntryPoint, ProblemQueryProvider,
         FlexTool
 {
     @Override
@@ -203,6 +208,25 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     protected ITargetSettings targetSettings;
     protected IJSApplication jsTarget;
     private IJSRoyalePublisher jsPublisher;
+    protected JSOutputManifest outputManifest;
+
+    /**
+     * If true, the workspace is left open at the end of a build so that the
+     * next build can reuse it.
+     */
+    protected boolean keepWorkspaceOpen;
+
+    /**
+     * The streams that messages and problems are printed to.
+     */
+    protected PrintStream out = System.out;
+    protected PrintStream err = System.err;
+
+    /**
+     * The project that {@link #asFileHandler} was added to. The project is
+     * kept between builds when the workspace is kept open.
+     */
+    private RoyaleJSProject sourceFileHandlerProject;
     
     public MXMLJSCRoyale()
     {
@@ -229,7 +253,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         }
         catch (Exception e)
         {
-            System.err.println(e.toString());
+            err.println(e.toString());
         }
         finally
         {
@@ -239,7 +263,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 {
                     final WorkspaceProblemFormatter formatter = new WorkspaceProblemFormatter(
                             workspace);
-                    final ProblemPrinter printer = new ProblemPrinter(formatter);
+                    final ProblemPrinter printer = new ProblemPrinter(formatter, err);
                     printer.printProblems(problems);
                 }
             }
@@ -289,7 +313,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         catch (Exception e)
         {
             if (outProblems == null) {
-                System.err.println(e.getMessage());
+                err.println(e.getMessage());
             } else
             {
                 final ICompilerProblem unexpectedExceptionProblem = new UnexpectedExceptionProblem(
@@ -300,7 +324,9 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         }
         finally
         {
-            if (!config.getWatch() || !ExitCode.SUCCESS.equals(exitCode))
+            // the workspace may be kept open, so it isn't always closed
+            workspace.writeProfileReports();
+            if (!keepWorkspaceOpen && (!config.getWatch() || !ExitCode.SUCCESS.equals(exitCode)))
             {
                 waitAndClose();
             }
@@ -313,7 +339,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 }
             }
         }
-        if (config.getWatch() && ExitCode.SUCCESS.equals(exitCode))
+        if (config.getWatch() && !keepWorkspaceOpen && ExitCode.SUCCESS.equals(exitCode))
         {
             setupWatcher();
             return ExitCode.WATCHING.getCode();
@@ -358,21 +384,32 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 workspace.startBuilding();
                 try
                 {
-                    File outputFolder = jsPublisher.getOutputFolder();
-                    for (ICompilationUnit unit : units)
+                    final File outputFolder = jsPublisher.getOutputFolder();
+                    outputManifest = createOutputManifest(outputFolder);
+                    createEmitScheduler().emit(new ArrayList<ICompilationUnit>(units),
+                            new IEmitTask<Object>()
                     {
-                        writeCompilationUnit(unit, outputFolder);
-                    }
+                        @Override
+                        public Object emit(ICompilationUnit cu, List<ICompilerProblem> unitProblems)
+                                throws InterruptedException, IOException
+                        {
+                            writeCompilationUnit(cu, outputFolder, unitProblems);
+                            return null;
+                        }
+                    }, problems.getProblems());
 
                     // ensures that the goog.addDependency() calls are updated
                     jsPublisher.publish(problems);
+                    // after publishing, which changes some of the files again
+                    saveOutputManifest();
 
                     long endTime = System.nanoTime();
-                    System.out.println((endTime - startTime) / 1e9 + " seconds");
+                    out.println((endTime - startTime) / 1e9 + " seconds");
                 }
                 finally
                 {
                     workspace.doneBuilding();
+                    workspace.writeProfileReports();
                 }
             }
         };
@@ -395,7 +432,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 
         try
         {
-            project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
+            addSourceFileHandler();
 
             if (!googConfiguration.getSkipTranspile())
             {
@@ -445,11 +482,26 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 	                    	outputResourceBundle((ResourceBundleCompilationUnit)cu, outputFolder);
 	                    }
 	                }
-	                for (final ICompilationUnit cu : reachableCompilationUnits)
+	                final File emitOutputFolder = outputFolder;
+	                outputManifest = createOutputManifest(outputFolder);
+	                List<ClosureNames> closureNamesPerUnit = createEmitScheduler().emit(reachableCompilationUnits,
+	                        new IEmitTask<ClosureNames>()
+	                {
+	                    @Override
+	                    public ClosureNames emit(ICompilationUnit cu, List<ICompilerProblem> unitProblems)
+	                            throws InterruptedException, IOException
+	                    {
+	                        writeCompilationUnit(cu, emitOutputFolder, unitProblems);
+	                        ClosureNames names = new ClosureNames();
+	                        ClosureUtils.collectPropertyNamesToKeep(cu, project, names.propertyNamesToKeep);
+	                        ClosureUtils.collectSymbolNamesToExport(cu, project, names.symbolNamesToExport);
+	                        return names;
+	                    }
+	                }, problems.getProblems());
+	                for (ClosureNames names : closureNamesPerUnit)
 	                {
-                        writeCompilationUnit(cu, outputFolder);
-                        ClosureUtils.collectPropertyNamesToKeep(cu, project, closurePropNamesToKeep);
-                        ClosureUtils.collectSymbolNamesToExport(cu, project, closureSymbolNamesToExport);
+	                    closurePropNamesToKeep.addAll(names.propertyNamesToKeep);
+	                    closureSymbolNamesToExport.addAll(names.symbolNamesToExport);
 	                }
 	                File externsReportFile = googConfiguration.getExternsReport();
 	                if (externsReportFile != null)
@@ -475,6 +527,8 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 {
                     compilationSuccess = true;
                 }
+                // after publishing, which changes some of the files again
+                saveOutputManifest();
             }
         }
         catch (Exception e)
@@ -489,7 +543,96 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         return compilationSuccess && (errs.size() == 0);
     }
 
+    /**
+     * The names that {@link ClosureUtils} collects from a single compilation
+     * unit.
+     */
+    private static class ClosureNames
+    {
+        final Set<String> propertyNamesToKeep = new HashSet<String>();
+        final LinkedHashSet<String> symbolNamesToExport = new LinkedHashSet<String>();
+    }
+
+    /**
+     * Creates the scheduler that emits the compilation units. Units are
+     * emitted concurrently on the workspace's executor if
+     * <code>js-parallel-emit</code> is enabled.
+     */
+    protected JSRoyaleEmitScheduler createEmitScheduler()
+    {
+        if (config.getJsParallelEmit())
+        {
+            return new JSRoyaleEmitScheduler(project, workspace.getExecutorService(), 0);
+        }
+        return new JSRoyaleEmitScheduler(project);
+    }
+
+    /**
+     * Creates the manifest that is used to skip writing generated files that
+     * did not change, if <code>js-skip-unchanged-output</code> is enabled.
+     *
+     * @return The manifest, or <code>null</code> if every file should be
+     * written.
+     */
+    protected JSOutputManifest createOutputManifest(File outputFolder)
+    {
+        if (!config.getJsSkipUnchangedOutput())
+        {
+            return null;
+        }
+        return new JSOutputManifest(outputFolder);
+    }
+
+    /**
+     * Saves the manifest of generated files, if there is one, and reports how
+     * many files were written and skipped.
+     */
+    protected void saveOutputManifest() throws IOException
+    {
+        if (outputManifest == null)
+        {
+            return;
+        }
+        outputManifest.save();
+        if (config.isVerbose())
+        {
+            out.println(outputManifest.getWrittenCount() + " generated files written, "
+                    + outputManifest.getSkippedCount() + " unchanged files skipped");
+        }
+        outputManifest = null;
+    }
+
+    /**
+     * Creates a stream for a generated file. If there is a manifest of
+     * generated files, the file is only written if its contents changed.
+     */
+    protected OutputStream createOutputStream(File file) throws IOException
+    {
+        return createOutputStream(file, false);
+    }
+
+    /**
+     * Creates a stream for a generated file.
+     *
+     * @param alwaysWrite If <code>true</code>, the file is written even if
+     * its contents did not change.
+     */
+    protected OutputStream createOutputStream(File file, boolean alwaysWrite) throws IOException
+    {
+        if (outputManifest != null && !alwaysWrite)
+        {
+            return outputManifest.createOutputStream(file);
+        }
+        return new BufferedOutputStream(new FileOutputStream(file));
+    }
+
     protected void writeCompilationUnit(ICompilationUnit cu, File outputFolder) throws InterruptedException, IOException
+    {
+        writeCompilationUnit(cu, outputFolder, problems.getProblems());
+    }
+
+    protected void writeCompilationUnit(ICompilationUnit cu, File outputFolder,
+            List<ICompilerProblem> unitProblems) throws InterruptedException, IOException
     {
         ICompilationUnit.UnitType cuType = cu.getCompilationUnitType();
         if (cuType != ICompilationUnit.UnitType.AS_UNIT
@@ -503,7 +646,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 
         if (config.isVerbose())
         {
-            System.out.println("Compiling file: " + outputClassFile);
+            out.println("Compiling file: " + outputClassFile);
         }
 
         ICompilationUnit unit = cu;
@@ -512,30 +655,32 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         if (cuType == ICompilationUnit.UnitType.AS_UNIT)
         {
             writer = (IJSWriter) project.getBackend().createWriter(project,
-                    problems.getProblems(), unit, false);
+                    unitProblems, unit, false);
         }
         else
         {
             writer = (IJSWriter) project.getBackend().createMXMLWriter(
-                    project, problems.getProblems(), unit, false);
+                    project, unitProblems, unit, false);
         }
 
-        BufferedOutputStream out = new BufferedOutputStream(
-                new FileOutputStream(outputClassFile));
+        // the GoogDepsWriter adds requires to the main class every time the
+        // application is published, so it can't keep the file from the
+        // previous build
+        boolean alwaysWrite = cu == mainCU;
+        OutputStream jsOut = createOutputStream(outputClassFile, alwaysWrite);
 
-        BufferedOutputStream sourceMapOut = null;
+        OutputStream sourceMapOut = null;
         File outputSourceMapFile = null;
         if (project.config.getSourceMap())
         {
             outputSourceMapFile = getOutputSourceMapFile(
                     cu.getQualifiedNames().get(0), outputFolder);
-            sourceMapOut = new BufferedOutputStream(
-                    new FileOutputStream(outputSourceMapFile));
+            sourceMapOut = createOutputStream(outputSourceMapFile, alwaysWrite);
         }
         
-        writer.writeTo(out, sourceMapOut, outputSourceMapFile);
-        out.flush();
-        out.close();
+        writer.writeTo(jsOut, sourceMapOut, outputSourceMapFile);
+        jsOut.flush();
+        jsOut.close();
         if (sourceMapOut != null)
         {
             sourceMapOut.flush();
@@ -550,7 +695,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         
         if (config.isVerbose())
         {
-            System.out.println("Generating externs report: " + externsReportFile.getAbsolutePath());
+            out.println("Generating externs report: " + externsReportFile.getAbsolutePath());
         }
         
     	ArrayList<String> packageNames = new ArrayList<String>();
@@ -747,7 +892,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         }
         if (config.isVerbose())
         {
-            System.out.println("Writing externs report: " + externsReportFile.getAbsolutePath());
+            out.println("Writing externs report: " + externsReportFile.getAbsolutePath());
         }
         FileWriter fw;
 		try {
@@ -901,7 +1046,7 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
                 bundleClassName, outputFolder);
         if (config.isVerbose())
         {
-            System.out.println("Generating resource file: " + outputClassFile);
+            out.println("Generating resource file: " + outputClassFile);
         }
         FileWriter fw;
         try {
@@ -1148,6 +1293,18 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
         return targetSettings;
     }
 
+    /**
+     * Adds {@link #asFileHandler} to the project, unless it was already
+     * added by a previous build.
+     */
+    protected void addSourceFileHandler()
+    {
+        if (sourceFileHandlerProject == project)
+            return;
+        project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
+        sourceFileHandlerProject = project;
+    }
+
     /**
      * Create a new Configurator. This method may be overridden to allow
      * Configurator subclasses to be created that have custom configurations.
@@ -1167,8 +1324,9 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
      */
     protected boolean configure(final String[] args)
     {
-        project.getSourceCompilationUnitFactory().addHandler(asFileHandler);
+        addSourceFileHandler();
         project.configurator = projectConfigurator = createConfigurator();
+        targetSettings = null;
 
         try
         {
@@ -1202,7 +1360,8 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
 
             validateTargetFile();
 
-            DefinitionBase.setPerformanceCachingEnabled(!config.getWatch());
+            // the cached values are not invalidated when a file changes
+            DefinitionBase.setPerformanceCachingEnabled(!config.getWatch() && !keepWorkspaceOpen);
 
             return true;
         }
@@ -1289,6 +1448,33 @@ public class MXMLJSCRoyale implements JSCompilerEntryPoint, ProblemQueryProvider
     {
         workspace.close();
     }
+
+    @Override
+    public void setKeepWorkspaceOpen(boolean value)
+    {
+        keepWorkspaceOpen = value;
+    }
+
+    @Override
+    public void setOutputStreams(PrintStream out, PrintStream err)
+    {
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public List<RoyaleJSProject> getOpenProjects()
+    {
+        if (!keepWorkspaceOpen)
+            return Collections.emptyList();
+        return Collections.singletonList(project);
+    }
+
+    @Override
+    public void closeWorkspaces()
+    {
+        waitAndClose();
+    }
     
     public List<String> getSourceList()
     {
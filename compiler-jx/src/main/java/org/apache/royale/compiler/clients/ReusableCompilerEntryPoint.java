@@ -0,0 +1,57 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+
+/**
+ * A compiler that can keep its workspace and project open after a build, so
+ * that the next build with the same instance reuses the loaded libraries,
+ * syntax trees and scopes. Used by {@link CompileDaemon}.
+ */
+public interface ReusableCompilerEntryPoint extends JSCompilerEntryPoint
+{
+    /**
+     * If true, the workspace is not closed at the end of a build. The caller
+     * has to tell the workspace about changed files before the next build, and
+     * call {@link #closeWorkspaces()} when the compiler is no longer needed.
+     */
+    void setKeepWorkspaceOpen(boolean value);
+
+    /**
+     * Sets the streams that the messages and problems of the following builds
+     * are printed to, instead of <code>System.out</code> and
+     * <code>System.err</code>.
+     */
+    void setOutputStreams(PrintStream out, PrintStream err);
+
+    /**
+     * @return the projects that were kept open by the previous build.
+     */
+    List<RoyaleJSProject> getOpenProjects();
+
+    /**
+     * Closes the workspaces that were kept open.
+     */
+    void closeWorkspaces();
+}
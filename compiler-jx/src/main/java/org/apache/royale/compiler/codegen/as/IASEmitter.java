@@ -19,6 +19,7 @@
 
 package org.apache.royale.compiler.codegen.as;
 
+import java.io.IOException;
 import java.io.Writer;
 
 import org.apache.royale.compiler.codegen.IDocEmitter;
@@ -48,6 +49,20 @@ public interface IASEmitter extends INestingEmitter
 
     String postProcess(String output);
 
+    /**
+     * Post-processes the output like {@link #postProcess(String)}, and
+     * writes the result, so the emitter doesn't have to keep a copy of the
+     * whole result. By default, the output is copied to a string and
+     * passed to {@link #postProcess(String)}.
+     *
+     * @param output The output of the emitter.
+     * @param out Where the result is written.
+     */
+    default void postProcess(CharSequence output, Writer out) throws IOException
+    {
+        out.write(postProcess(output.toString()));
+    }
+
     void emitImport(IImportNode node);
 
     void emitPackageHeader(IPackageDefinition definition);
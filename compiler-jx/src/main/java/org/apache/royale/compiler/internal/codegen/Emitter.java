@@ -142,15 +142,23 @@ public class Emitter implements IEmitter
         {
             if (!bufferWrite)
             {
-                int newLineCount = value.length() - value.replace("\n", "").length();
-                currentLine += newLineCount;
-                if (newLineCount > 0)
+                int length = value.length();
+                int lastNewLine = -1;
+                for (int i = 0; i < length; i++)
                 {
-                    currentColumn = value.length() - value.lastIndexOf("\n") - 1;
+                    if (value.charAt(i) == '\n')
+                    {
+                        currentLine++;
+                        lastNewLine = i;
+                    }
+                }
+                if (lastNewLine != -1)
+                {
+                    currentColumn = length - lastNewLine - 1;
                 }
                 else
                 {
-                    currentColumn += value.length();
+                    currentColumn += length;
                 }
                 out.write(value);
             }
@@ -165,12 +173,11 @@ public class Emitter implements IEmitter
         }
     }
 
+    private static final IndentCache INDENTS = new IndentCache(ASEmitterTokens.INDENT.getToken());
+
     protected String getIndent(int numIndent)
     {
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < numIndent; i++)
-            sb.append(ASEmitterTokens.INDENT.getToken());
-        return sb.toString();
+        return INDENTS.get(numIndent);
     }
 
     @Override
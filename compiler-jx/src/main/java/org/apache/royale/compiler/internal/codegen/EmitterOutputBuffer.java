@@ -0,0 +1,161 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The buffer that emitters write the generated code to, wrapped by an
+ * {@link org.apache.royale.compiler.internal.codegen.as.ASFilterWriter}.
+ * <p>
+ * Unlike a {@link java.io.StringWriter}, the buffer doesn't lock for every
+ * write, and whole strings are appended in one copy instead of one char at
+ * a time. It is backed by a {@link StringBuilder}, which keeps the mostly
+ * ASCII output in one byte per char. A buffer is only used by the emitter
+ * of one compilation unit at a time.
+ * <p>
+ * The buffer is also a {@link CharSequence} of the output, so the output can
+ * be post-processed and written to a file without copying it to a string
+ * first.
+ */
+public class EmitterOutputBuffer extends Writer implements CharSequence
+{
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final int INITIAL_CAPACITY = 8192;
+
+    public EmitterOutputBuffer()
+    {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of chars that fit in the buffer before it
+     * has to grow.
+     */
+    public EmitterOutputBuffer(int capacity)
+    {
+        builder = new StringBuilder(capacity);
+    }
+
+    private final StringBuilder builder;
+
+    /**
+     * @return The number of chars that were written.
+     */
+    @Override
+    public int length()
+    {
+        return builder.length();
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return builder.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return builder.subSequence(start, end);
+    }
+
+    /**
+     * Appends a part of some output without copying it to a string, if the
+     * output is a string or an {@link EmitterOutputBuffer}.
+     *
+     * @param out Where the output is appended.
+     * @param output The output.
+     * @param start The index of the first char to append.
+     * @param end The index after the last char to append.
+     */
+    public static void append(Appendable out, CharSequence output, int start, int end) throws IOException
+    {
+        if (out instanceof Writer && output instanceof String)
+        {
+            ((Writer) out).write((String) output, start, end - start);
+        }
+        else if (out instanceof Writer && output instanceof EmitterOutputBuffer)
+        {
+            StringBuilder builder = ((EmitterOutputBuffer) output).builder;
+            char[] chars = new char[Math.min(COPY_BUFFER_SIZE, end - start)];
+            for (int i = start; i < end; i += chars.length)
+            {
+                int count = Math.min(chars.length, end - i);
+                builder.getChars(i, i + count, chars, 0);
+                ((Writer) out).write(chars, 0, count);
+            }
+        }
+        else
+        {
+            out.append(output, start, end);
+        }
+    }
+
+    @Override
+    public void write(int c)
+    {
+        builder.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len)
+    {
+        builder.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str)
+    {
+        builder.append(str);
+    }
+
+    @Override
+    public void write(String str, int off, int len)
+    {
+        if (off == 0 && len == str.length())
+        {
+            // FilterWriter.write(String) always ends up here
+            builder.append(str);
+        }
+        else
+        {
+            builder.append(str, off, off + len);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    @Override
+    public String toString()
+    {
+        return builder.toString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen;
+
+import java.util.Arrays;
+
+/**
+ * The indentation strings of an emitter, for every indentation level, so
+ * that a new string doesn't have to be built for every line.
+ * <p>
+ * The cache may be shared by emitters in several threads. Two threads that
+ * grow it at the same time build the same strings, so one of them is simply
+ * thrown away.
+ */
+public class IndentCache
+{
+    /**
+     * @param indent The indentation of one level.
+     */
+    public IndentCache(String indent)
+    {
+        this.indent = indent;
+        indents = new String[] { "" };
+    }
+
+    private final String indent;
+    private volatile String[] indents;
+
+    /**
+     * @param numIndent The indentation level.
+     * @return The indentation for the level, or an empty string if it is
+     * less than one.
+     */
+    public String get(int numIndent)
+    {
+        if (numIndent <= 0)
+            return "";
+        String[] current = indents;
+        if (numIndent < current.length)
+            return current[numIndent];
+        String[] grown = Arrays.copyOf(current, numIndent + 1);
+        for (int i = current.length; i < grown.length; i++)
+        {
+            grown[i] = grown[i - 1] + indent;
+        }
+        indents = grown;
+        return grown[numIndent];
+    }
+}
@@ -37,6 +37,7 @@ import org.apache.royale.compiler.definitions.IFunctionDefinition;
 import org.apache.royale.compiler.definitions.IPackageDefinition;
 import org.apache.royale.compiler.definitions.ITypeDefinition;
 import org.apache.royale.compiler.definitions.IVariableDefinition;
+import org.apache.royale.compiler.internal.codegen.IndentCache;
 import org.apache.royale.compiler.internal.codegen.js.utils.EmitterUtils;
 import org.apache.royale.compiler.internal.tree.as.ChainedVariableNode;
 import org.apache.royale.compiler.internal.tree.as.ContainerNode;
@@ -192,15 +193,23 @@ public class ASEmitter implements IASEmitter, IEmitter
                 }
                 else
                 {
-                    int newLineCount = value.length() - value.replace("\n", "").length();
-                    currentLine += newLineCount;
-                    if (newLineCount > 0)
+                    int length = value.length();
+                    int lastNewLine = -1;
+                    for (int i = 0; i < length; i++)
                     {
-                        currentColumn = value.length() - value.lastIndexOf("\n") - 1;
+                        if (value.charAt(i) == '\n')
+                        {
+                            currentLine++;
+                            lastNewLine = i;
+                        }
+                    }
+                    if (lastNewLine != -1)
+                    {
+                        currentColumn = length - lastNewLine - 1;
                     }
                     else
                     {
-                        currentColumn += value.length();
+                        currentColumn += length;
                     }
                     out.write(value);
                 }
@@ -216,12 +225,11 @@ public class ASEmitter implements IASEmitter, IEmitter
         }
     }
 
+    private static final IndentCache INDENTS = new IndentCache(ASEmitterTokens.INDENT.getToken());
+
     protected String getIndent(int numIndent)
     {
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < numIndent; i++)
-            sb.append(ASEmitterTokens.INDENT.getToken());
-        return sb.toString();
+        return INDENTS.get(numIndent);
     }
 
     @Override
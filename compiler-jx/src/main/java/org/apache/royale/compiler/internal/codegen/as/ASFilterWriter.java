@@ -22,6 +22,8 @@ package org.apache.royale.compiler.internal.codegen.as;
 import java.io.FilterWriter;
 import java.io.Writer;
 
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
+
 /**
  * @author Michael Schmalle
  */
@@ -33,6 +35,17 @@ public class ASFilterWriter extends FilterWriter
         super(out);
     }
 
+    /**
+     * @return The output that was written. If the writer wraps an
+     * {@link EmitterOutputBuffer}, this is the buffer itself, and not a copy.
+     */
+    public CharSequence getOutput()
+    {
+        if (out instanceof EmitterOutputBuffer)
+            return (EmitterOutputBuffer) out;
+        return out.toString();
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,319 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers a hash of every generated file in an output folder, so that
+ * files with the same contents as in the previous build are not written
+ * again. Leaving them alone keeps their timestamps, which lets file
+ * watchers, rsync and other incremental tools skip them too.
+ * <p>
+ * The manifest is stored as {@link #FILE_NAME} in the output folder. A file
+ * is only skipped if the hash of its new contents matches, and it still has
+ * the size and modification time that were recorded when it was written.
+ * That way a file that was deleted or edited by something else is always
+ * written again.
+ * <p>
+ * The hash is of the contents that were generated, but the size and
+ * modification time are recorded when the manifest is saved. Generated files
+ * may be changed after they are written, for example by the
+ * <code>GoogDepsWriter</code> when the application is published, so
+ * {@link #save()} should be called after that. A file that is skipped keeps
+ * the contents that it had after the previous build, so whatever changed it
+ * then has to recognize that it already did.
+ * <p>
+ * The streams that are returned by {@link #createOutputStream(File)} may be
+ * used from several threads at once.
+ */
+public class JSOutputManifest
+{
+    /**
+     * The name of the manifest file in the output folder.
+     */
+    public static final String FILE_NAME = ".royale-output-manifest";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * Constructor. Reads the manifest of the previous build, if there is one.
+     *
+     * @param outputFolder The folder that the generated files are written to.
+     */
+    public JSOutputManifest(File outputFolder)
+    {
+        this.outputFolder = outputFolder;
+        manifestFile = new File(outputFolder, FILE_NAME);
+        entries = new ConcurrentHashMap<String, Entry>();
+        load();
+    }
+
+    private final File outputFolder;
+    private final File manifestFile;
+    private final Map<String, Entry> entries;
+    private final Set<String> currentKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger writtenCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+
+    /**
+     * @return The number of files that were written.
+     */
+    public int getWrittenCount()
+    {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return The number of files that were skipped because they did not
+     * change.
+     */
+    public int getSkippedCount()
+    {
+        return skippedCount.get();
+    }
+
+    /**
+     * Creates a stream that collects the contents of a generated file, and
+     * writes them to disk when the stream is closed, unless they are the same
+     * as in the previous build.
+     *
+     * @param file The file to write.
+     * @return The stream to write the contents of the file to.
+     */
+    public OutputStream createOutputStream(final File file)
+    {
+        return new ByteArrayOutputStream()
+        {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException
+            {
+                if (closed)
+                    return;
+                closed = true;
+                writeFile(file, buf, count);
+            }
+        };
+    }
+
+    /**
+     * Writes a generated file, unless it has the same contents as in the
+     * previous build.
+     *
+     * @param file The file to write.
+     * @param contents The contents of the file.
+     * @return <code>true</code> if the file was written, <code>false</code>
+     * if it was skipped.
+     */
+    public boolean write(File file, byte[] contents) throws IOException
+    {
+        return writeFile(file, contents, contents.length);
+    }
+
+    private boolean writeFile(File file, byte[] contents, int length) throws IOException
+    {
+        String key = getKey(file);
+        String hash = computeHash(contents, length);
+        Entry oldEntry = entries.get(key);
+        if (oldEntry != null && oldEntry.hash.equals(hash)
+                && file.length() == oldEntry.size
+                && file.lastModified() == oldEntry.lastModified)
+        {
+            currentKeys.add(key);
+            skippedCount.incrementAndGet();
+            return false;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(contents, 0, length);
+        }
+        finally
+        {
+            out.close();
+        }
+        entries.put(key, new Entry(hash, file.length(), file.lastModified()));
+        currentKeys.add(key);
+        writtenCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Saves the manifest to the output folder. The files that were written or
+     * skipped since the manifest was created are recorded with the size and
+     * modification time that they have now. Files that no longer exist are
+     * removed from the manifest.
+     */
+    public void save() throws IOException
+    {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, Entry> entry = iterator.next();
+            File file = getFile(entry.getKey());
+            if (!file.isFile())
+            {
+                iterator.remove();
+                continue;
+            }
+            if (currentKeys.contains(entry.getKey()))
+            {
+                entry.setValue(new Entry(entry.getValue().hash, file.length(), file.lastModified()));
+            }
+        }
+
+        // sorted, so that the manifest doesn't change if nothing else does
+        Map<String, Entry> sortedEntries = new TreeMap<String, Entry>(entries);
+        if (!outputFolder.exists())
+            outputFolder.mkdirs();
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(manifestFile), StandardCharsets.UTF_8));
+        try
+        {
+            for (Map.Entry<String, Entry> entry : sortedEntries.entrySet())
+            {
+                Entry value = entry.getValue();
+                writer.write(value.hash);
+                writer.write(' ');
+                writer.write(Long.toString(value.size));
+                writer.write(' ');
+                writer.write(Long.toString(value.lastModified));
+                writer.write(' ');
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private void load()
+    {
+        if (!manifestFile.isFile())
+            return;
+        try
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(manifestFile), StandardCharsets.UTF_8));
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    String[] parts = line.split(" ", 4);
+                    if (parts.length != 4)
+                        continue;
+                    entries.put(parts[3], new Entry(parts[0],
+                            Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // a manifest that can't be read only means that every file is
+            // written again
+            entries.clear();
+        }
+        catch (NumberFormatException e)
+        {
+            entries.clear();
+        }
+    }
+
+    private String getKey(File file)
+    {
+        String outputPath = outputFolder.getAbsolutePath();
+        String path = file.getAbsolutePath();
+        if (path.startsWith(outputPath + File.separator))
+            path = path.substring(outputPath.length() + 1);
+        return path.replace('\\', '/');
+    }
+
+    private File getFile(String key)
+    {
+        File file = new File(key);
+        if (file.isAbsolute())
+            return file;
+        return new File(outputFolder, key);
+    }
+
+    private static String computeHash(byte[] contents, int length)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+        digest.update(contents, 0, length);
+        byte[] bytes = digest.digest();
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static class Entry
+    {
+        Entry(String hash, long size, long lastModified)
+        {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        final String hash;
+        final long size;
+        final long lastModified;
+    }
+}
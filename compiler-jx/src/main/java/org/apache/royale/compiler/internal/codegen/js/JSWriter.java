@@ -22,6 +22,9 @@ package org.apache.royale.compiler.internal.codegen.js;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Stack;
 
@@ -30,6 +33,7 @@ import org.apache.royale.compiler.codegen.js.IJSEmitter;
 import org.apache.royale.compiler.codegen.js.IJSWriter;
 import org.apache.royale.compiler.codegen.js.IMappingEmitter;
 import org.apache.royale.compiler.driver.js.IJSBackend;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
 import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.units.ICompilationUnit;
@@ -99,13 +103,20 @@ public class JSWriter implements IJSWriter
         
         try
         {
-            String emitted = writer.toString();
+            // the output is encoded as it is post-processed, instead of
+            // being copied to a string and then to bytes
+            Writer jsWriter = new OutputStreamWriter(jsOut, StandardCharsets.UTF_8);
+            CharSequence emitted = writer.getOutput();
             if(!isExterns)
             {
                 //nothing to post-process in externs
-                emitted = emitter.postProcess(emitted);
+                emitter.postProcess(emitted, jsWriter);
             }
-            jsOut.write(emitted.getBytes("utf8"));
+            else
+            {
+                EmitterOutputBuffer.append(jsWriter, emitted, 0, emitted.length());
+            }
+            jsWriter.flush();
         }
         catch (IOException e)
         {
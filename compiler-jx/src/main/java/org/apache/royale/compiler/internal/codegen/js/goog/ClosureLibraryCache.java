@@ -0,0 +1,388 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.goog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.javascript.jscomp.SourceFile;
+
+/**
+ * Keeps the Closure library files that are extracted from the classpath for
+ * release builds, in the order in which they are passed to the Closure
+ * compiler.
+ * <p>
+ * The prepared library is stored in a directory named after a hash of the
+ * compiler version, the jar that contains the library, the white-list of
+ * files that are extracted and the entry points that the files are sorted
+ * by. Nothing that goes into the hash changes between builds with the same
+ * compiler, so all the projects that are built on a machine share the
+ * same prepared library, and the files only have to be extracted and
+ * sorted once. Prepared libraries are also kept in memory, for builds that
+ * run one after the other in the same JVM.
+ * <p>
+ * The directory is {@code .royale/closure-library} in the home directory of
+ * the user, unless {@link #DIRECTORY_PROPERTY} is set. Nothing is cached if
+ * the directory belongs to another user, because the prepared libraries in
+ * it are passed to the Closure compiler without being checked.
+ */
+public class ClosureLibraryCache
+{
+    /**
+     * The system property that overrides the location of the cache.
+     */
+    public static final String DIRECTORY_PROPERTY = "royale.closureLibraryCache";
+
+    /**
+     * The file that lists the sorted files of a prepared library. It is
+     * written last, so a library without it is incomplete.
+     */
+    static final String ORDER_FILE_NAME = "order.txt";
+
+    /**
+     * The file that is written to an output folder that a prepared library
+     * was copied to, with the key of the library.
+     */
+    static final String MARKER_FILE_NAME = ".royale-closure-library";
+
+    private static final String FILES_DIRECTORY_NAME = "closure";
+
+    /**
+     * Changes when the layout of the cache changes.
+     */
+    private static final String FORMAT_VERSION = "1";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * Prepares the library, when it is not in the cache yet.
+     */
+    public interface IPreparer
+    {
+        /**
+         * @return All the files of the library.
+         */
+        List<SourceFile> getSourceFiles() throws IOException;
+
+        /**
+         * Sorts the files of the library.
+         *
+         * @param directory The directory that the files were written to.
+         * @param sourceFiles All the files of the library.
+         * @return The files that are passed to the Closure compiler, in order.
+         * @throws IOException if the files can't be sorted. Nothing is added
+         * to the cache then.
+         */
+        List<SourceFile> sort(File directory, List<SourceFile> sourceFiles) throws IOException;
+    }
+
+    /**
+     * A prepared library.
+     */
+    public static class Entry
+    {
+        private Entry(String key, File directory, String[] names, String[] codes)
+        {
+            this.key = key;
+            this.directory = directory;
+            this.names = names;
+            this.codes = codes;
+        }
+
+        private final String key;
+        private final File directory;
+        private final String[] names;
+        private final String[] codes;
+
+        /**
+         * @return The hash that identifies the library.
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return The directory with all the files of the library.
+         */
+        public File getDirectory()
+        {
+            return directory;
+        }
+
+        /**
+         * @return New source files for the sorted files of the library.
+         */
+        public List<SourceFile> getSourceFiles()
+        {
+            List<SourceFile> sourceFiles = new ArrayList<SourceFile>(names.length);
+            for (int i = 0; i < names.length; i++)
+            {
+                sourceFiles.add(new JarSourceFile(names[i], codes[i], false));
+            }
+            return sourceFiles;
+        }
+
+        /**
+         * Copies all the files of the library to a folder, unless the same
+         * library was copied there before.
+         *
+         * @param folder The folder to copy the files to.
+         * @return <code>true</code> if the files were copied.
+         */
+        public boolean copyTo(File folder) throws IOException
+        {
+            File markerFile = new File(folder, MARKER_FILE_NAME);
+            if (markerFile.isFile()
+                    && key.equals(FileUtils.readFileToString(markerFile, StandardCharsets.UTF_8)))
+            {
+                return false;
+            }
+            FileUtils.copyDirectory(directory, folder);
+            FileUtils.write(markerFile, key, StandardCharsets.UTF_8);
+            return true;
+        }
+    }
+
+    /**
+     * Forgets that a prepared library was copied to a folder, so it is
+     * copied again the next time. Call this before other files are written
+     * to the folder.
+     *
+     * @param folder The folder that a library may have been copied to.
+     */
+    public static void forgetCopy(File folder)
+    {
+        FileUtils.deleteQuietly(new File(folder, MARKER_FILE_NAME));
+    }
+
+    /**
+     * The prepared libraries in memory, by directory.
+     */
+    private static final Cache<String, Entry> entries = CacheBuilder.newBuilder()
+            .maximumSize(4)
+            .softValues()
+            .<String, Entry>build();
+
+    /**
+     * Hashes of the jars that were read, by path, size and modification time.
+     */
+    private static final Map<String, String> jarHashes = new ConcurrentHashMap<String, String>();
+
+    /**
+     * @return The cache in the default directory.
+     */
+    public static ClosureLibraryCache getDefault()
+    {
+        String path = System.getProperty(DIRECTORY_PROPERTY);
+        if (path != null)
+            return new ClosureLibraryCache(new File(path));
+        return new ClosureLibraryCache(new File(System.getProperty("user.home"), ".royale/closure-library"));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to keep the prepared libraries in.
+     */
+    public ClosureLibraryCache(File directory)
+    {
+        this.directory = directory;
+    }
+
+    private final File directory;
+
+    /**
+     * Gets a prepared library, and prepares it if it is not in the cache.
+     *
+     * @param jarFile The jar that contains the library.
+     * @param whiteList The files of the jar that belong to the library.
+     * @param entryPoints The names that the files are sorted by.
+     * @param preparer Prepares the library if it is not in the cache.
+     * @return The prepared library, or <code>null</code> if it could not be
+     * written to the cache, or if the directory of the cache belongs to
+     * another user.
+     */
+    public Entry get(File jarFile, Properties whiteList, List<String> entryPoints,
+            IPreparer preparer) throws IOException
+    {
+        if (!org.apache.royale.utils.FileUtils.createPrivateDirectory(directory))
+            return null;
+        String key = getKey(jarFile, whiteList, entryPoints);
+        File entryDirectory = new File(directory, key);
+        Entry entry = entries.getIfPresent(entryDirectory.getAbsolutePath());
+        if (entry != null && entry.getDirectory().isDirectory())
+            return entry;
+
+        entry = read(key, entryDirectory);
+        if (entry == null)
+            entry = prepare(key, entryDirectory, preparer);
+        if (entry != null)
+            entries.put(entryDirectory.getAbsolutePath(), entry);
+        return entry;
+    }
+
+    private Entry prepare(String key, File entryDirectory, IPreparer preparer) throws IOException
+    {
+        // Prepare the library next to its final location, and move it there
+        // when it is complete, so builds that run at the same time never see
+        // half of a library.
+        File tempDirectory = new File(directory, key + ".tmp" + System.nanoTime());
+        File filesDirectory = new File(tempDirectory, FILES_DIRECTORY_NAME);
+        if (!filesDirectory.mkdirs())
+            return null;
+        try
+        {
+            List<SourceFile> sourceFiles = preparer.getSourceFiles();
+            for (SourceFile sourceFile : sourceFiles)
+            {
+                FileUtils.write(new File(filesDirectory, sourceFile.getName()),
+                        sourceFile.getCode(), StandardCharsets.UTF_8);
+            }
+            List<String> names = new ArrayList<String>();
+            for (SourceFile sourceFile : preparer.sort(filesDirectory, sourceFiles))
+            {
+                if (sourceFile != null)
+                    names.add(sourceFile.getName());
+            }
+            FileUtils.writeLines(new File(tempDirectory, ORDER_FILE_NAME), "UTF-8", names, "\n");
+            if (!tempDirectory.renameTo(entryDirectory))
+            {
+                // another build prepared the same library first
+                FileUtils.deleteDirectory(tempDirectory);
+            }
+        }
+        catch (IOException e)
+        {
+            FileUtils.deleteQuietly(tempDirectory);
+            throw e;
+        }
+        return read(key, entryDirectory);
+    }
+
+    private static Entry read(String key, File entryDirectory) throws IOException
+    {
+        File orderFile = new File(entryDirectory, ORDER_FILE_NAME);
+        if (!orderFile.isFile())
+            return null;
+        File filesDirectory = new File(entryDirectory, FILES_DIRECTORY_NAME);
+        List<String> names = FileUtils.readLines(orderFile, StandardCharsets.UTF_8);
+        String[] codes = new String[names.size()];
+        for (int i = 0; i < codes.length; i++)
+        {
+            File file = new File(filesDirectory, names.get(i));
+            if (!file.isFile())
+                return null;
+            codes[i] = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        }
+        return new Entry(key, filesDirectory, names.toArray(new String[names.size()]), codes);
+    }
+
+    private static String getKey(File jarFile, Properties whiteList, List<String> entryPoints) throws IOException
+    {
+        MessageDigest digest = createDigest();
+        update(digest, FORMAT_VERSION);
+        String version = ClosureLibraryCache.class.getPackage().getImplementationVersion();
+        update(digest, version != null ? version : "");
+        update(digest, getJarHash(jarFile));
+        for (String name : new TreeSet<String>(whiteList.stringPropertyNames()))
+        {
+            update(digest, name);
+        }
+        update(digest, "");
+        for (String entryPoint : entryPoints)
+        {
+            update(digest, entryPoint);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String getJarHash(File jarFile) throws IOException
+    {
+        String jarKey = jarFile.getAbsolutePath() + "|" + jarFile.length() + "|" + jarFile.lastModified();
+        String hash = jarHashes.get(jarKey);
+        if (hash == null)
+        {
+            MessageDigest digest = createDigest();
+            InputStream in = new FileInputStream(jarFile);
+            try
+            {
+                byte[] buffer = new byte[65536];
+                int n;
+                while ((n = in.read(buffer)) != -1)
+                {
+                    digest.update(buffer, 0, n);
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            hash = toHex(digest.digest());
+            jarHashes.put(jarKey, hash);
+        }
+        return hash;
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+}
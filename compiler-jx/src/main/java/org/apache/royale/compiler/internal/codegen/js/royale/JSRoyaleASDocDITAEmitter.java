@@ -24,6 +24,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -43,6 +44,8 @@ import org.apache.royale.compiler.definitions.IInterfaceDefinition;
 import org.apache.royale.compiler.definitions.IPackageDefinition;
 import org.apache.royale.compiler.definitions.IParameterDefinition;
 import org.apache.royale.compiler.definitions.metadata.IMetaTag;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
+import org.apache.royale.compiler.internal.codegen.IndentCache;
 import org.apache.royale.compiler.internal.codegen.mxml.royale.MXMLRoyaleASDocEmitter;
 import org.apache.royale.compiler.internal.definitions.AccessorDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
@@ -83,6 +86,12 @@ public class JSRoyaleASDocDITAEmitter extends JSRoyaleEmitter implements IJSRoya
     	return output;
     }
 
+    @Override
+    public void postProcess(CharSequence output, Writer out) throws IOException
+    {
+        EmitterOutputBuffer.append(out, output, 0, output.length());
+    }
+
     public JSRoyaleASDocDITAEmitter(FilterWriter out)
     {
         super(out);
@@ -94,13 +103,12 @@ public class JSRoyaleASDocDITAEmitter extends JSRoyaleEmitter implements IJSRoya
         write(JSRoyaleEmitterTokens.INDENT);
     }
 
+    private static final IndentCache INDENTS = new IndentCache(JSRoyaleEmitterTokens.INDENT.getToken());
+
     @Override
     protected String getIndent(int numIndent)
     {
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < numIndent; i++)
-            sb.append(JSRoyaleEmitterTokens.INDENT.getToken());
-        return sb.toString();
+        return INDENTS.get(numIndent);
     }
     
     @Override
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -43,6 +44,8 @@ import org.apache.royale.compiler.definitions.IParameterDefinition;
 import org.apache.royale.compiler.definitions.ITypeDefinition;
 import org.apache.royale.compiler.definitions.metadata.IDeprecationInfo;
 import org.apache.royale.compiler.definitions.references.INamespaceReference;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
+import org.apache.royale.compiler.internal.codegen.IndentCache;
 import org.apache.royale.compiler.internal.codegen.mxml.royale.MXMLRoyaleASDocEmitter;
 import org.apache.royale.compiler.internal.definitions.AccessorDefinition;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
@@ -86,6 +89,12 @@ public class JSRoyaleASDocEmitter extends JSRoyaleEmitter implements IJSRoyaleAS
     	return output;
     }
 
+    @Override
+    public void postProcess(CharSequence output, Writer out) throws IOException
+    {
+        EmitterOutputBuffer.append(out, output, 0, output.length());
+    }
+
     public JSRoyaleASDocEmitter(FilterWriter out)
     {
         super(out);
@@ -97,13 +106,12 @@ public class JSRoyaleASDocEmitter extends JSRoyaleEmitter implements IJSRoyaleAS
         write(JSRoyaleEmitterTokens.INDENT);
     }
 
+    private static final IndentCache INDENTS = new IndentCache(JSRoyaleEmitterTokens.INDENT.getToken());
+
     @Override
     protected String getIndent(int numIndent)
     {
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < numIndent; i++)
-            sb.append(JSRoyaleEmitterTokens.INDENT.getToken());
-        return sb.toString();
+        return INDENTS.get(numIndent);
     }
     
     @Override
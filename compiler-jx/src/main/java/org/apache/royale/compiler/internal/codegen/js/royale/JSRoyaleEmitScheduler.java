@@ -0,0 +1,388 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.royale;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.targets.ITarget.TargetType;
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Runs the JavaScript emission of a list of compilation units, either one
+ * after another on the calling thread, or concurrently on the workspace's
+ * {@link ExecutorService}.
+ * <p>
+ * The concurrent mode produces the same output as the serial one. Every
+ * unit gets its own problem list, and its own list for the problems that the
+ * emitters report to the project, and results and problems are handed back
+ * in the order of the units. The only global state that the emitters both
+ * write and read is {@link RoyaleJSProject#needLanguage}: the main
+ * compilation unit of an application (and every unit of a library) only
+ * requires Language if an earlier unit already set that flag. Such a unit
+ * is emitted on the calling thread once all of the units before it are
+ * done, and before any of the units after it are started. Once the flag is
+ * set it can't change anymore, so from then on every unit may run
+ * concurrently. As a consequence, a library is emitted serially until the
+ * first of its units that requires Language, and entirely serially if none
+ * of them does.
+ * <p>
+ * {@link RoyaleJSProject#needXML} is read by every unit too, but it is
+ * only set while dependencies are added during the build, so it is already
+ * final when emission starts.
+ */
+public class JSRoyaleEmitScheduler
+{
+    /**
+     * The work to do for a single compilation unit.
+     */
+    public interface IEmitTask<T>
+    {
+        /**
+         * Emits a compilation unit.
+         *
+         * @param cu The compilation unit to emit.
+         * @param problems The list to add any problems to. When emitting
+         * concurrently, it is only used by the thread that is emitting this
+         * unit.
+         * @return A result that is returned from
+         * {@link JSRoyaleEmitScheduler#emit(List, IEmitTask, List)}.
+         */
+        T emit(ICompilationUnit cu, List<ICompilerProblem> problems)
+                throws InterruptedException, IOException;
+    }
+
+    /**
+     * Receives the results of an {@link IEmitTask} on the thread that called
+     * {@link JSRoyaleEmitScheduler#emit(List, IEmitTask, List, IEmitResultHandler)}.
+     */
+    public interface IEmitResultHandler<T>
+    {
+        void handle(ICompilationUnit cu, T result)
+                throws InterruptedException, IOException;
+    }
+
+    /**
+     * Constructor for serial emission.
+     *
+     * @param project The project that the compilation units belong to.
+     */
+    public JSRoyaleEmitScheduler(RoyaleJSProject project)
+    {
+        this(project, null, 1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param project The project that the compilation units belong to.
+     * @param executorService The executor to run the tasks on. If
+     * <code>null</code>, the tasks are run on the calling thread.
+     * @param maxConcurrency The maximum number of tasks in flight at once.
+     * Pass 0 or less to use the size of the executor's pool.
+     */
+    public JSRoyaleEmitScheduler(RoyaleJSProject project,
+            ExecutorService executorService, int maxConcurrency)
+    {
+        this.project = project;
+        this.executorService = executorService;
+        if (maxConcurrency <= 0)
+        {
+            if (executorService instanceof ThreadPoolExecutor)
+                maxConcurrency = ((ThreadPoolExecutor) executorService).getMaximumPoolSize();
+            else
+                maxConcurrency = Runtime.getRuntime().availableProcessors();
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    private final RoyaleJSProject project;
+    private final ExecutorService executorService;
+    private final int maxConcurrency;
+
+    /**
+     * @return <code>true</code> if tasks will be run concurrently.
+     */
+    public boolean isParallel()
+    {
+        return executorService != null && maxConcurrency > 1;
+    }
+
+    /**
+     * Runs a task for every compilation unit.
+     *
+     * @param units The compilation units, in emission order.
+     * @param task The task to run for each unit.
+     * @param problems The list to add the problems of all units to, in the
+     * order of the units.
+     * @return The results of the task, in the order of the units.
+     */
+    public <T> List<T> emit(List<ICompilationUnit> units, IEmitTask<T> task,
+            List<ICompilerProblem> problems)
+            throws InterruptedException, IOException
+    {
+        final List<T> results = new ArrayList<T>(units.size());
+        emit(units, task, problems, new IEmitResultHandler<T>()
+        {
+            @Override
+            public void handle(ICompilationUnit cu, T result)
+            {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Runs a task for every compilation unit, and passes each result to a
+     * handler on the calling thread, in the order of the units. A result is
+     * handed over as soon as it and all of the results before it are
+     * available, so the results don't need to be kept in memory until the
+     * last unit is done.
+     *
+     * @param units The compilation units, in emission order.
+     * @param task The task to run for each unit.
+     * @param problems The list to add the problems of all units to, in the
+     * order of the units.
+     * @param handler The handler for the results.
+     */
+    public <T> void emit(List<ICompilationUnit> units, IEmitTask<T> task,
+            List<ICompilerProblem> problems, IEmitResultHandler<T> handler)
+            throws InterruptedException, IOException
+    {
+        if (!isParallel())
+        {
+            for (ICompilationUnit cu : units)
+            {
+                handler.handle(cu, task.emit(cu, problems));
+            }
+            return;
+        }
+
+        // some emitters report problems to the project instead of the
+        // walker, so they are collected per unit too
+        Collection<ICompilerProblem> projectProblems = project.getProblems();
+        UnitProjectProblems unitProjectProblems = new UnitProjectProblems();
+        project.setProblems(unitProjectProblems);
+
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<T>> futures = new ArrayList<Future<T>>(units.size());
+        List<List<ICompilerProblem>> problemsPerUnit = new ArrayList<List<ICompilerProblem>>(units.size());
+        List<List<ICompilerProblem>> projectProblemsPerUnit = new ArrayList<List<ICompilerProblem>>(units.size());
+        int handled = 0;
+        try
+        {
+            for (ICompilationUnit cu : units)
+            {
+                List<ICompilerProblem> unitProblems = new ArrayList<ICompilerProblem>();
+                problemsPerUnit.add(unitProblems);
+                List<ICompilerProblem> unitProjectProblemList = new ArrayList<ICompilerProblem>();
+                projectProblemsPerUnit.add(unitProjectProblemList);
+                Callable<T> callable = createCallable(task, cu, unitProblems,
+                        unitProjectProblems, unitProjectProblemList, permits);
+                if (dependsOnEmitOrder(cu) && !project.needLanguage)
+                {
+                    awaitAll(futures);
+                    permits.acquire();
+                    FutureTask<T> future = new FutureTask<T>(callable);
+                    future.run();
+                    futures.add(future);
+                }
+                else
+                {
+                    permits.acquire();
+                    futures.add(executorService.submit(callable));
+                }
+                handled = handleResults(units, futures, problemsPerUnit, handled,
+                        false, problems, handler);
+            }
+            handleResults(units, futures, problemsPerUnit, handled,
+                    true, problems, handler);
+        }
+        finally
+        {
+            // never leave tasks running behind the caller's back
+            awaitAll(futures);
+            project.setProblems(projectProblems);
+            if (projectProblems != null)
+            {
+                for (List<ICompilerProblem> unitProjectProblemList : projectProblemsPerUnit)
+                {
+                    projectProblems.addAll(unitProjectProblemList);
+                }
+                projectProblems.addAll(unitProjectProblems.otherProblems);
+            }
+        }
+    }
+
+    /**
+     * Hands the results that are available over to the handler, in order.
+     *
+     * @return The index of the first unit that hasn't been handled yet.
+     */
+    private static <T> int handleResults(List<ICompilationUnit> units,
+            List<Future<T>> futures, List<List<ICompilerProblem>> problemsPerUnit,
+            int next, boolean wait, List<ICompilerProblem> problems,
+            IEmitResultHandler<T> handler) throws InterruptedException, IOException
+    {
+        while (next < futures.size() && (wait || futures.get(next).isDone()))
+        {
+            T result;
+            try
+            {
+                result = futures.get(next).get();
+            }
+            catch (ExecutionException e)
+            {
+                problems.addAll(problemsPerUnit.get(next));
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                if (cause instanceof InterruptedException)
+                    throw (InterruptedException) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new RuntimeException(cause);
+            }
+            problems.addAll(problemsPerUnit.get(next));
+            // let go of the result once it's handled
+            futures.set(next, null);
+            problemsPerUnit.set(next, null);
+            handler.handle(units.get(next), result);
+            next++;
+        }
+        return next;
+    }
+
+    /**
+     * Determines if the output of a compilation unit depends on the units
+     * that were emitted before it. Mirrors the conditions in
+     * <code>PackageHeaderEmitter</code> and <code>MXMLRoyaleEmitter</code>
+     * that check {@link RoyaleJSProject#needLanguage}.
+     */
+    private boolean dependsOnEmitOrder(ICompilationUnit cu)
+    {
+        boolean makingSWC = project.getSWFTarget() != null &&
+                project.getSWFTarget().getTargetType() == TargetType.SWC;
+        if (makingSWC)
+            return true;
+        return project.mainCU != null
+                && cu.getName().equals(project.mainCU.getName());
+    }
+
+    private static <T> Callable<T> createCallable(final IEmitTask<T> task,
+            final ICompilationUnit cu, final List<ICompilerProblem> unitProblems,
+            final UnitProjectProblems unitProjectProblems,
+            final List<ICompilerProblem> unitProjectProblemList,
+            final Semaphore permits)
+    {
+        return new Callable<T>()
+        {
+            @Override
+            public T call() throws Exception
+            {
+                unitProjectProblems.current.set(unitProjectProblemList);
+                try
+                {
+                    return task.emit(cu, unitProblems);
+                }
+                finally
+                {
+                    unitProjectProblems.current.remove();
+                    permits.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Takes the place of the project's problems while units are emitted
+     * concurrently. Problems are added to the list of the unit that the
+     * current thread is emitting, so that they can be added to the project
+     * in the order of the units. A thread only sees the problems of its own
+     * unit.
+     */
+    private static class UnitProjectProblems extends AbstractCollection<ICompilerProblem>
+    {
+        final ThreadLocal<List<ICompilerProblem>> current = new ThreadLocal<List<ICompilerProblem>>();
+
+        /**
+         * Problems that are added by threads that aren't emitting a unit.
+         */
+        final List<ICompilerProblem> otherProblems = Collections.synchronizedList(new ArrayList<ICompilerProblem>());
+
+        private List<ICompilerProblem> getList()
+        {
+            List<ICompilerProblem> list = current.get();
+            return list != null ? list : otherProblems;
+        }
+
+        @Override
+        public boolean add(ICompilerProblem problem)
+        {
+            return getList().add(problem);
+        }
+
+        @Override
+        public Iterator<ICompilerProblem> iterator()
+        {
+            return getList().iterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return getList().size();
+        }
+    }
+
+    private static <T> void awaitAll(List<Future<T>> futures) throws InterruptedException
+    {
+        for (Future<T> future : futures)
+        {
+            if (future == null)
+                continue;
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                // reported in order once all units are done
+            }
+        }
+    }
+}
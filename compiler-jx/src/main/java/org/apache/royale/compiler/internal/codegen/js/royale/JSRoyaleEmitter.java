@@ -22,6 +22,7 @@ package org.apache.royale.compiler.internal.codegen.js.royale;
 import java.io.File;
 import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -49,6 +50,8 @@ import org.apache.royale.compiler.definitions.metadata.IMetaTagAttribute;
 import org.apache.royale.compiler.definitions.references.INamespaceResolvedReference;
 import org.apache.royale.compiler.embedding.EmbedAttribute;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
+import org.apache.royale.compiler.internal.codegen.IndentCache;
 import org.apache.royale.compiler.internal.codegen.as.ASEmitterTokens;
 import org.apache.royale.compiler.internal.codegen.js.JSEmitter;
 import org.apache.royale.compiler.internal.codegen.js.JSEmitterTokens;
@@ -101,7 +104,6 @@ import org.apache.royale.compiler.tree.ASTNodeID;
 import org.apache.royale.compiler.tree.as.*;
 import org.apache.royale.compiler.utils.ASNodeUtils;
 
-import com.google.common.base.Joiner;
 import org.apache.royale.compiler.utils.NativeUtils;
 import org.apache.royale.utils.FilenameNormalization;
 
@@ -155,7 +157,45 @@ public class JSRoyaleEmitter extends JSEmitter implements IJSRoyaleEmitter
     {
         output = super.postProcess(output);
 
-    	String[] lines = output.split("\n");
+        StringBuilder result = new StringBuilder(output.length() + 256);
+        try
+        {
+            writePostProcessed(output, result);
+        }
+        catch (IOException e)
+        {
+            // a StringBuilder doesn't throw
+            throw new RuntimeException(e);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public void postProcess(CharSequence output, Writer out) throws IOException
+    {
+        writePostProcessed(output, out);
+    }
+
+    /**
+     * Adds the requires that were found to be missing during emission to
+     * the header of the output, and writes the result. Only the lines up to
+     * the end of the requires are looked at, the rest of the output is
+     * copied as it is. Like <code>String.split()</code> did before, trailing
+     * new lines are dropped.
+     */
+    private void writePostProcessed(CharSequence output, Appendable out) throws IOException
+    {
+        int end = output.length();
+        while (end > 0 && output.charAt(end - 1) == '\n')
+        {
+            end--;
+        }
+        boolean hasLines = end > 0 || output.length() == 0;
+        int lineStart = 0;
+        // the start of the lines after the requires, or -1 if all lines are
+        // in finalLines
+        int tailStart = -1;
+
     	ArrayList<String> finalLines = new ArrayList<String>();
         boolean foundLanguage = false;
         boolean foundXML = false;
@@ -164,10 +204,15 @@ public class JSRoyaleEmitter extends JSEmitter implements IJSRoyaleEmitter
     	boolean stillSearching = true;
         int addIndex = -1;
         int provideIndex = -1;
-        int len = lines.length;
-    	for (int i = 0; i < len; i++)
+    	for (int i = 0; hasLines; i++)
     	{
-            String line = lines[i];
+            int lineEnd = indexOfNewLine(output, lineStart, end);
+            boolean lastLine = lineEnd == -1;
+            if (lastLine)
+            {
+                lineEnd = end;
+            }
+            String line = output.subSequence(lineStart, lineEnd).toString();
     		if (stillSearching)
     		{
                 if (provideIndex == -1 || !sawRequires)
@@ -209,7 +254,7 @@ public class JSRoyaleEmitter extends JSEmitter implements IJSRoyaleEmitter
                     }
                     */
 	    		}
-	    		else if (sawRequires || i == len - 1)
+	    		else if (sawRequires || lastLine)
                 {
                     stillSearching = false;
 
@@ -296,6 +341,16 @@ public class JSRoyaleEmitter extends JSEmitter implements IJSRoyaleEmitter
                 }
     		}
     		finalLines.add(line);
+            if (lastLine)
+            {
+                break;
+            }
+            lineStart = lineEnd + 1;
+            if (!stillSearching)
+            {
+                tailStart = lineStart;
+                break;
+            }
     	}
 		if (staticUsedNames.size() > 0)
 		{
@@ -314,7 +369,31 @@ public class JSRoyaleEmitter extends JSEmitter implements IJSRoyaleEmitter
             addLineToMappings(provideIndex);
 		}
 
-    	return Joiner.on("\n").join(finalLines);
+        for (int i = 0; i < finalLines.size(); i++)
+        {
+            if (i > 0)
+            {
+                out.append('\n');
+            }
+            out.append(finalLines.get(i));
+        }
+        if (tailStart != -1)
+        {
+            out.append('\n');
+            EmitterOutputBuffer.append(out, output, tailStart, end);
+        }
+    }
+
+    private static int indexOfNewLine(CharSequence output, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            if (output.charAt(i) == '\n')
+            {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public String formatGetter(String name) {
@@ -417,13 +496,12 @@ public class JSRoyaleEmitter extends JSEmitter implements IJSRoyaleEmitter
         write(JSRoyaleEmitterTokens.INDENT);
     }
 
+    private static final IndentCache INDENTS = new IndentCache(JSRoyaleEmitterTokens.INDENT.getToken());
+
     @Override
     protected String getIndent(int numIndent)
     {
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < numIndent; i++)
-            sb.append(JSRoyaleEmitterTokens.INDENT.getToken());
-        return sb.toString();
+        return INDENTS.get(numIndent);
     }
 
     @Override
@@ -37,6 +37,7 @@ import org.apache.royale.compiler.definitions.IDefinition;
 import org.apache.royale.compiler.definitions.metadata.IMetaTag;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
 import org.apache.royale.compiler.internal.codegen.js.JSPublisher;
+import org.apache.royale.compiler.internal.codegen.js.goog.ClosureLibraryCache;
 import org.apache.royale.compiler.internal.codegen.js.goog.JarSourceFile;
 import org.apache.royale.compiler.internal.css.CSSArrayPropertyValue;
 import org.apache.royale.compiler.internal.css.CSSFontFace;
@@ -110,13 +111,20 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
     private List<String> additionalHTML = new ArrayList<String>();
     private Set<String> closurePropertyNamesToKeep;
     private Set<String> closureSymbolNamesToExport;
+    private GoogDepsWriter googDepsWriter;
 
     private GoogDepsWriter getGoogDepsWriter(File intermediateDir, 
     										String mainClassQName, 
     										JSGoogConfiguration googConfiguration, 
     										List<ISWC> swcs)
     {
-    	return new GoogDepsWriter(intermediateDir, mainClassQName, googConfiguration, swcs);
+    	// in watch mode, publish() is called again after every change, so keep
+    	// the writer around to avoid scanning the files that didn't change
+    	if (googDepsWriter == null)
+    		googDepsWriter = new GoogDepsWriter(intermediateDir, mainClassQName, googConfiguration, swcs);
+    	else
+    		googDepsWriter.invalidate();
+    	return googDepsWriter;
     }
 
     @Override
@@ -205,6 +213,7 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
     {
         // The "intermediate" is the "js-debug" output.
         final File intermediateDir = outputFolder;
+        additionalHTML.clear();
 
         // The source directory is the source path entry containing the Main class.
         List<File> sourcePaths = project.getSourcePath();
@@ -348,6 +357,11 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
         // read the content in order to dump it to the intermediate, we can just keep it
         // and eventually use it in case of a release build.
         List<SourceFile> closureSourceFiles = null;
+        boolean closureSourceFilesPrepared = false;
+        final List<String> closureEntryPoints = new ArrayList<String>();
+        closureEntryPoints.add("goog.events.EventTarget");
+        closureEntryPoints.add("goog.html.sanitizer.HtmlSanitizer");
+        File closureOutputDir = new File(intermediateDir, "library/closure");
 
         // If the closure lib dir is explicitly set, use that directory. If it
         // is not set, check if its content is available in the classpath. If
@@ -355,17 +369,47 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
         if (!googConfiguration.isClosureLibSet())
         {
             // Check if the "goog/deps.js" is available in the classpath.
-            File closureLibraryJar = getJarThatContainsClasspathResources("goog/deps.js");
+            final File closureLibraryJar = getJarThatContainsClasspathResources("goog/deps.js");
             if (closureLibraryJar != null)
             {
                 // We don't want to add all files to the classpath, so we only output the
                 // resources contained in 'closure-whitelist.properties' to the output.
-                Properties whiteList = new Properties();
+                final Properties whiteList = new Properties();
                 whiteList.load(Thread.currentThread().getContextClassLoader().getResourceAsStream(
                         "royale/closure-whitelist.properties"));
 
-                // Add the closure files from classpath.
-                closureSourceFiles = getClasspathResources(closureLibraryJar, whiteList);
+                // The files from the classpath are the same for every build with this
+                // compiler, so they are extracted and sorted once, and then reused.
+                ClosureLibraryCache.Entry preparedClosureLibrary = ClosureLibraryCache.getDefault().get(
+                        closureLibraryJar, whiteList, closureEntryPoints, new ClosureLibraryCache.IPreparer()
+                        {
+                            @Override
+                            public List<SourceFile> getSourceFiles() throws IOException
+                            {
+                                return getClasspathResources(closureLibraryJar, whiteList);
+                            }
+
+                            @Override
+                            public List<SourceFile> sort(File directory, List<SourceFile> sourceFiles) throws IOException
+                            {
+                                // without the dependencies the files would be cached unsorted
+                                List<String> deps = readClosureDeps(directory.getPath() + "/", sourceFiles);
+                                return closureFilesInOrder(sourceFiles, deps, closureEntryPoints);
+                            }
+                        });
+                if (preparedClosureLibrary != null)
+                {
+                    // Without a copy of the closure lib files in the intermediate directory
+                    // the application will not be able to run.
+                    preparedClosureLibrary.copyTo(closureOutputDir);
+                    closureSourceFiles = preparedClosureLibrary.getSourceFiles();
+                    closureSourceFilesPrepared = true;
+                }
+                else
+                {
+                    // Add the closure files from classpath.
+                    closureSourceFiles = getClasspathResources(closureLibraryJar, whiteList);
+                }
             }
         }
         if (closureSourceFiles == null)
@@ -390,16 +434,18 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
             throw new RuntimeException(
                     "Parameter 'closure-lib' not specified and closure resources not available in classpath.");
         }
-        // Dump a copy of the closure lib files to the intermediate directory. Without this
-        // the application will not be able to run.
-        for(SourceFile closureSourceFile : closureSourceFiles) {
-            FileUtils.write(new File(new File(intermediateDir, "library/closure"),
-                    closureSourceFile.getName()), closureSourceFile.getCode(), Charset.forName("utf8"));
+        if (!closureSourceFilesPrepared)
+        {
+            // the files in the intermediate directory don't match a prepared library anymore
+            ClosureLibraryCache.forgetCopy(closureOutputDir);
+            // Dump a copy of the closure lib files to the intermediate directory. Without this
+            // the application will not be able to run.
+            for(SourceFile closureSourceFile : closureSourceFiles) {
+                FileUtils.write(new File(closureOutputDir,
+                        closureSourceFile.getName()), closureSourceFile.getCode(), Charset.forName("utf8"));
+            }
+            closureSourceFiles = closureFilesInOrder(intermediateDir + "/library/closure/", closureSourceFiles, closureEntryPoints);
         }
-        List<String> closureEntryPoints = new ArrayList<String>();
-        closureEntryPoints.add("goog.events.EventTarget");
-        closureEntryPoints.add("goog.html.sanitizer.HtmlSanitizer");
-        closureSourceFiles = closureFilesInOrder(intermediateDir + "/library/closure/", closureSourceFiles, closureEntryPoints);
 
 
         /////////////////////////////////////////////////////////////////////////////////
@@ -628,27 +674,40 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
 
     protected List<SourceFile> closureFilesInOrder(String path, List<SourceFile> files, List<String> entryPoints)
     {
-    	ArrayList<String> sortedFiles = new ArrayList<String>();
-    	HashMap<String, SourceFile> fileMap = new HashMap<String, SourceFile>();
+		List<String> deps;
+        try
+        {
+            deps = readClosureDeps(path, files);
+        }
+        catch (IOException e)
+        {
+            // nothing to see, move along...
+            deps = new ArrayList<String>();
+        }
+        return closureFilesInOrder(files, deps, entryPoints);
+    }
+
+    /**
+     * Reads the lines of goog/deps.js that declare dependencies.
+     *
+     * @throws IOException if there is no goog/deps.js, or it can't be read.
+     */
+    private List<String> readClosureDeps(String path, List<SourceFile> files) throws IOException
+    {
     	SourceFile depsFile = null;
-    	
     	for (SourceFile sourceFile : files)
     	{
     		if ((sourceFile.getOriginalPath().endsWith("goog/deps.js") || sourceFile.getOriginalPath().endsWith("goog\\deps.js")) &&
         		!(sourceFile.getOriginalPath().endsWith("third_party/goog/deps.js") || sourceFile.getOriginalPath().endsWith("third_party\\goog\\deps.js")))
     			depsFile = sourceFile;
-            if (googConfiguration.isVerbose())
-            {
-                System.out.println("originalPath: " + sourceFile.getOriginalPath());
-            }
-    		fileMap.put(sourceFile.getOriginalPath(), sourceFile);
     	}
-    	
+    	if (depsFile == null)
+    		throw new FileNotFoundException("goog/deps.js");
+
 		ArrayList<String> deps = new ArrayList<String>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(path + depsFile.getOriginalPath()), "UTF8"));
         try
         {
-            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(path + depsFile.getOriginalPath()), "UTF8"));
-
             while (true)
             {
 	            String line = in.readLine();
@@ -658,12 +717,27 @@ public class MXMLRoyalePublisher extends JSPublisher implements IJSRoyalePublish
 	            	continue;
 	            deps.add(line);
             }
-            in.close();
         }
-        catch (Exception e)
+        finally
         {
-            // nothing to see, move along...
+            in.close();
         }
+        return deps;
+    }
+
+    private List<SourceFile> closureFilesInOrder(List<SourceFile> files, List<String> deps, List<String> entryPoints)
+    {
+    	ArrayList<String> sortedFiles = new ArrayList<String>();
+    	HashMap<String, SourceFile> fileMap = new HashMap<String, SourceFile>();
+    	
+    	for (SourceFile sourceFile : files)
+    	{
+            if (googConfiguration.isVerbose())
+            {
+                System.out.println("originalPath: " + sourceFile.getOriginalPath());
+            }
+    		fileMap.put(sourceFile.getOriginalPath(), sourceFile);
+    	}
 
         sortClosureFile(deps, entryPoints, sortedFiles);
         
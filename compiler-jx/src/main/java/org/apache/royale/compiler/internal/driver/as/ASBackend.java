@@ -20,7 +20,6 @@
 package org.apache.royale.compiler.internal.driver.as;
 
 import java.io.FilterWriter;
-import java.io.StringWriter;
 import java.util.List;
 
 import org.apache.royale.compiler.codegen.IDocEmitter;
@@ -31,6 +30,7 @@ import org.apache.royale.compiler.config.Configuration;
 import org.apache.royale.compiler.config.Configurator;
 import org.apache.royale.compiler.driver.IBackend;
 import org.apache.royale.compiler.driver.IPublisher;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
 import org.apache.royale.compiler.internal.codegen.as.ASAfterNodeStrategy;
 import org.apache.royale.compiler.internal.codegen.as.ASBeforeNodeStrategy;
 import org.apache.royale.compiler.internal.codegen.as.ASBlockWalker;
@@ -111,7 +111,7 @@ public class ASBackend implements IBackend
     @Override
     public ASFilterWriter createWriterBuffer(RoyaleJSProject project)
     {
-        StringWriter out = new StringWriter();
+        EmitterOutputBuffer out = new EmitterOutputBuffer();
         ASFilterWriter writer = new ASFilterWriter(out);
         return writer;
     }
@@ -20,7 +20,6 @@
 package org.apache.royale.compiler.internal.driver.js;
 
 import java.io.FilterWriter;
-import java.io.StringWriter;
 import java.util.List;
 
 import org.apache.royale.compiler.clients.JSConfiguration;
@@ -36,6 +35,7 @@ import org.apache.royale.compiler.config.Configurator;
 import org.apache.royale.compiler.driver.IBackend;
 import org.apache.royale.compiler.driver.IPublisher;
 import org.apache.royale.compiler.driver.js.IJSBackend;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
 import org.apache.royale.compiler.internal.codegen.as.ASAfterNodeStrategy;
 import org.apache.royale.compiler.internal.codegen.as.ASBeforeNodeStrategy;
 import org.apache.royale.compiler.internal.codegen.as.ASBlockWalker;
@@ -118,7 +118,7 @@ public class JSBackend implements IJSBackend
     @Override
     public JSFilterWriter createWriterBuffer(RoyaleJSProject project)
     {
-        StringWriter out = new StringWriter();
+        EmitterOutputBuffer out = new EmitterOutputBuffer();
         JSFilterWriter writer = new JSFilterWriter(out);
         return writer;
     }
@@ -39,6 +39,7 @@ import org.apache.royale.compiler.clients.problems.ProblemQuery;
 import org.apache.royale.compiler.common.DependencyType;
 import org.apache.royale.compiler.common.DependencyTypeSet;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
+import org.apache.royale.compiler.exceptions.CircularDependencyException;
 import org.apache.royale.compiler.internal.codegen.js.goog.JSGoogEmitterTokens;
 import org.apache.royale.compiler.internal.driver.js.JSCompilationUnit;
 import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
@@ -50,6 +51,7 @@ import org.apache.royale.compiler.problems.FileNotFoundProblem;
 import org.apache.royale.compiler.problems.MainDefinitionQNameProblem;
 import org.apache.royale.compiler.problems.UnexpectedExceptionProblem;
 import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.utils.SourceMapLineTransform;
 import org.apache.royale.compiler.utils.SourceMapUtils;
 import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.ISWCFileEntry;
@@ -103,8 +105,37 @@ public class GoogDepsWriter {
 	private HashMap<String, ICompilationUnit> requireMap = new HashMap<String, ICompilationUnit>();
 	private HashMap<ICompilationUnit, String> requireMap2 = new HashMap<ICompilationUnit, String>();
 	
+	// what was learned from each .js file the last time it was scanned.  Kept
+	// across calls to invalidate() so that, in watch mode, only the files that
+	// were written again since the last publish need to be read.
+	private HashMap<String, ScannedFile> scannedFiles = new HashMap<String, ScannedFile>();
+	private HashMap<String, String> sortInputs = new HashMap<String, String>();
+	private HashMap<String, String> lastSortInputs;
+	private ArrayList<String> lastSortOrder;
+	private int sortCount;
+	private CircularDependencyException lastCircularDependencyException;
+	
 	public boolean needCSS = false;
 	
+	/**
+	 * Forget the dependency information computed for the last publish so
+	 * the next call to getListOfFiles() or generateDeps() looks at the output
+	 * folder again.  Files that have not been modified since they were last
+	 * scanned are not read again, and the order of the files is only
+	 * recomputed if the dependencies between them changed.
+	 */
+	public void invalidate()
+	{
+		dps = null;
+		graph = null;
+		depMap = new HashMap<String, GoogDep>();
+		requireMap.clear();
+		requireMap2.clear();
+		visited.clear();
+		additionalHTML.clear();
+		needCSS = false;
+	}
+	
 	public ArrayList<String> getListOfFiles(CompilerProject project, List<String> sourceExternFiles, ProblemQuery problems)
 	{
 		this.project = project;
@@ -453,6 +484,7 @@ public class GoogDepsWriter {
 	{
 		staticInitializers = new ArrayList<String>();
 		staticInitializerOwners = new ArrayList<String>();
+		sortInputs = new HashMap<String, String>();
 		
 		graph = new DependencyGraph();
 		if (isGoogClass(mainName))
@@ -466,6 +498,9 @@ public class GoogDepsWriter {
 			return false;
 		}
 		addDeps(mainName);
+		// forget the files of classes that are no longer part of the
+		// application
+		scannedFiles.keySet().retainAll(depMap.keySet());
 		return true;
 	}
     
@@ -538,28 +573,45 @@ public class GoogDepsWriter {
 					}					
 				}
 			}
-			List<ICompilationUnit> order = graph.topologicalSort(requireMap.values());
-			if (graph.lastCircularDependencyException != null)
-			{
-				problems.add(new UnexpectedExceptionProblem(graph.lastCircularDependencyException));
-			}
-			if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.GOOG_DEPS) == CompilerDiagnosticsConstants.GOOG_DEPS)
+			if (lastSortOrder == null || !sortInputs.equals(lastSortInputs))
 			{
-				System.out.println("Contents of graph in order:");
+				List<ICompilationUnit> order = graph.topologicalSort(requireMap.values());
+				sortCount++;
+				lastCircularDependencyException = graph.lastCircularDependencyException;
+				if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.GOOG_DEPS) == CompilerDiagnosticsConstants.GOOG_DEPS)
+				{
+					System.out.println("Contents of graph in order:");
+					for (ICompilationUnit unit : order)
+					{
+						try {
+							System.out.println(unit.getQualifiedNames().toString());
+						} catch (InterruptedException e) {
+							// TODO Auto-generated catch block
+							e.printStackTrace();
+						}					
+					}
+				}
+				lastSortOrder = new ArrayList<String>();
 				for (ICompilationUnit unit : order)
 				{
-					try {
-						System.out.println(unit.getQualifiedNames().toString());
-					} catch (InterruptedException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}					
+					lastSortOrder.add(requireMap2.get(unit));
 				}
 			}
+			else if (verbose)
+			{
+				// no file changed its dependencies since the last sort so the
+				// graph is the same and so is its order
+				System.out.println("Dependencies unchanged. Reusing previous order");
+			}
+			// files that are rewritten after this still update it
+			lastSortInputs = sortInputs;
+			if (lastCircularDependencyException != null)
+			{
+				problems.add(new UnexpectedExceptionProblem(lastCircularDependencyException));
+			}
 			ArrayList<GoogDep> depsInOrder = new ArrayList<GoogDep>();
-			for (ICompilationUnit unit : order)
+			for (String name : lastSortOrder)
 			{
-				String name = requireMap2.get(unit);
 				if (isGoogClass(name)) continue;
 				GoogDep dep = depMap.get(name);
 				if (dep == null)
@@ -694,6 +746,7 @@ public class GoogDepsWriter {
 			fileLines = Files.readLines(mainFile, Charset.forName("utf8"));
 
 			SourceMapConsumerV3 sourceMapConsumer = null;
+			SourceMapLineTransform sourceMapLines = new SourceMapLineTransform();
 			File sourceMapFile = null;
 			if (sourceMaps)
 			{
@@ -728,7 +781,7 @@ public class GoogDepsWriter {
                 if (!isGoogProvided(s))
                 {
                 	fileLines.remove(j);
-					sourceMapConsumer = SourceMapUtils.removeLineFromSourceMap(sourceMapConsumer, mainFile.getName(), j);
+					sourceMapLines.removeLine(j);
                 }
 				else
 				{
@@ -746,14 +799,15 @@ public class GoogDepsWriter {
 					.append(dep)
 					.append("');");
 				fileLines.add(main.fileInfo.googProvideLine + 1, lineBuilder.toString());
-				sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, mainFile.getName(), main.fileInfo.googProvideLine + 1);
+				sourceMapLines.addLine(main.fileInfo.googProvideLine + 1);
 			}
 
 			FileUtils.writeLines(mainFile, "utf8", fileLines);
+			rescanFile(mainFile, fileLines, main.className);
 
 			if (sourceMapConsumer != null)
 			{
-				String newSourceMapContents = SourceMapUtils.sourceMapConsumerToString(sourceMapConsumer, mainFile.getName());
+				String newSourceMapContents = SourceMapUtils.sourceMapConsumerToString(sourceMapConsumer, mainFile.getName(), sourceMapLines);
 				FileUtils.write(sourceMapFile, newSourceMapContents, "utf8");
 			}
 		} catch (IOException e) {
@@ -779,15 +833,7 @@ public class GoogDepsWriter {
 			throw new RuntimeException("Unable to find JavaScript filePath for class: " + className);
 		}
 		depMap.put(gd.className, gd);
-        List<String> fileLines;
-		try {
-			fileLines = Files.readLines(new File(gd.filePath), Charset.forName("utf8"));
-            FileInfo fi = getFileInfo(fileLines, className);
-			gd.fileInfo = fi;
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		gd.fileInfo = scanFile(gd.filePath, className);
 		if (gd.fileInfo.impls != null)
 		{
 	        for (String dep : gd.fileInfo.impls)
@@ -823,19 +869,82 @@ public class GoogDepsWriter {
 		}
 	}
 	
+	private FileInfo scanFile(String filePath, String className)
+	{
+		File file = new File(filePath);
+		ScannedFile scanned = scannedFiles.get(className);
+		if (scanned == null || !scanned.isCurrent(file))
+		{
+	        List<String> fileLines;
+			try {
+				fileLines = Files.readLines(file, Charset.forName("utf8"));
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+				return null;
+			}
+			scanned = rescanFile(file, fileLines, className);
+		}
+		sortInputs.put(className, scanned.signature);
+		
+		// sort() adds static dependencies to the FileInfo, so hand out a copy
+		// that can be thrown away with the rest of this publish
+		FileInfo fi = scanned.fileInfo.copy();
+		additionalHTML.addAll(fi.additionalHTML);
+		if (fi.needCSS)
+			needCSS = true;
+		for (String staticDep : fi.staticInitializers)
+		{
+			staticInitializers.add(staticDep);
+			staticInitializerOwners.add(className);
+		}
+		return fi;
+	}
+	
+	private ScannedFile rescanFile(File file, List<String> fileLines, String className)
+	{
+		ScannedFile scanned = new ScannedFile();
+		scanned.filePath = file.getPath();
+		scanned.lastModified = file.lastModified();
+		scanned.length = file.length();
+		scanned.fileInfo = getFileInfo(fileLines, className);
+		scanned.signature = scanned.fileInfo.getSignature();
+		scannedFiles.put(className, scanned);
+		if (sortInputs.containsKey(className))
+		{
+			// the file was rewritten during this publish.  The next publish
+			// sees the rewritten file if it doesn't change, so compare that
+			sortInputs.put(className, scanned.signature);
+		}
+		return scanned;
+	}
+	
+	/**
+	 * @return the number of times that the files were sorted, which is less
+	 * than the number of publishes if the previous order could be reused
+	 */
+	int getSortCount()
+	{
+		return sortCount;
+	}
+	
 	void removeRequires(GoogDep gd)
 	{
 		String className = gd.className;
 		
+		gd = depMap.get(className);
+		if (gd.fileInfo.hasDependencyList)
+			return; // already been processed
+		
 	    // remove requires that are not base classes and interfaces
 	    try
         {
-			gd = depMap.get(className);
 			File depFile = new File(gd.filePath);
             List<String> fileLines = Files.readLines(depFile, Charset.forName("utf8"));
 			ArrayList<String> finalLines = new ArrayList<String>();
 			
 			SourceMapConsumerV3 sourceMapConsumer = null;
+			SourceMapLineTransform sourceMapLines = new SourceMapLineTransform();
 			File sourceMapFile = null;
 			if (sourceMaps)
 			{
@@ -899,7 +1008,7 @@ public class GoogDepsWriter {
                     			sb.append(",");
                     		sb.append(s);
 							firstDependency = false;
-							sourceMapConsumer = SourceMapUtils.removeLineFromSourceMap(sourceMapConsumer, depFile.getName(), finalLines.size());
+							sourceMapLines.removeLine(finalLines.size());
                         	continue;
 	                    }
                         else
@@ -928,7 +1037,7 @@ public class GoogDepsWriter {
 							.append(dep)
 							.append("');");
             			finalLines.add(lastRequireLine++, lineBuilder.toString());
-						sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, new File(gd.filePath).getName(), lastRequireLine);
+						sourceMapLines.addLine(lastRequireLine);
             			if (verbose)
 						{
 							System.out.println("adding require for static dependency " + dep + " to " + className);
@@ -965,7 +1074,7 @@ public class GoogDepsWriter {
                 		{
                 			// there is already a fileOverview but no @suppress
                 			finalLines.add(fi.fileoverviewLine + 1, " *  @suppress {missingRequire}");
-							sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.fileoverviewLine + 1);
+							sourceMapLines.addLine(fi.fileoverviewLine + 1);
                 		}
                 		else if (fi.googProvideLine > -1)
                 		{
@@ -973,10 +1082,10 @@ public class GoogDepsWriter {
                 			finalLines.add(fi.googProvideLine, " *  @suppress {missingRequire}");
                 			finalLines.add(fi.googProvideLine, " *  @fileoverview");
                 			finalLines.add(fi.googProvideLine, "/**");
-							sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
-							sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
-							sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
-							sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
+							sourceMapLines.addLine(fi.googProvideLine);
+							sourceMapLines.addLine(fi.googProvideLine);
+							sourceMapLines.addLine(fi.googProvideLine);
+							sourceMapLines.addLine(fi.googProvideLine);
                 		}
                 		else
                 		{
@@ -990,7 +1099,7 @@ public class GoogDepsWriter {
             		{
             			// there is already a fileoverview but no @suppress
             			finalLines.add(fi.fileoverviewLine + 1, " *  @suppress {missingRequire}");
-						sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.fileoverviewLine + 1);
+						sourceMapLines.addLine(fi.fileoverviewLine + 1);
             		}
             		else if (fi.googProvideLine > -1)
             		{
@@ -998,10 +1107,10 @@ public class GoogDepsWriter {
             			finalLines.add(fi.googProvideLine, " *  @suppress {missingRequire}");
             			finalLines.add(fi.googProvideLine, " *  @fileoverview");
             			finalLines.add(fi.googProvideLine, "/**");
-						sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
-						sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
-						sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
-						sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), fi.googProvideLine);
+						sourceMapLines.addLine(fi.googProvideLine);
+						sourceMapLines.addLine(fi.googProvideLine);
+						sourceMapLines.addLine(fi.googProvideLine);
+						sourceMapLines.addLine(fi.googProvideLine);
             		}
             		else
             		{
@@ -1012,13 +1121,14 @@ public class GoogDepsWriter {
 
             sb.append("*/");
             finalLines.add(gd.fileInfo.googProvideLine + 1, sb.toString());
-			sourceMapConsumer = SourceMapUtils.addLineToSourceMap(sourceMapConsumer, depFile.getName(), gd.fileInfo.googProvideLine + 1);
+			sourceMapLines.addLine(gd.fileInfo.googProvideLine + 1);
 
 			FileUtils.writeLines(depFile, "utf8", finalLines);
+			rescanFile(depFile, finalLines, className);
 
 			if (sourceMapConsumer != null)
 			{
-				String newSourceMapContents = SourceMapUtils.sourceMapConsumerToString(sourceMapConsumer, depFile.getName());
+				String newSourceMapContents = SourceMapUtils.sourceMapConsumerToString(sourceMapConsumer, depFile.getName(), sourceMapLines);
 				FileUtils.write(sourceMapFile, newSourceMapContents, "utf8");
 			}
         }
@@ -1061,7 +1171,7 @@ public class GoogDepsWriter {
 	            	line = line.trim();
 	            	if (line.startsWith("*"))
 	            		line = line.substring(1);
-				    additionalHTML.add(line);
+				    fi.additionalHTML.add(line);
 				    continue;
 	            }
                 c = line.indexOf("<inject_script>");
@@ -1121,7 +1231,7 @@ public class GoogDepsWriter {
 					        			if (!fi.impls.contains(impl) && !impl.contentEquals(className))
 					        				fi.impls.add(impl);
 					        			if (impl.equals("org.apache.royale.core.ICSSImpl"))
-					        				needCSS = true;
+					        				fi.needCSS = true;
 					        		}
 					        		else
 					        		{
@@ -1150,8 +1260,7 @@ public class GoogDepsWriter {
 						    					{
 						    						if (staticDep.equals(className))
 						    							continue;
-						    						staticInitializers.add(staticDep);
-						    						staticInitializerOwners.add(className);
+						    						fi.staticInitializers.add(staticDep);
 						    					}
 						    				}
 						    				else
@@ -1170,6 +1279,7 @@ public class GoogDepsWriter {
 								    					c2 = line.indexOf("*/");
 								    					line = line.substring(c + token.length(), c2);
 									        			fi.deps = new ArrayList<String>();
+									        			fi.hasDependencyList = true;
 									        			if (line.length() > 2) // don't add blank or space if no deps
 									        				fi.deps.addAll(Arrays.asList(line.split(",")));
 //								    					fi.depsLine = i;
@@ -1536,5 +1646,53 @@ public class GoogDepsWriter {
 		public int fileoverviewLine;
 		public int googProvideLine;
 		public boolean isExtern;
+		public boolean hasDependencyList;
+		public boolean needCSS;
+		public ArrayList<String> additionalHTML = new ArrayList<String>();
+		public ArrayList<String> staticInitializers = new ArrayList<String>();
+		
+		public FileInfo copy()
+		{
+			FileInfo fi = new FileInfo();
+			fi.impls = impls != null ? new ArrayList<String>(impls) : null;
+			fi.deps = deps != null ? new ArrayList<String>(deps) : null;
+			fi.staticDeps = staticDeps != null ? new ArrayList<String>(staticDeps) : null;
+			fi.provides = provides != null ? new ArrayList<String>(provides) : null;
+			fi.constructorLine = constructorLine;
+			fi.suppressLine = suppressLine;
+			fi.fileoverviewLine = fileoverviewLine;
+			fi.googProvideLine = googProvideLine;
+			fi.isExtern = isExtern;
+			fi.hasDependencyList = hasDependencyList;
+			fi.needCSS = needCSS;
+			fi.additionalHTML = additionalHTML;
+			fi.staticInitializers = staticInitializers;
+			return fi;
+		}
+		
+		/**
+		 * @return a string that is the same for two files if sort() would
+		 * treat them the same
+		 */
+		public String getSignature()
+		{
+			return impls + "|" + deps + "|" + staticDeps + "|" + staticInitializers + "|" + provides + "|" + isExtern;
+		}
+	}
+	
+	private class ScannedFile
+	{
+		public String filePath;
+		public long lastModified;
+		public long length;
+		public FileInfo fileInfo;
+		public String signature;
+		
+		public boolean isCurrent(File file)
+		{
+			return filePath.equals(file.getPath())
+					&& lastModified == file.lastModified()
+					&& length == file.length();
+		}
 	}
 }
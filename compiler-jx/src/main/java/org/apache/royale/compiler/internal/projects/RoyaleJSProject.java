@@ -21,13 +21,14 @@ package org.apache.royale.compiler.internal.projects;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.royale.compiler.asdoc.IASDocComment;
 import org.apache.royale.compiler.asdoc.royale.ASDocComment;
@@ -95,9 +96,9 @@ public class RoyaleJSProject extends RoyaleProject
         this.backend = backend;
     }
 
-    private HashMap<ICompilationUnit, HashMap<String, String>> interfaces = new HashMap<ICompilationUnit, HashMap<String, String>>();
-    private HashMap<ICompilationUnit, HashMap<String, DependencyType>> requires = new HashMap<ICompilationUnit, HashMap<String, DependencyType>>();
-    private HashMap<ICompilationUnit, HashMap<JSModuleRequireDescription, DependencyType>> jsModules = new HashMap<ICompilationUnit, HashMap<JSModuleRequireDescription, DependencyType>>();
+    private ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<String, String>> interfaces = new ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<String, String>>();
+    private ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<String, DependencyType>> requires = new ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<String, DependencyType>>();
+    private ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<JSModuleRequireDescription, DependencyType>> jsModules = new ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<JSModuleRequireDescription, DependencyType>>();
     public TreeSet<String> mixinClassNames;
     public HashMap<String, String> remoteClassAliasMap;
     public JSGoogConfiguration config;
@@ -150,8 +151,12 @@ public class RoyaleJSProject extends RoyaleProject
 		            String asDocString = ((ASDocComment)asDoc).commentNoEnd();
 		            if (asDocString.contains(JSRoyaleEmitterTokens.EXTERNS.getToken()))
 		            {
-		            	if (!sourceExterns.contains(defname))
-		            		sourceExterns.add(defname);
+		            	// emitters on several threads may add to it at once
+		            	synchronized (sourceExterns)
+		            	{
+		            		if (!sourceExterns.contains(defname))
+		            			sourceExterns.add(defname);
+		            	}
 		            }
 		        }
         	}
@@ -170,15 +175,15 @@ public class RoyaleJSProject extends RoyaleProject
             if (from != to)
             {
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ROYALEJSPROJECT) == CompilerDiagnosticsConstants.ROYALEJSPROJECT)
-            		System.out.println("RoyaleJSProject waiting for lock in updateRequiresMap from addDependency");
+            		System.out.println("RoyaleJSProject updating updateRequiresMap from addDependency");
             	updateRequiresMap(from, to, dt, qname);
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ROYALEJSPROJECT) == CompilerDiagnosticsConstants.ROYALEJSPROJECT)
-            		System.out.println("RoyaleJSProject done with lock in updateRequiresMap from addDependency");
+            		System.out.println("RoyaleJSProject done with updateRequiresMap from addDependency");
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ROYALEJSPROJECT) == CompilerDiagnosticsConstants.ROYALEJSPROJECT)
-            		System.out.println("RoyaleJSProject waiting for lock in updateJSModulesMap from addDependency");
+            		System.out.println("RoyaleJSProject updating updateJSModulesMap from addDependency");
             	updateJSModulesMap(from, to, dt, qname);
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ROYALEJSPROJECT) == CompilerDiagnosticsConstants.ROYALEJSPROJECT)
-            		System.out.println("RoyaleJSProject done with lock in updateJSModulesMap from addDependency");
+            		System.out.println("RoyaleJSProject done with updateJSModulesMap from addDependency");
             }
         }
         else
@@ -186,61 +191,66 @@ public class RoyaleJSProject extends RoyaleProject
             if (from != to)
             {
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ROYALEJSPROJECT) == CompilerDiagnosticsConstants.ROYALEJSPROJECT)
-            		System.out.println("RoyaleJSProject waiting for lock in updateInterfacesMap from addDependency");
+            		System.out.println("RoyaleJSProject updating updateInterfacesMap from addDependency");
             	updateInterfacesMap(from, to, dt, qname);
             	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.ROYALEJSPROJECT) == CompilerDiagnosticsConstants.ROYALEJSPROJECT)
-            		System.out.println("RoyaleJSProject done with lock in updateInterfacesMap from addDependency");
+            		System.out.println("RoyaleJSProject done with updateInterfacesMap from addDependency");
             }
         }
 
         super.addDependency(from, to, dt, qname);
     }
     
-    private synchronized void updateRequiresMap(ICompilationUnit from, ICompilationUnit to,
-    																		DependencyType dt, String qname)
+    /**
+     * Gets the map for a compilation unit from one of the maps of
+     * dependencies, and adds an empty map if there is none yet.
+     */
+    private static <K, V> ConcurrentHashMap<K, V> getDependencyMap(
+            ConcurrentHashMap<ICompilationUnit, ConcurrentHashMap<K, V>> maps, ICompilationUnit from)
     {
-        HashMap<String, DependencyType> reqs;
-        if (requires.containsKey(from))
-            reqs = requires.get(from);
-        else
+        ConcurrentHashMap<K, V> map = maps.get(from);
+        if (map == null)
         {
-            reqs = new HashMap<String, DependencyType>();
-            requires.put(from, reqs);
+            map = new ConcurrentHashMap<K, V>();
+            ConcurrentHashMap<K, V> existingMap = maps.putIfAbsent(from, map);
+            if (existingMap != null)
+                map = existingMap;
         }
-        if (reqs.containsKey(qname))
+        return map;
+    }
+
+    private void updateRequiresMap(ICompilationUnit from, ICompilationUnit to,
+    																		DependencyType dt, String qname)
+    {
+        ConcurrentHashMap<String, DependencyType> reqs = getDependencyMap(requires, from);
+        if (isGoogProvided(qname))
         {
-            // inheritance is important so remember it
-            if (reqs.get(qname) != DependencyType.INHERITANCE)
+            while (true)
             {
-                if (isGoogProvided(qname))
+                DependencyType oldType = reqs.putIfAbsent(qname, dt);
+                if (oldType == null)
                 {
-                    reqs.put(qname, dt);
+                    if (qname.equals("XML"))
+                    {
+                        needXML = true;
+                    }
+                    break;
                 }
+                // inheritance is important so remember it
+                if (oldType == DependencyType.INHERITANCE || reqs.replace(qname, oldType, dt))
+                    break;
             }
         }
-        else if (isGoogProvided(qname) || qname.equals("Namespace"))
+        else if (qname.equals("Namespace"))
         {
-            if (qname.equals("XML"))
-            {
-                needXML = true;
-            }
-            reqs.put(qname, dt);
+            reqs.putIfAbsent(qname, dt);
         }
     }
 
-    private synchronized void updateJSModulesMap(ICompilationUnit from, ICompilationUnit to,
+    private void updateJSModulesMap(ICompilationUnit from, ICompilationUnit to,
 			DependencyType dt, String qname)
     {
-        HashMap<JSModuleRequireDescription, DependencyType> reqs;
-        if (jsModules.containsKey(from))
-        {
-            reqs = jsModules.get(from);
-        }
-        else
-        {
-            reqs = new HashMap<JSModuleRequireDescription, DependencyType>();
-            jsModules.put(from, reqs);
-        }
+        ConcurrentHashMap<JSModuleRequireDescription, DependencyType> reqs = getDependencyMap(jsModules, from);
         IMetaTag tag = getJSModuleMetadata(to, qname);
         if (tag != null)
         {
@@ -267,88 +277,146 @@ public class RoyaleJSProject extends RoyaleProject
         }
     }
     
-    private synchronized void updateInterfacesMap(ICompilationUnit from, ICompilationUnit to,
+    private void updateInterfacesMap(ICompilationUnit from, ICompilationUnit to,
 			DependencyType dt, String qname)
     {
-        HashMap<String, String> interfacesArr;
-        if (interfaces.containsKey(from))
-        {
-            interfacesArr = interfaces.get(from);
-        }
-        else
-        {
-            interfacesArr = new HashMap<String, String>();
-            interfaces.put(from, interfacesArr);
-        }
-
+        ConcurrentHashMap<String, String> interfacesArr = getDependencyMap(interfaces, from);
         if (!interfacesArr.containsKey(qname))
         {
             if (isGoogProvided(qname))
             {
-                interfacesArr.put(qname, qname);
+                interfacesArr.putIfAbsent(qname, qname);
             }
         }
     }
 
-    public boolean needLanguage;
+    /**
+     * Set by the emitters, which may run on several threads at once when
+     * <code>js-parallel-emit</code> is enabled.
+     */
+    public volatile boolean needLanguage;
     public boolean needCSS;
     public boolean needXML;
 
-    private LinkageChecker linkageChecker;
-    private ITargetSettings ts;
+    private volatile LinkageChecker linkageChecker;
+    private volatile ITargetSettings ts;
 
     // definitions that had @externs in the source
     public ArrayList<String> sourceExterns = new ArrayList<String>();
 
     // swcs that contain referenced externs
-    public Set<ISWC> swcExterns = new HashSet<ISWC>();
+    public Set<ISWC> swcExterns = Collections.newSetFromMap(new ConcurrentHashMap<ISWC, Boolean>());
     
     // definitions that should be considered external linkage
     public Collection<String> unitTestExterns;
 
-    private IMetaTag getJSModuleMetadata(ICompilationUnit cu, String qname)
+    /**
+     * How a definition is linked into the output. This is looked up for
+     * every identifier, dependency and require that is emitted, so it is
+     * computed once per qualified name, and again only if the name resolves
+     * to another definition.
+     */
+    private static final class Linkage
     {
-        try
-        {
-            Iterator<IDefinition> iterator = cu.getFileScopeRequest().get().getExternallyVisibleDefinitions().iterator();
-            while(iterator.hasNext())
-            {
-                IDefinition def = iterator.next();
-                if (def.getQualifiedName().equals(qname) && def.hasMetaTagByName("JSModule"))
-                {
-                    return def.getMetaTagByName("JSModule");
-                }
-            }
-        }
-        catch (Exception ex)
+        Linkage(int version, IDefinition definition, ICompilationUnit unit,
+                boolean externs, boolean googProvided)
+        {
+            this.version = version;
+            this.definition = definition;
+            this.unit = unit;
+            this.externs = externs;
+            this.googProvided = googProvided;
+        }
+
+        /**
+         * The version of the project scope definitions that this was last
+         * checked against.
+         */
+        volatile int version;
+
+        /**
+         * The definition that the name resolved to, or <code>null</code>.
+         */
+        final IDefinition definition;
+
+        /**
+         * The compilation unit that defines the name, or <code>null</code>.
+         */
+        final ICompilationUnit unit;
+
+        final boolean externs;
+        final boolean googProvided;
+
+        /**
+         * The JSModule metadata of the definition, {@link #NO_JS_MODULE} if it
+         * has none, or <code>null</code> if it was not looked up yet.
+         */
+        volatile Object jsModule;
+    }
+
+    private static final Object NO_JS_MODULE = new Object();
+
+    /**
+     * Linkage by qualified name.
+     */
+    private final ConcurrentHashMap<String, Linkage> linkages = new ConcurrentHashMap<String, Linkage>();
+
+    /**
+     * Results of {@link #isExternalLinkage(ICompilationUnit)}, for the
+     * current target settings.
+     */
+    private final ConcurrentHashMap<ICompilationUnit, Boolean> externalLinkages = new ConcurrentHashMap<ICompilationUnit, Boolean>();
+
+    private Linkage getLinkage(String qname)
+    {
+        int version = getScope().getDefinitionsVersion();
+        Linkage linkage = linkages.get(qname);
+        if (linkage != null && linkage.version == version)
+            return linkage;
+
+        // definitions were added to or removed from the project since the
+        // linkage was computed, but that is usually something else, like a
+        // new Vector class, so only resolving the name again is needed
+        IDefinition def = resolveQNameToDefinition(qname);
+        if (linkage != null && linkage.definition == def)
         {
-            //it's safe to ignore an exception here
+            linkage.version = version;
+            return linkage;
         }
-        return null;
+        linkage = computeLinkage(qname, def, version);
+        linkages.put(qname, linkage);
+        return linkage;
     }
 
-    public boolean isExterns(String qname)
+    private Linkage computeLinkage(String qname, IDefinition def, int version)
     {
-		ICompilationUnit cu = resolveQNameToCompilationUnit(qname);
+        ICompilationUnit cu = def != null ? getScope().getCompilationUnitForDefinition(def) : null;
         if (cu == null)
         {
-            return false;
+            //TODO: maybe this this should be false because we can't actually
+            //check whether it's a goog.provide() object or not
+            return new Linkage(version, def, null, false, true);
         }
+
         if (cu.getCompilationUnitType().equals(ICompilationUnit.UnitType.SWC_UNIT))
         {
-            return !isGoogProvided(qname);
+            SWCCompilationUnit swcUnit = (SWCCompilationUnit) cu;
+            ISWC swc = swcUnit.getSWC();
+            String qnameFilePath = "js/out/" + qname.replace('.', '/') + ".js";
+            boolean googProvided = swc.getFile(qnameFilePath) != null;
+            return new Linkage(version, def, cu, !googProvided, googProvided);
         }
         else if (!cu.getCompilationUnitType().equals(ICompilationUnit.UnitType.AS_UNIT))
         {
-            return false;
+            return new Linkage(version, def, cu, false, true);
         }
 
-        IDefinition def = resolveQNameToDefinition(qname);
-        if (def == null)
-        {
-            return false;
-        }
+        boolean externs = hasExternsComment(def);
+        return new Linkage(version, def, cu, externs, !externs);
+    }
 
+    private static boolean hasExternsComment(IDefinition def)
+    {
         IDefinitionNode node = def.getNode();
         if (!(node instanceof IDocumentableDefinitionNode))
         {
@@ -365,25 +433,74 @@ public class RoyaleJSProject extends RoyaleProject
         return royaleComment.commentNoEnd().contains(JSRoyaleEmitterTokens.EXTERNS.getToken());
     }
 
-    public boolean isGoogProvided(String qname)
+    /**
+     * Forgets the linkage of all definitions, after a compilation unit was
+     * invalidated.
+     */
+    private void clearLinkages()
     {
-		ICompilationUnit cu = resolveQNameToCompilationUnit(qname);
-        if (cu == null)
+        linkages.clear();
+        externalLinkages.clear();
+    }
+
+    @Override
+    public void clearScopeCacheForCompilationUnit(ICompilationUnit compilationUnit)
+    {
+        super.clearScopeCacheForCompilationUnit(compilationUnit);
+        clearLinkages();
+    }
+
+    @Override
+    public void resetScopeCacheForCompilationUnit(ICompilationUnit compilationUnit)
+    {
+        super.resetScopeCacheForCompilationUnit(compilationUnit);
+        clearLinkages();
+    }
+
+    private IMetaTag getJSModuleMetadata(ICompilationUnit cu, String qname)
+    {
+        Linkage linkage = getLinkage(qname);
+        if (linkage.unit != cu)
+            return findJSModuleMetadata(cu, qname);
+        Object jsModule = linkage.jsModule;
+        if (jsModule == null)
         {
-            //TODO: maybe this this should be false because we can't actually
-            //check whether it's a goog.provide() object or not
-            return true;
+            IMetaTag tag = findJSModuleMetadata(cu, qname);
+            jsModule = tag != null ? tag : NO_JS_MODULE;
+            linkage.jsModule = jsModule;
         }
-        
-        if (cu.getCompilationUnitType().equals(ICompilationUnit.UnitType.SWC_UNIT))
+        return jsModule != NO_JS_MODULE ? (IMetaTag) jsModule : null;
+    }
+
+    private IMetaTag findJSModuleMetadata(ICompilationUnit cu, String qname)
+    {
+        try
         {
-            SWCCompilationUnit swcUnit = (SWCCompilationUnit) cu;
-            ISWC swc = swcUnit.getSWC();
-            String qnameFilePath = "js/out/" + qname.replace('.', '/') + ".js";
-            return swc.getFile(qnameFilePath) != null;
+            Iterator<IDefinition> iterator = cu.getFileScopeRequest().get().getExternallyVisibleDefinitions().iterator();
+            while(iterator.hasNext())
+            {
+                IDefinition def = iterator.next();
+                if (def.getQualifiedName().equals(qname) && def.hasMetaTagByName("JSModule"))
+                {
+                    return def.getMetaTagByName("JSModule");
+                }
+            }
         }
+        catch (Exception ex)
+        {
+            //it's safe to ignore an exception here
+        }
+        return null;
+    }
 
-        return !isExterns(qname);
+    public boolean isExterns(String qname)
+    {
+        return getLinkage(qname).externs;
+    }
+
+    public boolean isGoogProvided(String qname)
+    {
+        return getLinkage(qname).googProvided;
     }
 
     public boolean isExternalLinkage(ICompilationUnit cu)
@@ -410,6 +527,23 @@ public class RoyaleJSProject extends RoyaleProject
             return false;
         }
 
+        Boolean external = externalLinkages.get(cu);
+        if (external == null)
+        {
+            external = computeExternalLinkage(cu);
+            if (external == null)
+                return false;
+            externalLinkages.put(cu, external);
+        }
+        return external;
+    }
+
+    /**
+     * @return <code>null</code> if the thread was interrupted, so the
+     * result can't be cached.
+     */
+    private Boolean computeExternalLinkage(ICompilationUnit cu)
+    {
         List<String> qnames;
         try {
             qnames = cu.getQualifiedNames();
@@ -423,6 +557,7 @@ public class RoyaleJSProject extends RoyaleProject
         } catch (InterruptedException e1) {
             // TODO Auto-generated catch block
             e1.printStackTrace();
+            return null;
         }
         try
         {
@@ -433,14 +568,14 @@ public class RoyaleJSProject extends RoyaleProject
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-        return false;
+        return null;
     }
 
     public ArrayList<String> getInterfaces(ICompilationUnit from)
     {
-        if (interfaces.containsKey(from))
+        ConcurrentHashMap<String, String> map = interfaces.get(from);
+        if (map != null)
         {
-            HashMap<String, String> map = interfaces.get(from);
             ArrayList<String> arr = new ArrayList<String>();
             Set<String> cus = map.keySet();
             for (String s : cus)
@@ -452,9 +587,9 @@ public class RoyaleJSProject extends RoyaleProject
 
     public ArrayList<String> getRequires(ICompilationUnit from)
     {
-        if (requires.containsKey(from))
+        ConcurrentHashMap<String, DependencyType> map = requires.get(from);
+        if (map != null)
         {
-            HashMap<String, DependencyType> map = requires.get(from);
             ArrayList<String> arr = new ArrayList<String>();
             Set<String> cus = map.keySet();
             for (String s : cus) {
@@ -471,9 +606,9 @@ public class RoyaleJSProject extends RoyaleProject
 
     public ArrayList<JSModuleRequireDescription> getExternalRequires(ICompilationUnit from)
     {
-        if (jsModules.containsKey(from))
+        ConcurrentHashMap<JSModuleRequireDescription, DependencyType> map = jsModules.get(from);
+        if (map != null)
         {
-            HashMap<JSModuleRequireDescription, DependencyType> map = jsModules.get(from);
             ArrayList<JSModuleRequireDescription> arr = new ArrayList<JSModuleRequireDescription>();
             for (JSModuleRequireDescription m : map.keySet())
             {
@@ -507,12 +642,24 @@ public class RoyaleJSProject extends RoyaleProject
         return cssSession;
     }
 
-    private HashMap<IASNode, String> astCache = new HashMap<IASNode, String>();
+    private Set<IASNode> astCache = Collections.newSetFromMap(new ConcurrentHashMap<IASNode, Boolean>());
 
     @Override
     public void addToASTCache(IASNode ast)
     {
-        astCache.put(ast, "");
+        astCache.add(ast);
+    }
+
+    @Override
+    public void removeFromASTCache(IASNode ast)
+    {
+        astCache.remove(ast);
+    }
+
+    @Override
+    public boolean isInASTCache(IASNode ast)
+    {
+        return astCache.contains(ast);
     }
 
     @Override
@@ -521,6 +668,7 @@ public class RoyaleJSProject extends RoyaleProject
         super.setTargetSettings(value);
         ts = value;
         linkageChecker = new LinkageChecker(this, value);
+        externalLinkages.clear();
         try {
             linkageChecker.initExterns();
         } catch (InterruptedException e) {
@@ -620,7 +768,8 @@ public class RoyaleJSProject extends RoyaleProject
 		return true;
 	}
 
-	private HashSet<String> exportedNames = new HashSet<String>();
+	// added to by emitters that may run on several threads at once
+	private Set<String> exportedNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	
 	public List<String> compiledResourceBundleNames = new ArrayList<String>();
 	public List<String> compiledResourceBundleClasses = new ArrayList<String>();
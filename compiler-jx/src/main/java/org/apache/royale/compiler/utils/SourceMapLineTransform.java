@@ -0,0 +1,106 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the lines that are added to and removed from a generated file so
+ * that its source map can be updated with
+ * {@link SourceMapUtils#sourceMapConsumerToString(com.google.debugging.sourcemap.SourceMapConsumerV3, String, SourceMapLineTransform)}
+ * once, after all of the changes have been made.
+ * <p>
+ * Each line number refers to the file as it looks after all of the previous
+ * changes, so the changes can be recorded in the same order they are made
+ * to the list of lines. The result is the same as calling
+ * {@link SourceMapUtils#addLineToSourceMap} and
+ * {@link SourceMapUtils#removeLineFromSourceMap} for every change.
+ */
+public class SourceMapLineTransform
+{
+	private static final int ADD = 1;
+	private static final int REMOVE = -1;
+
+	private List<int[]> changes = new ArrayList<int[]>();
+
+	/**
+	 * A line was inserted before the specified line.
+	 */
+	public void addLine(int lineToAdd)
+	{
+		changes.add(new int[] { ADD, lineToAdd });
+	}
+
+	/**
+	 * The specified line was removed. Mappings that start on this line are
+	 * removed too.
+	 */
+	public void removeLine(int lineToRemove)
+	{
+		changes.add(new int[] { REMOVE, lineToRemove });
+	}
+
+	public boolean isEmpty()
+	{
+		return changes.isEmpty();
+	}
+
+	/**
+	 * Moves a mapping to where it is after all of the changes.
+	 *
+	 * @param lines the start line and end line of a mapping. Updated in place.
+	 * @return false if the mapping starts on a line that was removed
+	 */
+	boolean transform(int[] lines)
+	{
+		int startLine = lines[0];
+		int endLine = lines[1];
+		for (int[] change : changes)
+		{
+			int line = change[1];
+			if (change[0] == ADD)
+			{
+				if (startLine >= line)
+				{
+					startLine++;
+					endLine++;
+				}
+			}
+			else
+			{
+				if (startLine == line)
+				{
+					return false;
+				}
+				if (startLine > line)
+				{
+					startLine--;
+				}
+				if (endLine > line)
+				{
+					endLine--;
+				}
+			}
+		}
+		lines[0] = startLine;
+		lines[1] = endLine;
+		return true;
+	}
+}
@@ -42,6 +42,48 @@ public class SourceMapUtils
 		return builder.toString();
 	}
 
+	public static String sourceMapConsumerToString(SourceMapConsumerV3 consumer, String file, SourceMapLineTransform transform)
+	{
+		SourceMapGeneratorV3 generator = sourceMapConsumerToGenerator(consumer, transform);
+		StringBuilder builder = new StringBuilder();
+		try
+		{
+			generator.appendTo(builder, file);
+		}
+		catch(IOException e)
+		{
+			return "";
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Copies the mappings to a new generator, after moving them to where
+	 * they are after all of the changes recorded by the transform. Unlike
+	 * calling addLineToSourceMap() or removeLineFromSourceMap() for each
+	 * change, the mappings are only visited once.
+	 */
+	public static SourceMapGeneratorV3 sourceMapConsumerToGenerator(SourceMapConsumerV3 consumer, SourceMapLineTransform transform)
+	{
+		if (transform.isEmpty())
+		{
+			return sourceMapConsumerToGenerator(consumer);
+		}
+		SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+		generator.setSourceRoot(consumer.getSourceRoot());
+		LineTransformVisitor visitor = new LineTransformVisitor(generator, transform);
+		consumer.visitMappings(visitor);
+		if (visitor.lastStartPosition != null)
+		{
+			//add an extra mapping because there seems to be a bug in
+			//SourceMapGeneratorV3's appendTo() that omits the last
+			//entry, for some reason
+			appendExtraMappingToGenerator(generator, visitor.lastSourceName, visitor.lastSymbolName,
+				visitor.lastSourceStartPosition, visitor.lastStartPosition, visitor.lastEndPosition);
+		}
+		return generator;
+	}
+
 	public static SourceMapGeneratorV3 sourceMapConsumerToGenerator(SourceMapConsumerV3 consumer)
 	{
 		final SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
@@ -222,6 +264,52 @@ public class SourceMapUtils
 		}
 	}
 
+	private static class LineTransformVisitor implements SourceMapConsumerV3.EntryVisitor
+	{
+		private LineTransformVisitor(SourceMapGeneratorV3 generator, SourceMapLineTransform transform)
+		{
+			this.generator = generator;
+			this.transform = transform;
+		}
+
+		private SourceMapGeneratorV3 generator;
+		private SourceMapLineTransform transform;
+		private int[] lines = new int[2];
+		private String lastSourceName;
+		private String lastSymbolName;
+		private FilePosition lastSourceStartPosition;
+		private FilePosition lastStartPosition;
+		private FilePosition lastEndPosition;
+
+		@Override
+		public void visit(String sourceName,
+			String symbolName,
+			FilePosition sourceStartPosition,
+			FilePosition startPosition,
+			FilePosition endPosition) {
+			lines[0] = startPosition.getLine();
+			lines[1] = endPosition.getLine();
+			if (!transform.transform(lines))
+			{
+				return;
+			}
+			if (lines[0] != startPosition.getLine())
+			{
+				startPosition = new FilePosition(lines[0], startPosition.getColumn());
+			}
+			if (lines[1] != endPosition.getLine())
+			{
+				endPosition = new FilePosition(lines[1], endPosition.getColumn());
+			}
+			generator.addMapping(sourceName, symbolName, sourceStartPosition, startPosition, endPosition);
+			lastSourceName = sourceName;
+			lastSymbolName = symbolName;
+			lastSourceStartPosition = sourceStartPosition;
+			lastStartPosition = startPosition;
+			lastEndPosition = endPosition;
+		}
+	}
+
 	public static String sourceMapGeneratorToString(SourceMapGeneratorV3 generator, String fileName)
 	{
 		StringBuilder builder = new StringBuilder();
@@ -0,0 +1,190 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.clients;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCompileDaemon
+{
+    private File tempFolder;
+    private File sourceFolder;
+    private File configFile;
+    private File stateFile;
+    private CompileDaemon daemon;
+    private Thread daemonThread;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempFolder = Files.createTempDirectory("royale-compile-daemon").toFile();
+        sourceFolder = new File(tempFolder, "src");
+        writeSource("Main.as", "package { import foo.A; public class Main {"
+                + " public function Main() { new A(); var s:String = CONFIG::greeting; } } }");
+        writeSource("foo/A.as", "package foo { public class A {"
+                + " public function A() { var s:String = 'hello'; } } }");
+        configFile = new File(tempFolder, "extra-config.xml");
+        writeConfig("'one'");
+
+        stateFile = new File(tempFolder, "daemon.properties");
+        daemon = new CompileDaemon(stateFile, 4, 0);
+        daemon.start(0);
+        daemonThread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                daemon.run();
+            }
+        };
+        daemonThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        daemon.stop();
+        daemonThread.join(60 * 1000);
+        FileUtils.deleteDirectory(tempFolder);
+    }
+
+    @Test
+    public void testRebuildsChangedFile() throws Exception
+    {
+        assertBuilds();
+        assertTrue(readOutput("foo/A.js").contains("hello"));
+        // the messages of the compiler are sent to the client
+        assertTrue(out.toString(), out.toString().contains("seconds"));
+
+        // the same size as before
+        writeSource("foo/A.as", "package foo { public class A {"
+                + " public function A() { var s:String = 'howdy'; } } }");
+        assertBuilds();
+        String output = readOutput("foo/A.js");
+        assertTrue(output, output.contains("howdy"));
+        assertFalse(output, output.contains("hello"));
+        assertEquals(1, daemon.getColdBuildCount());
+    }
+
+    @Test
+    public void testAddedAndRemovedFiles() throws Exception
+    {
+        assertBuilds();
+
+        writeSource("foo/B.as", "package foo { public class B {"
+                + " public function B() {} } }");
+        writeSource("Main.as", "package { import foo.A; import foo.B; public class Main {"
+                + " public function Main() { new A(); new B(); var s:String = CONFIG::greeting; } } }");
+        assertBuilds();
+        assertTrue(new File(tempFolder, "out/bin/js-debug/foo/B.js").exists());
+
+        assertEquals(1, daemon.getColdBuildCount());
+
+        assertTrue(new File(sourceFolder, "foo/B.as").delete());
+        assertNotEquals(0, build());
+        // the problems are sent to the client too
+        assertTrue(err.toString(), err.toString().contains("foo.B"));
+
+        writeSource("Main.as", "package { import foo.A; public class Main {"
+                + " public function Main() { new A(); var s:String = CONFIG::greeting; } } }");
+        assertBuilds();
+    }
+
+    @Test
+    public void testChangedConfigurationBuildsFromScratch() throws Exception
+    {
+        assertBuilds();
+        assertTrue(readOutput("Main.js").contains("one"));
+
+        assertBuilds();
+        assertEquals(1, daemon.getColdBuildCount());
+
+        writeConfig("'two'");
+        assertBuilds();
+        String output = readOutput("Main.js");
+        assertTrue(output, output.contains("two"));
+        assertFalse(output, output.contains("one"));
+        assertEquals(2, daemon.getColdBuildCount());
+    }
+
+    private void assertBuilds()
+    {
+        int exitCode = build();
+        assertEquals(out.toString() + err.toString(), 0, exitCode);
+    }
+
+    private int build()
+    {
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        String jsSwcPath = FilenameNormalization.normalize("../compiler-externc/target/js.swc");
+        String[] args = new String[] {
+            "-targets=JSRoyale",
+            "-debug=true",
+            "-load-config+=" + configFile.getPath(),
+            "-external-library-path=" + jsSwcPath,
+            "-source-path=" + sourceFolder.getPath(),
+            "-js-output=" + new File(tempFolder, "out").getPath(),
+            new File(sourceFolder, "Main.as").getPath()
+        };
+        return CompileDaemonClient.submit(stateFile, MXMLJSCRoyale.class.getName(), args, out, err);
+    }
+
+    private String readOutput(String path) throws IOException
+    {
+        return FileUtils.readFileToString(new File(tempFolder, "out/bin/js-debug/" + path), StandardCharsets.UTF_8);
+    }
+
+    private void writeConfig(String greeting) throws IOException
+    {
+        writeFile(configFile, "<royale-config><compiler><define><name>CONFIG::greeting</name>"
+                + "<value>" + greeting + "</value></define></compiler></royale-config>");
+    }
+
+    private void writeSource(String path, String source) throws IOException
+    {
+        writeFile(new File(sourceFolder, path), source);
+    }
+
+    private static void writeFile(File file, String contents) throws IOException
+    {
+        long lastModified = file.exists() ? file.lastModified() : 0;
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        // file systems with a coarse time stamp would hide the change
+        if (file.lastModified() <= lastModified)
+            file.setLastModified(lastModified + 2000);
+    }
+}
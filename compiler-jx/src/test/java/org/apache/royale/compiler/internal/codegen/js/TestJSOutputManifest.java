@@ -0,0 +1,154 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.codegen.js;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJSOutputManifest
+{
+    private File outputFolder;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        outputFolder = Files.createTempDirectory("royale-output-manifest").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(outputFolder);
+    }
+
+    @Test
+    public void testSkipsUnchangedFile() throws IOException
+    {
+        File file = new File(outputFolder, "Foo.js");
+        JSOutputManifest manifest = new JSOutputManifest(outputFolder);
+        assertTrue(manifest.write(file, bytes("goog.provide('Foo');")));
+        manifest.save();
+
+        manifest = new JSOutputManifest(outputFolder);
+        assertFalse(manifest.write(file, bytes("goog.provide('Foo');")));
+        assertEquals(0, manifest.getWrittenCount());
+        assertEquals(1, manifest.getSkippedCount());
+    }
+
+    @Test
+    public void testWritesChangedFile() throws IOException
+    {
+        File file = new File(outputFolder, "Foo.js");
+        JSOutputManifest manifest = new JSOutputManifest(outputFolder);
+        manifest.write(file, bytes("goog.provide('Foo');"));
+        manifest.save();
+
+        manifest = new JSOutputManifest(outputFolder);
+        assertTrue(manifest.write(file, bytes("goog.provide('Bar');")));
+        assertEquals("goog.provide('Bar');", read(file));
+        assertEquals(1, manifest.getWrittenCount());
+        assertEquals(0, manifest.getSkippedCount());
+    }
+
+    @Test
+    public void testWritesDeletedFile() throws IOException
+    {
+        File file = new File(outputFolder, "Foo.js");
+        JSOutputManifest manifest = new JSOutputManifest(outputFolder);
+        manifest.write(file, bytes("goog.provide('Foo');"));
+        manifest.save();
+        file.delete();
+
+        manifest = new JSOutputManifest(outputFolder);
+        assertTrue(manifest.write(file, bytes("goog.provide('Foo');")));
+        assertEquals("goog.provide('Foo');", read(file));
+    }
+
+    @Test
+    public void testSkipsFileChangedBeforeSave() throws IOException
+    {
+        // like the GoogDepsWriter, which changes the files when it publishes
+        File file = new File(outputFolder, "Foo.js");
+        JSOutputManifest manifest = new JSOutputManifest(outputFolder);
+        manifest.write(file, bytes("goog.provide('Foo');"));
+        FileUtils.write(file, "goog.provide('Foo');\n/*Royale Dependency List ''*/", StandardCharsets.UTF_8);
+        file.setLastModified(file.lastModified() - 10000);
+        manifest.save();
+
+        manifest = new JSOutputManifest(outputFolder);
+        assertFalse(manifest.write(file, bytes("goog.provide('Foo');")));
+        assertEquals("goog.provide('Foo');\n/*Royale Dependency List ''*/", read(file));
+        manifest.save();
+
+        manifest = new JSOutputManifest(outputFolder);
+        assertFalse(manifest.write(file, bytes("goog.provide('Foo');")));
+    }
+
+    @Test
+    public void testRemovesDeletedFiles() throws IOException
+    {
+        File file = new File(outputFolder, "Foo.js");
+        File otherFile = new File(outputFolder, "Bar.js");
+        JSOutputManifest manifest = new JSOutputManifest(outputFolder);
+        manifest.write(file, bytes("goog.provide('Foo');"));
+        manifest.write(otherFile, bytes("goog.provide('Bar');"));
+        manifest.save();
+        otherFile.delete();
+
+        new JSOutputManifest(outputFolder).save();
+        String contents = read(new File(outputFolder, JSOutputManifest.FILE_NAME));
+        assertTrue(contents.contains("Foo.js"));
+        assertFalse(contents.contains("Bar.js"));
+    }
+
+    @Test
+    public void testOutputStreamWritesOnClose() throws IOException
+    {
+        File file = new File(outputFolder, "Foo.js.map");
+        JSOutputManifest manifest = new JSOutputManifest(outputFolder);
+        OutputStream out = manifest.createOutputStream(file);
+        out.write(bytes("{}"));
+        assertFalse(file.exists());
+        out.close();
+        assertEquals("{}", read(file));
+        assertEquals(1, manifest.getWrittenCount());
+    }
+
+    private static byte[] bytes(String contents)
+    {
+        return contents.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
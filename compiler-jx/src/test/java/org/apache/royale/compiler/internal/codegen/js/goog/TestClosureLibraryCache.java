@@ -0,0 +1,201 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.goog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.javascript.jscomp.SourceFile;
+
+public class TestClosureLibraryCache
+{
+    private File tempFolder;
+    private File jarFile;
+    private Properties whiteList;
+    private List<String> entryPoints;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempFolder = Files.createTempDirectory("royale-closure-library").toFile();
+        jarFile = new File(tempFolder, "closure.jar");
+        FileUtils.write(jarFile, "jar", StandardCharsets.UTF_8);
+        whiteList = new Properties();
+        whiteList.setProperty("goog/a.js", "");
+        whiteList.setProperty("goog/b.js", "");
+        entryPoints = Arrays.asList("goog.a");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(tempFolder);
+    }
+
+    @Test
+    public void testPreparesOnce() throws IOException
+    {
+        ClosureLibraryCache cache = new ClosureLibraryCache(new File(tempFolder, "cache"));
+        CountingPreparer preparer = new CountingPreparer();
+        ClosureLibraryCache.Entry entry = cache.get(jarFile, whiteList, entryPoints, preparer);
+        assertEquals(Arrays.asList("goog/b.js", "goog/a.js"), names(entry.getSourceFiles()));
+        assertEquals("a", entry.getSourceFiles().get(1).getCode());
+        assertTrue(new File(entry.getDirectory(), "goog/a.js").isFile());
+
+        ClosureLibraryCache.Entry cachedEntry = cache.get(jarFile, whiteList, entryPoints, preparer);
+        assertEquals(entry.getKey(), cachedEntry.getKey());
+        assertEquals(1, preparer.prepareCount);
+    }
+
+    @Test
+    public void testReadsPreparedLibraryFromDisk() throws IOException
+    {
+        File cacheFolder = new File(tempFolder, "cache");
+        CountingPreparer preparer = new CountingPreparer();
+        new ClosureLibraryCache(cacheFolder).get(jarFile, whiteList, entryPoints, preparer);
+
+        // another cache in the same directory, like in a build in another JVM
+        File otherCacheFolder = new File(tempFolder, "other");
+        FileUtils.copyDirectory(cacheFolder, otherCacheFolder);
+        ClosureLibraryCache.Entry entry = new ClosureLibraryCache(otherCacheFolder).get(
+                jarFile, whiteList, entryPoints, preparer);
+        assertEquals(1, preparer.prepareCount);
+        assertEquals(Arrays.asList("goog/b.js", "goog/a.js"), names(entry.getSourceFiles()));
+    }
+
+    @Test
+    public void testKeyDependsOnInputs() throws IOException
+    {
+        ClosureLibraryCache cache = new ClosureLibraryCache(new File(tempFolder, "cache"));
+        CountingPreparer preparer = new CountingPreparer();
+        String key = cache.get(jarFile, whiteList, entryPoints, preparer).getKey();
+
+        String otherKey = cache.get(jarFile, whiteList, Arrays.asList("goog.b"), preparer).getKey();
+        assertNotEquals(key, otherKey);
+
+        FileUtils.write(jarFile, "changed jar", StandardCharsets.UTF_8);
+        otherKey = cache.get(jarFile, whiteList, entryPoints, preparer).getKey();
+        assertNotEquals(key, otherKey);
+        assertEquals(3, preparer.prepareCount);
+    }
+
+    @Test
+    public void testCopiesOnce() throws IOException
+    {
+        ClosureLibraryCache cache = new ClosureLibraryCache(new File(tempFolder, "cache"));
+        ClosureLibraryCache.Entry entry = cache.get(jarFile, whiteList, entryPoints, new CountingPreparer());
+        File outputFolder = new File(tempFolder, "library/closure");
+        assertTrue(entry.copyTo(outputFolder));
+        assertEquals("b", FileUtils.readFileToString(new File(outputFolder, "goog/b.js"), StandardCharsets.UTF_8));
+        assertFalse(entry.copyTo(outputFolder));
+
+        ClosureLibraryCache.forgetCopy(outputFolder);
+        assertTrue(entry.copyTo(outputFolder));
+    }
+
+    @Test
+    public void testSortFailureIsNotCached() throws IOException
+    {
+        File cacheFolder = new File(tempFolder, "cache");
+        ClosureLibraryCache cache = new ClosureLibraryCache(cacheFolder);
+        CountingPreparer preparer = new CountingPreparer();
+        preparer.failSort = true;
+        try
+        {
+            cache.get(jarFile, whiteList, entryPoints, preparer);
+            fail("expected an IOException");
+        }
+        catch (IOException e)
+        {
+        }
+        assertEquals(0, cacheFolder.list().length);
+
+        preparer.failSort = false;
+        ClosureLibraryCache.Entry entry = cache.get(jarFile, whiteList, entryPoints, preparer);
+        assertEquals(Arrays.asList("goog/b.js", "goog/a.js"), names(entry.getSourceFiles()));
+        assertEquals(2, preparer.prepareCount);
+    }
+
+    @Test
+    public void testNothingCachedWithoutPrivateDirectory() throws IOException
+    {
+        File file = new File(tempFolder, "file");
+        FileUtils.write(file, "", StandardCharsets.UTF_8);
+        CountingPreparer preparer = new CountingPreparer();
+        assertNull(new ClosureLibraryCache(file).get(jarFile, whiteList, entryPoints, preparer));
+        assertEquals(0, preparer.prepareCount);
+    }
+
+    private static List<String> names(List<SourceFile> sourceFiles)
+    {
+        List<String> names = new ArrayList<String>();
+        for (SourceFile sourceFile : sourceFiles)
+        {
+            names.add(sourceFile.getName());
+        }
+        return names;
+    }
+
+    private static class CountingPreparer implements ClosureLibraryCache.IPreparer
+    {
+        int prepareCount;
+        boolean failSort;
+
+        @Override
+        public List<SourceFile> getSourceFiles()
+        {
+            prepareCount++;
+            List<SourceFile> sourceFiles = new ArrayList<SourceFile>();
+            sourceFiles.add(new JarSourceFile("goog/a.js", "a", false));
+            sourceFiles.add(new JarSourceFile("goog/b.js", "b", false));
+            return sourceFiles;
+        }
+
+        @Override
+        public List<SourceFile> sort(File directory, List<SourceFile> sourceFiles) throws IOException
+        {
+            if (failSort)
+                throw new IOException("goog/deps.js");
+            assertTrue(new File(directory, "goog/a.js").isFile());
+            List<SourceFile> sorted = new ArrayList<SourceFile>(sourceFiles);
+            Collections.reverse(sorted);
+            return sorted;
+        }
+    }
+}
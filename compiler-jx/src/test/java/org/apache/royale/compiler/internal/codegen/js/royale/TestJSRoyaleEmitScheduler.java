@@ -0,0 +1,200 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.royale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.clients.MXMLJSCRoyale;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJSRoyaleEmitScheduler
+{
+    private File tempFolder;
+    private File sourceFolder;
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempFolder = Files.createTempDirectory("royale-emit-scheduler").toFile();
+        sourceFolder = new File(tempFolder, "src");
+        // the emitted calls are never run, so it only needs to be compiled
+        writeSource("org/apache/royale/utils/Language.as", "package org.apache.royale.utils {"
+                + " public class Language { } }");
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        executorService.shutdownNow();
+        FileUtils.deleteDirectory(tempFolder);
+    }
+
+    @Test
+    public void testParallelOutputMatchesSerial() throws IOException
+    {
+        // the main unit only requires Language because its base class,
+        // which is emitted before it, does
+        writeSource("Main.as", "package { import foo.*; public class Main extends Base {"
+                + " public function Main() { var a:A = new A(); var b:IB = new B();"
+                + " var c:C = new C(a); var d:D = new D(); d.run(c); } } }");
+        writeSource("foo/Base.as", "package foo { import org.apache.royale.utils.Language;"
+                + " public class Base { private var l:Class = Language;"
+                + " public function check(o:Object):Boolean { return o is A; } } }");
+        writeSource("foo/A.as", "package foo { public class A {"
+                + " public var name:String = 'a'; public function A() { } } }");
+        writeSource("foo/IB.as", "package foo { public interface IB {"
+                + " function get value():int; } }");
+        writeSource("foo/B.as", "package foo { public class B extends A implements IB {"
+                + " public function B() { super(); }"
+                + " public function get value():int { return name.length; } } }");
+        writeSource("foo/C.as", "package foo { public class C {"
+                + " private var a:A; public function C(a:A) { this.a = a; }"
+                + " public function isB():Boolean { return a is B; } } }");
+        writeSource("foo/D.as", "package foo { public class D {"
+                + " public function D() { }"
+                + " public function run(c:C):int { var i:int = int(c.isB()); return i * 2; } } }");
+        assertParallelOutputMatchesSerial();
+        String output = FileUtils.readFileToString(new File(tempFolder, "parallel/bin/js-debug/Main.js"),
+                StandardCharsets.UTF_8);
+        assertTrue(output, output.contains("goog.require('org.apache.royale.utils.Language');"));
+    }
+
+    @Test
+    public void testParallelOutputMatchesSerialWithoutLanguage() throws IOException
+    {
+        writeSource("Main.as", "package { import foo.*; public class Main {"
+                + " public function Main() { new A(); new E(); } } }");
+        writeSource("foo/A.as", "package foo { public class A {"
+                + " public var name:String = 'a'; public function A() { } } }");
+        writeSource("foo/E.as", "package foo { public class E extends A {"
+                + " public function E() { super(); name = 'e'; } } }");
+        assertParallelOutputMatchesSerial();
+    }
+
+    private void assertParallelOutputMatchesSerial() throws IOException
+    {
+        File serialFolder = new File(tempFolder, "serial");
+        File parallelFolder = new File(tempFolder, "parallel");
+        compile(serialFolder, false);
+        compile(parallelFolder, true);
+
+        File serialOutput = new File(serialFolder, "bin/js-debug");
+        File parallelOutput = new File(parallelFolder, "bin/js-debug");
+        List<String> serialFiles = listFiles(serialOutput);
+        assertTrue(serialFiles.toString(), serialFiles.contains("foo/A.js"));
+        assertEquals(serialFiles, listFiles(parallelOutput));
+        for (String path : serialFiles)
+        {
+            assertEquals(path,
+                    FileUtils.readFileToString(new File(serialOutput, path), StandardCharsets.UTF_8),
+                    FileUtils.readFileToString(new File(parallelOutput, path), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void compile(File outputFolder, boolean parallel)
+    {
+        String jsSwcPath = FilenameNormalization.normalize("../compiler-externc/target/js.swc");
+        String[] args = new String[] {
+            "-targets=JSRoyale",
+            "-debug=true",
+            "-js-parallel-emit=" + parallel,
+            "-external-library-path=" + jsSwcPath,
+            "-source-path=" + sourceFolder.getPath(),
+            "-js-output=" + outputFolder.getPath(),
+            new File(sourceFolder, "Main.as").getPath()
+        };
+        ParallelMXMLJSCRoyale compiler = new ParallelMXMLJSCRoyale();
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        int exitCode = compiler.mainNoExit(args, problems, false);
+        assertEquals(problems.toString(), 0, exitCode);
+        // make sure that the parallel build didn't quietly fall back
+        assertEquals(parallel, compiler.parallel);
+    }
+
+    private List<String> listFiles(File folder)
+    {
+        List<String> paths = new ArrayList<String>();
+        Collection<File> files = FileUtils.listFiles(folder, null, true);
+        for (File file : files)
+        {
+            String path = folder.toURI().relativize(file.toURI()).getPath();
+            paths.add(path);
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private void writeSource(String path, String source) throws IOException
+    {
+        FileUtils.writeStringToFile(new File(sourceFolder, path), source, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Emits on a pool of its own, so that the units run concurrently even if
+     * the machine has a single processor.
+     */
+    private class ParallelMXMLJSCRoyale extends MXMLJSCRoyale
+    {
+        boolean parallel;
+
+        @Override
+        protected JSRoyaleEmitScheduler createEmitScheduler()
+        {
+            JSRoyaleEmitScheduler scheduler;
+            if (config.getJsParallelEmit())
+                scheduler = new JSRoyaleEmitScheduler(project, executorService, 4);
+            else
+                scheduler = super.createEmitScheduler();
+            parallel = scheduler.isParallel();
+            return scheduler;
+        }
+
+        @Override
+        protected void writeCompilationUnit(ICompilationUnit cu, File outputFolder,
+                List<ICompilerProblem> unitProblems) throws InterruptedException, IOException
+        {
+            // give the main unit a chance to overtake the others, if the
+            // scheduler doesn't keep it in order
+            if (parallel && cu != project.mainCU)
+                Thread.sleep(100);
+            super.writeCompilationUnit(cu, outputFolder, unitProblems);
+        }
+    }
+}
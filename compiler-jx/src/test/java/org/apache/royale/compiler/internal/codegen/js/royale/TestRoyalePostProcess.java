@@ -0,0 +1,172 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.codegen.js.royale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.royale.compiler.driver.IBackend;
+import org.apache.royale.compiler.internal.codegen.EmitterOutputBuffer;
+import org.apache.royale.compiler.internal.codegen.as.ASEmitter;
+import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.internal.test.ASTestBase;
+import org.apache.royale.compiler.tree.as.IFileNode;
+import org.junit.Test;
+
+/**
+ * Checks that post-processing the output while it is written gives the same
+ * result as post-processing it to a string.
+ */
+public class TestRoyalePostProcess extends ASTestBase
+{
+    private static final String HEADER = "/**\n"
+            + " * foo.Bar\n"
+            + " *\n"
+            + " * @fileoverview\n"
+            + " */\n"
+            + "\n"
+            + "goog.provide('foo.Bar');\n"
+            + "\n";
+
+    private static final String BODY = "\n"
+            + "\n"
+            + "\n"
+            + "/**\n"
+            + " * @constructor\n"
+            + " */\n"
+            + "foo.Bar = function() {\n"
+            + "};\n";
+
+    private static final String LANGUAGE_REQUIRE = "goog.require('org.apache.royale.utils.Language');";
+
+    @Override
+    public void setUp()
+    {
+        backend = createBackend();
+        project = new RoyaleJSProject(workspace, backend);
+        project.config = new JSGoogConfiguration();
+        super.setUp();
+    }
+
+    @Override
+    protected IBackend createBackend()
+    {
+        return new RoyaleBackend();
+    }
+
+    @Test
+    public void testEmittedFile()
+    {
+        IFileNode node = compileAS("package foo { public class Bar {"
+                + " public function test(o:Object):Boolean { return o is Bar; } } }");
+        asBlockWalker.visitFile(node);
+        assertTrue(writer.getOutput() instanceof EmitterOutputBuffer);
+        String output = assertStreamedMatches(writer.getOutput());
+        assertTrue(output, output.contains(LANGUAGE_REQUIRE));
+    }
+
+    @Test
+    public void testRequireAfterProvide() throws IOException
+    {
+        ((JSRoyaleEmitter) asEmitter).getModel().needLanguage = true;
+        String output = assertStreamedMatches(toBuffer(HEADER + BODY));
+        assertTrue(output, output.contains("goog.provide('foo.Bar');\n" + LANGUAGE_REQUIRE + "\n"));
+    }
+
+    @Test
+    public void testRequireAfterRequires() throws IOException
+    {
+        ((JSRoyaleEmitter) asEmitter).getModel().needLanguage = true;
+        String output = assertStreamedMatches(toBuffer(HEADER
+                + "goog.require('foo.Baz');\n" + BODY));
+        assertTrue(output, output.contains("goog.require('foo.Baz');\n" + LANGUAGE_REQUIRE + "\n"));
+    }
+
+    @Test
+    public void testExistingRequire() throws IOException
+    {
+        ((JSRoyaleEmitter) asEmitter).getModel().needLanguage = true;
+        String output = assertStreamedMatches(toBuffer(HEADER
+                + LANGUAGE_REQUIRE + "\n" + BODY));
+        assertEquals(output, output.indexOf(LANGUAGE_REQUIRE), output.lastIndexOf(LANGUAGE_REQUIRE));
+    }
+
+    @Test
+    public void testTrailingNewLines() throws IOException
+    {
+        assertStreamedMatches(toBuffer(HEADER + BODY + "\n\n\n"));
+        assertStreamedMatches(toBuffer("\n\n"));
+        assertStreamedMatches(toBuffer(""));
+    }
+
+    @Test
+    public void testLargeOutput() throws IOException
+    {
+        // larger than the chunks that the buffer is copied in
+        StringBuilder body = new StringBuilder(BODY);
+        for (int i = 0; i < 2000; i++)
+        {
+            body.append("foo.Bar.prototype.method").append(i).append(" = function() {\n};\n");
+        }
+        ((JSRoyaleEmitter) asEmitter).getModel().needLanguage = true;
+        String output = assertStreamedMatches(toBuffer(HEADER + body));
+        assertTrue(output, output.endsWith("foo.Bar.prototype.method1999 = function() {\n};"));
+    }
+
+    @Test
+    public void testDefaultPostProcess() throws IOException
+    {
+        ASEmitter emitter = new ASEmitter(null);
+        StringWriter streamed = new StringWriter();
+        emitter.postProcess(toBuffer(HEADER + BODY), streamed);
+        assertEquals(emitter.postProcess(HEADER + BODY), streamed.toString());
+    }
+
+    /**
+     * @return The output of <code>postProcess(String)</code>.
+     */
+    private String assertStreamedMatches(CharSequence output)
+    {
+        String postProcessed = asEmitter.postProcess(output.toString());
+        StringWriter streamed = new StringWriter();
+        try
+        {
+            asEmitter.postProcess(output, streamed);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        assertEquals(postProcessed, streamed.toString());
+        return postProcessed;
+    }
+
+    private static EmitterOutputBuffer toBuffer(String output) throws IOException
+    {
+        EmitterOutputBuffer buffer = new EmitterOutputBuffer();
+        buffer.write(output);
+        return buffer;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.clients.MXMLJSCRoyale;
+import org.apache.royale.compiler.clients.problems.ProblemQuery;
+import org.apache.royale.compiler.codegen.js.IJSWriter;
+import org.apache.royale.compiler.internal.driver.js.goog.JSGoogConfiguration;
+import org.apache.royale.compiler.internal.projects.RoyaleJSProject;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestGoogDepsWriter
+{
+    private File tempFolder;
+    private MXMLJSCRoyale compiler;
+    private RoyaleJSProject project;
+    private File outputFolder;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempFolder = Files.createTempDirectory("royale-goog-deps").toFile();
+        File sourceFolder = new File(tempFolder, "src");
+        writeSource(sourceFolder, "Main.as", "package { import foo.A; import foo.B;"
+                + " import org.apache.royale.utils.Language; public class Main {"
+                + " public function Main() { new A(); new B(); new Language(); } } }");
+        // the static initializer depends on Language, so publishing adds the
+        // dependencies of Language to A
+        writeSource(sourceFolder, "foo/A.as", "package foo { public class A {"
+                + " public static var n:int = Math.floor(5.5); public function A() {} } }");
+        writeSource(sourceFolder, "foo/B.as", "package foo { public class B extends Base {"
+                + " public function B() { super(); } } }");
+        writeSource(sourceFolder, "foo/Base.as", "package foo { public class Base {"
+                + " public function Base() {} } }");
+        writeSource(sourceFolder, "org/apache/royale/utils/Language.as", "package org.apache.royale.utils {"
+                + " import foo.Base; public class Language { public function Language() { new Base(); } } }");
+
+        compiler = new MXMLJSCRoyale();
+        compiler.setKeepWorkspaceOpen(true);
+        String jsSwcPath = FilenameNormalization.normalize("../compiler-externc/target/js.swc");
+        String[] args = new String[] {
+            "-targets=JSRoyale",
+            "-remove-circulars",
+            "-debug=true",
+            "-external-library-path=" + jsSwcPath,
+            "-source-path=" + sourceFolder.getPath(),
+            "-js-output=" + new File(tempFolder, "out").getPath(),
+            new File(sourceFolder, "Main.as").getPath()
+        };
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        assertEquals(problems.toString(), 0, compiler.mainNoExit(args, problems, false));
+        project = compiler.getOpenProjects().get(0);
+        outputFolder = new File(tempFolder, "out/bin/js-debug");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        compiler.closeWorkspaces();
+        FileUtils.deleteDirectory(tempFolder);
+    }
+
+    @Test
+    public void testReusesSortOrderAfterRewrite() throws Exception
+    {
+        // the first publish changes the files
+        writeUnpublished("foo.A", "foo/A.js");
+        writeUnpublished("foo.B", "foo/B.js");
+        GoogDepsWriter writer = createWriter();
+        String deps = writer.generateDeps(project, new ProblemQuery());
+        assertEquals(1, writer.getSortCount());
+
+        // like a watch rebuild of classes whose dependencies didn't change
+        writeUnpublished("foo.A", "foo/A.js");
+        writeUnpublished("foo.B", "foo/B.js");
+        writer.invalidate();
+        assertEquals(deps, writer.generateDeps(project, new ProblemQuery()));
+        assertEquals(1, writer.getSortCount());
+
+        writer.invalidate();
+        assertEquals(deps, writer.generateDeps(project, new ProblemQuery()));
+        assertEquals(1, writer.getSortCount());
+
+        // a writer that starts from scratch finds the same dependencies, but
+        // may put them in another valid order
+        assertEquals(sortLines(deps), sortLines(createWriter().generateDeps(project, new ProblemQuery())));
+    }
+
+    @Test
+    public void testSortsAgainWhenDependenciesChange() throws Exception
+    {
+        GoogDepsWriter writer = createWriter();
+        writer.generateDeps(project, new ProblemQuery());
+        assertEquals(1, writer.getSortCount());
+
+        File file = writeUnpublished("foo.Base", "foo/Base.js");
+        List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+        int provideLine = 0;
+        while (!lines.get(provideLine).startsWith("goog.provide("))
+            provideLine++;
+        lines.add(provideLine + 1, "goog.require('foo.A');");
+        FileUtils.writeLines(file, "UTF-8", lines, "\n");
+        file.setLastModified(file.lastModified() + 2000);
+
+        writer.invalidate();
+        writer.generateDeps(project, new ProblemQuery());
+        assertEquals(2, writer.getSortCount());
+    }
+
+    private GoogDepsWriter createWriter()
+    {
+        return new GoogDepsWriter(outputFolder, "Main", (JSGoogConfiguration) project.config,
+                new ArrayList<ISWC>());
+    }
+
+    /**
+     * Writes a class the way it is emitted, before the publisher changes it.
+     */
+    private File writeUnpublished(String qname, String path) throws Exception
+    {
+        File file = new File(outputFolder, path);
+        long lastModified = file.lastModified();
+        ICompilationUnit unit = project.resolveQNameToCompilationUnit(qname);
+        IJSWriter writer = (IJSWriter) project.getBackend().createWriter(project,
+                new ArrayList<ICompilerProblem>(), unit, false);
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            writer.writeTo(out, null, null);
+        }
+        finally
+        {
+            out.close();
+            writer.close();
+        }
+        file.setLastModified(lastModified + 2000);
+        return file;
+    }
+
+    private static List<String> sortLines(String text)
+    {
+        List<String> lines = new ArrayList<String>(Arrays.asList(text.split("\n")));
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static void writeSource(File folder, String path, String source) throws IOException
+    {
+        FileUtils.write(new File(folder, path), source, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.projects;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.internal.driver.js.royale.RoyaleBackend;
+import org.apache.royale.compiler.internal.parsing.as.RoyaleASDocDelegate;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the linkage of a definition is recomputed when the name
+ * resolves to another definition, but not when other definitions change.
+ */
+public class TestRoyaleJSProject
+{
+    private File tempFolder;
+    private File sourceFolder;
+    private Workspace workspace;
+    private RoyaleJSProject project;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempFolder = Files.createTempDirectory("royale-js-project").toFile();
+        sourceFolder = new File(tempFolder, "src");
+        writeSource("src/foo/Ext.as", "package foo { /** @externs */ public class Ext { } }");
+        writeSource("src/foo/Plain.as", "package foo { /** A class. */ public class Plain { } }");
+
+        workspace = new Workspace();
+        // keeps the comments that @externs is found in
+        workspace.setASDocDelegate(new RoyaleASDocDelegate());
+        project = new RoyaleJSProject(workspace, new RoyaleBackend());
+        RoyaleProjectConfigurator.configure(project);
+        project.setSourcePath(Collections.singletonList(sourceFolder));
+        String jsSwcPath = FilenameNormalization.normalize("../compiler-externc/target/js.swc");
+        project.setLibraries(Collections.singletonList(new File(jsSwcPath)));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        workspace.close();
+        FileUtils.deleteDirectory(tempFolder);
+    }
+
+    @Test
+    public void testLinkage()
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            assertTrue(project.isExterns("foo.Ext"));
+            assertFalse(project.isGoogProvided("foo.Ext"));
+            assertFalse(project.isExterns("foo.Plain"));
+            assertTrue(project.isGoogProvided("foo.Plain"));
+            // js.swc doesn't contain any JavaScript
+            assertTrue(project.isExterns("Array"));
+            assertFalse(project.isGoogProvided("Array"));
+            assertFalse(project.isExterns("foo.Missing"));
+            assertTrue(project.isGoogProvided("foo.Missing"));
+        }
+    }
+
+    @Test
+    public void testOtherDefinitionAdded() throws IOException
+    {
+        assertTrue(project.isExterns("foo.Ext"));
+        assertFalse(project.isExterns("foo.Plain"));
+
+        int version = project.getScope().getDefinitionsVersion();
+        File otherFolder = new File(tempFolder, "other");
+        writeSource("other/bar/Other.as", "package bar { public class Other { } }");
+        project.setSourcePath(Arrays.asList(sourceFolder, otherFolder));
+        assertNotNull(project.resolveQNameToDefinition("bar.Other"));
+        assertNotEquals(version, project.getScope().getDefinitionsVersion());
+
+        assertTrue(project.isExterns("foo.Ext"));
+        assertFalse(project.isExterns("foo.Plain"));
+        assertTrue(project.isGoogProvided("foo.Plain"));
+    }
+
+    @Test
+    public void testDefinitionRemoved()
+    {
+        assertTrue(project.isExterns("foo.Ext"));
+        assertFalse(project.isGoogProvided("foo.Ext"));
+
+        project.setSourcePath(Collections.<File>emptyList());
+        assertNull(project.resolveQNameToDefinition("foo.Ext"));
+
+        // treated like any other name that can't be resolved
+        assertFalse(project.isExterns("foo.Ext"));
+        assertTrue(project.isGoogProvided("foo.Ext"));
+
+        project.setSourcePath(Collections.singletonList(sourceFolder));
+        assertTrue(project.isExterns("foo.Ext"));
+        assertFalse(project.isGoogProvided("foo.Ext"));
+    }
+
+    private void writeSource(String path, String source) throws IOException
+    {
+        FileUtils.writeStringToFile(new File(tempFolder, path), source, StandardCharsets.UTF_8);
+    }
+}
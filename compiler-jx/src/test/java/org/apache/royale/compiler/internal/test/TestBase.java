@@ -32,6 +32,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -244,7 +245,19 @@ public class TestBase implements ITestBase
     
     protected void assertOutPostProcess(String code, boolean keepMetadata)
     {
-    	mCode = removeGeneratedString(asEmitter.postProcess(writer.toString()));
+        String postProcessed = asEmitter.postProcess(writer.toString());
+        // JSWriter streams the output, which must give the same result
+        StringWriter streamed = new StringWriter();
+        try
+        {
+            asEmitter.postProcess(writer.getOutput(), streamed);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        assertThat(streamed.toString(), is(postProcessed));
+    	mCode = removeGeneratedString(postProcessed);
     	if (!keepMetadata)
     		mCode = removeMetadata(mCode);
         //System.out.println(mCode);
@@ -0,0 +1,142 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapGeneratorV3;
+
+public class TestSourceMapUtils
+{
+    private static final String FILE_NAME = "Foo.js";
+
+    @Test
+    public void testAddLines()
+    {
+        SourceMapConsumerV3 consumer = createConsumer();
+        SourceMapLineTransform transform = new SourceMapLineTransform();
+        SourceMapConsumerV3 expected = consumer;
+        for (int line : new int[] { 1, 1, 4, 0 })
+        {
+            transform.addLine(line);
+            expected = SourceMapUtils.addLineToSourceMap(expected, FILE_NAME, line);
+        }
+        assertEquals(SourceMapUtils.sourceMapConsumerToString(expected, FILE_NAME),
+                SourceMapUtils.sourceMapConsumerToString(consumer, FILE_NAME, transform));
+    }
+
+    @Test
+    public void testRemoveLines()
+    {
+        SourceMapLineTransform transform = new SourceMapLineTransform();
+        transform.removeLine(2);
+        transform.removeLine(2);
+        transform.removeLine(0);
+        SourceMapConsumerV3 result = transform(createConsumer(), transform);
+
+        // lines 0, 2 and 3 are gone, and the others moved up
+        List<String> expected = new ArrayList<String>();
+        int newLine = 0;
+        for (int line : new int[] { 1, 4, 5, 6, 7 })
+        {
+            expected.add(newLine + ":2 -> " + (line + 10) + ":4");
+            expected.add(newLine + ":12 -> " + (line + 10) + ":8");
+            newLine++;
+        }
+        assertEquals(expected, getMappings(result));
+    }
+
+    @Test
+    public void testMixedChanges()
+    {
+        SourceMapLineTransform transform = new SourceMapLineTransform();
+        transform.removeLine(1);
+        transform.addLine(3);
+        transform.addLine(0);
+        transform.removeLine(5);
+        SourceMapConsumerV3 result = transform(createConsumer(), transform);
+
+        // line 1 is removed, then a line is inserted before line 4 (line 3
+        // after the removal), then one before line 0, then line 4 (line 5
+        // after the other changes) is removed
+        List<String> expected = new ArrayList<String>();
+        int[] oldLines = new int[] { 0, 2, 3, 5, 6, 7 };
+        int[] newLines = new int[] { 1, 2, 3, 5, 6, 7 };
+        for (int i = 0; i < oldLines.length; i++)
+        {
+            expected.add(newLines[i] + ":2 -> " + (oldLines[i] + 10) + ":4");
+            expected.add(newLines[i] + ":12 -> " + (oldLines[i] + 10) + ":8");
+        }
+        assertEquals(expected, getMappings(result));
+    }
+
+    @Test
+    public void testNoChanges()
+    {
+        SourceMapConsumerV3 consumer = createConsumer();
+        assertEquals(SourceMapUtils.sourceMapConsumerToString(consumer, FILE_NAME),
+                SourceMapUtils.sourceMapConsumerToString(consumer, FILE_NAME, new SourceMapLineTransform()));
+    }
+
+    private static SourceMapConsumerV3 transform(SourceMapConsumerV3 consumer, SourceMapLineTransform transform)
+    {
+        SourceMapGeneratorV3 generator = SourceMapUtils.sourceMapConsumerToGenerator(consumer, transform);
+        return SourceMapUtils.sourceMapGeneratorToConsumer(generator, FILE_NAME);
+    }
+
+    private static List<String> getMappings(SourceMapConsumerV3 consumer)
+    {
+        final List<String> mappings = new ArrayList<String>();
+        consumer.visitMappings(new SourceMapConsumerV3.EntryVisitor()
+        {
+            @Override
+            public void visit(String sourceName, String symbolName,
+                    FilePosition sourceStartPosition,
+                    FilePosition startPosition, FilePosition endPosition)
+            {
+                mappings.add(startPosition.getLine() + ":" + startPosition.getColumn()
+                        + " -> " + sourceStartPosition.getLine() + ":" + sourceStartPosition.getColumn());
+            }
+        });
+        return mappings;
+    }
+
+    private static SourceMapConsumerV3 createConsumer()
+    {
+        SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+        for (int line = 0; line < 8; line++)
+        {
+            generator.addMapping("Foo.as", null, new FilePosition(line + 10, 4),
+                    new FilePosition(line, 2), new FilePosition(line, 12));
+            generator.addMapping("Foo.as", "bar", new FilePosition(line + 10, 8),
+                    new FilePosition(line, 12), new FilePosition(line + 1, 0));
+        }
+        // the last mapping is dropped by appendTo()
+        generator.addMapping("Foo.as", null, new FilePosition(20, 0),
+                new FilePosition(8, 0), new FilePosition(8, 1));
+        return SourceMapUtils.sourceMapGeneratorToConsumer(generator, FILE_NAME);
+    }
+}
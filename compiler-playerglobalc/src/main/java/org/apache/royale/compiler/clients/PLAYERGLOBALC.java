@@ -19,17 +19,31 @@
 
 package org.apache.royale.compiler.clients;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.flex.tools.FlexTool;
@@ -43,6 +57,7 @@ import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
+import org.dom4j.io.STAXEventReader;
 
 /**
  * Generates .as source files to build playerglobal.swc and airglobal.swc from
@@ -189,6 +204,7 @@ class PLAYERGLOBALC implements FlexTool {
 	private File sourceFolder;
 	private File targetFolder;
 	private File currentFile;
+	private Map<File, String> generatedFiles;
 
 	/**
 	 * Java program entry point.
@@ -260,9 +276,16 @@ class PLAYERGLOBALC implements FlexTool {
 		return exitCode.getCode();
 	}
 
+	/**
+	 * Generates the .as files for all the DITA files, using several threads if
+	 * there is more than one file. The files are written in the order of the
+	 * DITA file names, so a definition that appears in more than one DITA file
+	 * always comes from the same one, no matter how many threads are used.
+	 */
 	public void generateSources() throws Exception {
 		preclean();
 
+		List<File> ditaFiles = new ArrayList<File>();
 		for (File sourceFile : sourceFolder.listFiles()) {
 			if (sourceFile.isDirectory()) {
 				continue;
@@ -274,7 +297,66 @@ class PLAYERGLOBALC implements FlexTool {
 			if (sourceFileName.endsWith(".dita.xml")) {
 				continue;
 			}
-			parseFile(sourceFile);
+			ditaFiles.add(sourceFile);
+		}
+		Collections.sort(ditaFiles);
+
+		int threads = configuration.getThreads() > 0 ? configuration.getThreads()
+				: Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, ditaFiles.size());
+		if (threads <= 1) {
+			for (File ditaFile : ditaFiles) {
+				writeFiles(generateFiles(ditaFile));
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Map<File, String>>> futures = new ArrayList<Future<Map<File, String>>>();
+			for (final File ditaFile : ditaFiles) {
+				futures.add(executor.submit(new Callable<Map<File, String>>() {
+					@Override
+					public Map<File, String> call() throws Exception {
+						return generateFiles(ditaFile);
+					}
+				}));
+			}
+			for (Future<Map<File, String>> future : futures) {
+				try {
+					writeFiles(future.get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Parses a DITA file with a generator of its own, so that DITA files may
+	 * be parsed at the same time.
+	 * 
+	 * @return The contents of the .as files for the definitions in the DITA
+	 *         file, by target file, in the order that they were generated.
+	 */
+	private Map<File, String> generateFiles(File ditaFile) throws Exception {
+		PLAYERGLOBALC generator = new PLAYERGLOBALC();
+		generator.configuration = configuration;
+		generator.targetFolder = targetFolder;
+		generator.generatedFiles = new LinkedHashMap<File, String>();
+		generator.parseFile(ditaFile);
+		return generator.generatedFiles;
+	}
+
+	private void writeFiles(Map<File, String> files) throws IOException {
+		for (Map.Entry<File, String> file : files.entrySet()) {
+			FileUtils.writeStringToFile(file.getKey(), file.getValue());
 		}
 	}
 
@@ -292,7 +374,8 @@ class PLAYERGLOBALC implements FlexTool {
 		}
 		fileNameBuilder.append(".as");
 		File targetFile = new File(this.targetFolder, fileNameBuilder.toString());
-		FileUtils.writeStringToFile(targetFile, contents);
+		// written by generateSources(), after the whole DITA file was parsed
+		generatedFiles.put(targetFile, contents);
 	}
 
 	private boolean isAIROnly(Element prologElement) {
@@ -321,6 +404,11 @@ class PLAYERGLOBALC implements FlexTool {
 
 	private void parseFile(File ditaFile) throws Exception {
 		currentFile = ditaFile;
+		if (configuration.getStreamDita()) {
+			streamFile(ditaFile);
+			currentFile = null;
+			return;
+		}
 		String contents = null;
 		try {
 			contents = FileUtils.readFileToString(ditaFile, Charset.forName("utf8"));
@@ -341,6 +429,56 @@ class PLAYERGLOBALC implements FlexTool {
 		currentFile = null;
 	}
 
+	/**
+	 * Parses a DITA file like {@link #parseFile(File)}, but reads only one
+	 * child of the apiPackage element into memory at a time.
+	 */
+	private void streamFile(File ditaFile) throws Exception {
+		InputStream in = null;
+		try {
+			in = new BufferedInputStream(new FileInputStream(ditaFile));
+		} catch (Exception e) {
+			System.err.println("Failed to read XML file: " + ditaFile.getAbsolutePath());
+			return;
+		}
+		try {
+			XMLEventReader eventReader = XMLInputFactory.newInstance().createXMLEventReader(in, "UTF-8");
+			try {
+				XMLEvent event = eventReader.nextEvent();
+				while (!event.isStartElement() && eventReader.hasNext()) {
+					event = eventReader.nextEvent();
+				}
+				if (!event.isStartElement()
+						|| !"apiPackage".equals(event.asStartElement().getName().getLocalPart())) {
+					throw new Exception("No apiPackage root element: " + ditaFile.getAbsolutePath());
+				}
+				STAXEventReader elementReader = new STAXEventReader();
+				while (eventReader.hasNext()) {
+					if (eventReader.peek().isStartElement()) {
+						parsePackageMember(elementReader.readElement(eventReader));
+					} else {
+						eventReader.nextEvent();
+					}
+				}
+			} finally {
+				eventReader.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void parsePackageMember(Element element) throws Exception {
+		String name = element.getName();
+		if ("apiOperation".equals(name)) {
+			parsePackageFunction(element);
+		} else if ("apiValue".equals(name)) {
+			parsePackageVariable(element);
+		} else if ("apiClassifier".equals(name)) {
+			parseClassifier(element);
+		}
+	}
+
 	private void parsePackage(Element apiPackageElement) throws Exception {
 		List<Element> apiOperationElements = apiPackageElement.elements("apiOperation");
 		for (Element apiOperationElement : apiOperationElements) {
@@ -352,23 +490,27 @@ class PLAYERGLOBALC implements FlexTool {
 		}
 		List<Element> apiClassifierElements = apiPackageElement.elements("apiClassifier");
 		for (Element apiClassifierElement : apiClassifierElements) {
-			Element apiClassifierDetailElement = apiClassifierElement.element("apiClassifierDetail");
-			if (apiClassifierDetailElement == null) {
-				String fullyQualifiedName = apiClassifierElement.attributeValue("id");
-				throw new Exception("Not found: " + fullyQualifiedName);
-			}
-			Element apiClassifierDefElement = apiClassifierDetailElement.element("apiClassifierDef");
-			if (apiClassifierDefElement == null) {
-				String fullyQualifiedName = apiClassifierElement.attributeValue("id");
-				throw new Exception("Not found: " + fullyQualifiedName);
-			}
-			Element apiInterfaceElement = apiClassifierDefElement.element("apiInterface");
-			if (apiInterfaceElement != null) {
-				parseInterface(apiClassifierElement);
-				continue;
-			}
-			parseClass(apiClassifierElement);
+			parseClassifier(apiClassifierElement);
+		}
+	}
+
+	private void parseClassifier(Element apiClassifierElement) throws Exception {
+		Element apiClassifierDetailElement = apiClassifierElement.element("apiClassifierDetail");
+		if (apiClassifierDetailElement == null) {
+			String fullyQualifiedName = apiClassifierElement.attributeValue("id");
+			throw new Exception("Not found: " + fullyQualifiedName);
+		}
+		Element apiClassifierDefElement = apiClassifierDetailElement.element("apiClassifierDef");
+		if (apiClassifierDefElement == null) {
+			String fullyQualifiedName = apiClassifierElement.attributeValue("id");
+			throw new Exception("Not found: " + fullyQualifiedName);
+		}
+		Element apiInterfaceElement = apiClassifierDefElement.element("apiInterface");
+		if (apiInterfaceElement != null) {
+			parseInterface(apiClassifierElement);
+			return;
 		}
+		parseClass(apiClassifierElement);
 	}
 
 	private void parseClass(Element apiClassifierElement) throws Exception {
@@ -83,4 +83,48 @@ public class PlayerglobalcConfiguration extends Configuration
     {
         air = value;
     }
+
+    //
+    // 'threads' option
+    //
+
+    private int threads = 0;
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * The number of DITA files to parse at the same time. Pass 0 to use one
+     * thread per available processor.
+     */
+    @Config(advanced = true)
+    @Mapping("threads")
+    public void setThreads(ConfigurationValue cv, int value)
+    {
+        threads = value;
+    }
+
+    //
+    // 'stream-dita' option
+    //
+
+    private boolean streamDita = false;
+
+    public boolean getStreamDita()
+    {
+        return streamDita;
+    }
+
+    /**
+     * Reads the definitions of each DITA file one at a time, instead of
+     * reading the whole file into memory first.
+     */
+    @Config(advanced = true)
+    @Mapping("stream-dita")
+    public void setStreamDita(ConfigurationValue cv, boolean value)
+    {
+        streamDita = value;
+    }
 }
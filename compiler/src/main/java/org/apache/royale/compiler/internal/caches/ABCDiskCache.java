@@ -0,0 +1,521 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.royale.compiler.caches.IABCDiskCache;
+import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.ISWCDigest;
+import org.apache.royale.swc.ISWCLibrary;
+import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+
+/**
+ * A persistent cache of the {@code DoABC} tags of library SWFs in SWC files.
+ * <p>
+ * {@link FileScopeCache} builds the file scopes of a SWC script from its ABC
+ * bytes. Without this cache, getting those bytes means inflating and parsing
+ * the whole library SWF with {@link SWFCache}, on every launch of the
+ * compiler. This cache stores the ABC bytes of every script of a library in
+ * one file, so that later runs can read the bytes of just the scripts that
+ * they need.
+ * <p>
+ * A cache file is only used if the size and modification time of the SWC
+ * file and the digests of the library are the same as when the file was
+ * written. Otherwise, it is written again from the library SWF. A cache
+ * file that can't be read or written is treated like a cache miss, so the
+ * cache can never make a compilation fail.
+ * <p>
+ * The file is kept open after its header has been checked, and the ABC bytes
+ * are read through that handle, so that another compiler process replacing
+ * the file can't make this one read at offsets of a different file.
+ * <p>
+ * The file scopes are still built from the cached ABC bytes by
+ * {@link org.apache.royale.compiler.internal.abc.ABCScopeBuilder}, when a
+ * definition of the script is first resolved.
+ * <p>
+ * The layout of a cache file is:
+ *
+ * <pre>
+ * int     magic
+ * int     version
+ * int     size of the header that follows
+ * UTF     canonical path of the SWC
+ * UTF     path of the library SWF in the SWC
+ * long    size of the SWC
+ * long    modification time of the SWC
+ * UTF     digests of the library
+ * int     number of scripts
+ * {UTF name, int length} for each script
+ * the ABC bytes of each script, in the same order
+ * </pre>
+ */
+public class ABCDiskCache implements IABCDiskCache
+{
+    private static final int MAGIC = 0x41424343; // "ABCC"
+    private static final int VERSION = 1;
+    private static final String FILE_EXTENSION = ".abccache";
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory to store the cache files in. It is
+     * created if it doesn't exist yet.
+     */
+    public ABCDiskCache(File directory)
+    {
+        assert directory != null : "Cache directory can't be null.";
+        this.directory = directory;
+        this.libraries = new ConcurrentHashMap<String, LibraryEntry>();
+    }
+
+    private final File directory;
+    private final ConcurrentMap<String, LibraryEntry> libraries;
+
+    /**
+     * @return The directory that the cache files are stored in.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Get the ABC bytes of a script from the cache.
+     *
+     * @param swc The SWC that contains the library.
+     * @param librarySWFPath The path of the library SWF in the SWC.
+     * @param scriptName The name of the script.
+     * @return The ABC bytes, or null if they are not in the cache or the
+     * cached copy is out of date.
+     */
+    public byte[] getABCData(ISWC swc, String librarySWFPath, String scriptName)
+    {
+        final LibraryEntry entry = getLibraryEntry(swc, librarySWFPath);
+        synchronized (entry)
+        {
+            loadIndex(entry);
+            if (entry.scripts == null)
+                return null;
+            final long[] location = entry.scripts.get(scriptName);
+            if (location == null)
+                return null;
+            try
+            {
+                final byte[] bytes = new byte[(int)location[1]];
+                entry.handle.seek(location[0]);
+                entry.handle.readFully(bytes);
+                return bytes;
+            }
+            catch (IOException e)
+            {
+                closeHandle(entry);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Determine if the cache has an up to date copy of a library.
+     *
+     * @param swc The SWC that contains the library.
+     * @param librarySWFPath The path of the library SWF in the SWC.
+     * @return true if the ABC bytes of the library can be read from the
+     * cache.
+     */
+    public boolean hasLibrary(ISWC swc, String librarySWFPath)
+    {
+        final LibraryEntry entry = getLibraryEntry(swc, librarySWFPath);
+        synchronized (entry)
+        {
+            loadIndex(entry);
+            return entry.scripts != null;
+        }
+    }
+
+    /**
+     * Store the ABC bytes of all the scripts in a library SWF. Nothing
+     * happens if they are already stored by this or an earlier run, or if
+     * there were problems reading the library SWF. A library is only cached
+     * if it is clean, so that skipping the library SWF doesn't hide any
+     * problems in later runs.
+     *
+     * @param swc The SWC that contains the library.
+     * @param librarySWFPath The path of the library SWF in the SWC.
+     * @param tags The tags of the library SWF.
+     */
+    public void putLibrary(ISWC swc, String librarySWFPath, ITagContainer tags)
+    {
+        final LibraryEntry entry = getLibraryEntry(swc, librarySWFPath);
+        synchronized (entry)
+        {
+            if (entry.loaded && entry.scripts != null)
+                return;
+            if (!tags.getProblems().isEmpty())
+                return;
+            closeHandle(entry);
+            entry.loaded = true;
+            if (writeFile(entry, tags))
+            {
+                // check the file like one that was written by another
+                // process, and keep it open
+                entry.loaded = false;
+                loadIndex(entry);
+            }
+        }
+    }
+
+    /**
+     * Forget about a SWC, so that its cache files are checked again the next
+     * time they are needed.
+     *
+     * @param swc The SWC.
+     */
+    public void remove(ISWC swc)
+    {
+        for (ISWCLibrary library : swc.getLibraries())
+        {
+            final LibraryEntry entry = libraries.remove(createLibraryKey(swc, library.getPath()));
+            if (entry != null)
+            {
+                synchronized (entry)
+                {
+                    closeHandle(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the cache files that are open. They are opened again the next
+     * time they are needed.
+     */
+    public void close()
+    {
+        for (final LibraryEntry entry : libraries.values())
+        {
+            synchronized (entry)
+            {
+                closeHandle(entry);
+                entry.loaded = false;
+            }
+        }
+    }
+
+    private LibraryEntry getLibraryEntry(ISWC swc, String librarySWFPath)
+    {
+        final String key = createLibraryKey(swc, librarySWFPath);
+        LibraryEntry entry = libraries.get(key);
+        if (entry == null)
+        {
+            final LibraryEntry newEntry = new LibraryEntry(swc, librarySWFPath,
+                    new File(directory, hash(key) + FILE_EXTENSION));
+            entry = libraries.putIfAbsent(key, newEntry);
+            if (entry == null)
+                entry = newEntry;
+        }
+        return entry;
+    }
+
+    private static String createLibraryKey(ISWC swc, String librarySWFPath)
+    {
+        return swc.getSWCFile().getAbsolutePath() + ":" + librarySWFPath;
+    }
+
+    /**
+     * Read the index of the cache file of a library the first time that it
+     * is needed. The caller must hold the lock of the entry.
+     */
+    private void loadIndex(LibraryEntry entry)
+    {
+        if (!entry.loaded)
+        {
+            entry.loaded = true;
+            readIndex(entry);
+        }
+    }
+
+    /**
+     * Close the cache file of a library, and forget its index. The caller
+     * must hold the lock of the entry.
+     */
+    private static void closeHandle(LibraryEntry entry)
+    {
+        entry.scripts = null;
+        if (entry.handle != null)
+        {
+            try
+            {
+                entry.handle.close();
+            }
+            catch (IOException e)
+            {
+                // ignore, the file is only read
+            }
+            entry.handle = null;
+        }
+    }
+
+    /**
+     * Open the cache file of a library and read its index. If the file is
+     * usable, the entry keeps the open file and a map from script name to
+     * offset and length of its ABC bytes. The caller must hold the lock of
+     * the entry.
+     */
+    private void readIndex(LibraryEntry entry)
+    {
+        closeHandle(entry);
+        if (!entry.file.isFile())
+            return;
+        RandomAccessFile handle = null;
+        try
+        {
+            handle = new RandomAccessFile(entry.file, "r");
+            final Map<String, long[]> scripts = readIndex(entry, handle);
+            if (scripts != null)
+            {
+                entry.handle = handle;
+                entry.scripts = scripts;
+                handle = null;
+            }
+        }
+        catch (IOException e)
+        {
+            // treat it like a missing file
+        }
+        finally
+        {
+            if (handle != null)
+            {
+                try
+                {
+                    handle.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore, the file is only read
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the index of an open cache file.
+     *
+     * @return A map from script name to offset and length of its ABC bytes,
+     * or null if the file is out of date.
+     */
+    private static Map<String, long[]> readIndex(LibraryEntry entry, RandomAccessFile handle) throws IOException
+    {
+        // don't close the stream, because that closes the handle
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(handle.getChannel())));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return null;
+        final long headerSize = 12 + in.readInt();
+        final File swcFile = entry.swc.getSWCFile();
+        if (!in.readUTF().equals(swcFile.getCanonicalPath()) ||
+            !in.readUTF().equals(entry.librarySWFPath) ||
+            in.readLong() != swcFile.length() ||
+            in.readLong() != swcFile.lastModified() ||
+            !in.readUTF().equals(getDigestsStamp(entry.swc, entry.librarySWFPath)))
+        {
+            return null;
+        }
+
+        final int count = in.readInt();
+        final List<String> names = new ArrayList<String>(count);
+        final List<Integer> lengths = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++)
+        {
+            names.add(in.readUTF());
+            lengths.add(in.readInt());
+        }
+
+        final Map<String, long[]> scripts = new HashMap<String, long[]>(count);
+        long offset = headerSize;
+        for (int i = 0; i < count; i++)
+        {
+            scripts.put(names.get(i), new long[] {offset, lengths.get(i)});
+            offset += lengths.get(i);
+        }
+        if (offset != handle.length())
+            return null;
+        return scripts;
+    }
+
+    /**
+     * Write a cache file for a library.
+     *
+     * @return true if the file was written.
+     */
+    private boolean writeFile(LibraryEntry entry, ITagContainer tags)
+    {
+        final List<DoABCTag> abcTags = new ArrayList<DoABCTag>();
+        for (final ITag tag : tags)
+        {
+            if (tag instanceof DoABCTag)
+                abcTags.add((DoABCTag)tag);
+        }
+
+        File tempFile = null;
+        try
+        {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+                return false;
+
+            final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            final DataOutputStream header = new DataOutputStream(headerBytes);
+            final File swcFile = entry.swc.getSWCFile();
+            header.writeUTF(swcFile.getCanonicalPath());
+            header.writeUTF(entry.librarySWFPath);
+            header.writeLong(swcFile.length());
+            header.writeLong(swcFile.lastModified());
+            header.writeUTF(getDigestsStamp(entry.swc, entry.librarySWFPath));
+            header.writeInt(abcTags.size());
+            for (final DoABCTag abcTag : abcTags)
+            {
+                header.writeUTF(abcTag.getName());
+                header.writeInt(abcTag.getABCData().length);
+            }
+            header.flush();
+
+            // write to a temporary file first, so that other compiler
+            // processes sharing the directory never see half a file
+            tempFile = File.createTempFile(entry.file.getName(), ".tmp", directory);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(headerBytes.size());
+                headerBytes.writeTo(out);
+                for (final DoABCTag abcTag : abcTags)
+                {
+                    out.write(abcTag.getABCData());
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+
+            try
+            {
+                Files.move(tempFile.toPath(), entry.file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tempFile.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+    private static String getDigestsStamp(ISWC swc, String librarySWFPath)
+    {
+        final ISWCLibrary library = swc.getLibrary(librarySWFPath);
+        if (library == null)
+            return "";
+        final StringBuilder stamp = new StringBuilder();
+        for (final ISWCDigest digest : library.getDigests())
+        {
+            stamp.append(digest.getType());
+            stamp.append(digest.isSigned() ? ":signed:" : ":unsigned:");
+            stamp.append(digest.getValue());
+            stamp.append(';');
+        }
+        return stamp.toString();
+    }
+
+    private static String hash(String key)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new RuntimeException(e);
+        }
+        final byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes)
+        {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The state of the cache file of one library SWF.
+     */
+    private static class LibraryEntry
+    {
+        LibraryEntry(ISWC swc, String librarySWFPath, File file)
+        {
+            this.swc = swc;
+            this.librarySWFPath = librarySWFPath;
+            this.file = file;
+        }
+
+        final ISWC swc;
+        final String librarySWFPath;
+        final File file;
+        boolean loaded;
+        RandomAccessFile handle;
+        Map<String, long[]> scripts;
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swf.ITagContainer;
 import org.apache.royale.swf.TagType;
+import org.apache.royale.swf.io.SWFIndexReader;
 import org.apache.royale.swf.tags.ICharacterReferrer;
 import org.apache.royale.swf.tags.ICharacterTag;
 import org.apache.royale.swf.tags.ITag;
@@ -143,6 +144,14 @@ public class AssetTagCache extends ConcurrentCacheStoreBase<AssetTagCache.AssetT
             throw new IllegalArgumentException("expect AssetTagCacheKey but got " + key.getClass().getSimpleName());
 
         final AssetTagCacheKey assetTagCacheKey = (AssetTagCacheKey)key;
+
+        // most definitions have no assets, and most library SWFs have no
+        // assets at all, so look at the index before reading all the tags
+        final SWFIndexReader index = swcManager.getSWFIndexCache().get(
+                SWFCache.createKey(assetTagCacheKey.swc, assetTagCacheKey.swfPath));
+        if (!index.hasSymbol(assetTagCacheKey.qname))
+            return new AssetTagCacheValue(null);
+
         final ITagContainer tagContainer = ((SWFCache)swcManager.getSWFCache()).get(SWFCache.createKey(assetTagCacheKey.swc, assetTagCacheKey.swfPath));
         final SymbolClassTag symbolClassTag = getSymbolClass(tagContainer);
         if (symbolClassTag == null)
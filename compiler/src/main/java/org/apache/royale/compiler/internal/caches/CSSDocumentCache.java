@@ -39,6 +39,7 @@ import org.apache.royale.compiler.css.ICSSNode;
 import org.apache.royale.compiler.css.ICSSRule;
 import org.apache.royale.compiler.internal.css.CSSDocument;
 import org.apache.royale.compiler.internal.css.CSSModelTreeType;
+import org.apache.royale.compiler.internal.css.semantics.CSSSelectorIndex;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.io.SWCReader;
@@ -50,7 +51,9 @@ import com.google.common.collect.ImmutableList;
  * "defaults.css" file inside a SWC library, or a CSS file on the disk.
  * <p>
  * The cache key is normalized path to the SWC file (optional) and the CSS file
- * name inside the SWC. The cache value is an {@link ICSSDocument}.
+ * name inside the SWC. The cache value is an {@link ICSSDocument}. A
+ * {@link CSSDocument} keeps its {@link CSSSelectorIndex}, so the index of a
+ * cached document is reused too.
  */
 public class CSSDocumentCache extends ConcurrentCacheStoreBase<ICSSDocument> implements ICSSDocumentCache
 {
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+/**
+ * A snapshot of the counters of a {@link ConcurrentCacheStoreBase}.
+ */
+public final class CacheStoreStatistics
+{
+    CacheStoreStatistics(long hitCount, long missCount, long loadCount,
+                         long loadFailureCount, long totalLoadTime,
+                         long evictionCount, int size, long weight)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+    private final int size;
+    private final long weight;
+
+    /**
+     * @return number of lookups that found a value in the cache
+     */
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * @return number of lookups that had to create a value, or wait for
+     * another thread that was creating it
+     */
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * @return fraction of the lookups that were hits, or 1 if there were no
+     * lookups yet
+     */
+    public double getHitRate()
+    {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double)hitCount / requestCount;
+    }
+
+    /**
+     * @return number of values that were created successfully
+     */
+    public long getLoadCount()
+    {
+        return loadCount;
+    }
+
+    /**
+     * @return number of attempts to create a value that threw an exception
+     */
+    public long getLoadFailureCount()
+    {
+        return loadFailureCount;
+    }
+
+    /**
+     * @return total time spent creating values, in nanoseconds
+     */
+    public long getTotalLoadTime()
+    {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return number of values that were evicted to stay within the maximum
+     * weight
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of entries in the cache table
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return estimated weight of the values that the cache holds on to, in
+     * bytes. Only tracked if the cache has a maximum weight.
+     */
+    public long getWeight()
+    {
+        return weight;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "hits=%d, misses=%d, hitRate=%.2f, loads=%d, loadFailures=%d, loadTime=%dms, evictions=%d, size=%d, weight=%d",
+                hitCount, missCount, getHitRate(), loadCount, loadFailureCount,
+                totalLoadTime / 1000000, evictionCount, size, weight);
+    }
+}
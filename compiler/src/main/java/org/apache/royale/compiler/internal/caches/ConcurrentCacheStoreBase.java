@@ -20,25 +20,74 @@
 package org.apache.royale.compiler.internal.caches;
 
 import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Joiner;
 
 /**
  * A key-value pair cache store that supports concurrent access.
+ * <p>
+ * By default, values are held by {@link SoftReference}s, so the garbage
+ * collector may clear any of them when memory runs low. Alternatively,
+ * {@link #setMaximumWeight(long)} makes the cache hold on to its values
+ * strongly, up to a total estimated weight in bytes, and evict the least
+ * recently used values beyond that. Subclasses estimate the weight of their
+ * values with {@link #getEntryWeight(Object)}.
+ * <p>
+ * Only one thread creates the value of a key at a time. Other threads that
+ * ask for the same key wait for that value instead of creating their own. A
+ * thread that asks for a key while it is creating the value of the same key
+ * gets an {@link IllegalStateException} instead of waiting for itself.
+ * Hits, misses, loads and evictions are counted, see
+ * {@link #getStatistics()}.
  */
 public abstract class ConcurrentCacheStoreBase<T>
 {
+    /**
+     * Weight of a value if the subclass has no better estimate, in bytes.
+     */
+    protected static final long DEFAULT_ENTRY_WEIGHT = 1024;
+
     /**
      * Initialize the cache store.
      */
     protected ConcurrentCacheStoreBase()
     {
-        this.cache = new ConcurrentHashMap<CacheStoreKeyBase, SoftReference<T>>();
+        this.cache = new ConcurrentHashMap<CacheStoreKeyBase, CacheEntry<T>>();
+        this.loading = new ConcurrentHashMap<CacheStoreKeyBase, LoadingTask<T>>();
+        this.lru = new LinkedHashMap<CacheStoreKeyBase, CacheEntry<T>>(16, 0.75f, true);
     }
 
-    private final ConcurrentMap<CacheStoreKeyBase, SoftReference<T>> cache;
+    private final ConcurrentMap<CacheStoreKeyBase, CacheEntry<T>> cache;
+
+    /**
+     * Values that are being created, so that other threads can wait for them.
+     */
+    private final ConcurrentMap<CacheStoreKeyBase, LoadingTask<T>> loading;
+
+    /**
+     * The strongly held entries in access order. Only used if there is a
+     * maximum weight. Guarded by itself.
+     */
+    private final LinkedHashMap<CacheStoreKeyBase, CacheEntry<T>> lru;
+
+    private volatile long maximumWeight = 0;
+    private long totalWeight = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong totalLoadTime = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
 
     /**
      * Get a value from the cache store. If the cache doesn't have a valid
@@ -46,36 +95,194 @@ public abstract class ConcurrentCacheStoreBase<T>
      * <p>
      * The implementation is thread-safe. The API looks like a "read" access,
      * but when the cache doesn't have a hit, it will write an entry to the
-     * cache table. The first attempt queries the cache, so the read-lock allows
-     * parallelized read if no other thread is writing the cache. If there's no
-     * hit, the second attempt is to create a valid entry, store it in the cache
-     * and return it. This requires upgrading the read-lock to a write-lock.
+     * cache table. A hit doesn't take any locks unless the cache has a maximum
+     * weight, in which case the entry is moved to the end of the LRU list. If
+     * there's no hit, the first thread to ask for the key creates the value,
+     * and any other thread asking for the same key in the meantime waits for
+     * it.
      * 
      * @param key cache key
      * @return cached value
+     * @throws IllegalStateException if the value of the key is being created
+     * by the calling thread.
      */
-    public final T get(CacheStoreKeyBase key)
+    public final T get(final CacheStoreKeyBase key)
     {
-        T result = null;
+        T result = getIfPresent(key);
+        if (result != null)
+        {
+            hitCount.incrementAndGet();
+            return result;
+        }
+
+        missCount.incrementAndGet();
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                LoadingTask<T> task = loading.get(key);
+                if (task == null)
+                {
+                    final LoadingTask<T> newTask = new LoadingTask<T>(new Callable<T>()
+                    {
+                        @Override
+                        public T call() throws Exception
+                        {
+                            return load(key);
+                        }
+                    });
+                    task = loading.putIfAbsent(key, newTask);
+                    if (task == null)
+                    {
+                        // another thread may have finished loading the value
+                        // since the first look-up
+                        result = getIfPresent(key);
+                        if (result != null)
+                        {
+                            loading.remove(key, newTask);
+                            return result;
+                        }
+                        task = newTask;
+                        try
+                        {
+                            newTask.owner = Thread.currentThread();
+                            newTask.run();
+                        }
+                        finally
+                        {
+                            store(key, newTask);
+                        }
+                    }
+                }
+                else if (task.owner == Thread.currentThread() && !task.isDone())
+                {
+                    // waiting for the task would never end
+                    throw new IllegalStateException("Recursive request for " + key.generateKey()
+                            + " while creating its value in " + getClass().getSimpleName());
+                }
 
-        if (cache.containsKey(key))
+                try
+                {
+                    result = task.get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    // the value is still needed, so keep waiting
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+        }
+        finally
         {
-            result = cache.get(key).get();
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
 
-        // create entry and store in cache
-        if (result == null)
+        assert result != null : "Expected non-null value from cache.";
+        return result;
+    }
+
+    /**
+     * Look up a value without creating it.
+     */
+    private T getIfPresent(CacheStoreKeyBase key)
+    {
+        final CacheEntry<T> entry = cache.get(key);
+        if (entry == null)
+            return null;
+        final T result = entry.get();
+        if (result != null && entry.isStrong())
+        {
+            synchronized (lru)
+            {
+                // move to the end of the LRU list
+                lru.get(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create a value. Only called by the thread that registered the loading
+     * task of the key.
+     */
+    private T load(CacheStoreKeyBase key)
+    {
+        final long start = System.nanoTime();
+        final T result;
+        try
         {
             result = createEntryValue(key);
             if (result == null)
                 throw new NullPointerException("Null value not allowed in cache store.");
-            cache.put(key, new SoftReference<T>(result));
-
         }
-
-        assert result != null : "Expected non-null value from cache.";
+        catch (RuntimeException e)
+        {
+            loadFailureCount.incrementAndGet();
+            throw e;
+        }
+        finally
+        {
+            totalLoadTime.addAndGet(System.nanoTime() - start);
+        }
+        loadCount.incrementAndGet();
         return result;
+    }
 
+    /**
+     * Store the value of a finished loading task in the cache, unless the key
+     * was removed while the value was being created.
+     */
+    private void store(CacheStoreKeyBase key, LoadingTask<T> task)
+    {
+        T result = null;
+        try
+        {
+            if (task.isDone())
+                result = task.get();
+        }
+        catch (InterruptedException e)
+        {
+            // can't happen, the task is done
+        }
+        catch (ExecutionException e)
+        {
+            // reported by get()
+        }
+
+        synchronized (lru)
+        {
+            // the value has to be in the cache before the task goes away, so
+            // that no other thread misses both of them
+            if (result != null && loading.get(key) == task)
+            {
+                removeFromLRU(key);
+                if (maximumWeight > 0)
+                {
+                    final CacheEntry<T> entry = new CacheEntry<T>(result, getEntryWeight(result), true);
+                    cache.put(key, entry);
+                    lru.put(key, entry);
+                    totalWeight += entry.weight;
+                    evictToMaximumWeight();
+                }
+                else
+                {
+                    cache.put(key, new CacheEntry<T>(result, 0, false));
+                }
+            }
+            loading.remove(key, task);
+        }
     }
 
     /**
@@ -86,10 +293,17 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     public final T remove(CacheStoreKeyBase key)
     {
-        SoftReference<T> entryRef = cache.remove(key);
-        if (entryRef == null)
+        final CacheEntry<T> entry;
+        synchronized (lru)
+        {
+            // a value that is being created for the key is not stored
+            loading.remove(key);
+            removeFromLRU(key);
+            entry = cache.remove(key);
+        }
+        if (entry == null)
             return null;
-        return entryRef.get();
+        return entry.get();
     }
 
     /**
@@ -102,6 +316,77 @@ public abstract class ConcurrentCacheStoreBase<T>
         return cache.size();
     }
 
+    /**
+     * Set the maximum total weight of the values that the cache holds on to.
+     * Values are held strongly up to this weight, and the least recently
+     * used ones are evicted beyond it.
+     * 
+     * @param maximumWeight maximum weight in bytes, or 0 to hold values by
+     * {@link SoftReference}s without a bound, which is the default.
+     */
+    public void setMaximumWeight(long maximumWeight)
+    {
+        synchronized (lru)
+        {
+            this.maximumWeight = maximumWeight;
+            if (maximumWeight > 0)
+            {
+                evictToMaximumWeight();
+            }
+            else
+            {
+                // hand the values that are held strongly over to the
+                // garbage collector
+                for (Map.Entry<CacheStoreKeyBase, CacheEntry<T>> e : lru.entrySet())
+                {
+                    final T value = e.getValue().get();
+                    if (value != null)
+                        cache.replace(e.getKey(), e.getValue(), new CacheEntry<T>(value, 0, false));
+                }
+                lru.clear();
+                totalWeight = 0;
+            }
+        }
+    }
+
+    /**
+     * @return maximum weight in bytes, or 0 if the cache is not bounded.
+     */
+    public long getMaximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    /**
+     * Get the current counters of the cache.
+     * 
+     * @return statistics
+     */
+    public CacheStoreStatistics getStatistics()
+    {
+        final long weight;
+        synchronized (lru)
+        {
+            weight = totalWeight;
+        }
+        return new CacheStoreStatistics(
+                hitCount.get(), missCount.get(), loadCount.get(),
+                loadFailureCount.get(), totalLoadTime.get(),
+                evictionCount.get(), cache.size(), weight);
+    }
+
+    /**
+     * Estimate how much memory a value uses. Only called if the cache has a
+     * maximum weight. The default is {@link #DEFAULT_ENTRY_WEIGHT}.
+     * 
+     * @param value cached value
+     * @return weight in bytes
+     */
+    protected long getEntryWeight(T value)
+    {
+        return DEFAULT_ENTRY_WEIGHT;
+    }
+
     /**
      * Concrete class must implement this method to create a cache value object.
      * Do NOT add the value to the cache in this method. {@link #get(CacheStoreKeyBase)} is
@@ -112,6 +397,34 @@ public abstract class ConcurrentCacheStoreBase<T>
      */
     protected abstract T createEntryValue(CacheStoreKeyBase key);
 
+    /**
+     * Must be called while holding the lock of {@link #lru}.
+     */
+    private void removeFromLRU(CacheStoreKeyBase key)
+    {
+        final CacheEntry<T> entry = lru.remove(key);
+        if (entry != null)
+            totalWeight -= entry.weight;
+    }
+
+    /**
+     * Must be called while holding the lock of {@link #lru}. The most
+     * recently used value is always kept, even if it is heavier than the
+     * maximum weight on its own.
+     */
+    private void evictToMaximumWeight()
+    {
+        final Iterator<Map.Entry<CacheStoreKeyBase, CacheEntry<T>>> iterator = lru.entrySet().iterator();
+        while (totalWeight > maximumWeight && lru.size() > 1)
+        {
+            final Map.Entry<CacheStoreKeyBase, CacheEntry<T>> eldest = iterator.next();
+            iterator.remove();
+            totalWeight -= eldest.getValue().weight;
+            cache.remove(eldest.getKey(), eldest.getValue());
+            evictionCount.incrementAndGet();
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -122,4 +435,48 @@ public abstract class ConcurrentCacheStoreBase<T>
         result.append("} ");
         return result.toString();
     }
+
+    /**
+     * Creates the value of a key, and knows which thread does that.
+     */
+    private static final class LoadingTask<T> extends FutureTask<T>
+    {
+        LoadingTask(Callable<T> callable)
+        {
+            super(callable);
+        }
+
+        /**
+         * The thread that runs the task.
+         */
+        volatile Thread owner;
+    }
+
+    /**
+     * A value in the cache table, held either strongly or by a
+     * {@link SoftReference}.
+     */
+    private static final class CacheEntry<T>
+    {
+        CacheEntry(T value, long weight, boolean strong)
+        {
+            this.strongValue = strong ? value : null;
+            this.softValue = strong ? null : new SoftReference<T>(value);
+            this.weight = weight;
+        }
+
+        private final T strongValue;
+        private final SoftReference<T> softValue;
+        final long weight;
+
+        T get()
+        {
+            return strongValue != null ? strongValue : softValue.get();
+        }
+
+        boolean isStrong()
+        {
+            return strongValue != null;
+        }
+    }
 }
@@ -32,6 +32,7 @@ import org.apache.royale.swc.ISWC;
 import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.io.SWFIndexReader;
 import org.apache.royale.swf.tags.DoABCTag;
 
 /**
@@ -92,7 +93,32 @@ public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope
     private final SWCManager swcManager;
 
     /**
-     * Get the {@link ASFileScope}s associated with the key.
+     * Estimated weight of a definition that was built from ABC, in bytes.
+     */
+    private static final long DEFINITION_WEIGHT = 512;
+
+    /**
+     * Estimate the weight of the file scopes by the number of definitions in
+     * them.
+     */
+    @Override
+    protected long getEntryWeight(Collection<IASScope> scopes)
+    {
+        long weight = 0;
+        for (final IASScope scope : scopes)
+        {
+            weight += DEFAULT_ENTRY_WEIGHT;
+            if (scope instanceof ASFileScope)
+                weight += ((ASFileScope)scope).getAllLocalDefinitions().size() * DEFINITION_WEIGHT;
+        }
+        return weight;
+    }
+
+    /**
+     * Get the {@link ASFileScope}s associated with the key. The ABC bytes
+     * come from the {@link ABCDiskCache} if there is one and it is up to
+     * date, so that the library SWF doesn't have to be read at all.
+     * Otherwise, they come from the {@link SWFIndexCache}.
      * 
      * @param key a key is a string of pattern: <code>{path/to/file.swc:
      */
@@ -103,17 +129,38 @@ public class FileScopeCache extends ConcurrentCacheStoreBase<Collection<IASScope
             throw new IllegalArgumentException("expect FileScopeCacheKey but got " + key.getClass().getSimpleName());
 
         final FileScopeCacheKey fileScopeCacheKey = (FileScopeCacheKey)key;
-        final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath);
-        final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+        final ABCDiskCache diskCache = swcManager.getABCDiskCache();
+        byte[] abcData = null;
+        if (diskCache != null)
+            abcData = diskCache.getABCData(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath, fileScopeCacheKey.scriptName);
+
+        if (abcData == null)
+        {
+            final CacheStoreKeyBase swfCacheKey = SWFCache.createKey(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath);
+            final SWFIndexReader index = swcManager.getSWFIndexCache().get(swfCacheKey);
+
+            final DoABCTag abcTag = index.getDoABCTag(fileScopeCacheKey.scriptName);
+            if (abcTag != null)
+            {
+                abcData = abcTag.getABCData();
+                if (diskCache != null)
+                {
+                    // the disk cache only takes clean libraries, and only
+                    // reading all the tags finds the problems in the assets
+                    final ITagContainer tags = index.isCodeOnly() ? index :
+                            ((SWFCache)swcManager.getSWFCache()).get(swfCacheKey);
+                    diskCache.putLibrary(fileScopeCacheKey.swc, fileScopeCacheKey.swfPath, tags);
+                }
+            }
+        }
 
-        final DoABCTag abcTag = SWFCache.findDoABCTagByName(tags, fileScopeCacheKey.scriptName);
-        if (abcTag != null)
+        if (abcData != null)
         {
             try
             {
                 final ABCScopeBuilder abcScopeBuilder = new ABCScopeBuilder(
                         swcManager.getWorkspace(), 
-                        abcTag.getABCData(), 
+                        abcData, 
                         fileScopeCacheKey.swc.getSWCFile().getCanonicalPath(),
                         SWCFileScopeProvider.getInstance());
                 return abcScopeBuilder.build();
@@ -37,7 +37,10 @@ import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swc.io.SWCReader;
 import org.apache.royale.swf.ITagContainer;
 import org.apache.royale.swf.io.SWFReader;
+import org.apache.royale.swf.tags.DefineBinaryDataTag;
+import org.apache.royale.swf.tags.DefineSoundTag;
 import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.IDefineBinaryImageTag;
 import org.apache.royale.swf.tags.ITag;
 import org.apache.royale.swf.tags.SymbolClassTag;
 
@@ -45,11 +48,19 @@ import org.apache.royale.swf.tags.SymbolClassTag;
  * Cache for parsed SWF models. The cache is a list of key-value pairs. The key
  * is the URI to the SWF file. The value is a {@link SoftReference} to a
  * collection of SWF tags.
+ * <p>
+ * Reading all the tags of a library SWF is only needed for its assets. The
+ * {@code DoABC} tags of a library SWF are looked up in {@link SWFIndexCache}
+ * instead.
  */
 public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements ISWFCache
 {
+    /**
+     * Estimated weight of a tag model without its binary data, in bytes.
+     */
+    private static final long TAG_WEIGHT = 64;
 
-    private static abstract class SWFCacheKey extends CacheStoreKeyBase
+    static abstract class SWFCacheKey extends CacheStoreKeyBase
     {
         public SWFCacheKey()
         {
@@ -232,6 +243,34 @@ public class SWFCache extends ConcurrentCacheStoreBase<ITagContainer> implements
         super();
     }
 
+    /**
+     * Estimate the weight of a SWF model by the size of the binary data in
+     * its tags, plus a fixed overhead for every tag.
+     */
+    @Override
+    protected long getEntryWeight(ITagContainer tags)
+    {
+        long weight = 0;
+        for (final ITag tag : tags)
+        {
+            weight += TAG_WEIGHT;
+            if (tag instanceof DoABCTag)
+                weight += getLength(((DoABCTag)tag).getABCData());
+            else if (tag instanceof DefineBinaryDataTag)
+                weight += getLength(((DefineBinaryDataTag)tag).getData());
+            else if (tag instanceof IDefineBinaryImageTag)
+                weight += getLength(((IDefineBinaryImageTag)tag).getData());
+            else if (tag instanceof DefineSoundTag)
+                weight += getLength(((DefineSoundTag)tag).getSoundData());
+        }
+        return weight;
+    }
+
+    private static int getLength(byte[] data)
+    {
+        return data != null ? data.length : 0;
+    }
+
     /**
      * Get all the tags from a SWF file.
      * 
@@ -0,0 +1,78 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import java.io.IOException;
+
+import org.apache.royale.compiler.caches.ISWFIndexCache;
+import org.apache.royale.swf.io.SWFIndexReader;
+
+/**
+ * Cache for the {@code DoABC} tags of library SWFs, indexed by name. The keys
+ * are the same as the keys of {@link SWFCache}. The value is a
+ * {@link SWFIndexReader}, which only keeps the ABC bytes and the names of the
+ * symbols of a SWF.
+ * <p>
+ * Looking up a script in the index doesn't need a linear search, and doesn't
+ * build models for the asset tags of the SWF. {@link SWFCache} is only needed
+ * for SWFs that have assets, see {@link SWFIndexReader#isCodeOnly()}.
+ */
+public class SWFIndexCache extends ConcurrentCacheStoreBase<SWFIndexReader> implements ISWFIndexCache
+{
+    /**
+     * Estimated weight of a {@code DoABC} entry in the index, in bytes.
+     */
+    private static final long ENTRY_WEIGHT = 64;
+
+    public SWFIndexCache()
+    {
+        super();
+    }
+
+    @Override
+    protected long getEntryWeight(SWFIndexReader index)
+    {
+        return index.getABCDataSize() + index.getDoABCTagCount() * ENTRY_WEIGHT;
+    }
+
+    /**
+     * Read the index of a SWF file.
+     *
+     * @param key a key created by {@link SWFCache#createKey}
+     * @return the index of the SWF file
+     */
+    @Override
+    protected SWFIndexReader createEntryValue(CacheStoreKeyBase key)
+    {
+        if (!(key instanceof SWFCache.SWFCacheKey))
+            throw new IllegalArgumentException("expect SWFCacheKey but got " + key.getClass().getSimpleName());
+
+        try
+        {
+            final SWFIndexReader indexReader = new SWFIndexReader();
+            ((SWFCache.SWFCacheKey)key).readSWF(indexReader);
+            return indexReader;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -37,6 +37,7 @@ import org.apache.royale.compiler.css.ICSSFontFace;
 import org.apache.royale.compiler.css.ICSSNamespaceDefinition;
 import org.apache.royale.compiler.css.ICSSNode;
 import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.internal.css.semantics.CSSSelectorIndex;
 import org.apache.royale.compiler.problems.CSSParserProblem;
 import org.apache.royale.compiler.problems.CompilerProblemSeverity;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -228,6 +229,29 @@ public class CSSDocument extends CSSNodeBase implements ICSSDocument
     private final ImmutableList<ICSSFontFace> fontFaces;
     private final ImmutableMap<String, CSSNamespaceDefinition> namespacesLookup;
 
+    /**
+     * The selector index is created the first time it's needed. The document
+     * doesn't change after it's parsed, so the index is never invalidated.
+     */
+    private volatile CSSSelectorIndex selectorIndex;
+
+    /**
+     * Get the selector index of this document.
+     * 
+     * @return Selector index.
+     */
+    public CSSSelectorIndex getSelectorIndex()
+    {
+        CSSSelectorIndex result = selectorIndex;
+        if (result == null)
+        {
+            // Creating the index twice in a race is harmless.
+            result = new CSSSelectorIndex(this);
+            selectorIndex = result;
+        }
+        return result;
+    }
+
     @Override
     public ImmutableList<ICSSRule> getRules()
     {
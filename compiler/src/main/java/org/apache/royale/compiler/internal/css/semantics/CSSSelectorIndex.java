@@ -0,0 +1,273 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.css.semantics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.royale.compiler.common.XMLName;
+import org.apache.royale.compiler.css.ICSSDocument;
+import org.apache.royale.compiler.css.ICSSNamespaceDefinition;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.css.ICSSSelector;
+import org.apache.royale.compiler.internal.css.CSSDocument;
+import org.apache.royale.compiler.projects.IRoyaleProject;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An index of the selectors in a CSS document. {@link CSSSemanticAnalyzer}
+ * uses it to find the rules that can match a set of class definitions
+ * without testing every selector of every rule.
+ * <p>
+ * Type selectors are keyed by the URI of their namespace and their element
+ * name. They are not resolved to class definitions here, because that
+ * depends on the project. The index only depends on the document, so a
+ * {@link CSSDocument} creates it once and keeps it, see
+ * {@link #get(ICSSDocument)}.
+ */
+public class CSSSelectorIndex
+{
+    /**
+     * Get the selector index of a CSS document.
+     *
+     * @param document CSS document.
+     * @return The index kept by the document, or a new index if the document
+     * isn't a {@link CSSDocument}.
+     */
+    public static CSSSelectorIndex get(final ICSSDocument document)
+    {
+        if (document instanceof CSSDocument)
+            return ((CSSDocument)document).getSelectorIndex();
+        return new CSSSelectorIndex(document);
+    }
+
+    /**
+     * Create the selector index of a CSS document.
+     *
+     * @param document CSS document.
+     */
+    public CSSSelectorIndex(final ICSSDocument document)
+    {
+        assert document != null : "Expected CSS document";
+
+        rules = document.getRules();
+
+        final ImmutableList.Builder<ImmutableList<ICSSSelector>> selectorsBuilder =
+                new ImmutableList.Builder<ImmutableList<ICSSSelector>>();
+        final Map<ICSSSelector, XMLName> typeNamesBuilder = new HashMap<ICSSSelector, XMLName>();
+        final ImmutableListMultimap.Builder<XMLName, Integer> rulesBySubjectTypeBuilder =
+                new ImmutableListMultimap.Builder<XMLName, Integer>();
+        final ImmutableListMultimap.Builder<String, Integer> rulesByElementNameBuilder =
+                new ImmutableListMultimap.Builder<String, Integer>();
+        wildcardRules = new BitSet();
+        unnamedRules = new BitSet();
+
+        for (int i = 0; i < rules.size(); i++)
+        {
+            final ICSSRule rule = rules.get(i);
+            final ImmutableList.Builder<ICSSSelector> ruleSelectors = new ImmutableList.Builder<ICSSSelector>();
+            String firstElementName = null;
+            for (final ICSSSelector subject : rule.getSelectorGroup())
+            {
+                final XMLName subjectTypeName = getTypeName(document, subject);
+                if (CSSSemanticAnalyzer.isWildcardSelector(subject))
+                    wildcardRules.set(i);
+                else if (subjectTypeName != null)
+                    rulesBySubjectTypeBuilder.put(subjectTypeName, i);
+
+                final String elementName = subject.getElementName();
+                if (firstElementName == null && elementName != null && !GLOBAL_SELECTOR.equals(elementName))
+                    firstElementName = elementName;
+
+                ICSSSelector selector = subject;
+                while (selector != null)
+                {
+                    ruleSelectors.add(selector);
+                    final XMLName typeName = selector == subject ? subjectTypeName : getTypeName(document, selector);
+                    if (typeName != null)
+                        typeNamesBuilder.put(selector, typeName);
+                    if (selector.getCombinator() != null)
+                        selector = selector.getCombinator().getSelector();
+                    else
+                        selector = null;
+                }
+            }
+            selectorsBuilder.add(ruleSelectors.build());
+
+            if (firstElementName != null)
+                rulesByElementNameBuilder.put(firstElementName, i);
+            else
+                unnamedRules.set(i);
+        }
+
+        selectors = selectorsBuilder.build();
+        typeNames = ImmutableMap.copyOf(typeNamesBuilder);
+        rulesBySubjectType = rulesBySubjectTypeBuilder.build();
+        rulesByElementName = rulesByElementNameBuilder.build();
+    }
+
+    /** Global selector. */
+    private static final String GLOBAL_SELECTOR = "global";
+
+    /**
+     * The rules of the document, in document order. Rules are referred to by
+     * their position in this list.
+     */
+    private final ImmutableList<ICSSRule> rules;
+
+    /**
+     * The subject and combination selectors of each rule.
+     */
+    private final ImmutableList<ImmutableList<ICSSSelector>> selectors;
+
+    /**
+     * The namespace URI and element name of the selectors that aren't
+     * wildcard selectors and have a namespace defined in the document.
+     */
+    private final ImmutableMap<ICSSSelector, XMLName> typeNames;
+
+    /**
+     * Rules by the type names of their subject selectors.
+     */
+    private final ImmutableListMultimap<XMLName, Integer> rulesBySubjectType;
+
+    /**
+     * Rules that have a wildcard subject selector.
+     */
+    private final BitSet wildcardRules;
+
+    /**
+     * Rules by the element name of their first subject selector that has an
+     * element name, other than {@code global}. This is used in Flex 3 mode,
+     * where all the subject selectors of a rule have to match.
+     */
+    private final ImmutableListMultimap<String, Integer> rulesByElementName;
+
+    /**
+     * Rules that don't have a subject selector with an element name, other
+     * than {@code global}.
+     */
+    private final BitSet unnamedRules;
+
+    /**
+     * Get the namespace URI and element name of a type selector.
+     *
+     * @return The type name, or null if the selector is a wildcard selector
+     * or its namespace isn't defined in the document.
+     */
+    private static XMLName getTypeName(final ICSSDocument document, final ICSSSelector selector)
+    {
+        if (CSSSemanticAnalyzer.isWildcardSelector(selector))
+            return null;
+
+        final String prefix = selector.getNamespacePrefix();
+        final ICSSNamespaceDefinition namespace = prefix == null ?
+                document.getDefaultNamespaceDefinition() :
+                document.getNamespaceDefinition(prefix);
+        if (namespace == null)
+            return null;
+        return new XMLName(namespace.getURI(), selector.getElementName());
+    }
+
+    /**
+     * Collect all the selectors in the CSS document including the subjects
+     * and the combination selectors. Rules that aren't for the platform of
+     * the project are skipped.
+     *
+     * @param project Current project.
+     * @return All the selectors of the platform rules, in document order.
+     */
+    public ImmutableSet<ICSSSelector> getSelectors(final IRoyaleProject project)
+    {
+        final ImmutableSet.Builder<ICSSSelector> builder = new ImmutableSet.Builder<ICSSSelector>();
+        for (int i = 0; i < rules.size(); i++)
+        {
+            if (project.isPlatformRule(rules.get(i)))
+                builder.addAll(selectors.get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the namespace URI and element name of a selector in the document.
+     *
+     * @param selector CSS selector.
+     * @return The type name, or null if the selector is a wildcard selector
+     * or its namespace isn't defined in the document.
+     */
+    public XMLName getTypeName(final ICSSSelector selector)
+    {
+        return typeNames.get(selector);
+    }
+
+    /**
+     * Get the rules that have a wildcard subject selector or a subject
+     * selector of one of the given types.
+     *
+     * @param types Namespace URIs and element names of type selectors.
+     * @return Rules in document order.
+     */
+    public List<ICSSRule> getRulesBySubjectType(final Collection<XMLName> types)
+    {
+        final BitSet result = (BitSet)wildcardRules.clone();
+        for (final XMLName type : types)
+        {
+            for (final Integer i : rulesBySubjectType.get(type))
+                result.set(i);
+        }
+        return getRules(result);
+    }
+
+    /**
+     * Get the rules whose subject selectors might all match one of the given
+     * element names. This is a superset of the rules matched in Flex 3 mode.
+     *
+     * @param elementNames Element names of type selectors.
+     * @return Rules in document order.
+     */
+    public List<ICSSRule> getRulesByElementName(final Collection<String> elementNames)
+    {
+        final BitSet result = (BitSet)unnamedRules.clone();
+        for (final String elementName : elementNames)
+        {
+            for (final Integer i : rulesByElementName.get(elementName))
+                result.set(i);
+        }
+        return getRules(result);
+    }
+
+    private List<ICSSRule> getRules(final BitSet positions)
+    {
+        final List<ICSSRule> result = new ArrayList<ICSSRule>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1))
+        {
+            result.add(rules.get(i));
+        }
+        return result;
+    }
+}
@@ -25,6 +25,7 @@ import static com.google.common.collect.Collections2.transform;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -226,67 +227,94 @@ public class CSSSemanticAnalyzer
         assert xmlNameResolver != null : "Expected xmlNameResolver";
         assert css != null : "Expected CSS";
 
-        final ImmutableSet<ICSSSelector> allSelectors = getAllSelectors(css, project);
+        final CSSSelectorIndex index = CSSSelectorIndex.get(css);
+        final ImmutableSet<ICSSSelector> allSelectors = index.getSelectors(project);
 
         if (isCompatibilityVersion3)
             return resolveSelectorsAsFlex3Style(allSelectors);
 
+        return resolveTypeSelectors(xmlNameResolver, css, index, allSelectors, problems,
+                new HashMap<XMLName, String>());
+    }
+
+    /**
+     * Resolve type selectors to class definitions. Each type name is only
+     * resolved once, no matter how many selectors use it.
+     * 
+     * @param xmlNameResolver XML name resolver
+     * @param css CSS DOM.
+     * @param index Selector index of {@code css}.
+     * @param selectors The selectors to resolve.
+     * @param problems Collect problems.
+     * @param resolvedTypeNames The resolved type names are stored in this map
+     * after the function returns. The value is null if a type name could not be
+     * resolved.
+     * @return A map of CSS selectors to QNames of their resolved types.
+     */
+    private static ImmutableMap<ICSSSelector, String> resolveTypeSelectors(
+            final IXMLNameResolver xmlNameResolver,
+            final ICSSDocument css,
+            final CSSSelectorIndex index,
+            final Iterable<ICSSSelector> selectors,
+            final Collection<ICompilerProblem> problems,
+            final Map<XMLName, String> resolvedTypeNames)
+    {
         final ICSSNamespaceDefinition defaultNamespace = css.getDefaultNamespaceDefinition();
         final Builder<ICSSSelector, String> builder = new Builder<ICSSSelector, String>();
-        for (final ICSSSelector selector : allSelectors)
+        for (final ICSSSelector selector : selectors)
         {
-            // Expand selector to QName and conditions.
             if (isWildcardSelector(selector))
                 continue;
 
-            final String prefix = selector.getNamespacePrefix();
-            final ICSSNamespaceDefinition namespace;
-
-            if (prefix == null)
+            final XMLName xmlName = index.getTypeName(selector);
+            if (xmlName == null)
             {
-                // Check if the selector is a type selector without explicit namespace.
-                if (defaultNamespace == null)
-                {
+                // The namespace of the selector is not defined.
+                if (selector.getNamespacePrefix() == null)
                     problems.add(new CSSUnknownDefaultNamespaceProblem((CSSSelector)selector));
-                    continue;
-                }
                 else
-                {
-                    namespace = defaultNamespace;
-                }
-            }
-            else
-            {
-                // Resolve namespace.
-                namespace = css.getNamespaceDefinition(prefix);
-            }
-
-            if (namespace == null)
-            {
-                problems.add(new CSSUndefinedNamespacePrefixProblem((CSSSelector)selector));
+                    problems.add(new CSSUndefinedNamespacePrefixProblem((CSSSelector)selector));
                 continue;
             }
 
-            assert (selector.getElementName() != null) : "Null element name should be skipped as a wildcard selector.";
-            final XMLName xmlName = new XMLName(namespace.getURI(), selector.getElementName());
-
             // Resolve type name.
-            final String qname = xmlNameResolver.resolveXMLNameToQualifiedName(xmlName, MXMLDialect.MXML_2009);
-            if (qname == null)
+            final String qname;
+            if (resolvedTypeNames.containsKey(xmlName))
             {
-            	if (defaultNamespace != null && defaultNamespace.getURI().equals("http://www.w3.org/1999/xhtml"))
-            		builder.put(selector, selector.getElementName());
-            	else
-            		problems.add(new CSSUndefinedTypeProblem((CSSSelector)selector));
+                qname = resolvedTypeNames.get(xmlName);
             }
             else
             {
-                builder.put(selector, qname);
+                qname = resolveTypeName(xmlNameResolver, defaultNamespace, xmlName);
+                resolvedTypeNames.put(xmlName, qname);
             }
+
+            if (qname == null)
+                problems.add(new CSSUndefinedTypeProblem((CSSSelector)selector));
+            else
+                builder.put(selector, qname);
         }
         return builder.build();
     }
 
+    /**
+     * Resolve the namespace URI and element name of a type selector to a QName.
+     * If the default namespace is XHTML, unresolved element names are used as
+     * they are.
+     * 
+     * @return The QName, or null if the type name can't be resolved.
+     */
+    private static String resolveTypeName(
+            final IXMLNameResolver xmlNameResolver,
+            final ICSSNamespaceDefinition defaultNamespace,
+            final XMLName xmlName)
+    {
+        final String qname = xmlNameResolver.resolveXMLNameToQualifiedName(xmlName, MXMLDialect.MXML_2009);
+        if (qname == null && defaultNamespace != null && defaultNamespace.getURI().equals("http://www.w3.org/1999/xhtml"))
+            return xmlName.getName();
+        return qname;
+    }
+
     /**
      * Resolve selectors as Flex 3 CSS. In Flex 3 CSS, selectors don't have
      * namespaces. As a result, they don't have to be resolved to a type
@@ -320,25 +348,7 @@ public class CSSSemanticAnalyzer
     {
         assert document != null : "Expected CSS document";
 
-        final ImmutableSet.Builder<ICSSSelector> builder = new ImmutableSet.Builder<ICSSSelector>();
-        for (final ICSSRule rule : document.getRules())
-        {
-        	if (!project.isPlatformRule(rule))
-        		continue;
-            for (final ICSSSelector subject : rule.getSelectorGroup())
-            {
-                ICSSSelector selector = subject;
-                while (selector != null)
-                {
-                    builder.add(selector);
-                    if (selector.getCombinator() != null)
-                        selector = selector.getCombinator().getSelector();
-                    else
-                        selector = null;
-                }
-            }
-        }
-        return builder.build();
+        return CSSSelectorIndex.get(document).getSelectors(project);
     }
 
     /**
@@ -498,18 +508,34 @@ public class CSSSemanticAnalyzer
             final Collection<ICompilerProblem> problems)
     {
         final boolean isFlex3CSS = royaleProject.getCSSManager().isFlex3CSS();
-        final ImmutableMap<ICSSSelector, String> resolvedSelectors =
-                resolveSelectors(royaleProject, cssDocument, problems, royaleProject, isFlex3CSS);
+        final CSSSelectorIndex index = CSSSelectorIndex.get(cssDocument);
+        final ImmutableSet<ICSSSelector> allSelectors = index.getSelectors(royaleProject);
+        final ImmutableMap<ICSSSelector, String> resolvedSelectors;
         final Predicate<ICSSRule> predicate;
+        final Collection<ICSSRule> candidateRules;
         if (isFlex3CSS)
         {
+            resolvedSelectors = resolveSelectorsAsFlex3Style(allSelectors);
             final ImmutableSet<String> simpleNames =
                     ImmutableSet.copyOf(transform(qnames, QNAME_TO_SIMPLE_NAME));
             predicate = new Flex3CSSRulePredicate(simpleNames);
+            candidateRules = index.getRulesByElementName(simpleNames);
         }
         else
         {
+            final Map<XMLName, String> resolvedTypeNames = new HashMap<XMLName, String>();
+            resolvedSelectors = resolveTypeSelectors(royaleProject, cssDocument, index, allSelectors, problems, resolvedTypeNames);
             predicate = new MatchedCSSRulePredicate(qnames, royaleProject, resolvedSelectors);
+
+            // Only the rules with a wildcard subject or a subject of a matched
+            // type can pass the predicate.
+            final Set<XMLName> matchedTypeNames = new HashSet<XMLName>();
+            for (final Map.Entry<XMLName, String> entry : resolvedTypeNames.entrySet())
+            {
+                if (entry.getValue() != null && qnames.contains(entry.getValue()))
+                    matchedTypeNames.add(entry.getKey());
+            }
+            candidateRules = index.getRulesBySubjectType(matchedTypeNames);
         }
 
         // Cache the result of selector resolution on the session. 
@@ -517,7 +543,7 @@ public class CSSSemanticAnalyzer
         session.resolvedSelectors.putAll(resolvedSelectors);
 
         // Find rules with selectors that match types in a given definition set.
-        return ImmutableSet.copyOf(filter(cssDocument.getRules(), predicate));
+        return ImmutableSet.copyOf(filter(candidateRules, predicate));
     }
 
     /**
@@ -20,17 +20,21 @@
 package org.apache.royale.compiler.internal.mxml;
 
 import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 
+import org.apache.commons.io.IOUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -44,6 +48,7 @@ import org.apache.royale.compiler.problems.ManifestParsingProblem;
 import org.apache.royale.compiler.common.XMLName;
 import org.apache.royale.compiler.config.CompilerDiagnosticsConstants;
 import org.apache.royale.compiler.filespecs.IFileSpecification;
+import org.apache.royale.compiler.internal.config.ConfigurationInputCache;
 import org.apache.royale.compiler.internal.projects.RoyaleProject;
 import org.apache.royale.swc.ISWCComponent;
 import org.apache.royale.swc.ISWC;
@@ -72,6 +77,24 @@ public class MXMLManifestManager implements IMXMLManifestManager
         return classInfo != null ? classInfo.className : null;
     }
     
+    /**
+     * Manifest files that were parsed before, by content. Every project of a
+     * build maps the framework namespaces to the same manifests, so they
+     * are only parsed once per JVM.
+     */
+    private static final ConfigurationInputCache<ManifestEntry[]> manifestCache =
+            new ConfigurationInputCache<ManifestEntry[]>(256);
+
+    private static final ConfigurationInputCache.IParser<ManifestEntry[]> manifestParser =
+            new ConfigurationInputCache.IParser<ManifestEntry[]>()
+    {
+        @Override
+        public ManifestEntry[] parse(String content) throws Exception
+        {
+            return parseManifest(content);
+        }
+    };
+
     /**
      * Constructor.
      * 
@@ -212,7 +235,7 @@ public class MXMLManifestManager implements IMXMLManifestManager
     
     private void addManifest(RoyaleProject project, String uri, String manifestFileName)
     {
-        Document manifestDocument = null;
+        ManifestEntry[] entries = null;
         
     	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.WORKSPACE) == CompilerDiagnosticsConstants.WORKSPACE)
     		System.out.println("MXMLManifestManager waiting for lock in addManifest");
@@ -220,13 +243,11 @@ public class MXMLManifestManager implements IMXMLManifestManager
     	if ((CompilerDiagnosticsConstants.diagnostics & CompilerDiagnosticsConstants.WORKSPACE) == CompilerDiagnosticsConstants.WORKSPACE)
     		System.out.println("MXMLManifestManager done with lock in addManifest");
         
+        Reader reader = null;
         try
         {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilderFactory.setIgnoringElementContentWhitespace(true);
-            documentBuilderFactory.setCoalescing(true);
-            documentBuilderFactory.setIgnoringComments(true);
-            manifestDocument = documentBuilderFactory.newDocumentBuilder().parse(new InputSource(manifestFileSpec.createReader()));
+            reader = manifestFileSpec.createReader();
+            entries = manifestCache.get(IOUtils.toString(reader), manifestParser);
         }
         catch (SAXException e)
         {
@@ -240,43 +261,63 @@ public class MXMLManifestManager implements IMXMLManifestManager
             problems.add(problem);
             return;
         }
+        finally
+        {
+            IOUtils.closeQuietly(reader);
+        }
 
-        if (manifestDocument != null)
+        for (ManifestEntry entry : entries)
         {
-            NodeList components = manifestDocument.getElementsByTagName("component");
-            for (int i = 0; i < components.getLength(); i++)
+            XMLName tagName = new XMLName(uri, entry.id);
+            add(tagName, entry.className, uri, manifestFileName, true);
+
+            if (entry.lookupOnly)
+                addLookupOnly(tagName, entry.className);
+        }
+    }
+    
+    /**
+     * Parses the {@code <component>} tags of a manifest file.
+     * 
+     * @param content The content of the manifest file.
+     * @return The entries of the manifest, in file order.
+     */
+    private static ManifestEntry[] parseManifest(String content) throws Exception
+    {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+        documentBuilderFactory.setCoalescing(true);
+        documentBuilderFactory.setIgnoringComments(true);
+        Document manifestDocument = documentBuilderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(content)));
+
+        List<ManifestEntry> entries = new ArrayList<ManifestEntry>();
+        NodeList components = manifestDocument.getElementsByTagName("component");
+        for (int i = 0; i < components.getLength(); i++)
+        {
+            Element component = (Element)components.item(i);
+            if (component != null)
             {
-                Element component = (Element)components.item(i);
-                if (component != null)
+                String id = component.getAttribute("id");
+                if (id != null)
                 {
-                    String id = component.getAttribute("id");
-                    if (id != null)
-                    {
-                        // TODO Why are we checking for dots in the tag name?
-                        int lastDot = id.lastIndexOf(".");
-                        if (lastDot != -1)
-                            id = id.substring(lastDot + 1);
-                    }
-                    
-                    XMLName tagName = new XMLName(uri, id);
-                    
-                    String className = component.getAttribute("class");
-                    if (className != null)
-                        className = className.replaceAll("/", ".");
-                    
-                    String lookupOnlyStr = component.getAttribute("lookupOnly");
-                    boolean lookupOnly = lookupOnlyStr == null ? false : Boolean.valueOf(lookupOnlyStr).booleanValue();
-                    
-                    if (id != null && className != null)
-                    {
-                        add(tagName, className, uri, manifestFileName, true);
-
-                        if (lookupOnly)
-                            addLookupOnly(tagName, className);
-                    }
+                    // TODO Why are we checking for dots in the tag name?
+                    int lastDot = id.lastIndexOf(".");
+                    if (lastDot != -1)
+                        id = id.substring(lastDot + 1);
                 }
+                
+                String className = component.getAttribute("class");
+                if (className != null)
+                    className = className.replaceAll("/", ".");
+                
+                String lookupOnlyStr = component.getAttribute("lookupOnly");
+                boolean lookupOnly = lookupOnlyStr == null ? false : Boolean.valueOf(lookupOnlyStr).booleanValue();
+                
+                if (id != null && className != null)
+                    entries.add(new ManifestEntry(id, className, lookupOnly));
             }
         }
+        return entries.toArray(new ManifestEntry[entries.size()]);
     }
     
     /**
@@ -377,6 +418,23 @@ public class MXMLManifestManager implements IMXMLManifestManager
         return problems;
     }
     
+    /**
+     * A {@code <component>} tag of a manifest file.
+     */
+    private static final class ManifestEntry
+    {
+        ManifestEntry(String id, String className, boolean lookupOnly)
+        {
+            this.id = id;
+            this.className = className;
+            this.lookupOnly = lookupOnly;
+        }
+        
+        final String id;
+        final String className;
+        final boolean lookupOnly;
+    }
+    
     /**
      * This inner class stores information about a class in a namespace mapping.
      */
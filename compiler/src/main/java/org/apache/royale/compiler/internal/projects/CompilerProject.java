@@ -959,6 +959,26 @@ public abstract class CompilerProject implements ICompilerProject
     {
     }
 
+    /**
+     * Remove AST from cache, so that it can be garbage collected.
+     * 
+     * @param ast The AST.
+     */
+    public void removeFromASTCache(IASNode ast)
+    {
+    }
+
+    /**
+     * Check whether AST is in the cache.
+     * 
+     * @param ast The AST.
+     * @return true if the cache holds the AST.
+     */
+    public boolean isInASTCache(IASNode ast)
+    {
+        return false;
+    }
+
     /**
      * Override this to permit package aliasing on imports and elsewhere
      * 
@@ -34,13 +34,20 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOCase;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 
+import org.apache.royale.compiler.internal.caches.ABCDiskCache;
 import org.apache.royale.compiler.internal.caches.CacheStoreKeyBase;
 import org.apache.royale.compiler.internal.caches.SWFCache;
+import org.apache.royale.compiler.internal.caches.SWFIndexCache;
 import org.apache.royale.compiler.internal.units.ResourceBundleCompilationUnit;
 import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
 import org.apache.royale.compiler.problems.DuplicateSourceFileProblem;
@@ -54,6 +61,7 @@ import org.apache.royale.swc.ISWCManager;
 import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swc.SWCManager;
 import org.apache.royale.swf.ITagContainer;
+import org.apache.royale.swf.io.SWFIndexReader;
 import org.apache.royale.utils.FileID;
 import org.apache.royale.utils.FilenameNormalization;
 import com.google.common.base.Splitter;
@@ -156,28 +164,119 @@ public final class LibraryPathManager
     /**
      * Create {@code SWCCompilationUnit} objects from the given SWC files. These
      * compilation units will be added to the project.
+     * <p>
+     * The SWC files are opened, and their catalogs parsed, in parallel,
+     * because a library path often has dozens of SWC files. This uses its own
+     * short-lived thread pool instead of the workspace's executor, because
+     * this method can be called from a thread of that executor, which would
+     * then wait on tasks that need the threads of the same executor. The
+     * compilation units are returned in the same order as the SWC files, and
+     * each SWC gets the same order number as when they were loaded one after
+     * the other, so the definition priorities don't depend on which SWC was
+     * loaded first.
      * 
      * @param swcFilePaths an array of SWC file paths
      * @return new compilation units from the given SWC file paths
      */
     private List<ICompilationUnit> computeUnitsToAdd(final Collection<String> swcFilePaths)
     {
-        int order = 0;
         final List<ICompilationUnit> result = new LinkedList<ICompilationUnit>();
-        final ISWCManager swcManager = flashProject.getWorkspace().getSWCManager();
-        for (final String swcFilePath : swcFilePaths)
+        // loading a SWC file also waits on reading it, so use at least two
+        // threads
+        final int processors = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+        final int threads = Math.min(processors, swcFilePaths.size());
+        if (threads < 2)
+        {
+            int order = 0;
+            for (final String swcFilePath : swcFilePaths)
+                result.addAll(computeUnitsToAdd(swcFilePath, order++));
+            return result;
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<List<ICompilationUnit>>> futures = new ArrayList<Future<List<ICompilationUnit>>>(swcFilePaths.size());
+            int order = 0;
+            for (final String swcFilePath : swcFilePaths)
+            {
+                final int swcOrder = order++;
+                futures.add(executorService.submit(new Callable<List<ICompilationUnit>>()
+                {
+                    @Override
+                    public List<ICompilationUnit> call()
+                    {
+                        return computeUnitsToAdd(swcFilePath, swcOrder);
+                    }
+                }));
+            }
+
+            // join in the order of the library path, not in the order the SWC
+            // files finished loading
+            for (final Future<List<ICompilationUnit>> future : futures)
+                result.addAll(getUnits(future));
+        }
+        finally
         {
-            // it is possible for the SWC to not exist on disk, if this method
-            // is being called as part of a SWC file file removal invalidation.
-            File swcFile = new File(swcFilePath);
-            final ISWC swc = swcManager.get(swcFile);
-            computeUnitsToAdd(swc, order, result);
-            order++;
+            executorService.shutdown();
         }
 
         return result;
     }
 
+    /**
+     * Load a SWC file and create the {@code SWCCompilationUnit} objects for it.
+     * 
+     * @param swcFilePath SWC file path
+     * @param order The order of the SWC in the project
+     * @return new compilation units from the given SWC file
+     */
+    private List<ICompilationUnit> computeUnitsToAdd(String swcFilePath, int order)
+    {
+        // it is possible for the SWC to not exist on disk, if this method
+        // is being called as part of a SWC file file removal invalidation.
+        final File swcFile = new File(swcFilePath);
+        final ISWC swc = flashProject.getWorkspace().getSWCManager().get(swcFile);
+        final List<ICompilationUnit> cus = new ArrayList<ICompilationUnit>();
+        computeUnitsToAdd(swc, order, cus);
+        return cus;
+    }
+
+    private static List<ICompilationUnit> getUnits(Future<List<ICompilationUnit>> future)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    // the units are needed to keep the project consistent,
+                    // so keep waiting, and restore the interrupt afterwards
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Create {@code SWCCompilationUnit} objects from the given ISWC. These
      * compilation units will be added to the project.
@@ -640,6 +739,8 @@ public final class LibraryPathManager
     void collectProblems(Collection<ICompilerProblem> problems)
     {
         final ISWCManager swcManager = flashProject.getWorkspace().getSWCManager();
+        final ABCDiskCache diskCache = (ABCDiskCache)swcManager.getABCDiskCache();
+        final SWFIndexCache indexCache = (SWFIndexCache)swcManager.getSWFIndexCache();
         for (String swcPath : libraryFilePaths.keySet())
         {
             final File swcFile = new File(swcPath);
@@ -648,7 +749,19 @@ public final class LibraryPathManager
             
             for (ISWCLibrary library : swc.getLibraries())
             {
+                // only clean libraries are kept in the disk cache, so there
+                // is no need to read the library SWF to find its problems
+                if (diskCache != null && diskCache.hasLibrary(swc, library.getPath()))
+                    continue;
                 final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
+                // the index reads every tag of a SWF without assets, so it
+                // has the same problems as reading all the tags
+                final SWFIndexReader index = indexCache.get(key);
+                if (index.isCodeOnly())
+                {
+                    problems.addAll(index.getProblems());
+                    continue;
+                }
                 final ITagContainer tags = ((SWFCache)swcManager.getSWFCache()).get(key);
                 problems.addAll(tags.getProblems());
             }
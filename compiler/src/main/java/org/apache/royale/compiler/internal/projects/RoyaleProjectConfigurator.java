@@ -37,13 +37,16 @@ import org.apache.royale.compiler.internal.config.RoyaleTargetSettings;
 import org.apache.royale.compiler.internal.definitions.ClassDefinition;
 import org.apache.royale.compiler.internal.embedding.transcoders.DataTranscoder;
 import org.apache.royale.compiler.internal.units.FXGCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.WorkspaceProfiler;
 import org.apache.royale.compiler.mxml.IMXMLTypeConstants;
 import org.apache.royale.compiler.mxml.IMXMLNamespaceMapping;
 import org.apache.royale.compiler.problems.ANELibraryNotAllowedProblem;
 import org.apache.royale.compiler.projects.IRoyaleProject;
 import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.targets.ITargetSettings;
+import org.apache.royale.compiler.workspaces.IWorkspace;
 import org.apache.royale.swc.ISWC;
+import org.apache.royale.swc.SWCManager;
 import org.apache.royale.utils.FilenameNormalization;
 
 /**
@@ -317,6 +320,8 @@ public class RoyaleProjectConfigurator extends Configurator
         setupRoyale(royaleProject);
         setupCodegenOptions(royaleProject);
         royaleProject.setRuntimeSharedLibraryPath(getRSLSettingsFromConfiguration(configuration));
+        setupLibraryCache(royaleProject);
+        setupProfiling(royaleProject);
             
         if (!setupProjectLibraries(royaleProject))
             success = false;
@@ -496,6 +501,42 @@ public class RoyaleProjectConfigurator extends Configurator
         royaleProject.setEnableInlining(configuration.isInliningEnabled());
     }
     
+    /**
+     * Setup {@code -library-cache-dir}. This has to happen before the
+     * libraries are added, so that their definitions come from the cache.
+     */
+    private void setupLibraryCache(RoyaleProject royaleProject)
+    {
+        if (royaleProject.getWorkspace().getSWCManager() instanceof SWCManager)
+        {
+            final SWCManager swcManager = (SWCManager)royaleProject.getWorkspace().getSWCManager();
+            swcManager.setLibraryCacheDirectory(configuration.getLibraryCacheDir());
+            swcManager.setLibrarySWFCacheMaximumWeight(configuration.getLibrarySWFCacheSize() * 1024L * 1024L);
+        }
+    }
+    
+    private void setupProfiling(RoyaleProject royaleProject)
+    {
+        final File reportFile = configuration.getProfileReport();
+        final File traceFile = configuration.getProfileTrace();
+        if (reportFile == null && traceFile == null)
+            return;
+
+        final IWorkspace workspace = royaleProject.getWorkspace();
+        WorkspaceProfiler profiler;
+        if (workspace.getProfilingDelegate() instanceof WorkspaceProfiler)
+        {
+            profiler = (WorkspaceProfiler)workspace.getProfilingDelegate();
+        }
+        else
+        {
+            profiler = new WorkspaceProfiler();
+            workspace.setProfilingDelegate(profiler);
+        }
+        profiler.setReportFile(reportFile);
+        profiler.setTraceFile(traceFile);
+    }
+    
     /**
      * Setup theme files.
      */
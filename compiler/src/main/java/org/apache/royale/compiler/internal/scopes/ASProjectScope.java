@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -93,7 +94,9 @@ import org.apache.royale.compiler.workspaces.IWorkspace;
  * <p>
  * Since multiple compilation units need to concurrently access a project scope,
  * it uses a ReadWriteLock to allow either multiple readers with no writer or a
- * single writer with no readers.
+ * single writer with no readers. Lookups of definition sets by base name are
+ * usually answered by a concurrent map without taking the lock; see
+ * {@link #getLocalDefinitionSetByName(String)}.
  * <p>
  * A project scope can store a special kind of definition called a <i>definition
  * promise</i>, represented by <code>ASProjectScope.DefinitionPromise</code>.
@@ -234,6 +237,28 @@ public class ASProjectScope extends ASScopeBase
     private final Lock writeLock;
     private final Lock newVectorClassLock;
 
+    /**
+     * Definition sets that were looked up by base name and did not contain
+     * any definition promises, so that the next lookup of the same name does
+     * not have to take the read lock. Names that are not defined map to
+     * {@link #NO_DEFINITION_SET}.
+     * <p>
+     * Entries are only added while the read lock is held, so no writer can
+     * change the definitions for the name at the same time, and every writer
+     * removes the entry for the names that it changes. An entry is therefore
+     * never older than the last change to its name.
+     */
+    private final ConcurrentHashMap<String, Object> definitionSetCache = new ConcurrentHashMap<String, Object>();
+    private static final Object NO_DEFINITION_SET = new Object();
+    private volatile boolean lockFreeReadsEnabled = true;
+
+    /**
+     * Incremented every time a definition is added to or removed from the
+     * store, so that results computed from name lookups can be cached and
+     * checked against it. Only changed with the write lock held.
+     */
+    private volatile int definitionsVersion;
+
     /**
      * The value is a WeakReference to a ICompilationUnit, as the
      * DependencyGraph should have the only long held hard reference to a
@@ -268,7 +293,7 @@ public class ASProjectScope extends ASScopeBase
      * definition is added or removed. Note that the set contains a "wildcard"
      * version of every dotted name.
      */
-    private Set<String> validImports;
+    private volatile Set<String> validImports;
     
     private final LoadingCache<ICompilationUnit, Collection<IASScope>> compilationUnitToScopeList =
         CacheBuilder.newBuilder()
@@ -371,9 +396,60 @@ public class ASProjectScope extends ASScopeBase
         return returnedDefinitionSet;
     }
 
+    /**
+     * Enables or disables the lock-free lookups of definition sets by base
+     * name. They are enabled by default.
+     * 
+     * @param enabled true to answer lookups from the cache of definition sets
+     * without taking the read lock.
+     */
+    public void setLockFreeReadsEnabled(boolean enabled)
+    {
+        writeLock.lock();
+        try
+        {
+            lockFreeReadsEnabled = enabled;
+            definitionSetCache.clear();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the cached definition set for the specified base name. Must be
+     * called with the write lock held, after the definitions for the name
+     * were changed.
+     */
+    private void invalidateDefinitionSet(String baseName)
+    {
+        definitionSetCache.remove(baseName);
+    }
+
+    /**
+     * Gets a number that changes every time a definition is added to or
+     * removed from this scope. Anything that was computed by resolving
+     * names in this scope is still valid as long as this number does not
+     * change.
+     * 
+     * @return The version of the definitions in this scope.
+     */
+    public int getDefinitionsVersion()
+    {
+        return definitionsVersion;
+    }
+
     @Override
     public IDefinitionSet getLocalDefinitionSetByName(String name)
     {
+        if (lockFreeReadsEnabled)
+        {
+            Object cached = definitionSetCache.get(name);
+            if (cached != null)
+                return cached == NO_DEFINITION_SET ? null : (IDefinitionSet)cached;
+        }
+
         IDefinitionSet definitionSet = null;
         boolean containsPromise = false;
 
@@ -397,6 +473,11 @@ public class ASProjectScope extends ASScopeBase
                     }
                 }
             }
+
+            // Sets with promises are not cached, because the promises are
+            // replaced below.
+            if (lockFreeReadsEnabled && !containsPromise)
+                definitionSetCache.put(name, definitionSet != null ? definitionSet : NO_DEFINITION_SET);
         }
         finally
         {
@@ -414,6 +495,7 @@ public class ASProjectScope extends ASScopeBase
                 returnedDefinitionSet = replacePromisesWithDefinitions(definitionSet);
                 if (returnedDefinitionSet != definitionSet)
                     definitionStore.putDefinitionSetByName(name, returnedDefinitionSet);
+                invalidateDefinitionSet(name);
             }
             finally
             {
@@ -941,6 +1023,8 @@ public class ASProjectScope extends ASScopeBase
     protected void addDefinitionToStore(IDefinition def)
     {
         super.addDefinitionToStore(def);
+        invalidateDefinitionSet(def.getBaseName());
+        definitionsVersion++;
 
         if (!(def instanceof DefinitionPromise) && shouldBeCached(def))
             setBuiltinDefinition(def);
@@ -1155,6 +1239,14 @@ public class ASProjectScope extends ASScopeBase
         }
     }
 
+    @Override
+    protected void removeDefinitionFromStore(IDefinition definition)
+    {
+        super.removeDefinitionFromStore(definition);
+        invalidateDefinitionSet(definition.getBaseName());
+        definitionsVersion++;
+    }
+
     @Override
     public void compact()
     {
@@ -1276,18 +1368,12 @@ public class ASProjectScope extends ASScopeBase
             assert compilationUnit.getProject() == getProject();
             return compilationUnit;
         }
-        readLock.lock();
-        try
-        {
-            assert fileScope instanceof SWCFileScope : "only SWCFileScope should be in swcFileScopeToCompilationUnitMap";
-            ICompilationUnit swcCompilationUnit = swcFileScopeToCompilationUnitMap.get(fileScope);
-            assert (swcCompilationUnit == null) || (swcCompilationUnit.getProject() == getProject());
-            return swcCompilationUnit;
-        }
-        finally
-        {
-            readLock.unlock();
-        }
+        // swcFileScopeToCompilationUnitMap is a concurrent map, so this
+        // doesn't need the read lock
+        assert fileScope instanceof SWCFileScope : "only SWCFileScope should be in swcFileScopeToCompilationUnitMap";
+        ICompilationUnit swcCompilationUnit = swcFileScopeToCompilationUnitMap.get(fileScope);
+        assert (swcCompilationUnit == null) || (swcCompilationUnit.getProject() == getProject());
+        return swcCompilationUnit;
     }
     
     /**
@@ -1434,15 +1520,9 @@ public class ASProjectScope extends ASScopeBase
 
     private AppliedVectorDefinition getExistingVectorClass(ITypeDefinition elementType)
     {
-        readLock.lock();
-        try
-        {
-            return vectorElementTypeToVectorClassMap.get(elementType);
-        }
-        finally
-        {
-            readLock.unlock();
-        }
+        // vectorElementTypeToVectorClassMap is a concurrent map, so this
+        // doesn't need the read lock
+        return vectorElementTypeToVectorClassMap.get(elementType);
     }
 
     public AppliedVectorDefinition newVectorClass(ITypeDefinition elementType)
@@ -1646,21 +1726,10 @@ public class ASProjectScope extends ASScopeBase
      */
     public boolean isValidImport(String importName)
     {
-        // Determine whether we need to rebuild the validImports Set.
-        // To get validImports, we need the read lock.
-        boolean needToBuildValidImports = false;
-        readLock.lock();
-        try
-        {
-            if (validImports == null)
-                needToBuildValidImports = true;
-        }
-        finally
-        {
-            readLock.unlock();
-        }
-
-        if (needToBuildValidImports)
+        // validImports is volatile and never changed after it was built, so
+        // it can be queried without the read lock.
+        Set<String> imports = validImports;
+        if (imports == null)
         {
             // We need to rebuild the validImports Set.
             // To set validImports, we need the write lock.
@@ -1669,16 +1738,18 @@ public class ASProjectScope extends ASScopeBase
             {
                 // Make sure we still need to rebuild it.
                 // Another thread might have done it
-                // between the read lock and the write kicj,
+                // before we got the write lock.
                 if (validImports == null)
                 {
-                    validImports = new HashSet<String>();
+                    Set<String> newImports = new HashSet<String>();
                     for (String name : getAllQualifiedNames())
                     {
-                        validImports.add(name);
-                        validImports.add(ImportNode.makeWildcardName(name));
+                        newImports.add(name);
+                        newImports.add(ImportNode.makeWildcardName(name));
                     }
+                    validImports = newImports;
                 }
+                imports = validImports;
             }
             finally
             {
@@ -1686,19 +1757,7 @@ public class ASProjectScope extends ASScopeBase
             }
         }
 
-        // Query the validImports Set.
-        // This requires the read lock.
-        boolean isValid = false;
-        readLock.lock();
-        try
-        {
-            isValid = validImports.contains(importName);
-        }
-        finally
-        {
-            readLock.unlock();
-        }
-        return isValid;
+        return imports.contains(importName);
     }
 
     /**
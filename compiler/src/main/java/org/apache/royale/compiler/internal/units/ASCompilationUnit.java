@@ -19,6 +19,7 @@
 
 package org.apache.royale.compiler.internal.units;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,7 +27,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.royale.compiler.clients.ASC;
 import org.apache.royale.compiler.common.DependencyType;
@@ -47,8 +50,10 @@ import org.apache.royale.compiler.internal.tree.as.FunctionNode;
 import org.apache.royale.compiler.internal.tree.as.XMLLiteralNode;
 import org.apache.royale.compiler.internal.units.requests.ASFileScopeRequestResult;
 import org.apache.royale.compiler.internal.units.requests.SWFTagsRequestResult;
+import org.apache.royale.compiler.internal.workspaces.SyntaxTreeBudget;
 import org.apache.royale.compiler.problems.ICompilerProblem;
 import org.apache.royale.compiler.projects.IASProject;
+import org.apache.royale.compiler.projects.ICompilerProject;
 import org.apache.royale.compiler.scopes.IASScope;
 import org.apache.royale.compiler.tree.as.IASNode;
 import org.apache.royale.compiler.tree.as.IFileNodeAccumulator;
@@ -72,7 +77,7 @@ public class ASCompilationUnit extends CompilationUnitBase
      * Implementation of {@link ISyntaxTreeRequestResult} that has the added feature
      * of being able to transform the reference to the syntax tree to a weak reference.
      */
-    private static class ASSyntaxTreeRequestResult implements ISyntaxTreeRequestResult
+    private static class ASSyntaxTreeRequestResult implements ISyntaxTreeRequestResult, SyntaxTreeBudget.IRetainedSyntaxTree
     {
         private static class HardToWeakRef<T> extends WeakReference<T>
         {
@@ -123,14 +128,20 @@ public class ASCompilationUnit extends CompilationUnitBase
             ownerRef = new WeakReference<ASCompilationUnit>(owner);
             this.syntaxTreeRequest = syntaxTreeRequest;
             astRef = new HardToWeakRef<IASNode>(ast);
+            astSize = ast.getAbsoluteEnd() - ast.getAbsoluteStart();
+            budget = owner.getProject().getWorkspace().getSyntaxTreeBudget();
             this.includedFiles = includedFiles;
             this.problems = problems.toArray(new ICompilerProblem[problems.size()]);
             this.lastModified = lastModified;
+            budget.add(owner, this, astSize);
         }
 
         private final WeakReference<ASCompilationUnit> ownerRef;
         private final IRequest<ISyntaxTreeRequestResult, ICompilationUnit> syntaxTreeRequest;
         private final HardToWeakRef<IASNode> astRef;
+        private final long astSize;
+        private final SyntaxTreeBudget budget;
+        private final AtomicBoolean released = new AtomicBoolean();
         private final ImmutableSet<String> includedFiles;
         private final long lastModified;
         private final ICompilerProblem[] problems;
@@ -153,7 +164,12 @@ public class ASCompilationUnit extends CompilationUnitBase
             // First see if we still have the AST..
             IASNode result = astRef.get();
             if (result != null)
+            {
+                ASCompilationUnit owner = ownerRef.get();
+                if (owner != null)
+                    budget.touch(owner);
                 return result;
+            }
             
             // We allowed the syntax tree to be gc'd.
             // Now we have to get hold of our owning
@@ -163,13 +179,20 @@ public class ASCompilationUnit extends CompilationUnitBase
             // then we are just a stale result object.  Just bail.
             if (owner == null)
                 return null;
+            budget.reparsed();
             // The reference to our owner is still good.
             // Use compare and set to atomically update our
             // owner's reference to us.  We don't care if it
             // ends up being null or a pointing to someone else.
             owner.syntaxTreeRequest.compareAndSet(syntaxTreeRequest, null);
             // Now ask our owner for the syntax tree.
-            return owner.getSyntaxTreeRequest().get().getAST();
+            ISyntaxTreeRequestResult reparsed = owner.getSyntaxTreeRequest().get();
+            result = reparsed.getAST();
+            // The owner won't call removeAST() again, so the new tree
+            // is released right away.
+            if (reparsed instanceof ASSyntaxTreeRequestResult)
+                ((ASSyntaxTreeRequestResult)reparsed).releaseAST(owner);
+            return result;
         }
         
         /**
@@ -180,6 +203,31 @@ public class ASCompilationUnit extends CompilationUnitBase
         {
             astRef.makeWeak();
         }
+
+        /**
+         * Called by the {@link ASCompilationUnit} when it no longer needs the
+         * syntax tree. The tree stays in the {@link SyntaxTreeBudget} of the
+         * workspace while the project pins it.
+         */
+        public void releaseAST(ASCompilationUnit owner)
+        {
+            if (!released.compareAndSet(false, true))
+                return;
+            IASNode ast = astRef.get();
+            dropASTRef();
+            if (ast == null || !owner.getProject().isInASTCache(ast))
+                budget.remove(owner);
+        }
+
+        @Override
+        public void dropSyntaxTree()
+        {
+            IASNode ast = astRef.get();
+            dropASTRef();
+            ASCompilationUnit owner = ownerRef.get();
+            if (ast != null && owner != null)
+                owner.getProject().removeFromASTCache(ast);
+        }
         
         @Override
         public Set<String> getRequiredResourceBundles() throws InterruptedException
@@ -537,6 +585,14 @@ public class ASCompilationUnit extends CompilationUnitBase
         }
     }
 
+    @Override
+    protected void handleClean(boolean clearFileScope, Map<ICompilerProject, Set<File>> invalidatedSWCFiles)
+    {
+        super.handleClean(clearFileScope, invalidatedSWCFiles);
+        if (clearFileScope)
+            getProject().getWorkspace().getSyntaxTreeBudget().drop(this);
+    }
+
     @Override
     protected void removeAST()
     {
@@ -551,7 +607,7 @@ public class ASCompilationUnit extends CompilationUnitBase
             try
             {
                 assert syntaxTreeRequest != null;
-                ((ASSyntaxTreeRequestResult)syntaxTreeRequest.get()).dropASTRef();
+                ((ASSyntaxTreeRequestResult)syntaxTreeRequest.get()).releaseAST(this);
             }
             catch (InterruptedException e)
             {
@@ -41,6 +41,7 @@ import org.apache.royale.compiler.internal.caches.AssetTagCache;
 import org.apache.royale.compiler.internal.caches.CacheStoreKeyBase;
 import org.apache.royale.compiler.internal.caches.FileScopeCache;
 import org.apache.royale.compiler.internal.caches.SWFCache;
+import org.apache.royale.compiler.internal.caches.SWFIndexCache;
 import org.apache.royale.compiler.internal.graph.LinkReportWriter.QNameComparator;
 import org.apache.royale.compiler.internal.projects.CompilerProject;
 import org.apache.royale.compiler.internal.projects.DefinitionPriority;
@@ -69,6 +70,7 @@ import org.apache.royale.swc.ISWCLibrary;
 import org.apache.royale.swc.ISWCScript;
 import org.apache.royale.swf.ITagContainer;
 import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.io.SWFIndexReader;
 import org.apache.royale.swf.tags.DoABCTag;
 import org.apache.royale.swf.tags.ICharacterTag;
 import org.apache.royale.swf.tags.ITag;
@@ -227,11 +229,11 @@ public class SWCCompilationUnit extends CompilationUnitBase
         final ArrayList<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
 
         final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
-        final ITagContainer tags = ((SWFCache)getProject().getWorkspace().getSWCManager().getSWFCache()).get(key);
+        final SWFIndexReader index = getSWFIndexCache().get(key);
 
         startProfile(Operation.GET_ABC_BYTES);
 
-        final DoABCTag doABC = SWFCache.findDoABCTagByName(tags, script.getName());
+        final DoABCTag doABC = index.getDoABCTag(script.getName());
         if (doABC == null)
         {
             problems.add(new InternalCompilerProblem(
@@ -261,8 +263,7 @@ public class SWCCompilationUnit extends CompilationUnitBase
 
         // link main definition
         final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
-        final ITagContainer tags = ((SWFCache)getProject().getWorkspace().getSWCManager().getSWFCache()).get(key);
-        final DoABCTag doABC = SWFCache.findDoABCTagByName(tags, script.getName());
+        final DoABCTag doABC = getSWFIndexCache().get(key).getDoABCTag(script.getName());
         if (doABC == null)
             throw new NullPointerException("can not find DoABC tag: " + script.getName());
 
@@ -374,16 +375,22 @@ public class SWCCompilationUnit extends CompilationUnitBase
 
     private void addAssetTagDependencies(SetMultimap<String, DependencyType> dependencies)
     {
-        final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
-        final ITagContainer swfTags = ((SWFCache)getProject().getWorkspace().getSWCManager().getSWFCache()).get(key);
-        final Collection<SymbolClassTag> symbolTags = SWFCache.findAllSymbolClassTags(swfTags);
+        // only read all the tags of the library SWF if a definition has assets
+        Collection<SymbolClassTag> symbolTags = null;
 
         for (final String defQName : script.getDefinitions())
         {
             final CacheStoreKeyBase assetCacheKey = AssetTagCache.createKey(swc, library.getPath(), script, defQName);
             final AssetTagCache.AssetTagCacheValue assetCacheValue = ((AssetTagCache)getProject().getWorkspace().getSWCManager().getAssetTagCache()).get(assetCacheKey);
-            if (assetCacheValue.referredTags != null)
+            if (assetCacheValue.referredTags != null && !assetCacheValue.referredTags.isEmpty())
             {
+                if (symbolTags == null)
+                {
+                    final CacheStoreKeyBase key = SWFCache.createKey(swc, library.getPath());
+                    final ITagContainer swfTags = ((SWFCache)getProject().getWorkspace().getSWCManager().getSWFCache()).get(key);
+                    symbolTags = SWFCache.findAllSymbolClassTags(swfTags);
+                }
+
                 for (ITag referredTag : assetCacheValue.referredTags)
                 {
                     if (referredTag instanceof ICharacterTag)
@@ -400,6 +407,11 @@ public class SWCCompilationUnit extends CompilationUnitBase
         }
     }
 
+    private SWFIndexCache getSWFIndexCache()
+    {
+        return (SWFIndexCache)getProject().getWorkspace().getSWCManager().getSWFIndexCache();
+    }
+
     /**
      * Test if this compilation unit comes from an ANE File.
      * 
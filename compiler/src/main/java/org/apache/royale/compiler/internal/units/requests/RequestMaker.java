@@ -29,8 +29,10 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.internal.workspaces.WorkspaceProfiler;
 import org.apache.royale.compiler.units.requests.IRequest;
 import org.apache.royale.compiler.units.requests.IRequestResult;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
 
 /**
  * Creates implementations of the IRequest, where the object returned from the
@@ -218,11 +220,15 @@ public abstract class RequestMaker<ResultType extends IRequestResult, RequesteeI
      */
     private Callable<ResultType> wrapCallable(final RequesteeType u, final Callable<ResultType> c, final Workspace workspace)
     {
+        final long submitTime = System.nanoTime();
         return new Callable<ResultType>()
         {
             @Override
             public ResultType call() throws InterruptedException
             {
+                IWorkspaceProfilingDelegate profilingDelegate = workspace.getProfilingDelegate();
+                if (profilingDelegate instanceof WorkspaceProfiler)
+                    ((WorkspaceProfiler)profilingDelegate).requestStarted(System.nanoTime() - submitTime);
                 try
                 {
                     return c.call();
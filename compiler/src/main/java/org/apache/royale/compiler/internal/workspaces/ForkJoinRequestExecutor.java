@@ -0,0 +1,385 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * {@link java.util.concurrent.ExecutorService} for the requests of a
+ * {@link Workspace} that is backed by a {@link ForkJoinPool} with one thread
+ * per processor.
+ * <p>
+ * Requests often wait for the results of other requests, for example when a
+ * compilation unit needs the file scope of another unit. With a fixed number
+ * of threads, every waiting request holds on to a thread, so the threads run
+ * out when the dependencies fan out. The futures returned by this executor
+ * wait with {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}
+ * instead, which lets the pool start another thread while a request waits,
+ * so the number of running threads stays close to the number of processors.
+ * <p>
+ * A thread that waits for a request that did not start yet runs the request
+ * itself, like the caller-runs policy of a thread pool. Otherwise the request
+ * could stay in the queue forever: a thread that is blocked on a monitor,
+ * for example because the waiting thread holds it, still counts as running
+ * for the pool, so the pool wouldn't start another thread for the queue.
+ * Waiting threads never run requests that they don't wait for.
+ * <p>
+ * Running a request on the waiting thread doesn't add to the locks that may
+ * be held at the same time. The waiting thread holds its monitors until the
+ * request is done either way, so the request takes its locks while the same
+ * locks are held as when it runs on another thread. The only difference is
+ * that a monitor that the waiting thread holds is entered again instead of
+ * blocking the request forever. A wait with a timeout doesn't run the
+ * request, because the request might take longer than the timeout.
+ */
+public class ForkJoinRequestExecutor extends AbstractExecutorService
+{
+    /**
+     * The pool never grows beyond this many threads per thread that runs
+     * requests when no request is waiting, or per processor if there are more
+     * processors. Each waiting request keeps its thread and stack, so the
+     * pool stays small even when many requests wait at once.
+     */
+    private static final int MAXIMUM_POOL_SIZE_FACTOR = 4;
+
+    /**
+     * Creates an executor with one thread per processor.
+     */
+    public ForkJoinRequestExecutor()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an executor.
+     *
+     * @param parallelism The number of threads that run requests when no
+     * request is waiting.
+     */
+    public ForkJoinRequestExecutor(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+        // threads of a ForkJoinPool don't inherit the context class loader
+        // like the threads of a ThreadPoolExecutor, which matters when the
+        // compiler runs inside a build tool
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = new ForkJoinPool.ForkJoinWorkerThreadFactory()
+        {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+            {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool)
+                {
+                };
+                thread.setName("Workspace request " + threadNumber.incrementAndGet());
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            }
+        };
+        // when the pool is as large as it can get, waiting requests keep
+        // waiting without another thread instead of failing
+        final Predicate<ForkJoinPool> saturate = new Predicate<ForkJoinPool>()
+        {
+            @Override
+            public boolean test(ForkJoinPool pool)
+            {
+                return true;
+            }
+        };
+        int maximumPoolSize = Math.max(this.parallelism, Runtime.getRuntime().availableProcessors())
+                * MAXIMUM_POOL_SIZE_FACTOR;
+        pool = new ForkJoinPool(this.parallelism, threadFactory, null, true,
+                0, maximumPoolSize, 1, saturate, 60L, TimeUnit.SECONDS);
+    }
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger blockedCount = new AtomicInteger();
+    private final AtomicInteger maxQueuedCount = new AtomicInteger();
+    private final AtomicInteger maxBlockedCount = new AtomicInteger();
+
+    /**
+     * @return The number of threads that run requests when no request is
+     * waiting.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * @return The number of threads in the pool, including the threads of
+     * requests that wait for other requests.
+     */
+    public int getPoolSize()
+    {
+        return pool.getPoolSize();
+    }
+
+    /**
+     * @return The number of requests that were submitted but did not start to
+     * run yet.
+     */
+    public int getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return The number of threads that wait for the result of a request.
+     */
+    public int getBlockedCount()
+    {
+        return blockedCount.get();
+    }
+
+    /**
+     * @return The largest value of {@link #getQueuedCount()} so far.
+     */
+    public int getMaxQueuedCount()
+    {
+        return maxQueuedCount.get();
+    }
+
+    /**
+     * @return The largest value of {@link #getBlockedCount()} so far.
+     */
+    public int getMaxBlockedCount()
+    {
+        return maxBlockedCount.get();
+    }
+
+    @Override
+    public void execute(final Runnable command)
+    {
+        updateMax(maxQueuedCount, queuedCount.incrementAndGet());
+        if (command instanceof ManagedFutureTask)
+        {
+            // counted when the request starts, which may be in get()
+            pool.execute(command);
+            return;
+        }
+        pool.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                queuedCount.decrementAndGet();
+                command.run();
+            }
+        });
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable)
+    {
+        return new ManagedFutureTask<T>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value)
+    {
+        return new ManagedFutureTask<T>(runnable, value);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        return pool.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    private static void updateMax(AtomicInteger max, int value)
+    {
+        int current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * {@link FutureTask} that tells the pool when a thread waits for its
+     * result.
+     */
+    private class ManagedFutureTask<V> extends FutureTask<V> implements ForkJoinPool.ManagedBlocker
+    {
+        ManagedFutureTask(Callable<V> callable)
+        {
+            super(callable);
+        }
+
+        ManagedFutureTask(Runnable runnable, V result)
+        {
+            super(runnable, result);
+        }
+
+        /**
+         * Set when a thread starts to run the request.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        @Override
+        public void run()
+        {
+            if (started.compareAndSet(false, true))
+                queuedCount.decrementAndGet();
+            super.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            // a request that is cancelled before it starts never runs
+            if (cancelled && started.compareAndSet(false, true))
+                queuedCount.decrementAndGet();
+            return cancelled;
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException
+        {
+            // does nothing if another thread started to run the request
+            // in the meantime
+            if (!started.get())
+                run();
+            if (!isDone())
+                managedBlock(this);
+            return super.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException
+        {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!isDone())
+            {
+                managedBlock(new ForkJoinPool.ManagedBlocker()
+                {
+                    @Override
+                    public boolean block() throws InterruptedException
+                    {
+                        try
+                        {
+                            ManagedFutureTask.super.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        }
+                        catch (ExecutionException e)
+                        {
+                            // reported by get()
+                        }
+                        catch (CancellationException e)
+                        {
+                            // reported by get()
+                        }
+                        catch (TimeoutException e)
+                        {
+                            // reported by get()
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable()
+                    {
+                        return isDone() || deadline - System.nanoTime() <= 0;
+                    }
+                });
+            }
+            if (!isDone())
+                throw new TimeoutException();
+            return super.get();
+        }
+
+        private void managedBlock(ForkJoinPool.ManagedBlocker blocker) throws InterruptedException
+        {
+            updateMax(maxBlockedCount, blockedCount.incrementAndGet());
+            try
+            {
+                ForkJoinPool.managedBlock(blocker);
+            }
+            finally
+            {
+                blockedCount.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean block() throws InterruptedException
+        {
+            try
+            {
+                super.get();
+            }
+            catch (ExecutionException e)
+            {
+                // reported by get()
+            }
+            catch (CancellationException e)
+            {
+                // reported by get()
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable()
+        {
+            return isDone();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.royale.compiler.units.ICompilationUnit;
+
+/**
+ * Limits the approximate total size of the syntax trees that a workspace
+ * holds with strong references. A tree is counted from the moment it is
+ * parsed until nothing holds it anymore: until its compilation unit is done
+ * with it, or, for projects that pin their trees with
+ * {@code CompilerProject.addToASTCache()}, until it is unpinned. When the
+ * budget is exceeded the least recently used trees are dropped, which makes
+ * them weakly reachable and unpins them, and a compilation unit parses its
+ * file again the next time its syntax tree is requested.
+ * <p>
+ * The size of a tree is approximated by the number of source characters it
+ * was parsed from. The budget of a workspace is read from the
+ * {@link #BUDGET_PROPERTY} system property. Without it the budget is 0,
+ * which means there is no limit and trees are kept exactly as long as
+ * before the budget existed.
+ */
+public final class SyntaxTreeBudget
+{
+    /**
+     * Name of the system property that sets the budget, in source
+     * characters, of a workspace.
+     */
+    public static final String BUDGET_PROPERTY = "royale.workspace.astBudget";
+
+    /**
+     * A syntax tree that can be dropped by the budget.
+     */
+    public interface IRetainedSyntaxTree
+    {
+        /**
+         * Drop the strong references to the syntax tree, including the one
+         * held by the project, so that it can be garbage collected.
+         */
+        void dropSyntaxTree();
+    }
+
+    /**
+     * Create a budget with the size set by the {@link #BUDGET_PROPERTY}
+     * system property.
+     */
+    public static SyntaxTreeBudget create()
+    {
+        long budget = 0;
+        final String value = System.getProperty(BUDGET_PROPERTY);
+        if (value != null)
+        {
+            try
+            {
+                budget = Long.parseLong(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                // ignore, and keep the trees as without a budget
+            }
+        }
+        return new SyntaxTreeBudget(budget);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param budget Total approximate size of the strongly held trees. 0
+     * means no limit.
+     */
+    public SyntaxTreeBudget(long budget)
+    {
+        this.budget = Math.max(budget, 0);
+        trees = new LinkedHashMap<ICompilationUnit, Entry>(16, 0.75f, true);
+    }
+
+    private final long budget;
+
+    /**
+     * The strongly held trees, least recently used first.
+     */
+    private final LinkedHashMap<ICompilationUnit, Entry> trees;
+    private long size;
+
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong reparseCount = new AtomicLong();
+
+    /**
+     * @return true if the size of the strongly held trees is limited.
+     */
+    public boolean isEnabled()
+    {
+        return budget > 0;
+    }
+
+    /**
+     * Called when a compilation unit has parsed its file. The least recently
+     * used trees are dropped to make room for the new tree. The new tree
+     * itself is never dropped here, because its compilation unit is about
+     * to use it.
+     *
+     * @param unit Compilation unit of the tree.
+     * @param tree Tree that was parsed.
+     * @param treeSize Approximate size of the tree.
+     */
+    public void add(ICompilationUnit unit, IRetainedSyntaxTree tree, long treeSize)
+    {
+        if (budget == 0)
+            return;
+
+        synchronized (this)
+        {
+            final Entry previous = trees.put(unit, new Entry(tree, treeSize));
+            if (previous != null)
+            {
+                // The previous tree of the compilation unit is stale.
+                size -= previous.size;
+                if (previous.tree != tree)
+                    previous.tree.dropSyntaxTree();
+            }
+            size += treeSize;
+
+            final Iterator<Entry> iterator = trees.values().iterator();
+            while (size > budget && trees.size() > 1)
+            {
+                final Entry eldest = iterator.next();
+                iterator.remove();
+                size -= eldest.size;
+                eldest.tree.dropSyntaxTree();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Mark the tree of a compilation unit as used.
+     *
+     * @param unit Compilation unit of the tree.
+     */
+    public void touch(ICompilationUnit unit)
+    {
+        if (budget == 0)
+            return;
+        synchronized (this)
+        {
+            trees.get(unit);
+        }
+    }
+
+    /**
+     * Stop counting the tree of a compilation unit, because nothing holds
+     * it with a strong reference anymore.
+     *
+     * @param unit Compilation unit of the tree.
+     */
+    public void remove(ICompilationUnit unit)
+    {
+        if (budget == 0)
+            return;
+        synchronized (this)
+        {
+            final Entry entry = trees.remove(unit);
+            if (entry != null)
+                size -= entry.size;
+        }
+    }
+
+    /**
+     * Stop counting the tree of a compilation unit and drop it, because the
+     * compilation unit was invalidated.
+     *
+     * @param unit Compilation unit of the tree.
+     */
+    public void drop(ICompilationUnit unit)
+    {
+        if (budget == 0)
+            return;
+        final Entry entry;
+        synchronized (this)
+        {
+            entry = trees.remove(unit);
+            if (entry != null)
+                size -= entry.size;
+        }
+        if (entry != null)
+            entry.tree.dropSyntaxTree();
+    }
+
+    /**
+     * Called when a compilation unit parses its file again, because its
+     * tree was dropped.
+     */
+    public void reparsed()
+    {
+        reparseCount.incrementAndGet();
+    }
+
+    /**
+     * @return The total approximate size of the trees that can be held. 0
+     * means no limit.
+     */
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * @return The number of trees that were dropped to stay within the
+     * budget.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return The number of times a file was parsed again because its tree
+     * was dropped.
+     */
+    public long getReparseCount()
+    {
+        return reparseCount.get();
+    }
+
+    /**
+     * @return The number of strongly held trees.
+     */
+    public synchronized int getRetainedCount()
+    {
+        return trees.size();
+    }
+
+    /**
+     * @return The total approximate size of the strongly held trees.
+     */
+    public synchronized long getRetainedSize()
+    {
+        return size;
+    }
+
+    private static final class Entry
+    {
+        Entry(IRetainedSyntaxTree tree, long size)
+        {
+            this.tree = tree;
+            this.size = size;
+        }
+
+        final IRetainedSyntaxTree tree;
+        final long size;
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.royale.compiler.internal.workspaces;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -148,19 +149,38 @@ public final class Workspace implements IWorkspace
      */
     private IASDocDelegate asDocDelegate;
 
+    /**
+     * Limits the size of the syntax trees held by the compilation units and
+     * projects of this workspace to {@link SyntaxTreeBudget#BUDGET_PROPERTY}.
+     */
+    private final SyntaxTreeBudget syntaxTreeBudget;
+
+    /**
+     * Name of the system property that selects the executor of a workspace
+     * that is created with the default constructor. The value "forkjoin"
+     * selects the {@link ForkJoinRequestExecutor}. Otherwise the workspace
+     * uses a {@link ThreadPoolExecutor} with one thread per processor.
+     */
+    public static final String SCHEDULER_PROPERTY = "royale.workspace.scheduler";
+
     /**
      * Constructor
      */
     public Workspace()
     {
+        this(createExecutorService());
+    }
+
+    private static ExecutorService createExecutorService()
+    {
+        if ("forkjoin".equals(System.getProperty(SCHEDULER_PROPERTY)))
+            return new ForkJoinRequestExecutor();
         // Limit the number of threads to the number of processors
         // If you want to run single threaded, update getNumberOfThreadToUse()
-        this(new ThreadPoolExecutor(0, getNumberOfThreadToUse(),
-                                    60L, TimeUnit.SECONDS,
-                                    new SynchronousQueue<Runnable>(),
-                                    new ThreadPoolExecutor.CallerRunsPolicy()));
-
-//        this(Executors.newCachedThreadPool(), indexingDelegate);
+        return new ThreadPoolExecutor(0, getNumberOfThreadToUse(),
+                                      60L, TimeUnit.SECONDS,
+                                      new SynchronousQueue<Runnable>(),
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
     /**
@@ -193,6 +213,8 @@ public final class Workspace implements IWorkspace
         asDocDelegate = NilASDocDelegate.get();
         
         buildSync = new BuildSynchronizationState();
+
+        syntaxTreeBudget = SyntaxTreeBudget.create();
     }
 
     private static int getNumberOfThreadToUse()
@@ -227,6 +249,47 @@ public final class Workspace implements IWorkspace
         return executorService;
     }
 
+    /**
+     * Gets the number of requests that were submitted to the executor of this
+     * workspace, but did not start to run yet.
+     * 
+     * @return The number of queued requests, or -1 if the executor does not
+     * keep track of them.
+     */
+    public int getQueuedRequestCount()
+    {
+        if (executorService instanceof ForkJoinRequestExecutor)
+            return ((ForkJoinRequestExecutor)executorService).getQueuedCount();
+        if (executorService instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor)executorService).getQueue().size();
+        return -1;
+    }
+
+    /**
+     * Gets the number of threads of this workspace that wait for the result of
+     * another request.
+     * 
+     * @return The number of blocked threads, or -1 if the executor does not
+     * keep track of them.
+     */
+    public int getBlockedRequestCount()
+    {
+        if (executorService instanceof ForkJoinRequestExecutor)
+            return ((ForkJoinRequestExecutor)executorService).getBlockedCount();
+        return -1;
+    }
+
+    /**
+     * Gets the budget for the syntax trees of the compilation units in this
+     * workspace.
+     * 
+     * @return The {@link SyntaxTreeBudget} of this workspace.
+     */
+    public SyntaxTreeBudget getSyntaxTreeBudget()
+    {
+        return syntaxTreeBudget;
+    }
+
     private CompilerProject[] getProjects()
     {
         return projects.keySet().toArray(new CompilerProject[0]);
@@ -350,9 +413,31 @@ public final class Workspace implements IWorkspace
     public void close()
     {
         executorService.shutdown();
+        writeProfileReports();
         executorService = null;
     }
 
+    /**
+     * Writes the reports of the {@link WorkspaceProfiler} that was installed
+     * by the configuration, if any, for the builds since they were last
+     * written. Clients call this at the end of every build, because a
+     * workspace that is kept open for the next build isn't closed.
+     */
+    public void writeProfileReports()
+    {
+        if (profilingDelegate instanceof WorkspaceProfiler)
+        {
+            try
+            {
+                ((WorkspaceProfiler)profilingDelegate).finishBuild(this);
+            }
+            catch (IOException e)
+            {
+                System.err.println("Unable to write profile report: " + e.getMessage());
+            }
+        }
+    }
+
     private final Collection<ICompilationUnit> collectAssociatedCompilationUnits(IFileSpecification file)
     {
         String filename = file.getPath();
@@ -0,0 +1,440 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.royale.compiler.internal.caches.CacheStoreStatistics;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit.Operation;
+import org.apache.royale.compiler.workspaces.IWorkspaceProfilingDelegate;
+import org.apache.royale.swc.SWCManager;
+
+/**
+ * {@link IWorkspaceProfilingDelegate} that records how long every
+ * {@link ICompilationUnit} operation took, and how long requests waited for a
+ * thread of the workspace's executor.
+ * <p>
+ * At the end of every build, and when the workspace is closed, a summary is
+ * written as JSON to the report file, and every recorded operation is written
+ * to the trace file in the Trace Event Format that can be opened by
+ * chrome://tracing. Either file may be null. A workspace that is kept open
+ * gets new reports for every build.
+ */
+public class WorkspaceProfiler implements IWorkspaceProfilingDelegate
+{
+    public WorkspaceProfiler()
+    {
+        startTime = System.nanoTime();
+    }
+
+    private long startTime;
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<Event>();
+    private final ThreadLocal<List<Event>> runningEvents = new ThreadLocal<List<Event>>()
+    {
+        @Override
+        protected List<Event> initialValue()
+        {
+            return new ArrayList<Event>();
+        }
+    };
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitTime = new AtomicLong();
+    private final AtomicLong maxQueueWaitTime = new AtomicLong();
+
+    private File reportFile;
+    private File traceFile;
+
+    public void setReportFile(File reportFile)
+    {
+        this.reportFile = reportFile;
+    }
+
+    public void setTraceFile(File traceFile)
+    {
+        this.traceFile = traceFile;
+    }
+
+    @Override
+    public void operationStarted(ICompilationUnit cu, Operation operation)
+    {
+        Thread thread = Thread.currentThread();
+        runningEvents.get().add(new Event(cu, operation, thread.getId(), thread.getName(), System.nanoTime()));
+    }
+
+    @Override
+    public void operationCompleted(ICompilationUnit cu, Operation operation)
+    {
+        final long endTime = System.nanoTime();
+
+        // operations on the same thread nest, so search from the most recent
+        List<Event> running = runningEvents.get();
+        for (int i = running.size() - 1; i >= 0; i--)
+        {
+            Event event = running.get(i);
+            if (event.unit == cu && event.operation == operation)
+            {
+                running.remove(i);
+                event.unit = null;
+                event.duration = endTime - event.start;
+                events.add(event);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by a request when it starts to run on a thread of the workspace's
+     * executor.
+     *
+     * @param queueWaitTime nanoseconds between the time the request was
+     * submitted to the executor and the time it started to run.
+     */
+    public void requestStarted(long queueWaitTime)
+    {
+        requestCount.incrementAndGet();
+        totalQueueWaitTime.addAndGet(queueWaitTime);
+        long max = maxQueueWaitTime.get();
+        while (queueWaitTime > max && !maxQueueWaitTime.compareAndSet(max, queueWaitTime))
+            max = maxQueueWaitTime.get();
+    }
+
+    /**
+     * Writes the reports of the operations that were recorded since the
+     * reports were last written, and starts recording the next build. Does
+     * nothing if nothing was recorded since then, so that the reports of a
+     * build aren't replaced with empty ones when the workspace is closed, or
+     * by another workspace that writes to the same files, like the one of
+     * MXMLJSC that only hands the JavaScript targets to other compilers.
+     *
+     * @param workspace The workspace whose cache statistics are added to the
+     * report.
+     */
+    public void finishBuild(Workspace workspace) throws IOException
+    {
+        if (events.isEmpty() && requestCount.get() == 0)
+            return;
+        writeReports(workspace);
+        events.clear();
+        requestCount.set(0);
+        totalQueueWaitTime.set(0);
+        maxQueueWaitTime.set(0);
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Writes the report and the trace, if their files were set.
+     *
+     * @param workspace The workspace whose cache statistics are added to the
+     * report.
+     */
+    public void writeReports(Workspace workspace) throws IOException
+    {
+        if (reportFile != null)
+        {
+            Writer writer = createWriter(reportFile);
+            try
+            {
+                writeReport(writer, workspace);
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        if (traceFile != null)
+        {
+            Writer writer = createWriter(traceFile);
+            try
+            {
+                writeTrace(writer);
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Writes a summary of the recorded operations as JSON. Times are
+     * inclusive, so an operation that waits for another operation of the same
+     * compilation unit includes the time of that operation.
+     */
+    public void writeReport(Writer writer, Workspace workspace) throws IOException
+    {
+        final Map<Operation, Totals> operationTotals = new EnumMap<Operation, Totals>(Operation.class);
+        final Map<String, Map<Operation, Totals>> unitTotals = new LinkedHashMap<String, Map<Operation, Totals>>();
+        for (Event event : events)
+        {
+            add(operationTotals, event);
+            Map<Operation, Totals> totals = unitTotals.get(event.unitName);
+            if (totals == null)
+            {
+                totals = new EnumMap<Operation, Totals>(Operation.class);
+                unitTotals.put(event.unitName, totals);
+            }
+            add(totals, event);
+        }
+
+        writer.write("{\n");
+        writer.write("\"wallTimeMillis\": " + toMillis(System.nanoTime() - startTime) + ",\n");
+
+        writer.write("\"operations\": {");
+        writeTotals(writer, operationTotals, "\n  ");
+        writer.write("\n},\n");
+
+        writer.write("\"queueWait\": {\"count\": " + requestCount.get()
+                + ", \"totalMillis\": " + toMillis(totalQueueWaitTime.get())
+                + ", \"maxMillis\": " + toMillis(maxQueueWaitTime.get()) + "},\n");
+
+        if (workspace != null && workspace.getExecutorService() instanceof ForkJoinRequestExecutor)
+        {
+            ForkJoinRequestExecutor executor = (ForkJoinRequestExecutor)workspace.getExecutorService();
+            writer.write("\"scheduler\": {\"parallelism\": " + executor.getParallelism()
+                    + ", \"maxQueued\": " + executor.getMaxQueuedCount()
+                    + ", \"maxBlocked\": " + executor.getMaxBlockedCount() + "},\n");
+        }
+
+        if (workspace != null)
+        {
+            SyntaxTreeBudget budget = workspace.getSyntaxTreeBudget();
+            writer.write("\"syntaxTrees\": {\"budget\": " + budget.getBudget()
+                    + ", \"retained\": " + budget.getRetainedCount()
+                    + ", \"retainedSize\": " + budget.getRetainedSize()
+                    + ", \"evictions\": " + budget.getEvictionCount()
+                    + ", \"reparses\": " + budget.getReparseCount() + "},\n");
+        }
+
+        writer.write("\"caches\": {");
+        if (workspace != null && workspace.getSWCManager() instanceof SWCManager)
+        {
+            Map<String, CacheStoreStatistics> caches = ((SWCManager)workspace.getSWCManager()).getCacheStatistics();
+            boolean first = true;
+            for (Map.Entry<String, CacheStoreStatistics> entry : caches.entrySet())
+            {
+                CacheStoreStatistics statistics = entry.getValue();
+                writer.write(first ? "\n  " : ",\n  ");
+                writer.write(quote(entry.getKey()) + ": {\"hits\": " + statistics.getHitCount()
+                        + ", \"misses\": " + statistics.getMissCount()
+                        + ", \"hitRate\": " + String.format(Locale.ROOT, "%.4f", statistics.getHitRate())
+                        + ", \"loads\": " + statistics.getLoadCount()
+                        + ", \"loadFailures\": " + statistics.getLoadFailureCount()
+                        + ", \"loadMillis\": " + toMillis(statistics.getTotalLoadTime())
+                        + ", \"evictions\": " + statistics.getEvictionCount()
+                        + ", \"size\": " + statistics.getSize()
+                        + ", \"weight\": " + statistics.getWeight() + "}");
+                first = false;
+            }
+        }
+        writer.write("\n},\n");
+
+        // slowest compilation units first
+        List<Map.Entry<String, Map<Operation, Totals>>> units =
+                new ArrayList<Map.Entry<String, Map<Operation, Totals>>>(unitTotals.entrySet());
+        Collections.sort(units, new Comparator<Map.Entry<String, Map<Operation, Totals>>>()
+        {
+            @Override
+            public int compare(Map.Entry<String, Map<Operation, Totals>> o1, Map.Entry<String, Map<Operation, Totals>> o2)
+            {
+                return Long.compare(getTotalTime(o2.getValue()), getTotalTime(o1.getValue()));
+            }
+        });
+        writer.write("\"units\": [");
+        boolean first = true;
+        for (Map.Entry<String, Map<Operation, Totals>> unit : units)
+        {
+            writer.write(first ? "\n  " : ",\n  ");
+            writer.write("{\"unit\": " + quote(unit.getKey())
+                    + ", \"totalMillis\": " + toMillis(getTotalTime(unit.getValue()))
+                    + ", \"operations\": {");
+            writeTotals(writer, unit.getValue(), " ");
+            writer.write("}}");
+            first = false;
+        }
+        writer.write("\n]\n");
+        writer.write("}\n");
+    }
+
+    /**
+     * Writes every recorded operation in the Trace Event Format.
+     */
+    public void writeTrace(Writer writer) throws IOException
+    {
+        writer.write("{\"traceEvents\": [");
+        Map<Long, String> threadNames = new LinkedHashMap<Long, String>();
+        boolean first = true;
+        for (Event event : events)
+        {
+            threadNames.put(event.threadId, event.threadName);
+            writer.write(first ? "\n" : ",\n");
+            writer.write("{\"name\": " + quote(event.operation.name())
+                    + ", \"cat\": \"compilation-unit\", \"ph\": \"X\", \"pid\": 1, \"tid\": " + event.threadId
+                    + ", \"ts\": " + toMicros(event.start - startTime)
+                    + ", \"dur\": " + toMicros(event.duration)
+                    + ", \"args\": {\"unit\": " + quote(event.unitName) + "}}");
+            first = false;
+        }
+        for (Map.Entry<Long, String> thread : threadNames.entrySet())
+        {
+            writer.write(first ? "\n" : ",\n");
+            writer.write("{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": " + thread.getKey()
+                    + ", \"args\": {\"name\": " + quote(thread.getValue()) + "}}");
+            first = false;
+        }
+        writer.write("\n],\n\"displayTimeUnit\": \"ms\"}\n");
+    }
+
+    private static void add(Map<Operation, Totals> totals, Event event)
+    {
+        Totals t = totals.get(event.operation);
+        if (t == null)
+        {
+            t = new Totals();
+            totals.put(event.operation, t);
+        }
+        t.count++;
+        t.totalTime += event.duration;
+        t.maxTime = Math.max(t.maxTime, event.duration);
+    }
+
+    private static long getTotalTime(Map<Operation, Totals> totals)
+    {
+        long result = 0;
+        for (Totals t : totals.values())
+            result += t.totalTime;
+        return result;
+    }
+
+    private static void writeTotals(Writer writer, Map<Operation, Totals> totals, String separator) throws IOException
+    {
+        boolean first = true;
+        for (Map.Entry<Operation, Totals> entry : totals.entrySet())
+        {
+            Totals t = entry.getValue();
+            if (!first)
+                writer.write(",");
+            writer.write(separator);
+            writer.write(quote(entry.getKey().name()) + ": {\"count\": " + t.count
+                    + ", \"totalMillis\": " + toMillis(t.totalTime)
+                    + ", \"maxMillis\": " + toMillis(t.maxTime) + "}");
+            first = false;
+        }
+    }
+
+    private static Writer createWriter(File file) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static String toMillis(long nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static long toMicros(long nanos)
+    {
+        return nanos / 1000;
+    }
+
+    private static String quote(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int)c));
+                    else
+                        sb.append(c);
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    private static class Event
+    {
+        Event(ICompilationUnit unit, Operation operation, long threadId, String threadName, long start)
+        {
+            this.unit = unit;
+            this.unitName = unit.getName();
+            this.operation = operation;
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.start = start;
+        }
+
+        // only used to match the end of an operation with its start
+        ICompilationUnit unit;
+        final String unitName;
+        final Operation operation;
+        final long threadId;
+        final String threadName;
+        final long start;
+        long duration;
+    }
+
+    private static class Totals
+    {
+        int count;
+        long totalTime;
+        long maxTime;
+    }
+}
@@ -21,17 +21,22 @@ package org.apache.royale.swc;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.royale.compiler.caches.IAssetTagCache;
 import org.apache.royale.compiler.caches.ICSSDocumentCache;
 import org.apache.royale.compiler.caches.IFileScopeCache;
 import org.apache.royale.compiler.caches.ISWFCache;
+import org.apache.royale.compiler.internal.caches.ABCDiskCache;
 import org.apache.royale.compiler.internal.caches.AssetTagCache;
 import org.apache.royale.compiler.internal.caches.CSSDocumentCache;
 import org.apache.royale.compiler.internal.caches.CacheStoreKeyBase;
+import org.apache.royale.compiler.internal.caches.CacheStoreStatistics;
 import org.apache.royale.compiler.internal.caches.ConcurrentCacheStoreBase;
 import org.apache.royale.compiler.internal.caches.FileScopeCache;
 import org.apache.royale.compiler.internal.caches.SWFCache;
+import org.apache.royale.compiler.internal.caches.SWFIndexCache;
 import org.apache.royale.compiler.workspaces.IWorkspace;
 import org.apache.royale.swc.io.SWCReader;
 
@@ -76,6 +81,7 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
     public SWCManager(IWorkspace workspace)
     {
         swfCache = new SWFCache(this);
+        swfIndexCache = new SWFIndexCache();
         fileScopeCache = new FileScopeCache(this);
         assetTagCache = new AssetTagCache(this);
         cssDocumentCache = new CSSDocumentCache();
@@ -83,10 +89,12 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
     }
 
     private final SWFCache swfCache;
+    private final SWFIndexCache swfIndexCache;
     private final FileScopeCache fileScopeCache;
     private final AssetTagCache assetTagCache;
     private final CSSDocumentCache cssDocumentCache;
     private final IWorkspace workspace;
+    private volatile ABCDiskCache abcDiskCache;
 
 
 
@@ -99,6 +107,15 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         return swfCache;
     }
 
+    /**
+     * @return the cache of the {@code DoABC} tags of library SWFs by name
+     */
+    @Override
+    public SWFIndexCache getSWFIndexCache()
+    {
+        return swfIndexCache;
+    }
+
     /**
      * @return the fileScopeCache
      */
@@ -122,6 +139,46 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         return workspace;
     }
 
+    /**
+     * Set the estimated total size of the library SWFs that the SWF cache and
+     * the SWF index cache each hold on to.
+     * 
+     * @param maximumWeight size in bytes, or 0 to let the garbage collector
+     * drop any of them
+     * @see ConcurrentCacheStoreBase#setMaximumWeight(long)
+     */
+    public void setLibrarySWFCacheMaximumWeight(long maximumWeight)
+    {
+        if (swfCache.getMaximumWeight() != maximumWeight)
+            swfCache.setMaximumWeight(maximumWeight);
+        if (swfIndexCache.getMaximumWeight() != maximumWeight)
+            swfIndexCache.setMaximumWeight(maximumWeight);
+    }
+
+    /**
+     * @return the persistent cache of library ABC, or null if there is none
+     */
+    @Override
+    public ABCDiskCache getABCDiskCache()
+    {
+        return abcDiskCache;
+    }
+
+    /**
+     * Set the directory to keep the persistent cache of library ABC in.
+     * 
+     * @param directory the cache directory, or null to disable the cache
+     */
+    public void setLibraryCacheDirectory(File directory)
+    {
+        final ABCDiskCache current = abcDiskCache;
+        if (current != null && current.getDirectory().equals(directory))
+            return;
+        abcDiskCache = directory != null ? new ABCDiskCache(directory) : null;
+        if (current != null)
+            current.close();
+    }
+
     @Override
     protected ISWC createEntryValue(CacheStoreKeyBase key)
     {
@@ -153,6 +210,9 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
         ISWC removedSWC = this.remove(new SWCCacheKey(file));
         if (removedSWC == null)
             return;
+        final ABCDiskCache diskCache = abcDiskCache;
+        if (diskCache != null)
+            diskCache.remove(removedSWC);
         for (ISWCLibrary lib : removedSWC.getLibraries())
         {
             String librarySWFPath = lib.getPath();
@@ -164,6 +224,7 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
             }
 
             swfCache.remove(SWFCache.createKey(removedSWC, lib.getPath()));
+            swfIndexCache.remove(SWFCache.createKey(removedSWC, lib.getPath()));
         }
 
         for (String defaultsCSSFileName : CSSDocumentCache.ALL_DEFAULTS_CSS_FILENAMES)
@@ -178,4 +239,21 @@ public class SWCManager extends ConcurrentCacheStoreBase<ISWC> implements ISWCMa
     {
         return cssDocumentCache;
     }
+
+    /**
+     * Get the counters of this cache and of all the caches that it manages.
+     * 
+     * @return statistics by cache name
+     */
+    public Map<String, CacheStoreStatistics> getCacheStatistics()
+    {
+        final Map<String, CacheStoreStatistics> result = new LinkedHashMap<String, CacheStoreStatistics>();
+        result.put("SWCManager", getStatistics());
+        result.put("SWFCache", swfCache.getStatistics());
+        result.put("SWFIndexCache", swfIndexCache.getStatistics());
+        result.put("FileScopeCache", fileScopeCache.getStatistics());
+        result.put("AssetTagCache", assetTagCache.getStatistics());
+        result.put("CSSDocumentCache", cssDocumentCache.getStatistics());
+        return result;
+    }
 }
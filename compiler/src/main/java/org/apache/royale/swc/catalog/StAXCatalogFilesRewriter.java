@@ -0,0 +1,384 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.catalog;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Replaces the {@code <files>} list of a catalog.xml and copies the rest of
+ * the catalog as it is. This is used by tools that add files to a SWC that
+ * was already written, without a complete {@link org.apache.royale.swc.ISWC}
+ * model of the SWC.
+ */
+public class StAXCatalogFilesRewriter implements ICatalogXMLConstants
+{
+    /**
+     * Read a catalog.xml.
+     *
+     * @param catalog catalog.xml content
+     * @throws XMLStreamException XML error
+     */
+    public StAXCatalogFilesRewriter(final InputStream catalog) throws XMLStreamException
+    {
+        assert catalog != null : "expect catalog";
+
+        nodes = new ArrayList<Node>();
+        files = new LinkedHashMap<String, Long>();
+
+        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(catalog);
+        try
+        {
+            int depth = 0;
+            int filesDepth = -1;
+            while (reader.hasNext())
+            {
+                final int type = reader.next();
+                final Node node = new Node(type);
+                switch (type)
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        readElement(reader, node);
+                        if (filesDepth == -1 && depth == 2 && TAG_FILES.equals(node.localName))
+                            filesDepth = depth;
+                        else if (filesDepth != -1 && depth == filesDepth + 1 && TAG_FILE.equals(node.localName))
+                            addFile(node);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == filesDepth)
+                            filesDepth = -1;
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.COMMENT:
+                        node.text = reader.getText();
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        node.localName = reader.getPITarget();
+                        node.text = reader.getPIData();
+                        break;
+                    default:
+                        continue;
+                }
+                nodes.add(node);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * The content of the catalog, after the XML declaration.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * Modification times of the files in the catalog, by path, in catalog
+     * order.
+     */
+    private final Map<String, Long> files;
+
+    private static void readElement(final XMLStreamReader reader, final Node node)
+    {
+        node.prefix = reader.getPrefix();
+        node.namespaceURI = reader.getNamespaceURI();
+        node.localName = reader.getLocalName();
+        node.namespaces = new String[reader.getNamespaceCount() * 2];
+        for (int i = 0; i < reader.getNamespaceCount(); i++)
+        {
+            node.namespaces[i * 2] = reader.getNamespacePrefix(i);
+            node.namespaces[i * 2 + 1] = reader.getNamespaceURI(i);
+        }
+        node.attributes = new String[reader.getAttributeCount() * 4];
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+        {
+            node.attributes[i * 4] = reader.getAttributePrefix(i);
+            node.attributes[i * 4 + 1] = reader.getAttributeNamespace(i);
+            node.attributes[i * 4 + 2] = reader.getAttributeLocalName(i);
+            node.attributes[i * 4 + 3] = reader.getAttributeValue(i);
+        }
+    }
+
+    private void addFile(final Node element)
+    {
+        final String path = element.getAttribute(ATTR_PATH);
+        final String mod = element.getAttribute(ATTR_MOD);
+        if (path == null)
+            return;
+        long lastModified = 0;
+        if (mod != null)
+        {
+            try
+            {
+                lastModified = Long.parseLong(mod);
+            }
+            catch (NumberFormatException e)
+            {
+                // keep the file with an unknown modification time
+            }
+        }
+        files.put(path, lastModified);
+    }
+
+    /**
+     * @return Modification times of the files in the catalog, by path, in
+     * catalog order.
+     */
+    public Map<String, Long> getFiles()
+    {
+        return Collections.unmodifiableMap(files);
+    }
+
+    /**
+     * Write the catalog with a new {@code <files>} list. The list is written
+     * after the {@code <libraries>} of the catalog.
+     *
+     * @param output output for the new catalog.xml
+     * @param newFiles modification times of the files, by path
+     * @throws XMLStreamException XML error
+     */
+    public void write(final OutputStream output, final Map<String, Long> newFiles) throws XMLStreamException
+    {
+        final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+
+        int depth = 0;
+        boolean skipping = false;
+        boolean filesWritten = false;
+        // Whitespace is held back, so that the indentation of the old
+        // <files> list can be dropped with the list.
+        String pendingWhitespace = null;
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            final Node node = nodes.get(i);
+            if (node.type == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+                if (depth == 2 && TAG_FILES.equals(node.localName))
+                {
+                    skipping = true;
+                    pendingWhitespace = null;
+                    continue;
+                }
+            }
+            else if (node.type == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+                if (skipping && depth == 1)
+                {
+                    skipping = false;
+                    continue;
+                }
+                if (depth == 0 && !filesWritten)
+                {
+                    // no <libraries> in the catalog
+                    writeFiles(writer, nodes.get(0), newFiles);
+                    filesWritten = true;
+                }
+            }
+            if (skipping)
+                continue;
+
+            if (node.isWhitespace())
+            {
+                if (pendingWhitespace != null)
+                    writer.writeCharacters(pendingWhitespace);
+                pendingWhitespace = node.text;
+                continue;
+            }
+            if (pendingWhitespace != null)
+            {
+                writer.writeCharacters(pendingWhitespace);
+                pendingWhitespace = null;
+            }
+
+            switch (node.type)
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    final boolean empty = i + 1 < nodes.size() &&
+                                          nodes.get(i + 1).type == XMLStreamConstants.END_ELEMENT;
+                    node.write(writer, empty);
+                    if (empty)
+                    {
+                        // the end of the element is written with its start
+                        i++;
+                        depth--;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    writer.writeEndElement();
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    writer.writeComment(node.text);
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    writer.writeProcessingInstruction(node.localName, node.text);
+                    break;
+                default:
+                    writer.writeCharacters(node.text);
+                    break;
+            }
+
+            if (node.type == XMLStreamConstants.END_ELEMENT && depth == 1 && !filesWritten &&
+                TAG_LIBRARIES.equals(getStartElement(i).localName))
+            {
+                writeFiles(writer, nodes.get(0), newFiles);
+                filesWritten = true;
+            }
+        }
+        if (pendingWhitespace != null)
+            writer.writeCharacters(pendingWhitespace);
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    /**
+     * Find the start of the element that ends at a node.
+     */
+    private Node getStartElement(final int end)
+    {
+        int depth = 0;
+        for (int i = end; i >= 0; i--)
+        {
+            final Node node = nodes.get(i);
+            if (node.type == XMLStreamConstants.END_ELEMENT)
+                depth++;
+            else if (node.type == XMLStreamConstants.START_ELEMENT && --depth == 0)
+                return node;
+        }
+        throw new IllegalStateException("unbalanced catalog");
+    }
+
+    private static void writeFiles(final XMLStreamWriter writer, final Node root,
+            final Map<String, Long> newFiles) throws XMLStreamException
+    {
+        final String prefix = root.prefix;
+        final String namespaceURI = root.namespaceURI;
+        writer.writeCharacters("\n    ");
+        writer.writeStartElement(prefix, TAG_FILES, namespaceURI);
+        for (final Map.Entry<String, Long> file : newFiles.entrySet())
+        {
+            writer.writeCharacters("\n        ");
+            writer.writeEmptyElement(prefix, TAG_FILE, namespaceURI);
+            writer.writeAttribute(ATTR_PATH, file.getKey());
+            writer.writeAttribute(ATTR_MOD, String.valueOf(file.getValue()));
+        }
+        writer.writeCharacters("\n    ");
+        writer.writeEndElement();
+    }
+
+    /**
+     * A node of the catalog.
+     */
+    private static final class Node
+    {
+        Node(int type)
+        {
+            this.type = type;
+        }
+
+        final int type;
+        String prefix;
+        String namespaceURI;
+
+        /**
+         * Element name or processing instruction target.
+         */
+        String localName;
+
+        /**
+         * Prefixes and URIs of the namespace declarations.
+         */
+        String[] namespaces;
+
+        /**
+         * Prefixes, namespace URIs, names and values of the attributes.
+         */
+        String[] attributes;
+
+        /**
+         * Text, comment or processing instruction data.
+         */
+        String text;
+
+        boolean isWhitespace()
+        {
+            return (type == XMLStreamConstants.CHARACTERS || type == XMLStreamConstants.SPACE) &&
+                   text.trim().isEmpty();
+        }
+
+        String getAttribute(String name)
+        {
+            for (int i = 0; i < attributes.length; i += 4)
+            {
+                if (attributes[i + 1] == null || attributes[i + 1].isEmpty())
+                {
+                    if (name.equals(attributes[i + 2]))
+                        return attributes[i + 3];
+                }
+            }
+            return null;
+        }
+
+        void write(XMLStreamWriter writer, boolean empty) throws XMLStreamException
+        {
+            final String elementPrefix = prefix != null ? prefix : "";
+            final String elementNamespaceURI = namespaceURI != null ? namespaceURI : "";
+            if (empty)
+                writer.writeEmptyElement(elementPrefix, localName, elementNamespaceURI);
+            else
+                writer.writeStartElement(elementPrefix, localName, elementNamespaceURI);
+            for (int i = 0; i < namespaces.length; i += 2)
+            {
+                if (namespaces[i] == null || namespaces[i].isEmpty())
+                    writer.writeDefaultNamespace(namespaces[i + 1]);
+                else
+                    writer.writeNamespace(namespaces[i], namespaces[i + 1]);
+            }
+            for (int i = 0; i < attributes.length; i += 4)
+            {
+                if (attributes[i + 1] == null || attributes[i + 1].isEmpty())
+                    writer.writeAttribute(attributes[i + 2], attributes[i + 3]);
+                else
+                    writer.writeAttribute(attributes[i], attributes[i + 1], attributes[i + 2], attributes[i + 3]);
+            }
+        }
+    }
+}
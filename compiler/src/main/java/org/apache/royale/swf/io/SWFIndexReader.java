@@ -0,0 +1,282 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swf.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.royale.compiler.problems.SWFUnexpectedEndOfFileProblem;
+import org.apache.royale.swf.ISWF;
+import org.apache.royale.swf.TagType;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.apache.royale.utils.FilenameNormalization;
+
+/**
+ * Reads the {@code DoABC} tags of a SWF into an index by name, without
+ * building models for the other tags.
+ * <p>
+ * The ABC bytes of all the {@code DoABC} tags are kept in one array, and a
+ * {@link DoABCTag} is only created when it is asked for by name. The names
+ * in the {@code SymbolClass} tags are recorded, but the characters they
+ * refer to are not read. Header tags like {@code FileAttributes} are read
+ * as usual, so that their problems are reported. All other tags are
+ * skipped, and {@link #isCodeOnly()} returns false if there were any, or
+ * if there were any symbols: a {@link SWFReader} has to read those SWFs to
+ * get their assets.
+ * <p>
+ * Iterating over this reader returns the {@code DoABC} tags only, in the
+ * order they appear in the SWF.
+ */
+public class SWFIndexReader extends SWFReader
+{
+    /**
+     * Tags that are read as usual. None of them refer to characters, so
+     * they don't need the character dictionary.
+     */
+    private static final Set<TagType> HEADER_TAGS = new HashSet<TagType>(Arrays.asList(
+            TagType.DefineSceneAndFrameLabelData,
+            TagType.EnableDebugger2,
+            TagType.EnableTelemetry,
+            TagType.End,
+            TagType.FileAttributes,
+            TagType.FrameLabel,
+            TagType.Metadata,
+            TagType.ProductInfo,
+            TagType.ScriptLimits,
+            TagType.SetBackgroundColor,
+            TagType.ShowFrame));
+
+    /**
+     * Create a reader.
+     */
+    public SWFIndexReader()
+    {
+        super(false);
+    }
+
+    private String path;
+
+    /**
+     * The ABC bytes of all the {@code DoABC} tags.
+     */
+    private byte[] abcData = new byte[0];
+
+    /**
+     * The {@code DoABC} tags by name, in SWF order. If more than one tag has
+     * the same name, only the first one is kept.
+     */
+    private final Map<String, ABCEntry> abcEntries = new LinkedHashMap<String, ABCEntry>();
+
+    /**
+     * The names of the symbols in the {@code SymbolClass} tags.
+     */
+    private final Set<String> symbolNames = new HashSet<String>();
+
+    private boolean codeOnly = true;
+
+    @Override
+    public ISWF readFrom(InputStream input, String path)
+    {
+        this.path = FilenameNormalization.normalize(path);
+        return super.readFrom(input, path);
+    }
+
+    /**
+     * Read the tags up to the {@code End} tag, keeping only the ABC bytes of
+     * the {@code DoABC} tags and the names of the symbols.
+     */
+    @Override
+    protected void readTags() throws IOException
+    {
+        final ByteArrayOutputStream abcBytes = new ByteArrayOutputStream();
+        TagHeader header;
+        do
+        {
+            header = nextTagHeader();
+            if (HEADER_TAGS.contains(header.type))
+            {
+                readTag(header);
+                continue;
+            }
+
+            try
+            {
+                bitStream.setReadBoundary(bitStream.getOffset() + header.length);
+                switch (header.type)
+                {
+                    case DoABC:
+                    {
+                        final long flags = bitStream.readUI32();
+                        final String name = bitStream.readString();
+                        final byte[] abc = bitStream.readToBoundary();
+                        if (!abcEntries.containsKey(name))
+                        {
+                            abcEntries.put(name, new ABCEntry(flags, abcBytes.size(), abc.length));
+                            abcBytes.write(abc);
+                        }
+                        break;
+                    }
+                    case SymbolClass:
+                    {
+                        final int numSymbols = bitStream.readUI16();
+                        for (int i = 0; i < numSymbols; i++)
+                        {
+                            final int id = bitStream.readUI16();
+                            final String name = bitStream.readString();
+                            if (id != 0)
+                            {
+                                // the symbol is bound to an asset
+                                symbolNames.add(name);
+                                codeOnly = false;
+                            }
+                        }
+                        bitStream.readToBoundary();
+                        break;
+                    }
+                    default:
+                    {
+                        codeOnly = false;
+                        bitStream.readToBoundary();
+                        break;
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // InputBitStream reports the end of the data this way
+                problems.add(new SWFUnexpectedEndOfFileProblem(path));
+                break;
+            }
+        }
+        while (header.type != TagType.End);
+
+        abcData = abcBytes.toByteArray();
+    }
+
+    /**
+     * Find a {@code DoABC} tag by name.
+     *
+     * @param name name of the ABC
+     * @return a new {@code DoABCTag}, or null if the SWF has no such tag
+     */
+    public DoABCTag getDoABCTag(String name)
+    {
+        final ABCEntry entry = abcEntries.get(name);
+        if (entry == null)
+            return null;
+        return entry.createTag(name);
+    }
+
+    /**
+     * @param name name of a symbol
+     * @return true if a {@code SymbolClass} tag in the SWF binds a character
+     * to the name
+     */
+    public boolean hasSymbol(String name)
+    {
+        return symbolNames.contains(name);
+    }
+
+    /**
+     * @return true if the SWF has no tags besides {@code DoABC} and header
+     * tags, and no symbols that are bound to characters, which means that a
+     * {@link SWFReader} wouldn't find any assets or other problems in it.
+     */
+    public boolean isCodeOnly()
+    {
+        return codeOnly;
+    }
+
+    /**
+     * @return the number of bytes of ABC in the index
+     */
+    public int getABCDataSize()
+    {
+        return abcData.length;
+    }
+
+    /**
+     * @return the number of {@code DoABC} tags in the index
+     */
+    public int getDoABCTagCount()
+    {
+        return abcEntries.size();
+    }
+
+    /**
+     * Get the {@code DoABC} tags in this SWF. Other tags are not returned.
+     */
+    @Override
+    public Iterator<ITag> iterator()
+    {
+        final Iterator<Map.Entry<String, ABCEntry>> entries = abcEntries.entrySet().iterator();
+        return new Iterator<ITag>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return entries.hasNext();
+            }
+
+            @Override
+            public ITag next()
+            {
+                final Map.Entry<String, ABCEntry> entry = entries.next();
+                return entry.getValue().createTag(entry.getKey());
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * The location of the ABC bytes of a {@code DoABC} tag.
+     */
+    private final class ABCEntry
+    {
+        ABCEntry(long flags, int offset, int length)
+        {
+            this.flags = flags;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        final long flags;
+        final int offset;
+        final int length;
+
+        DoABCTag createTag(String name)
+        {
+            return new DoABCTag(flags, name, Arrays.copyOfRange(abcData, offset, offset + length));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.swc.SWC;
+import org.apache.royale.swc.SWCDigest;
+import org.apache.royale.swc.SWCLibrary;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ABCDiskCache}.
+ */
+public class ABCDiskCacheTests
+{
+    private static final String LIBRARY_PATH = "library.swf";
+
+    private File tempDir;
+    private File cacheDir;
+    private File swcFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        tempDir = Files.createTempDirectory("royale-abc-cache").toFile();
+        cacheDir = new File(tempDir, "cache");
+        swcFile = new File(tempDir, "Test.swc");
+        FileUtils.writeStringToFile(swcFile, "swc", "UTF-8");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Test
+    public void testMissWithoutCacheFile()
+    {
+        ABCDiskCache cache = new ABCDiskCache(cacheDir);
+        SWC swc = createSWC("digest");
+        assertFalse(cache.hasLibrary(swc, LIBRARY_PATH));
+        assertNull(cache.getABCData(swc, LIBRARY_PATH, "a/A"));
+    }
+
+    @Test
+    public void testReadsLibraryWrittenByEarlierRun()
+    {
+        ABCDiskCache cache = new ABCDiskCache(cacheDir);
+        cache.putLibrary(createSWC("digest"), LIBRARY_PATH, createTags());
+
+        cache = new ABCDiskCache(cacheDir);
+        SWC swc = createSWC("digest");
+        assertTrue(cache.hasLibrary(swc, LIBRARY_PATH));
+        assertArrayEquals(new byte[] {1, 2, 3}, cache.getABCData(swc, LIBRARY_PATH, "a/A"));
+        assertArrayEquals(new byte[] {4, 5}, cache.getABCData(swc, LIBRARY_PATH, "b/B"));
+        assertNull(cache.getABCData(swc, LIBRARY_PATH, "c/C"));
+    }
+
+    @Test
+    public void testMissWhenDigestChanges()
+    {
+        ABCDiskCache cache = new ABCDiskCache(cacheDir);
+        cache.putLibrary(createSWC("digest"), LIBRARY_PATH, createTags());
+
+        cache = new ABCDiskCache(cacheDir);
+        assertNull(cache.getABCData(createSWC("other"), LIBRARY_PATH, "a/A"));
+    }
+
+    @Test
+    public void testMissWhenSWCChanges() throws IOException
+    {
+        ABCDiskCache cache = new ABCDiskCache(cacheDir);
+        cache.putLibrary(createSWC("digest"), LIBRARY_PATH, createTags());
+        FileUtils.writeStringToFile(swcFile, "changed swc", "UTF-8");
+
+        cache = new ABCDiskCache(cacheDir);
+        assertNull(cache.getABCData(createSWC("digest"), LIBRARY_PATH, "a/A"));
+    }
+
+    @Test
+    public void testReadsFileThatWasChecked()
+    {
+        ABCDiskCache cache = new ABCDiskCache(cacheDir);
+        cache.putLibrary(createSWC("digest"), LIBRARY_PATH, createTags());
+
+        cache = new ABCDiskCache(cacheDir);
+        SWC swc = createSWC("digest");
+        assertTrue(cache.hasLibrary(swc, LIBRARY_PATH));
+
+        // another process replaces the file, and the scripts move
+        SWFFrame otherTags = new SWFFrame();
+        otherTags.addTag(new DoABCTag(1, "b/B", new byte[] {6, 7, 8, 9}));
+        otherTags.addTag(new DoABCTag(1, "a/A", new byte[] {10}));
+        ABCDiskCache otherCache = new ABCDiskCache(cacheDir);
+        otherCache.putLibrary(createSWC("digest"), LIBRARY_PATH, otherTags);
+        otherCache.close();
+
+        assertArrayEquals(new byte[] {1, 2, 3}, cache.getABCData(swc, LIBRARY_PATH, "a/A"));
+        assertArrayEquals(new byte[] {4, 5}, cache.getABCData(swc, LIBRARY_PATH, "b/B"));
+        cache.close();
+    }
+
+    private SWC createSWC(String digestValue)
+    {
+        SWCDigest digest = new SWCDigest();
+        digest.setType("SHA-256");
+        digest.setSigned(false);
+        digest.setValue(digestValue);
+        SWCLibrary library = new SWCLibrary(LIBRARY_PATH);
+        library.addDigest(digest);
+        SWC swc = new SWC(swcFile);
+        swc.addLibrary(library);
+        return swc;
+    }
+
+    private static SWFFrame createTags()
+    {
+        SWFFrame frame = new SWFFrame();
+        frame.addTag(new DoABCTag(1, "a/A", new byte[] {1, 2, 3}));
+        frame.addTag(new DoABCTag(1, "b/B", new byte[] {4, 5}));
+        return frame;
+    }
+}
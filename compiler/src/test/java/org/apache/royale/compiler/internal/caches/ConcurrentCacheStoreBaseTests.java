@@ -0,0 +1,230 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.caches;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ConcurrentCacheStoreBase}.
+ */
+public class ConcurrentCacheStoreBaseTests
+{
+    private static class Key extends CacheStoreKeyBase
+    {
+        Key(String name)
+        {
+            this.name = name;
+        }
+
+        private final String name;
+
+        @Override
+        public String generateKey()
+        {
+            return name;
+        }
+    }
+
+    private static class StringCache extends ConcurrentCacheStoreBase<String>
+    {
+        final AtomicInteger createCount = new AtomicInteger();
+        volatile CountDownLatch createLatch;
+
+        @Override
+        protected String createEntryValue(CacheStoreKeyBase key)
+        {
+            createCount.incrementAndGet();
+            final CountDownLatch latch = createLatch;
+            if (latch != null)
+            {
+                try
+                {
+                    latch.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (key.generateKey().equals("bad"))
+                throw new IllegalStateException("bad key");
+            return key.generateKey() + "-value";
+        }
+
+        @Override
+        protected long getEntryWeight(String value)
+        {
+            return value.length();
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        StringCache cache = new StringCache();
+        String value = cache.get(new Key("a"));
+        assertEquals("a-value", value);
+        assertSame(value, cache.get(new Key("a")));
+
+        CacheStoreStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(1, statistics.getLoadCount());
+        assertEquals(1, cache.createCount.get());
+    }
+
+    @Test
+    public void testSingleFlightLoading() throws Exception
+    {
+        final StringCache cache = new StringCache();
+        cache.createLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++)
+            {
+                futures.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                    {
+                        return cache.get(new Key("a"));
+                    }
+                }));
+            }
+            // give the threads a chance to pile up on the same key
+            Thread.sleep(200);
+            cache.createLatch.countDown();
+            for (Future<String> future : futures)
+                assertEquals("a-value", future.get());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals(1, cache.createCount.get());
+    }
+
+    @Test
+    public void testFailedLoadIsRetried()
+    {
+        StringCache cache = new StringCache();
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                cache.get(new Key("bad"));
+                fail("expected exception");
+            }
+            catch (IllegalStateException e)
+            {
+            }
+        }
+        assertEquals(2, cache.createCount.get());
+        assertEquals(2, cache.getStatistics().getLoadFailureCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testRecursiveLoadFails()
+    {
+        ConcurrentCacheStoreBase<String> cache = new ConcurrentCacheStoreBase<String>()
+        {
+            @Override
+            protected String createEntryValue(CacheStoreKeyBase key)
+            {
+                if (key.generateKey().equals("a"))
+                    return get(new Key("b")) + "-a";
+                // asks for itself
+                return get(key);
+            }
+        };
+        try
+        {
+            cache.get(new Key("a"));
+            fail("expected exception");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getStatistics().getLoadFailureCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed()
+    {
+        StringCache cache = new StringCache();
+        // every value weighs 7
+        cache.setMaximumWeight(14);
+        cache.get(new Key("a"));
+        cache.get(new Key("b"));
+        cache.get(new Key("a"));
+        cache.get(new Key("c"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+        assertEquals(14, cache.getStatistics().getWeight());
+
+        // "b" was evicted, "a" was not
+        cache.get(new Key("a"));
+        assertEquals(3, cache.createCount.get());
+        cache.get(new Key("b"));
+        assertEquals(4, cache.createCount.get());
+    }
+
+    @Test
+    public void testRemoveReleasesWeight()
+    {
+        StringCache cache = new StringCache();
+        cache.setMaximumWeight(100);
+        cache.get(new Key("a"));
+        assertEquals("a-value", cache.remove(new Key("a")));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getStatistics().getWeight());
+    }
+
+    @Test
+    public void testUnboundingKeepsValues()
+    {
+        StringCache cache = new StringCache();
+        cache.setMaximumWeight(100);
+        cache.get(new Key("a"));
+        cache.setMaximumWeight(0);
+        assertEquals(0, cache.getStatistics().getWeight());
+        assertEquals("a-value", cache.get(new Key("a")));
+        assertEquals(1, cache.createCount.get());
+    }
+}
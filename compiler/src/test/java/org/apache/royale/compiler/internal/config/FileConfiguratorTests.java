@@ -0,0 +1,217 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.config.Configuration;
+import org.apache.royale.compiler.config.ConfigurationBuffer;
+import org.apache.royale.compiler.config.ConfigurationValue;
+import org.apache.royale.compiler.exceptions.ConfigurationException;
+import org.apache.royale.compiler.filespecs.FileSpecification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link FileConfigurator}, which compare configuration files
+ * that are replayed from the cache of parsed files with the same files parsed
+ * into the handler.
+ */
+public class FileConfiguratorTests
+{
+    private static final String CONFIG = "<?xml version=\"1.0\"?>\n"
+            + "<!-- a comment -->\n"
+            + "<royale-config>\n"
+            + "    <compiler>\n"
+            + "        <debug>true</debug>\n"
+            + "        <source-path>\n"
+            + "            <path-element>src</path-element>\n"
+            + "            <path-element>  other  </path-element>\n"
+            + "        </source-path>\n"
+            + "        <define append=\"true\">\n"
+            + "            <name>CONFIG::debugging</name>\n"
+            + "            <value>true</value>\n"
+            + "        </define>\n"
+            + "        <define append=\"true\">\n"
+            + "            <name>CONFIG::text</name>\n"
+            + "            <value><![CDATA['a < b']]></value>\n"
+            + "        </define>\n"
+            + "        <keep-as3-metadata>\n"
+            + "            <name>Bindable</name>\n"
+            + "            <name>Event</name>\n"
+            + "        </keep-as3-metadata>\n"
+            + "    </compiler>\n"
+            + "    <metadata>\n"
+            + "        <title>Caf&#233; &amp; more</title>\n"
+            + "    </metadata>\n"
+            + "    <target-player>11.1</target-player>\n"
+            + "</royale-config>\n";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp()
+    {
+        FileConfigurator.setDocumentCacheEnabled(true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileConfigurator.setDocumentCacheEnabled(true);
+    }
+
+    @Test
+    public void testReplayMatchesParse() throws Exception
+    {
+        File file = writeConfig("config.xml", CONFIG);
+        String parsed = describe(loadUncached(file));
+
+        long hits = FileConfigurator.getDocumentCacheStats().hitCount();
+        // the first load records the file, and the second one replays it
+        assertEquals(parsed, describe(load(file)));
+        assertEquals(parsed, describe(load(file)));
+        assertEquals(hits + 1, FileConfigurator.getDocumentCacheStats().hitCount());
+
+        // another file with the same content has its own source
+        File copy = writeConfig("copy.xml", CONFIG);
+        assertEquals(describe(loadUncached(copy)), describe(load(copy)));
+        assertEquals(hits + 2, FileConfigurator.getDocumentCacheStats().hitCount());
+        assertTrue(parsed, parsed.contains("compiler.define [CONFIG::text, 'a < b']"));
+    }
+
+    @Test
+    public void testUnknownOption() throws Exception
+    {
+        File file = writeConfig("config.xml", CONFIG.replace("<debug>true</debug>",
+                "<debug>true</debug>\n        <unknown-option>1</unknown-option>"));
+        ConfigurationException parsed = loadFailure(file, false);
+        assertEquals(6, parsed.getLine());
+
+        assertSameException(parsed, loadFailure(file, true));
+        // replayed
+        assertSameException(parsed, loadFailure(file, true));
+    }
+
+    @Test
+    public void testMalformedFile() throws Exception
+    {
+        File file = writeConfig("config.xml", CONFIG.replace("</metadata>", "</metadta>"));
+        ConfigurationException parsed = loadFailure(file, false);
+        assertEquals(25, parsed.getLine());
+
+        assertSameException(parsed, loadFailure(file, true));
+        assertSameException(parsed, loadFailure(file, true));
+    }
+
+    private static void assertSameException(ConfigurationException expected, ConfigurationException actual)
+    {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.source, actual.source);
+        assertEquals(expected.getLine(), actual.getLine());
+    }
+
+    private ConfigurationException loadFailure(File file, boolean cached)
+    {
+        try
+        {
+            if (cached)
+                load(file);
+            else
+                loadUncached(file);
+        }
+        catch (ConfigurationException e)
+        {
+            return e;
+        }
+        assertNotNull("expected a ConfigurationException", null);
+        return null;
+    }
+
+    private ConfigurationBuffer loadUncached(File file) throws ConfigurationException
+    {
+        FileConfigurator.setDocumentCacheEnabled(false);
+        try
+        {
+            return load(file);
+        }
+        finally
+        {
+            FileConfigurator.setDocumentCacheEnabled(true);
+        }
+    }
+
+    private ConfigurationBuffer load(File file) throws ConfigurationException
+    {
+        ConfigurationBuffer buffer = new ConfigurationBuffer(Configuration.class, Configuration.getAliases());
+        FileConfigurator.load(buffer, new FileSpecification(file.getAbsolutePath()),
+                tempFolder.getRoot().getAbsolutePath(), "royale-config", false);
+        return buffer;
+    }
+
+    /**
+     * @return The values in the buffer, with where they came from, in a form
+     * that can be compared across buffers.
+     */
+    private static String describe(ConfigurationBuffer buffer)
+    {
+        StringBuilder result = new StringBuilder();
+        for (String var : new TreeSet<String>(buffer.getVars()))
+        {
+            List<ConfigurationValue> values = buffer.getVar(var);
+            if (values == null)
+                continue;
+            for (ConfigurationValue value : values)
+            {
+                result.append(var);
+                result.append(' ');
+                result.append(value.getArgs());
+                result.append(' ');
+                result.append(value.getSource());
+                result.append(':');
+                result.append(value.getLine());
+                result.append(' ');
+                result.append(value.getContext());
+                result.append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    private File writeConfig(String name, String content) throws IOException
+    {
+        File file = new File(tempFolder.getRoot(), name);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
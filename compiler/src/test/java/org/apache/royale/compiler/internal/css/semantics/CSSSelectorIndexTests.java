@@ -0,0 +1,120 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.css.semantics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.apache.royale.compiler.common.XMLName;
+import org.apache.royale.compiler.css.ICSSRule;
+import org.apache.royale.compiler.css.ICSSSelector;
+import org.apache.royale.compiler.internal.css.CSSDocument;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link CSSSelectorIndex}.
+ */
+public class CSSSelectorIndexTests
+{
+    private static final String NAMESPACE = "library://ns.apache.org/royale/test";
+
+    @Test
+    public void testRulesBySubjectType()
+    {
+        CSSDocument css = parse(
+                "@namespace s \"" + NAMESPACE + "\";\n" +
+                "s|Button { color: #000000; }\n" +
+                ".highlight { color: #111111; }\n" +
+                "s|Label, s|Button:over { color: #222222; }\n" +
+                "s|List s|Button { color: #333333; }\n" +
+                "x|Button { color: #444444; }\n");
+        CSSSelectorIndex index = CSSSelectorIndex.get(css);
+        List<ICSSRule> rules = css.getRules();
+
+        assertEquals(Arrays.asList(rules.get(0), rules.get(1), rules.get(2), rules.get(3)),
+                index.getRulesBySubjectType(Collections.singleton(new XMLName(NAMESPACE, "Button"))));
+        assertEquals(Arrays.asList(rules.get(1), rules.get(2)),
+                index.getRulesBySubjectType(Collections.singleton(new XMLName(NAMESPACE, "Label"))));
+        assertEquals(Arrays.asList(rules.get(1)),
+                index.getRulesBySubjectType(Collections.<XMLName>emptySet()));
+    }
+
+    @Test
+    public void testTypeNames()
+    {
+        CSSDocument css = parse(
+                "@namespace \"" + NAMESPACE + "\";\n" +
+                "@namespace s \"" + NAMESPACE + "\";\n" +
+                "Button { color: #000000; }\n" +
+                "s|List s|Label { color: #111111; }\n" +
+                "x|Button { color: #222222; }\n" +
+                ".highlight { color: #333333; }\n");
+        CSSSelectorIndex index = CSSSelectorIndex.get(css);
+        List<ICSSRule> rules = css.getRules();
+
+        assertEquals(new XMLName(NAMESPACE, "Button"), index.getTypeName(rules.get(0).getSelectorGroup().get(0)));
+        ICSSSelector label = rules.get(1).getSelectorGroup().get(0);
+        assertEquals(new XMLName(NAMESPACE, "Label"), index.getTypeName(label));
+        assertEquals(new XMLName(NAMESPACE, "List"), index.getTypeName(label.getCombinator().getSelector()));
+        assertNull(index.getTypeName(rules.get(2).getSelectorGroup().get(0)));
+        assertNull(index.getTypeName(rules.get(3).getSelectorGroup().get(0)));
+    }
+
+    @Test
+    public void testRulesByElementName()
+    {
+        CSSDocument css = parse(
+                "Button { color: #000000; }\n" +
+                "global { color: #111111; }\n" +
+                "Button, Label { color: #222222; }\n" +
+                "Label, Button { color: #333333; }\n");
+        CSSSelectorIndex index = CSSSelectorIndex.get(css);
+        List<ICSSRule> rules = css.getRules();
+
+        assertEquals(Arrays.asList(rules.get(0), rules.get(1), rules.get(2)),
+                index.getRulesByElementName(Collections.singleton("Button")));
+        assertEquals(Arrays.asList(rules.get(1)),
+                index.getRulesByElementName(Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testIndexIsKeptByDocument()
+    {
+        CSSDocument css = parse("Button { color: #000000; }\n");
+        assertSame(css.getSelectorIndex(), CSSSelectorIndex.get(css));
+    }
+
+    private static CSSDocument parse(String code)
+    {
+        List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+        CSSDocument css = CSSDocument.parse(new ANTLRStringStream(code), problems);
+        assertTrue(problems.isEmpty());
+        return css;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.projects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.common.IDefinitionPriority;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.internal.units.SWCCompilationUnit;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link LibraryPathManager}.
+ */
+public class LibraryPathManagerTests
+{
+    private static final String[] DEFINITIONS = {"custom.Button", "custom.Label", "custom.TestEvent"};
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testFirstLibraryShadowsTheOthers() throws Exception
+    {
+        List<File> libraries = copyLibrary("a.swc", "b.swc", "c.swc", "d.swc");
+        Workspace workspace = new Workspace();
+        try
+        {
+            RoyaleProject project = new RoyaleProject(workspace);
+            project.setLibraries(libraries);
+            assertLibraryOrder(project, libraries);
+
+            List<File> reversed = new ArrayList<File>(libraries);
+            Collections.reverse(reversed);
+            project.setLibraries(reversed);
+            assertLibraryOrder(project, reversed);
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    @Test
+    public void testSetLibrariesFromWorkspaceThread() throws Exception
+    {
+        final List<File> libraries = copyLibrary("a.swc", "b.swc", "c.swc");
+        // with a single thread, loading the libraries on the workspace's
+        // executor would wait on tasks that can never run
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        Workspace workspace = new Workspace(executorService);
+        try
+        {
+            final RoyaleProject project = new RoyaleProject(workspace);
+            Future<Void> future = executorService.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    project.setLibraries(libraries);
+                    return null;
+                }
+            });
+            future.get(60, TimeUnit.SECONDS);
+            assertLibraryOrder(project, libraries);
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    /**
+     * Check that the definitions come from the first library, and that the
+     * compilation units of a library have a higher priority than the same
+     * compilation units of the libraries after it.
+     */
+    private static void assertLibraryOrder(RoyaleProject project, List<File> libraries) throws InterruptedException
+    {
+        for (String name : DEFINITIONS)
+        {
+            IDefinition definition = project.getScope().findDefinitionByName(name);
+            assertNotNull(name, definition);
+            ICompilationUnit unit = project.getScope().getCompilationUnitForDefinition(definition);
+            assertEquals(name, getPath(libraries.get(0)), unit.getAbsoluteFilename());
+        }
+
+        List<Map<List<String>, ICompilationUnit>> unitsByLibrary = new ArrayList<Map<List<String>, ICompilationUnit>>();
+        for (int i = 0; i < libraries.size(); i++)
+            unitsByLibrary.add(new HashMap<List<String>, ICompilationUnit>());
+        for (ICompilationUnit unit : project.getCompilationUnits())
+        {
+            if (!(unit instanceof SWCCompilationUnit))
+                continue;
+            int index = libraries.indexOf(new File(unit.getAbsoluteFilename()));
+            assertTrue(unit.getAbsoluteFilename(), index >= 0);
+            unitsByLibrary.get(index).put(unit.getQualifiedNames(), unit);
+        }
+
+        Map<List<String>, ICompilationUnit> first = unitsByLibrary.get(0);
+        assertTrue(first.size() > 0);
+        for (Map.Entry<List<String>, ICompilationUnit> entry : first.entrySet())
+        {
+            IDefinitionPriority previous = entry.getValue().getDefinitionPriority();
+            for (int i = 1; i < libraries.size(); i++)
+            {
+                ICompilationUnit unit = unitsByLibrary.get(i).get(entry.getKey());
+                assertNotNull(entry.getKey().toString(), unit);
+                IDefinitionPriority priority = unit.getDefinitionPriority();
+                assertTrue(previous + " > " + priority, previous.compareTo(priority) > 0);
+                previous = priority;
+            }
+        }
+    }
+
+    private List<File> copyLibrary(String... names) throws IOException
+    {
+        File source = new File(FilenameNormalization.normalize("target/custom.swc"));
+        List<File> result = new ArrayList<File>();
+        for (String name : names)
+        {
+            File copy = new File(tempFolder.getRoot(), name);
+            FileUtils.copyFile(source, copy);
+            result.add(new File(getPath(copy)));
+        }
+        return result;
+    }
+
+    private static String getPath(File file)
+    {
+        return FilenameNormalization.normalize(file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.scopes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.royale.compiler.definitions.IDefinition;
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.scopes.IDefinitionSet;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for the lookups of definition sets by base name in
+ * {@link ASProjectScope}, which compare a project that answers them from its
+ * cache with a project that takes the read lock for every lookup.
+ */
+public class ASProjectScopeTests
+{
+    private static final String[] NAMES = {"A", "B", "C", "Written", "Button", "Label", "TestEvent", "Missing"};
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File sourceFolder;
+    private File moreSourceFolder;
+    private Workspace cachedWorkspace;
+    private Workspace uncachedWorkspace;
+    private RoyaleProject cachedProject;
+    private RoyaleProject uncachedProject;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        sourceFolder = tempFolder.newFolder("src");
+        writeSource(sourceFolder, "p/A.as", "package p { public class A { } }");
+        writeSource(sourceFolder, "p/B.as", "package p { public class B { } }");
+        // another A, a new C and a B that is shadowed by the one above
+        moreSourceFolder = tempFolder.newFolder("more");
+        writeSource(moreSourceFolder, "q/A.as", "package q { public class A { } }");
+        writeSource(moreSourceFolder, "p/C.as", "package p { public function C():void { } }");
+        writeSource(moreSourceFolder, "p/B.as", "package p { public class B { public var b:int; } }");
+
+        cachedWorkspace = new Workspace();
+        cachedProject = createProject(cachedWorkspace);
+        uncachedWorkspace = new Workspace();
+        uncachedProject = createProject(uncachedWorkspace);
+        uncachedProject.getScope().setLockFreeReadsEnabled(false);
+    }
+
+    @After
+    public void tearDown()
+    {
+        cachedWorkspace.close();
+        uncachedWorkspace.close();
+    }
+
+    @Test
+    public void testSourcePathChanges()
+    {
+        assertSameDefinitionSets();
+        // the second lookup is answered by the cache
+        assertSameDefinitionSets();
+
+        setSourcePath(sourceFolder, moreSourceFolder);
+        assertSameDefinitionSets();
+        assertTrue(describe(cachedProject, "A").contains("q.A"));
+        assertTrue(describe(cachedProject, "C").contains("p.C"));
+
+        setSourcePath(moreSourceFolder);
+        assertSameDefinitionSets();
+        assertFalse(describe(cachedProject, "A").contains("p.A"));
+
+        setSourcePath();
+        assertSameDefinitionSets();
+        assertEquals("", describe(cachedProject, "A"));
+
+        setSourcePath(sourceFolder);
+        assertSameDefinitionSets();
+        assertTrue(describe(cachedProject, "A").contains("p.A"));
+    }
+
+    @Test
+    public void testLibraryChanges()
+    {
+        assertSameDefinitionSets();
+        assertTrue(describe(cachedProject, "Button").contains("custom.Button"));
+
+        cachedProject.setLibraries(Collections.<File>emptyList());
+        uncachedProject.setLibraries(Collections.<File>emptyList());
+        assertSameDefinitionSets();
+        assertEquals("", describe(cachedProject, "Button"));
+    }
+
+    @Test
+    public void testPromiseAddedAndRemoved()
+    {
+        // cache that the name isn't defined
+        assertSameDefinitionSets();
+        assertEquals("", describe(cachedProject, "Written"));
+
+        IDefinition cachedPromise = addPromise(cachedProject, "r.Written");
+        IDefinition uncachedPromise = addPromise(uncachedProject, "r.Written");
+        assertSameDefinitionSets();
+        assertTrue(describe(cachedProject, "Written").contains("r.Written"));
+
+        cachedProject.getScope().removeDefinition(cachedPromise);
+        uncachedProject.getScope().removeDefinition(uncachedPromise);
+        assertSameDefinitionSets();
+        assertEquals("", describe(cachedProject, "Written"));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception
+    {
+        final ASProjectScope scope = cachedProject.getScope();
+        final AtomicBoolean done = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(3);
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try
+        {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 3; i++)
+            {
+                futures.add(executorService.submit(new Callable<Integer>()
+                {
+                    @Override
+                    public Integer call()
+                    {
+                        int count = 0;
+                        while (!done.get())
+                        {
+                            for (String name : NAMES)
+                                scope.getLocalDefinitionSetByName(name);
+                            if (count++ == 0)
+                                started.countDown();
+                        }
+                        return count;
+                    }
+                }));
+            }
+
+            assertTrue(started.await(60, TimeUnit.SECONDS));
+            // a lookup right after a change must see it, even if a reader
+            // cached the name just before
+            for (int i = 0; i < 200; i++)
+            {
+                IDefinition promise = addPromise(cachedProject, "r.Written");
+                assertTrue(describe(cachedProject, "Written").contains("r.Written"));
+                scope.removeDefinition(promise);
+                assertEquals("", describe(cachedProject, "Written"));
+            }
+            done.set(true);
+            for (Future<Integer> future : futures)
+                assertTrue(future.get(60, TimeUnit.SECONDS) > 0);
+        }
+        finally
+        {
+            done.set(true);
+            executorService.shutdownNow();
+        }
+
+        assertSameDefinitionSets();
+    }
+
+    private void assertSameDefinitionSets()
+    {
+        for (String name : NAMES)
+            assertEquals(name, describe(uncachedProject, name), describe(cachedProject, name));
+    }
+
+    private void setSourcePath(File... folders)
+    {
+        cachedProject.setSourcePath(Arrays.asList(folders));
+        uncachedProject.setSourcePath(Arrays.asList(folders));
+    }
+
+    private static IDefinition addPromise(RoyaleProject project, String qname)
+    {
+        ASProjectScope scope = project.getScope();
+        ICompilationUnit unit = scope.getCompilationUnitForDefinition(scope.findDefinitionByName("p.A"));
+        IDefinition promise = ASProjectScope.createDefinitionPromise(qname, unit);
+        scope.addDefinition(promise);
+        return promise;
+    }
+
+    /**
+     * @return The definitions that the name resolves to, in a form that can be
+     * compared across projects.
+     */
+    private static String describe(RoyaleProject project, String name)
+    {
+        IDefinitionSet definitionSet = project.getScope().getLocalDefinitionSetByName(name);
+        if (definitionSet == null)
+            return "";
+        List<String> definitions = new ArrayList<String>();
+        for (int i = 0; i < definitionSet.getSize(); i++)
+        {
+            IDefinition definition = definitionSet.getDefinition(i);
+            String path = definition.getSourcePath() != null ? new File(definition.getSourcePath()).getParentFile().getParentFile().getName() : "";
+            definitions.add(definition.getQualifiedName() + " " + definition.getClass().getSimpleName() + " " + path);
+        }
+        Collections.sort(definitions);
+        return definitions.toString();
+    }
+
+    private RoyaleProject createProject(Workspace workspace)
+    {
+        RoyaleProject project = new RoyaleProject(workspace);
+        project.setSourcePath(Collections.singletonList(sourceFolder));
+        File library = new File(FilenameNormalization.normalize("target/custom.swc"));
+        project.setLibraries(Collections.singletonList(library));
+        return project;
+    }
+
+    private static void writeSource(File folder, String path, String source) throws IOException
+    {
+        FileUtils.writeStringToFile(new File(folder, path), source, StandardCharsets.UTF_8);
+    }
+}
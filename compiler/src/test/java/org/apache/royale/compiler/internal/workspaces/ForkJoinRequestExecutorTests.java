@@ -0,0 +1,299 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link ForkJoinRequestExecutor}.
+ */
+public class ForkJoinRequestExecutorTests
+{
+    private static final int CHAIN_LENGTH = 50;
+
+    @Test
+    public void testWaitingRequestsDoNotUseUpThreads() throws Exception
+    {
+        // every request waits for the next one, like compilation units that
+        // wait for the file scopes of their dependencies
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(1);
+        try
+        {
+            Future<Integer> future = executor.submit(createChain(executor, CHAIN_LENGTH));
+            assertEquals(Integer.valueOf(CHAIN_LENGTH), future.get(30, TimeUnit.SECONDS));
+            assertEquals(0, executor.getBlockedCount());
+            assertEquals(0, executor.getQueuedCount());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWaitingThreadRunsQueuedRequest() throws Exception
+    {
+        // the only thread of the pool is blocked without telling the pool,
+        // like a thread that waits for a monitor
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try
+        {
+            executor.submit(new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }
+            });
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+
+            Thread thread = executor.submit(new Callable<Thread>()
+            {
+                @Override
+                public Thread call()
+                {
+                    return Thread.currentThread();
+                }
+            }).get();
+            assertSame(Thread.currentThread(), thread);
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testNestedRequestsWithMonitor() throws Exception
+    {
+        // every request enters the monitor that the thread that waits for it
+        // holds, while the only thread of the pool is blocked
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(1);
+        final Object monitor = new Object();
+        final CountDownLatch release = new CountDownLatch(1);
+        try
+        {
+            blockOnlyThread(executor, release);
+            Integer result;
+            synchronized (monitor)
+            {
+                result = executor.submit(createLockingChain(executor, monitor, 5)).get();
+            }
+            assertEquals(Integer.valueOf(5), result);
+            assertEquals(0, executor.getQueuedCount());
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimedWait() throws Exception
+    {
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try
+        {
+            blockOnlyThread(executor, release);
+            Future<Object> future = executor.submit(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    return null;
+                }
+            });
+            try
+            {
+                future.get(100, TimeUnit.MILLISECONDS);
+                fail("Expected a TimeoutException");
+            }
+            catch (TimeoutException e)
+            {
+                // the request didn't run on the waiting thread
+            }
+            assertEquals(0, executor.getBlockedCount());
+            assertEquals(1, executor.getMaxBlockedCount());
+
+            release.countDown();
+            assertEquals(null, future.get(30, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelledRequestIsNotQueued() throws Exception
+    {
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try
+        {
+            blockOnlyThread(executor, release);
+            Future<Object> future = executor.submit(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    return null;
+                }
+            });
+            assertEquals(1, executor.getQueuedCount());
+            assertTrue(future.cancel(false));
+            assertEquals(0, executor.getQueuedCount());
+            assertFalse(future.cancel(false));
+            assertEquals(0, executor.getQueuedCount());
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(0, executor.getQueuedCount());
+    }
+
+    @Test
+    public void testException() throws InterruptedException
+    {
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(2);
+        final IllegalStateException exception = new IllegalStateException();
+        try
+        {
+            executor.submit(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    throw exception;
+                }
+            }).get();
+            fail("Expected an ExecutionException");
+        }
+        catch (ExecutionException e)
+        {
+            assertSame(exception, e.getCause());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testContextClassLoader() throws Exception
+    {
+        final ForkJoinRequestExecutor executor = new ForkJoinRequestExecutor(1);
+        try
+        {
+            ClassLoader classLoader = executor.submit(new Callable<ClassLoader>()
+            {
+                @Override
+                public ClassLoader call()
+                {
+                    return Thread.currentThread().getContextClassLoader();
+                }
+            }).get();
+            assertSame(Thread.currentThread().getContextClassLoader(), classLoader);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Keeps the only thread of the pool busy without telling the pool, like
+     * a thread that waits for a monitor.
+     */
+    private static void blockOnlyThread(ForkJoinRequestExecutor executor,
+            final CountDownLatch release) throws InterruptedException
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.submit(new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                started.countDown();
+                release.await();
+                return null;
+            }
+        });
+        assertTrue(started.await(30, TimeUnit.SECONDS));
+    }
+
+    private static Callable<Integer> createLockingChain(final ForkJoinRequestExecutor executor,
+            final Object monitor, final int length)
+    {
+        return new Callable<Integer>()
+        {
+            @Override
+            public Integer call() throws Exception
+            {
+                synchronized (monitor)
+                {
+                    if (length == 1)
+                        return 1;
+                    return executor.submit(createLockingChain(executor, monitor, length - 1)).get() + 1;
+                }
+            }
+        };
+    }
+
+    private static Callable<Integer> createChain(final ForkJoinRequestExecutor executor, final int length)
+    {
+        return new Callable<Integer>()
+        {
+            @Override
+            public Integer call() throws Exception
+            {
+                if (length == 1)
+                    return 1;
+                return executor.submit(createChain(executor, length - 1)).get() + 1;
+            }
+        };
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.royale.compiler.internal.projects.RoyaleProject;
+import org.apache.royale.compiler.tree.as.IASNode;
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.utils.FilenameNormalization;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit tests for {@link SyntaxTreeBudget}.
+ */
+public class SyntaxTreeBudgetTests
+{
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testNoBudgetKeepsTrees()
+    {
+        SyntaxTreeBudget budget = new SyntaxTreeBudget(0);
+        ICompilationUnit unitA = createCompilationUnit();
+        Tree a = new Tree();
+        Tree b = new Tree();
+        budget.add(unitA, a, 10);
+        budget.add(createCompilationUnit(), b, 10);
+        budget.drop(unitA);
+
+        assertFalse(budget.isEnabled());
+        assertFalse(a.dropped);
+        assertFalse(b.dropped);
+        assertEquals(0, budget.getEvictionCount());
+        assertEquals(0, budget.getRetainedCount());
+        assertEquals(0, budget.getRetainedSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsDropped()
+    {
+        SyntaxTreeBudget budget = new SyntaxTreeBudget(25);
+        ICompilationUnit unitA = createCompilationUnit();
+        ICompilationUnit unitB = createCompilationUnit();
+        ICompilationUnit unitC = createCompilationUnit();
+        Tree a = new Tree();
+        Tree b = new Tree();
+        Tree c = new Tree();
+        budget.add(unitA, a, 10);
+        budget.add(unitB, b, 10);
+        budget.touch(unitA);
+        budget.add(unitC, c, 10);
+
+        assertFalse(a.dropped);
+        assertTrue(b.dropped);
+        assertFalse(c.dropped);
+        assertEquals(1, budget.getEvictionCount());
+        assertEquals(2, budget.getRetainedCount());
+        assertEquals(20, budget.getRetainedSize());
+    }
+
+    @Test
+    public void testNewTreeLargerThanBudgetIsKept()
+    {
+        SyntaxTreeBudget budget = new SyntaxTreeBudget(25);
+        Tree a = new Tree();
+        Tree b = new Tree();
+        budget.add(createCompilationUnit(), a, 10);
+        budget.add(createCompilationUnit(), b, 30);
+
+        assertTrue(a.dropped);
+        assertFalse(b.dropped);
+        assertEquals(1, budget.getRetainedCount());
+        assertEquals(30, budget.getRetainedSize());
+    }
+
+    @Test
+    public void testReparseReplacesStaleTree()
+    {
+        SyntaxTreeBudget budget = new SyntaxTreeBudget(25);
+        ICompilationUnit unit = createCompilationUnit();
+        Tree a = new Tree();
+        Tree b = new Tree();
+        budget.add(unit, a, 10);
+        budget.reparsed();
+        budget.add(unit, b, 12);
+
+        assertTrue(a.dropped);
+        assertFalse(b.dropped);
+        assertEquals(0, budget.getEvictionCount());
+        assertEquals(1, budget.getReparseCount());
+        assertEquals(1, budget.getRetainedCount());
+        assertEquals(12, budget.getRetainedSize());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        SyntaxTreeBudget budget = new SyntaxTreeBudget(25);
+        ICompilationUnit unit = createCompilationUnit();
+        Tree a = new Tree();
+        budget.add(unit, a, 10);
+        budget.remove(unit);
+
+        assertFalse(a.dropped);
+        assertEquals(0, budget.getEvictionCount());
+        assertEquals(0, budget.getRetainedCount());
+        assertEquals(0, budget.getRetainedSize());
+    }
+
+    @Test
+    public void testDrop()
+    {
+        SyntaxTreeBudget budget = new SyntaxTreeBudget(25);
+        ICompilationUnit unit = createCompilationUnit();
+        Tree a = new Tree();
+        budget.add(unit, a, 10);
+        budget.drop(unit);
+
+        assertTrue(a.dropped);
+        assertEquals(0, budget.getEvictionCount());
+        assertEquals(0, budget.getRetainedCount());
+        assertEquals(0, budget.getRetainedSize());
+    }
+
+    @Test
+    public void testPinnedTreesAreUnpinned() throws Exception
+    {
+        File a = writeSource("A.as", "package { public class A { public function f():int { return 1; } } }");
+        File b = writeSource("B.as", "package { public class B { public function g():int { return 2; } } }");
+
+        Workspace workspace = createWorkspace(a.length() + 10);
+        try
+        {
+            PinningProject project = new PinningProject(workspace);
+            project.setSourcePath(Collections.singletonList(tempFolder.getRoot()));
+            ICompilationUnit unitA = getCompilationUnit(workspace, project, a);
+            ICompilationUnit unitB = getCompilationUnit(workspace, project, b);
+
+            IASNode treeA = unitA.getSyntaxTreeRequest().get().getAST();
+            assertTrue(project.isInASTCache(treeA));
+            SyntaxTreeBudget budget = workspace.getSyntaxTreeBudget();
+            assertEquals(1, budget.getRetainedCount());
+
+            IASNode treeB = unitB.getSyntaxTreeRequest().get().getAST();
+            assertTrue(project.isInASTCache(treeB));
+            assertFalse(project.isInASTCache(treeA));
+            assertEquals(1, budget.getEvictionCount());
+            assertEquals(1, budget.getRetainedCount());
+            assertEquals(1, project.pinned.size());
+
+            // The tree of A is held weakly, so asking for it again either
+            // returns it or parses A again.
+            assertNotNull(unitA.getSyntaxTreeRequest().get().getAST());
+        }
+        finally
+        {
+            workspace.close();
+        }
+    }
+
+    private File writeSource(String name, String source) throws IOException
+    {
+        File file = tempFolder.newFile(name);
+        Writer writer = new FileWriter(file);
+        try
+        {
+            writer.write(source);
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static Workspace createWorkspace(long budget)
+    {
+        String previous = System.getProperty(SyntaxTreeBudget.BUDGET_PROPERTY);
+        System.setProperty(SyntaxTreeBudget.BUDGET_PROPERTY, Long.toString(budget));
+        try
+        {
+            return new Workspace();
+        }
+        finally
+        {
+            if (previous == null)
+                System.clearProperty(SyntaxTreeBudget.BUDGET_PROPERTY);
+            else
+                System.setProperty(SyntaxTreeBudget.BUDGET_PROPERTY, previous);
+        }
+    }
+
+    private static ICompilationUnit getCompilationUnit(Workspace workspace, RoyaleProject project, File file)
+    {
+        String path = FilenameNormalization.normalize(file.getAbsolutePath());
+        return workspace.getCompilationUnits(path, project).iterator().next();
+    }
+
+    /**
+     * Project that pins its syntax trees, like the JavaScript projects.
+     */
+    private static class PinningProject extends RoyaleProject
+    {
+        PinningProject(Workspace workspace)
+        {
+            super(workspace);
+        }
+
+        final Set<IASNode> pinned = Collections.newSetFromMap(new ConcurrentHashMap<IASNode, Boolean>());
+
+        @Override
+        public void addToASTCache(IASNode ast)
+        {
+            pinned.add(ast);
+        }
+
+        @Override
+        public void removeFromASTCache(IASNode ast)
+        {
+            pinned.remove(ast);
+        }
+
+        @Override
+        public boolean isInASTCache(IASNode ast)
+        {
+            return pinned.contains(ast);
+        }
+    }
+
+    private static class Tree implements SyntaxTreeBudget.IRetainedSyntaxTree
+    {
+        boolean dropped;
+
+        @Override
+        public void dropSyntaxTree()
+        {
+            dropped = true;
+        }
+    }
+
+    private static ICompilationUnit createCompilationUnit()
+    {
+        return (ICompilationUnit)Proxy.newProxyInstance(ICompilationUnit.class.getClassLoader(),
+                new Class<?>[] {ICompilationUnit.class}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                if (method.getName().equals("hashCode"))
+                    return System.identityHashCode(proxy);
+                if (method.getName().equals("equals"))
+                    return proxy == args[0];
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
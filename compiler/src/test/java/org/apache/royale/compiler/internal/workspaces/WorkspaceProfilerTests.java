@@ -0,0 +1,181 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.compiler.internal.workspaces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.royale.compiler.units.ICompilationUnit;
+import org.apache.royale.compiler.units.ICompilationUnit.Operation;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link WorkspaceProfiler}.
+ */
+public class WorkspaceProfilerTests
+{
+    @Test
+    public void testNestedOperations() throws IOException
+    {
+        WorkspaceProfiler profiler = new WorkspaceProfiler();
+        ICompilationUnit a = createCompilationUnit("A.as");
+        ICompilationUnit b = createCompilationUnit("B.as");
+        profiler.operationStarted(a, Operation.GET_ABC_BYTES);
+        profiler.operationStarted(a, Operation.GET_SYNTAX_TREE);
+        profiler.operationStarted(b, Operation.GET_SYNTAX_TREE);
+        profiler.operationCompleted(b, Operation.GET_SYNTAX_TREE);
+        profiler.operationCompleted(a, Operation.GET_SYNTAX_TREE);
+        profiler.operationCompleted(a, Operation.GET_ABC_BYTES);
+
+        String report = writeReport(profiler);
+        assertEquals(2, count(report, "\"GET_SYNTAX_TREE\": \\{\"count\": 1"));
+        assertEquals(1, count(report, "\"GET_SYNTAX_TREE\": \\{\"count\": 2"));
+        assertEquals(2, count(report, "\"GET_ABC_BYTES\": \\{\"count\": 1"));
+        assertEquals(1, count(report, "\"unit\": \"A.as\""));
+        assertEquals(1, count(report, "\"unit\": \"B.as\""));
+    }
+
+    @Test
+    public void testQueueWait() throws IOException
+    {
+        WorkspaceProfiler profiler = new WorkspaceProfiler();
+        profiler.requestStarted(1000000);
+        profiler.requestStarted(3000000);
+
+        String report = writeReport(profiler);
+        assertTrue(report.contains("\"queueWait\": {\"count\": 2, \"totalMillis\": 4.000, \"maxMillis\": 3.000}"));
+    }
+
+    @Test
+    public void testTrace() throws IOException
+    {
+        WorkspaceProfiler profiler = new WorkspaceProfiler();
+        ICompilationUnit a = createCompilationUnit("dir\\\"A\".as");
+        profiler.operationStarted(a, Operation.GET_FILESCOPE);
+        profiler.operationCompleted(a, Operation.GET_FILESCOPE);
+
+        StringWriter writer = new StringWriter();
+        profiler.writeTrace(writer);
+        String trace = writer.toString();
+        assertEquals(1, count(trace, "\"name\": \"GET_FILESCOPE\", \"cat\": \"compilation-unit\", \"ph\": \"X\""));
+        assertEquals(1, count(trace, "\"ph\": \"M\""));
+        assertEquals(1, count(trace, Pattern.quote("\"args\": {\"unit\": \"dir\\\\\\\"A\\\".as\"}")));
+    }
+
+    @Test
+    public void testUnmatchedCompletionIsIgnored() throws IOException
+    {
+        WorkspaceProfiler profiler = new WorkspaceProfiler();
+        profiler.operationCompleted(createCompilationUnit("A.as"), Operation.GET_SWF_TAGS);
+
+        assertEquals(0, count(writeReport(profiler), "GET_SWF_TAGS"));
+    }
+
+    @Test
+    public void testReportPerBuild() throws IOException
+    {
+        File reportFile = File.createTempFile("profile-report", ".json");
+        try
+        {
+            WorkspaceProfiler profiler = new WorkspaceProfiler();
+            profiler.setReportFile(reportFile);
+            ICompilationUnit a = createCompilationUnit("A.as");
+            profiler.operationStarted(a, Operation.GET_SYNTAX_TREE);
+            profiler.operationCompleted(a, Operation.GET_SYNTAX_TREE);
+            profiler.finishBuild(null);
+            assertTrue(readFile(reportFile).contains("\"unit\": \"A.as\""));
+
+            // the next build of a workspace that is kept open
+            ICompilationUnit b = createCompilationUnit("B.as");
+            profiler.operationStarted(b, Operation.GET_SYNTAX_TREE);
+            profiler.operationCompleted(b, Operation.GET_SYNTAX_TREE);
+            profiler.finishBuild(null);
+            String report = readFile(reportFile);
+            assertTrue(report.contains("\"unit\": \"B.as\""));
+            assertFalse(report.contains("\"unit\": \"A.as\""));
+
+            // closing the workspace keeps the report of the last build
+            profiler.finishBuild(null);
+            assertEquals(report, readFile(reportFile));
+
+            // and so does a workspace that didn't build anything
+            WorkspaceProfiler idleProfiler = new WorkspaceProfiler();
+            idleProfiler.setReportFile(reportFile);
+            idleProfiler.finishBuild(null);
+            assertEquals(report, readFile(reportFile));
+        }
+        finally
+        {
+            reportFile.delete();
+        }
+    }
+
+    private static String readFile(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String writeReport(WorkspaceProfiler profiler) throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        profiler.writeReport(writer, null);
+        return writer.toString();
+    }
+
+    private static int count(String s, String regex)
+    {
+        int result = 0;
+        Matcher matcher = Pattern.compile(regex).matcher(s);
+        while (matcher.find())
+            result++;
+        return result;
+    }
+
+    private static ICompilationUnit createCompilationUnit(final String name)
+    {
+        return (ICompilationUnit)Proxy.newProxyInstance(ICompilationUnit.class.getClassLoader(),
+                new Class<?>[] {ICompilationUnit.class}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                if (method.getName().equals("getName"))
+                    return name;
+                if (method.getName().equals("hashCode"))
+                    return System.identityHashCode(proxy);
+                if (method.getName().equals("equals"))
+                    return proxy == args[0];
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swc.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link StAXCatalogFilesRewriter}.
+ */
+public class StAXCatalogFilesRewriterTests
+{
+    private static final String CATALOG =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<swc xmlns=\"http://www.adobe.com/flash/swccatalog/9\">\n" +
+            "  <versions>\n" +
+            "    <swc version=\"1.2\"/>\n" +
+            "  </versions>\n" +
+            "  <libraries>\n" +
+            "    <library path=\"library.swf\">\n" +
+            "      <script name=\"A\" mod=\"1\"/>\n" +
+            "    </library>\n" +
+            "  </libraries>\n" +
+            "  <files>\n" +
+            "    <file path=\"defaults.css\" mod=\"10\"/>\n" +
+            "    <file path=\"js/out/A.js\" mod=\"11\"/>\n" +
+            "  </files>\n" +
+            "</swc>\n";
+
+    @Test
+    public void testGetFiles() throws Exception
+    {
+        StAXCatalogFilesRewriter rewriter = read(CATALOG);
+
+        Map<String, Long> expected = new LinkedHashMap<String, Long>();
+        expected.put("defaults.css", 10L);
+        expected.put("js/out/A.js", 11L);
+        assertEquals(expected, rewriter.getFiles());
+    }
+
+    @Test
+    public void testWrite() throws Exception
+    {
+        Map<String, Long> files = new LinkedHashMap<String, Long>();
+        files.put("defaults.css", 10L);
+        files.put("js/out/B.js", 12L);
+
+        String catalog = write(read(CATALOG), files);
+        assertTrue(catalog.contains("<script name=\"A\" mod=\"1\"/>"));
+        assertFalse(catalog.contains("A.js"));
+        assertTrue(catalog.indexOf("</libraries>") < catalog.indexOf("<files>"));
+        assertEquals(1, count(catalog, "<files>"));
+
+        Map<String, Long> rewritten = read(catalog).getFiles();
+        assertEquals(files, rewritten);
+    }
+
+    @Test
+    public void testWriteWithoutFiles() throws Exception
+    {
+        Map<String, Long> files = new LinkedHashMap<String, Long>();
+        files.put("js/out/A.js", 11L);
+
+        String catalog = write(read(CATALOG.replaceAll("(?s)  <files>.*</files>\n", "")), files);
+        assertEquals(files, read(catalog).getFiles());
+        assertTrue(catalog.indexOf("</libraries>") < catalog.indexOf("<files>"));
+    }
+
+    private static StAXCatalogFilesRewriter read(String catalog) throws Exception
+    {
+        return new StAXCatalogFilesRewriter(new ByteArrayInputStream(catalog.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String write(StAXCatalogFilesRewriter rewriter, Map<String, Long> files) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        rewriter.write(output, files);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int count(String s, String part)
+    {
+        int result = 0;
+        for (int i = s.indexOf(part); i != -1; i = s.indexOf(part, i + 1))
+            result++;
+        return result;
+    }
+}
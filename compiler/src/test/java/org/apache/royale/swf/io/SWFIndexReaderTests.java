@@ -0,0 +1,123 @@
+/*
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.royale.swf.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.royale.swf.Header;
+import org.apache.royale.swf.SWF;
+import org.apache.royale.swf.SWFFrame;
+import org.apache.royale.swf.tags.DefineBinaryDataTag;
+import org.apache.royale.swf.tags.DoABCTag;
+import org.apache.royale.swf.tags.ITag;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SWFIndexReader}.
+ */
+public class SWFIndexReaderTests
+{
+    @Test
+    public void testDoABCTagsByName()
+    {
+        SWFIndexReader index = read(createSWF(false), Header.Compression.ZLIB);
+        assertTrue(index.getProblems().isEmpty());
+        assertTrue(index.isCodeOnly());
+
+        DoABCTag tag = index.getDoABCTag("b/B");
+        assertEquals("b/B", tag.getName());
+        assertEquals(1, tag.getFlags());
+        assertArrayEquals(new byte[] {4, 5}, tag.getABCData());
+        assertArrayEquals(new byte[] {1, 2, 3}, index.getDoABCTag("a/A").getABCData());
+        assertNull(index.getDoABCTag("c/C"));
+        assertEquals(5, index.getABCDataSize());
+    }
+
+    @Test
+    public void testIteratesOverDoABCTagsInOrder()
+    {
+        SWFIndexReader index = read(createSWF(true), Header.Compression.NONE);
+        List<String> names = new ArrayList<String>();
+        for (ITag tag : index)
+            names.add(((DoABCTag)tag).getName());
+        assertEquals(Arrays.asList("a/A", "b/B"), names);
+    }
+
+    @Test
+    public void testAssets()
+    {
+        SWFIndexReader index = read(createSWF(true), Header.Compression.ZLIB);
+        assertTrue(index.getProblems().isEmpty());
+        assertFalse(index.isCodeOnly());
+        assertTrue(index.hasSymbol("a.Asset"));
+        assertFalse(index.hasSymbol("a.A"));
+        assertArrayEquals(new byte[] {1, 2, 3}, index.getDoABCTag("a/A").getABCData());
+    }
+
+    @Test
+    public void testTruncatedSWF()
+    {
+        byte[] bytes = write(createSWF(false), Header.Compression.NONE);
+        SWFIndexReader index = new SWFIndexReader();
+        index.readFrom(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 4)), "test.swf");
+        assertFalse(index.getProblems().isEmpty());
+        assertArrayEquals(new byte[] {1, 2, 3}, index.getDoABCTag("a/A").getABCData());
+    }
+
+    private static SWF createSWF(boolean withAsset)
+    {
+        SWFFrame frame = new SWFFrame();
+        frame.addTag(new DoABCTag(1, "a/A", new byte[] {1, 2, 3}));
+        frame.addTag(new DoABCTag(1, "b/B", new byte[] {4, 5}));
+        if (withAsset)
+        {
+            DefineBinaryDataTag asset = new DefineBinaryDataTag(new byte[] {6, 7});
+            frame.addTag(asset);
+            frame.defineSymbol(asset, "a.Asset");
+        }
+        SWF swf = new SWF();
+        swf.addFrame(frame);
+        return swf;
+    }
+
+    private static byte[] write(SWF swf, Header.Compression compression)
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SWFWriter(swf, compression).writeTo(output);
+        return output.toByteArray();
+    }
+
+    private static SWFIndexReader read(SWF swf, Header.Compression compression)
+    {
+        SWFIndexReader index = new SWFIndexReader();
+        index.readFrom(new ByteArrayInputStream(write(swf, compression)), "test.swf");
+        return index;
+    }
+}
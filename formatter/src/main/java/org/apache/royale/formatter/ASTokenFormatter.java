@@ -53,9 +53,22 @@ public class ASTokenFormatter extends BaseTokenFormatter {
 	private static final String FORMATTER_TAG_ON = "@formatter:on";
 
 	public ASTokenFormatter(FormatterSettings settings) {
+		this(settings, null);
+	}
+
+	/**
+	 * @param settings The formatter settings.
+	 * @param workspace The workspace to parse files with. It may be shared by
+	 *                  formatters that are used at the same time on other
+	 *                  threads. If null, the formatter creates its own.
+	 */
+	public ASTokenFormatter(FormatterSettings settings, Workspace workspace) {
 		super(settings);
+		this.workspace = workspace;
 	}
 
+	private Workspace workspace;
+
 	private int indent;
 	private boolean inCaseOrDefaultClause;
 	private boolean inControlFlowStatement;
@@ -125,7 +138,9 @@ public class ASTokenFormatter extends BaseTokenFormatter {
 			}
 		}
 
-		Workspace workspace = new Workspace();
+		if (workspace == null) {
+			workspace = new Workspace();
+		}
 		RepairingTokenBuffer buffer = new RepairingTokenBuffer(streamingTokensList.toArray(new ASToken[0]));
 		ASParser parser = new ASParser(workspace, buffer);
 		FileNode node = new FileNode(workspace);
@@ -27,6 +27,11 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -205,6 +210,7 @@ public class FORMATTER {
 		ExitCode exitCode = ExitCode.SUCCESS;
 		problemQuery = new ProblemQuery();
 
+		final Workspace workspace = new Workspace();
 		try {
 			boolean continueFormatting = configure(args, problemQuery);
 			if (continueFormatting) {
@@ -220,7 +226,7 @@ public class FORMATTER {
 					}
 					String filePath = FilenameNormalization.normalize("stdin.as");
 					String fileText = builder.toString();
-					String formattedText = formatFileText(filePath, fileText, problemQuery.getProblems());
+					String formattedText = formatFileText(filePath, fileText, problemQuery.getProblems(), workspace);
 					if (!fileText.equals(formattedText)) {
 						if (listChangedFiles) {
 							System.out.println(filePath);
@@ -230,23 +236,7 @@ public class FORMATTER {
 						System.out.println(formattedText);
 					}
 				} else {
-					for (File inputFile : inputFiles) {
-						String filePath = FilenameNormalization.normalize(inputFile.getAbsolutePath());
-						FileSpecification fileSpec = new FileSpecification(filePath);
-						String fileText = IOUtils.toString(fileSpec.createReader());
-						String formattedText = formatFileText(filePath, fileText, problemQuery.getProblems());
-						if (!fileText.equals(formattedText)) {
-							if (listChangedFiles) {
-								System.out.println(filePath);
-							}
-							if (writeBackToInputFiles) {
-								FileUtils.write(inputFile, formattedText, "utf8");
-							}
-						}
-						if (!listChangedFiles && !writeBackToInputFiles) {
-							System.out.println(formattedText);
-						}
-					}
+					formatFiles(workspace);
 				}
 			} else if (problemQuery.hasFilteredProblems()) {
 				exitCode = ExitCode.FAILED_WITH_CONFIG_PROBLEMS;
@@ -269,15 +259,98 @@ public class FORMATTER {
 				filteredProblems.add(problem);
 			}
 			if (filteredProblems.size() > 0) {
-				final Workspace workspace = new Workspace();
 				final ProblemFormatter formatter = new WorkspaceProblemFormatter(workspace, categorizer);
 				final ProblemPrinter printer = new ProblemPrinter(formatter);
 				printer.printProblems(filteredProblems);
 			}
+			workspace.close();
 		}
 		return exitCode.getCode();
 	}
 
+	/**
+	 * Formats the input files, using several threads if there is more than
+	 * one file. The output is printed, and the problems are added, in the
+	 * order of the input files, so it doesn't depend on the number of threads.
+	 */
+	private void formatFiles(final Workspace workspace) throws Exception {
+		int threads = settings.threads > 0 ? settings.threads : Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, inputFiles.size());
+		if (threads <= 1) {
+			for (File inputFile : inputFiles) {
+				handleFormattedFile(formatInputFile(inputFile, workspace));
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<FormattedFile>> futures = new ArrayList<Future<FormattedFile>>();
+			for (final File inputFile : inputFiles) {
+				futures.add(executor.submit(new Callable<FormattedFile>() {
+					@Override
+					public FormattedFile call() throws Exception {
+						return formatInputFile(inputFile, workspace);
+					}
+				}));
+			}
+			for (Future<FormattedFile> future : futures) {
+				try {
+					handleFormattedFile(future.get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private FormattedFile formatInputFile(File inputFile, Workspace workspace) throws IOException {
+		String filePath = FilenameNormalization.normalize(inputFile.getAbsolutePath());
+		FileSpecification fileSpec = new FileSpecification(filePath);
+		String fileText = IOUtils.toString(fileSpec.createReader());
+		List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+		String formattedText = formatFileText(filePath, fileText, problems, workspace);
+		return new FormattedFile(inputFile, filePath, fileText, formattedText, problems);
+	}
+
+	private void handleFormattedFile(FormattedFile result) throws IOException {
+		problemQuery.addAll(result.problems);
+		if (!result.fileText.equals(result.formattedText)) {
+			if (listChangedFiles) {
+				System.out.println(result.filePath);
+			}
+			if (writeBackToInputFiles) {
+				FileUtils.write(result.inputFile, result.formattedText, "utf8");
+			}
+		}
+		if (!listChangedFiles && !writeBackToInputFiles) {
+			System.out.println(result.formattedText);
+		}
+	}
+
+	private static class FormattedFile {
+		FormattedFile(File inputFile, String filePath, String fileText, String formattedText,
+				List<ICompilerProblem> problems) {
+			this.inputFile = inputFile;
+			this.filePath = filePath;
+			this.fileText = fileText;
+			this.formattedText = formattedText;
+			this.problems = problems;
+		}
+
+		final File inputFile;
+		final String filePath;
+		final String fileText;
+		final String formattedText;
+		final List<ICompilerProblem> problems;
+	}
+
 	/**
 	 * @deprecated Use an ASTokenFormatter or MXMLTokenFormatter instead
 	 */
@@ -302,15 +375,19 @@ public class FORMATTER {
 	 */
 	@Deprecated
 	public String formatFileText(String filePath, String text, Collection<ICompilerProblem> problems) {
+		return formatFileText(filePath, text, problems, null);
+	}
+
+	private String formatFileText(String filePath, String text, Collection<ICompilerProblem> problems, Workspace workspace) {
 		if (settings == null) {
 			settings = getLegacyFormatterSettings();
 		}
 		filePath = FilenameNormalization.normalize(filePath);
 		String result = null;
 		if (filePath.endsWith(".mxml")) {
-			result = formatMXMLTokens(filePath, text, problems);
+			result = formatMXMLTokens(filePath, text, problems, workspace);
 		} else {
-			result = formatASTokens(filePath, text, problems);
+			result = formatASTokens(filePath, text, problems, workspace);
 		}
 		if (insertFinalNewLine && result.charAt(result.length() - 1) != '\n') {
 			return result + '\n';
@@ -335,7 +412,7 @@ public class FORMATTER {
 			settings = getLegacyFormatterSettings();
 		}
 		String filePath = FilenameNormalization.normalize("stdin.as");
-		return formatASTokens(filePath, text, problems);
+		return formatASTokens(filePath, text, problems, null);
 	}
 
 	/**
@@ -355,7 +432,7 @@ public class FORMATTER {
 			settings = getLegacyFormatterSettings();
 		}
 		String filePath = FilenameNormalization.normalize("stdin.mxml");
-		return formatMXMLTokens(filePath, text, problems);
+		return formatMXMLTokens(filePath, text, problems, null);
 	}
 
 	/**
@@ -366,13 +443,13 @@ public class FORMATTER {
 		return formatMXMLText(text, null);
 	}
 
-	private String formatASTokens(String filePath, String text, Collection<ICompilerProblem> problems) {
-		ASTokenFormatter asFormatter = new ASTokenFormatter(settings);
+	private String formatASTokens(String filePath, String text, Collection<ICompilerProblem> problems, Workspace workspace) {
+		ASTokenFormatter asFormatter = new ASTokenFormatter(settings, workspace);
 		return asFormatter.format(filePath, text, problems);
 	}
 
-	private String formatMXMLTokens(String filePath, String text, Collection<ICompilerProblem> problems) {
-		MXMLTokenFormatter mxmlFormatter = new MXMLTokenFormatter(settings);
+	private String formatMXMLTokens(String filePath, String text, Collection<ICompilerProblem> problems, Workspace workspace) {
+		MXMLTokenFormatter mxmlFormatter = new MXMLTokenFormatter(settings, workspace);
 		return mxmlFormatter.format(filePath, text, problems);
 	}
 
@@ -29,6 +29,7 @@ import java.util.regex.Pattern;
 import org.apache.commons.io.IOUtils;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.parsing.IMXMLToken;
 import org.apache.royale.compiler.parsing.MXMLTokenTypes;
 import org.apache.royale.compiler.problems.ICompilerProblem;
@@ -44,9 +45,22 @@ public class MXMLTokenFormatter extends BaseTokenFormatter {
 	private static final String FORMATTER_TAG_ON = "@formatter:on";
 
 	public MXMLTokenFormatter(FormatterSettings settings) {
+		this(settings, null);
+	}
+
+	/**
+	 * @param settings The formatter settings.
+	 * @param workspace The workspace to parse scripts with. It may be shared
+	 *                  by formatters that are used at the same time on other
+	 *                  threads. If null, a new one is created for every script.
+	 */
+	public MXMLTokenFormatter(FormatterSettings settings, Workspace workspace) {
 		super(settings);
+		this.workspace = workspace;
 	}
 
+	private Workspace workspace;
+
 	private int indent;
 	private int numRequiredNewLines;
 	private boolean requiredSpace;
@@ -362,7 +376,7 @@ public class MXMLTokenFormatter extends BaseTokenFormatter {
 			// need to return the original, unformatted text
 			problems = new ArrayList<ICompilerProblem>();
 		}
-		ASTokenFormatter asFormatter = new ASTokenFormatter(settings);
+		ASTokenFormatter asFormatter = new ASTokenFormatter(settings, workspace);
 		String formattedScriptText = asFormatter.format(filePath + "@Script[" + line + "]", scriptText, problems);
 		if (!settings.ignoreProblems && hasErrors(problems)) {
 			return text;
@@ -590,6 +590,27 @@ public class Configuration {
         this.mxmlInsertNewLineBetweenAttributes = b;
     }
 
+    //
+    // 'threads' option
+    //
+
+    private int threads = 0;
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * The number of files to format at the same time. Pass 0 to use one thread per available processor.
+     */
+    @Config(advanced = true)
+    @Mapping("threads")
+    public void setThreads(ConfigurationValue cv, int i)
+    {
+        this.threads = i;
+    }
+
     /**
      * 
      * @param path A path to resolve.
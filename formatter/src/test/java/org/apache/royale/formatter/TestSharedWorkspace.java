@@ -0,0 +1,157 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  Licensed to the Apache Software Foundation (ASF) under one or more
+//  contributor license agreements.  See the NOTICE file distributed with
+//  this work for additional information regarding copyright ownership.
+//  The ASF licenses this file to You under the Apache License, Version 2.0
+//  (the "License"); you may not use this file except in compliance with
+//  the License.  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package org.apache.royale.formatter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that formatting files on several threads with one workspace gives
+ * the same output and problems as formatting them one at a time with a
+ * workspace each.
+ */
+public class TestSharedWorkspace {
+	private static final int FILE_COUNT = 40;
+
+	private FormatterSettings settings;
+	private Workspace workspace;
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		settings = new FormatterSettings();
+		settings.insertSpaces = false;
+		settings.placeOpenBraceOnNewLine = true;
+		workspace = new Workspace();
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+		workspace.close();
+	}
+
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		List<String> filePaths = new ArrayList<String>();
+		List<String> fileTexts = new ArrayList<String>();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			if (i % 4 == 3) {
+				filePaths.add("file" + i + ".mxml");
+				fileTexts.add(createMXML(i));
+			} else {
+				filePaths.add("file" + i + ".as");
+				fileTexts.add(createAS(i));
+			}
+		}
+		// a file that doesn't parse, which is left as it is
+		filePaths.add("broken.as");
+		fileTexts.add("package { public class broken { function f( } }");
+
+		List<String> serial = new ArrayList<String>();
+		for (int i = 0; i < filePaths.size(); i++) {
+			serial.add(format(filePaths.get(i), fileTexts.get(i), null));
+		}
+
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for (int i = 0; i < filePaths.size(); i++) {
+			final String filePath = filePaths.get(i);
+			final String fileText = fileTexts.get(i);
+			futures.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return format(filePath, fileText, workspace);
+				}
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			assertEquals(filePaths.get(i), serial.get(i), futures.get(i).get());
+		}
+		// the files that parse were formatted
+		assertNotEquals(fileTexts.get(0), serial.get(0));
+		assertNotEquals(fileTexts.get(3), serial.get(3));
+	}
+
+	private String format(String filePath, String fileText, Workspace workspace) {
+		List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+		String result = null;
+		if (filePath.endsWith(".mxml")) {
+			result = new MXMLTokenFormatter(settings, workspace).format(filePath, fileText, problems);
+		} else {
+			result = new ASTokenFormatter(settings, workspace).format(filePath, fileText, problems);
+		}
+		StringBuilder builder = new StringBuilder(result);
+		for (ICompilerProblem problem : problems) {
+			builder.append('\n');
+			builder.append(problem.getClass().getName());
+			builder.append(" (");
+			builder.append(problem.getLine());
+			builder.append(", ");
+			builder.append(problem.getColumn());
+			builder.append(")");
+		}
+		return builder.toString();
+	}
+
+	private static String createAS(int i) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("package {\n");
+		builder.append("public class file" + i + " {\n");
+		builder.append("public var count:int = " + i + ";\n");
+		for (int j = 0; j <= i % 5; j++) {
+			builder.append("public function method" + j + "(arg:Object):Boolean {\n");
+			builder.append("if(arg==null) return false;\n");
+			builder.append("for(var k:int=0;k<count;k++){trace(k);}\n");
+			builder.append("return arg is file" + i + ";\n");
+			builder.append("}\n");
+		}
+		builder.append("}\n}\n");
+		return builder.toString();
+	}
+
+	private static String createMXML(int i) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("<s:Application xmlns:fx=\"http://ns.adobe.com/mxml/2009\"");
+		builder.append(" xmlns:s=\"library://ns.adobe.com/flex/spark\">\n");
+		builder.append("<s:Button id=\"button" + i + "\"/>\n");
+		builder.append("<fx:Script>\n<![CDATA[\n");
+		builder.append("public function check(arg:Object):Boolean {\n");
+		builder.append("if(arg==null) return false;\n");
+		builder.append("return arg==" + i + ";\n");
+		builder.append("}\n");
+		builder.append("]]>\n</fx:Script>\n");
+		builder.append("</s:Application>\n");
+		return builder.toString();
+	}
+}
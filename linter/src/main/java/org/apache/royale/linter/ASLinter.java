@@ -50,9 +50,22 @@ public class ASLinter extends BaseLinter {
 	private static final String LINTER_TAG_ON = "@linter:on";
 
 	public ASLinter(LinterSettings settings) {
+		this(settings, null);
+	}
+
+	/**
+	 * @param settings The linter settings.
+	 * @param workspace The workspace to parse files with. It may be shared by
+	 *                  linters that are used at the same time on other threads.
+	 *                  If null, the linter creates its own.
+	 */
+	public ASLinter(LinterSettings settings, Workspace workspace) {
 		super(settings);
+		this.workspace = workspace;
 	}
 
+	private Workspace workspace;
+
 	public void lint(String filePath, String text, Collection<ICompilerProblem> allProblems) {
 		if (allProblems == null) {
 			allProblems = new ArrayList<ICompilerProblem>();
@@ -96,7 +109,9 @@ public class ASLinter extends BaseLinter {
 				}
 			}
 
-			Workspace workspace = new Workspace();
+			if (workspace == null) {
+				workspace = new Workspace();
+			}
 			RepairingTokenBuffer buffer = new RepairingTokenBuffer(streamingTokensList.toArray(new ASToken[0]));
 			ASParser parser = new ASParser(workspace, buffer);
 			FileNode node = new FileNode(workspace);
@@ -20,10 +20,16 @@
 package org.apache.royale.linter;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.royale.compiler.clients.problems.CompilerProblemCategorizer;
@@ -97,21 +103,11 @@ public class LINTER {
 		problemQuery = new ProblemQuery();
 		problemQuery.setShowWarnings(false);
 
+		final Workspace workspace = new Workspace();
 		try {
 			boolean continueLinting = configure(args, problemQuery);
 			if (continueLinting) {
-				for (File inputFile : inputFiles) {
-					String filePath = FilenameNormalization.normalize(inputFile.getAbsolutePath());
-					FileSpecification fileSpec = new FileSpecification(filePath);
-					String fileText = IOUtils.toString(fileSpec.createReader());
-					if (filePath.endsWith(FILE_EXTENSION_MXML)) {
-						MXMLLinter linter = new MXMLLinter(settings);
-						linter.lint(filePath, fileText, problemQuery.getProblems());
-					} else {
-						ASLinter linter = new ASLinter(settings);
-						linter.lint(filePath, fileText, problemQuery.getProblems());
-					}
-				}
+				lintFiles(workspace);
 			} else if (problemQuery.hasFilteredProblems()) {
 				exitCode = ExitCode.FAILED_WITH_CONFIG_PROBLEMS;
 			} else {
@@ -123,16 +119,73 @@ public class LINTER {
 			exitCode = ExitCode.FAILED_WITH_EXCEPTIONS;
 		} finally {
 			if (problemQuery.hasFilteredProblems()) {
-				final Workspace workspace = new Workspace();
 				final CompilerProblemCategorizer categorizer = new CompilerProblemCategorizer();
 				final ProblemFormatter formatter = new WorkspaceProblemFormatter(workspace, categorizer);
 				final ProblemPrinter printer = new ProblemPrinter(formatter);
 				printer.printProblems(problemQuery.getFilteredProblems());
 			}
+			workspace.close();
 		}
 		return exitCode.getCode();
 	}
 
+	/**
+	 * Lints the input files, using several threads if there is more than one
+	 * file. The problems are added in the order of the input files, so the
+	 * output doesn't depend on the number of threads.
+	 */
+	private void lintFiles(final Workspace workspace) throws Exception {
+		int threads = settings.threads > 0 ? settings.threads : Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, inputFiles.size());
+		if (threads <= 1) {
+			for (File inputFile : inputFiles) {
+				problemQuery.addAll(lintFile(inputFile, workspace));
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<ICompilerProblem>>> futures = new ArrayList<Future<List<ICompilerProblem>>>();
+			for (final File inputFile : inputFiles) {
+				futures.add(executor.submit(new Callable<List<ICompilerProblem>>() {
+					@Override
+					public List<ICompilerProblem> call() throws Exception {
+						return lintFile(inputFile, workspace);
+					}
+				}));
+			}
+			for (Future<List<ICompilerProblem>> future : futures) {
+				try {
+					problemQuery.addAll(future.get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<ICompilerProblem> lintFile(File inputFile, Workspace workspace) throws IOException {
+		List<ICompilerProblem> fileProblems = new ArrayList<ICompilerProblem>();
+		String filePath = FilenameNormalization.normalize(inputFile.getAbsolutePath());
+		FileSpecification fileSpec = new FileSpecification(filePath);
+		String fileText = IOUtils.toString(fileSpec.createReader());
+		if (filePath.endsWith(FILE_EXTENSION_MXML)) {
+			MXMLLinter linter = new MXMLLinter(settings, workspace);
+			linter.lint(filePath, fileText, fileProblems);
+		} else {
+			ASLinter linter = new ASLinter(settings, workspace);
+			linter.lint(filePath, fileText, fileProblems);
+		}
+		return fileProblems;
+	}
+
 	/**
 	 * Get the start up message that contains the program name with the copyright
 	 * notice.
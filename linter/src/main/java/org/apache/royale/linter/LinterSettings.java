@@ -25,4 +25,5 @@ import java.util.List;
 public class LinterSettings {
 	public List<LinterRule> rules = new ArrayList<LinterRule>();
 	public boolean ignoreProblems = false;
+	public int threads = 0;
 }
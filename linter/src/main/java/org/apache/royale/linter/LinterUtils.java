@@ -73,6 +73,7 @@ public class LinterUtils {
 	public static LinterSettings configurationToLinterSettings(Configuration configuration) {
 		LinterSettings settings = new LinterSettings();
 		settings.ignoreProblems = configuration.getIgnoreParsingProblems();
+		settings.threads = configuration.getThreads();
 
 		List<LinterRule> rules = LinterUtils.configurationToRules(configuration);
 		settings.rules = rules;
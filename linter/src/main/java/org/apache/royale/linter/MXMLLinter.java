@@ -32,6 +32,7 @@ import org.apache.royale.compiler.internal.filespecs.StringFileSpecification;
 import org.apache.royale.compiler.internal.mxml.MXMLData;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLToken;
 import org.apache.royale.compiler.internal.parsing.mxml.MXMLTokenizer;
+import org.apache.royale.compiler.internal.workspaces.Workspace;
 import org.apache.royale.compiler.mxml.IMXMLLanguageConstants;
 import org.apache.royale.compiler.mxml.IMXMLTagData;
 import org.apache.royale.compiler.mxml.IMXMLUnitData;
@@ -45,9 +46,22 @@ public class MXMLLinter extends BaseLinter {
 	private static final String LINTER_TAG_ON = "@linter:on";
 
 	public MXMLLinter(LinterSettings settings) {
+		this(settings, null);
+	}
+
+	/**
+	 * @param settings The linter settings.
+	 * @param workspace The workspace to parse scripts with. It may be shared by
+	 *                  linters that are used at the same time on other threads.
+	 *                  If null, a new one is created for every file.
+	 */
+	public MXMLLinter(LinterSettings settings, Workspace workspace) {
 		super(settings);
+		this.workspace = workspace;
 	}
 
+	private Workspace workspace;
+
 	public void lint(String filePath, String text, Collection<ICompilerProblem> allProblems) {
 		if (allProblems == null) {
 			allProblems = new ArrayList<ICompilerProblem>();
@@ -164,7 +178,7 @@ public class MXMLLinter extends BaseLinter {
 				current = current.getNext();
 			}
 			builder.append("}}\n");
-			ASLinter asLinter = new ASLinter(settings);
+			ASLinter asLinter = new ASLinter(settings, workspace);
 			asLinter.lint(filePath, builder.toString(), fileProblems);
 		} finally {
 			allProblems.addAll(fileProblems);
@@ -890,6 +890,25 @@ public class Configuration {
         this.switchDefault = b;
     }
 
+    //
+    // 'threads' option
+    //
+
+    private int threads = 0;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * The number of files to lint at the same time. Pass 0 to use one thread per available processor.
+     */
+    @Config(advanced = true)
+    @Mapping("threads")
+    public void setThreads(ConfigurationValue cv, int i) {
+        this.threads = i;
+    }
+
     //
     // 'unsafe-negation' option
     //
@@ -0,0 +1,180 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  Licensed to the Apache Software Foundation (ASF) under one or more
+//  contributor license agreements.  See the NOTICE file distributed with
+//  this work for additional information regarding copyright ownership.
+//  The ASF licenses this file to You under the Apache License, Version 2.0
+//  (the "License"); you may not use this file except in compliance with
+//  the License.  You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package org.apache.royale.linter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.royale.compiler.internal.workspaces.Workspace;
+import org.apache.royale.compiler.problems.ICompilerProblem;
+import org.apache.royale.linter.rules.ClassNameRule;
+import org.apache.royale.linter.rules.EmptyFunctionBodyRule;
+import org.apache.royale.linter.rules.LocalVarShadowsFieldRule;
+import org.apache.royale.linter.rules.MXMLEmptyAttributeRule;
+import org.apache.royale.linter.rules.MXMLIDRule;
+import org.apache.royale.linter.rules.MissingASDocRule;
+import org.apache.royale.linter.rules.MissingSemicolonRule;
+import org.apache.royale.linter.rules.MissingTypeRule;
+import org.apache.royale.linter.rules.NoAnyTypeRule;
+import org.apache.royale.linter.rules.NoTraceRule;
+import org.apache.royale.linter.rules.StrictEqualityRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that linting files on several threads with one workspace finds the
+ * same problems as linting them one at a time with a workspace each.
+ */
+public class TestSharedWorkspace {
+	private static final int FILE_COUNT = 40;
+
+	private LinterSettings settings;
+	private Workspace workspace;
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		List<LinterRule> rules = new ArrayList<LinterRule>();
+		rules.add(new ClassNameRule());
+		rules.add(new EmptyFunctionBodyRule());
+		rules.add(new LocalVarShadowsFieldRule());
+		rules.add(new MissingASDocRule());
+		rules.add(new MissingSemicolonRule());
+		rules.add(new MissingTypeRule());
+		rules.add(new NoAnyTypeRule());
+		rules.add(new NoTraceRule());
+		rules.add(new StrictEqualityRule());
+		rules.add(new MXMLEmptyAttributeRule());
+		rules.add(new MXMLIDRule());
+		settings = new LinterSettings();
+		settings.rules = rules;
+		workspace = new Workspace();
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+		workspace.close();
+	}
+
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		List<String> filePaths = new ArrayList<String>();
+		List<String> fileTexts = new ArrayList<String>();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			if (i % 4 == 3) {
+				filePaths.add("file" + i + ".mxml");
+				fileTexts.add(createMXML(i));
+			} else {
+				filePaths.add("file" + i + ".as");
+				fileTexts.add(createAS(i));
+			}
+		}
+		// a file that doesn't parse
+		filePaths.add("broken.as");
+		fileTexts.add("package { public class broken { function f( } }");
+
+		List<String> serial = new ArrayList<String>();
+		for (int i = 0; i < filePaths.size(); i++) {
+			serial.add(lint(filePaths.get(i), fileTexts.get(i), null));
+		}
+
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		for (int i = 0; i < filePaths.size(); i++) {
+			final String filePath = filePaths.get(i);
+			final String fileText = fileTexts.get(i);
+			futures.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return lint(filePath, fileText, workspace);
+				}
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			String problems = serial.get(i);
+			assertFalse(filePaths.get(i), problems.isEmpty());
+			assertEquals(filePaths.get(i), problems, futures.get(i).get());
+		}
+	}
+
+	private String lint(String filePath, String fileText, Workspace workspace) {
+		List<ICompilerProblem> problems = new ArrayList<ICompilerProblem>();
+		if (filePath.endsWith(".mxml")) {
+			new MXMLLinter(settings, workspace).lint(filePath, fileText, problems);
+		} else {
+			new ASLinter(settings, workspace).lint(filePath, fileText, problems);
+		}
+		StringBuilder result = new StringBuilder();
+		for (ICompilerProblem problem : problems) {
+			result.append(problem.getClass().getName());
+			result.append(" (");
+			result.append(problem.getLine());
+			result.append(", ");
+			result.append(problem.getColumn());
+			result.append(") ");
+			result.append(problem.toString());
+			result.append('\n');
+		}
+		return result.toString();
+	}
+
+	private static String createAS(int i) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("package\n{\n");
+		builder.append("\tpublic class file" + i + "\n\t{\n");
+		builder.append("\t\tpublic var value:*;\n");
+		builder.append("\t\tpublic var count = " + i + ";\n");
+		for (int j = 0; j <= i % 5; j++) {
+			builder.append("\t\tpublic function method" + j + "(arg):Boolean\n\t\t{\n");
+			builder.append("\t\t\tvar value:String = 'a'\n");
+			builder.append("\t\t\ttrace(value);\n");
+			builder.append("\t\t\treturn arg == " + j + ";\n");
+			builder.append("\t\t}\n");
+		}
+		builder.append("\t\tpublic function empty():void {}\n");
+		builder.append("\t}\n}\n");
+		return builder.toString();
+	}
+
+	private static String createMXML(int i) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("<s:Application xmlns:fx=\"http://ns.adobe.com/mxml/2009\"");
+		builder.append(" xmlns:s=\"library://ns.adobe.com/flex/spark\">\n");
+		builder.append("\t<s:Button id=\"Button" + i + "\" label=\"\"/>\n");
+		builder.append("\t<fx:Script>\n\t\t<![CDATA[\n");
+		builder.append("\t\t\tpublic var value:*;\n");
+		builder.append("\t\t\tpublic function check(arg):Boolean\n\t\t\t{\n");
+		builder.append("\t\t\t\ttrace(arg)\n");
+		builder.append("\t\t\t\treturn arg == " + i + ";\n");
+		builder.append("\t\t\t}\n");
+		builder.append("\t\t]]>\n\t</fx:Script>\n");
+		builder.append("</s:Application>\n");
+		return builder.toString();
+	}
+}
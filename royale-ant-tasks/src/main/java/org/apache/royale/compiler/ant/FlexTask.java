@@ -99,6 +99,9 @@ public abstract class FlexTask extends Java
      * and returns an int exit code.
      */
     private final String toolMethodName;
+
+    private static final String COMPILE_DAEMON_CLIENT_CLASS = "org.apache.royale.compiler.clients.CompileDaemonClient";
+    private static final int COMPILE_DAEMON_NOT_AVAILABLE = -1;
     
     /**
      * The build tools' method that determines whether the
@@ -119,6 +122,11 @@ public abstract class FlexTask extends Java
      * fork attribute
      */
     protected boolean fork;
+
+    /**
+     * daemon attribute
+     */
+    protected boolean daemon;
     
     private ClassLoader originalContextClassLoader;
 
@@ -157,6 +165,18 @@ public abstract class FlexTask extends Java
         this.fork = f;
     }
 
+    /**
+     * Sets whether to submit the build to a running compile daemon, which
+     * keeps the workspace of the previous build with the same arguments in
+     * memory. If no daemon is running, the task runs as if this was false.
+     *
+     * @param d if true then try the compile daemon first.
+     */
+    public void setDaemon(boolean d)
+    {
+        this.daemon = d;
+    }
+
     /*=======================================================================*
      *  Dynamic Attributes                                                   *
      *=======================================================================*/
@@ -257,12 +277,60 @@ public abstract class FlexTask extends Java
         
         prepareCommandline();
 
+        if (daemon && executeInDaemon())
+            return;
+
         if (fork)
             executeOutOfProcess();
         else
             executeInProcess();
     }
 
+    /**
+     * Submits the task to a running compile daemon.
+     * 
+     * @return false if there is no daemon that can run the task.
+     */
+    private boolean executeInDaemon() throws BuildException
+    {
+        try
+        {
+            Class<?> toolClass = resolveClass(toolClassName);
+            int exitCode = COMPILE_DAEMON_NOT_AVAILABLE;
+
+            try
+            {
+                Class<?> clientClass = Class.forName(COMPILE_DAEMON_CLIENT_CLASS, true, toolClass.getClassLoader());
+                Method submitMethod = clientClass.getMethod("submit", String.class, String[].class);
+                Object result = submitMethod.invoke(null, toolClassName, cmdline.getArguments());
+                exitCode = ((Integer)result);
+            }
+            catch (Exception e)
+            {
+                StringWriter stringWriter = new StringWriter();
+                PrintWriter printWriter = new PrintWriter(stringWriter);
+                e.printStackTrace(printWriter);
+                log(stringWriter.toString(), Project.MSG_DEBUG);
+                return false;
+            }
+
+            if (exitCode == COMPILE_DAEMON_NOT_AVAILABLE)
+            {
+                log("No compile daemon is available", Project.MSG_VERBOSE);
+                return false;
+            }
+
+            if (isFatalFailure(toolClass, exitCode))
+                throw new BuildException(taskName + " task failed");
+            return true;
+        }
+        finally
+        {
+            if (originalContextClassLoader != null)
+                Thread.currentThread().setContextClassLoader(originalContextClassLoader);
+        }
+    }
+
     /**
      * Executes the task in a separate VM
      */
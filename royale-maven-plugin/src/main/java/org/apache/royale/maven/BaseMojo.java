@@ -107,6 +107,16 @@ public abstract class BaseMojo
     @Parameter
     private String additionalCompilerOptions = null;
 
+    /**
+     * Submit the build to a running compile daemon
+     * (org.apache.royale.compiler.clients.CompileDaemon), which keeps the
+     * workspace of the previous build with the same arguments in memory. If no
+     * daemon is running, or it can't run the build, the compiler is run in
+     * the Maven process as usual.
+     */
+    @Parameter(property = "royale.useCompileDaemon", defaultValue = "false")
+    private boolean useCompileDaemon;
+
     @Parameter(defaultValue = "${session}", required = true, readonly = true)
     private MavenSession session;
 
@@ -398,10 +408,40 @@ public abstract class BaseMojo
         FlexTool tool = toolGroup.getFlexTool(getFlexTool());
         String[] args = getCompilerArgs(configFile).toArray(new String[0]);
         getLog().info("Executing " + getFlexTool() + " in tool group " + getToolGroupName() + " with args: " + Arrays.toString(args));
-        int exitCode = tool.execute(args);
+        int exitCode = COMPILE_DAEMON_NOT_AVAILABLE;
+        if(useCompileDaemon) {
+            exitCode = submitToCompileDaemon(tool, args);
+        }
+        if(exitCode == COMPILE_DAEMON_NOT_AVAILABLE) {
+            exitCode = tool.execute(args);
+        }
         handleExitCode(exitCode);
     }
 
+    private static final String COMPILE_DAEMON_CLIENT_CLASS = "org.apache.royale.compiler.clients.CompileDaemonClient";
+    private static final int COMPILE_DAEMON_NOT_AVAILABLE = -1;
+
+    /**
+     * The compiler is only a dependency of the plugin when the build uses
+     * it, so the daemon client is loaded from the same class loader as the
+     * tool.
+     */
+    protected int submitToCompileDaemon(FlexTool tool, String[] args) {
+        try {
+            Class<?> clientClass = Class.forName(COMPILE_DAEMON_CLIENT_CLASS, true, tool.getClass().getClassLoader());
+            Object result = clientClass.getMethod("submit", String.class, String[].class)
+                    .invoke(null, tool.getClass().getName(), args);
+            int exitCode = (Integer) result;
+            if(exitCode == COMPILE_DAEMON_NOT_AVAILABLE) {
+                getLog().info("No compile daemon is available, compiling in-process");
+            }
+            return exitCode;
+        } catch (Exception e) {
+            getLog().warn("Unable to submit the build to the compile daemon: " + e);
+            return COMPILE_DAEMON_NOT_AVAILABLE;
+        }
+    }
+
     protected void handleExitCode(int exitCode) throws MojoExecutionException {
         if(exitCode == 1000) {
             // if the compiler is watching for file changes, make sure that the